@@ -13,7 +13,7 @@ import java.util.*;
 class ByteArraySortedSetBenchmarkData {
 
     static class BenchmarkSet {
-        private final FixedLengthByteArraySortedSet fixed;
+        private final ByteArraySortedSet fixed;
         private final VariableLengthByteArraySortedSet variable;
         private final TrieByteArraySortedSet trie;
         private final Collection<Buffer> queries;
@@ -46,7 +46,7 @@ class ByteArraySortedSetBenchmarkData {
                     );
         }
 
-        public FixedLengthByteArraySortedSet fixedIndex() {
+        public ByteArraySortedSet fixedIndex() {
             return fixed;
         }
 
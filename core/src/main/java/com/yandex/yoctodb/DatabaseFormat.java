@@ -14,9 +14,12 @@ import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
 import com.yandex.yoctodb.immutable.DatabaseReader;
 import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.mutable.DatabaseMerger;
 import com.yandex.yoctodb.mutable.DocumentBuilder;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 
+import java.util.concurrent.Executor;
+
 /**
  * Provides facilities to build a database using current format
  *
@@ -42,6 +45,43 @@ public abstract class DatabaseFormat {
     @NotNull
     public abstract DatabaseBuilder newDatabaseBuilder();
 
+    /**
+     * Builds {@link DatabaseBuilder} building independent segments
+     * concurrently using {@code executor}
+     *
+     * Ignores {@code executor} by default.
+     */
+    @NotNull
+    public DatabaseBuilder newDatabaseBuilder(
+            @NotNull
+            final Executor executor) {
+        return newDatabaseBuilder();
+    }
+
+    /**
+     * Builds {@link DatabaseMerger} of the databases in the format
+     *
+     * @throws UnsupportedOperationException if the format doesn't support
+     *                                       merging
+     */
+    @NotNull
+    public DatabaseMerger newDatabaseMerger() {
+        throw new UnsupportedOperationException("Merging is not supported");
+    }
+
+    /**
+     * Builds {@link DatabaseMerger} merging independent segments
+     * concurrently using {@code executor}
+     *
+     * Ignores {@code executor} by default.
+     */
+    @NotNull
+    public DatabaseMerger newDatabaseMerger(
+            @NotNull
+            final Executor executor) {
+        return newDatabaseMerger();
+    }
+
     @NotNull
     public abstract DatabaseReader getDatabaseReader();
 }
@@ -17,6 +17,7 @@ import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 /**
  * Builds immutable {@link Database} from file or {@link Buffer}
@@ -40,6 +41,25 @@ public abstract class DatabaseReader {
             ArrayBitSetPool bitSetPool,
             boolean checksum);
 
+    /**
+     * Builds {@link IndexedDatabase} from {@code b}
+     *
+     * Reads the indexes upfront ignoring {@code lazy} by default.
+     *
+     * @param lazy instantiate indexes on first access instead of reading all
+     *             of them upfront
+     */
+    @NotNull
+    public IndexedDatabase from(
+            @NotNull
+            final Buffer b,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            final boolean checksum,
+            final boolean lazy) {
+        return from(b, bitSetPool, checksum);
+    }
+
     @NotNull
     public abstract Database composite(
             @NotNull
@@ -47,6 +67,23 @@ public abstract class DatabaseReader {
             @NotNull
             ArrayBitSetPool bitSetPool);
 
+    /**
+     * Builds composite {@link Database} processing the underlying databases
+     * in parallel using {@code executor}
+     *
+     * Ignores {@code executor} by default.
+     */
+    @NotNull
+    public Database composite(
+            @NotNull
+            final Collection<? extends IndexedDatabase> databases,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            @NotNull
+            final Executor executor) {
+        return composite(databases, bitSetPool);
+    }
+
     @NotNull
     public Database composite(
             @NotNull
@@ -11,8 +11,10 @@
 package com.yandex.yoctodb.immutable;
 
 import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import com.yandex.yoctodb.util.mutable.BitSet;
 
 /**
@@ -24,10 +26,25 @@ import com.yandex.yoctodb.util.mutable.BitSet;
  *
  * Each method returns {@code boolean} result stating if any bit was set.
  *
+ * Each {@code estimate*()} method returns the estimated number of documents
+ * the corresponding comparison method would set without touching the
+ * documents, so it is used to plan the evaluation order of the conditions.
+ * The indexes unable to estimate conservatively return
+ * {@link #UNKNOWN_ESTIMATE} meaning all the documents by default.
+ *
+ * {@link #eqIterator(Buffer)} provides the documents of
+ * {@link #eq(BitSet, Buffer)} document-at-a-time, so that a few of them
+ * might be intersected with other ones without filling whole {@link BitSet}s.
+ *
  * @author incubos
  */
 @Immutable
 public interface FilterableIndex extends Index {
+    /**
+     * Estimate meaning that any number of documents might conform
+     */
+    long UNKNOWN_ESTIMATE = Long.MAX_VALUE;
+
     boolean eq(
             @NotNull
             BitSet dest,
@@ -63,4 +80,52 @@ public interface FilterableIndex extends Index {
             @NotNull
             Buffer to,
             boolean toInclusive);
+
+    default long estimateEq(
+            @NotNull
+            final Buffer value) {
+        return UNKNOWN_ESTIMATE;
+    }
+
+    default long estimateIn(
+            @NotNull
+            final Buffer... value) {
+        return UNKNOWN_ESTIMATE;
+    }
+
+    default long estimateLessThan(
+            @NotNull
+            final Buffer value,
+            final boolean orEquals) {
+        return UNKNOWN_ESTIMATE;
+    }
+
+    default long estimateGreaterThan(
+            @NotNull
+            final Buffer value,
+            final boolean orEquals) {
+        return UNKNOWN_ESTIMATE;
+    }
+
+    default long estimateBetween(
+            @NotNull
+            final Buffer from,
+            final boolean fromInclusive,
+            @NotNull
+            final Buffer to,
+            final boolean toInclusive) {
+        return UNKNOWN_ESTIMATE;
+    }
+
+    /**
+     * @param value value to compare with
+     * @return iterator over the documents equal to {@code value} in
+     * ascending order or {@code null} if not supported by the index
+     */
+    @Nullable
+    default PostingIterator eqIterator(
+            @NotNull
+            final Buffer value) {
+        return null;
+    }
 }
@@ -0,0 +1,35 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.mutable;
+
+import com.yandex.yoctodb.util.OutputStreamWritableBuilder;
+import com.yandex.yoctodb.util.buf.Buffer;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+
+/**
+ * Merges serialized databases into a single database serializable to
+ * {@link OutputStream} without rebuilding them from documents.
+ *
+ * Documents of every added database follow the documents of the previously
+ * added databases.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public interface DatabaseMerger extends OutputStreamWritableBuilder {
+    @NotNull
+    DatabaseMerger add(
+            @NotNull
+            Buffer database);
+}
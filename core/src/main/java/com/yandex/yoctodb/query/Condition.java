@@ -11,10 +11,12 @@
 package com.yandex.yoctodb.query;
 
 import com.yandex.yoctodb.immutable.FilterableIndexProvider;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * {@link Where} condition
@@ -42,4 +44,42 @@ public interface Condition {
             BitSet to,
             @NotNull
             ArrayBitSetPool bitSetPool);
+
+    /**
+     * Estimate the number of documents satisfying condition without
+     * evaluating it.
+     *
+     * The estimate is used only to plan the evaluation order of conditions,
+     * so the default implementation conservatively assumes that all the
+     * documents match.
+     *
+     * @param indexProvider index provider
+     * @param documentCount total number of documents
+     * @return estimated number of documents
+     */
+    default long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        return documentCount;
+    }
+
+    /**
+     * Iterate over the documents satisfying condition in ascending order
+     * instead of setting them.
+     *
+     * Used to intersect the conditions document-at-a-time, so the default
+     * implementation returns {@code null} meaning that the condition is
+     * evaluated by {@link #set(FilterableIndexProvider, BitSet, ArrayBitSetPool)}
+     * only.
+     *
+     * @param indexProvider index provider
+     * @return iterator over the documents or {@code null}
+     */
+    @Nullable
+    default PostingIterator iterator(
+            @NotNull
+            final FilterableIndexProvider indexProvider) {
+        return null;
+    }
 }
@@ -10,6 +10,7 @@
 
 package com.yandex.yoctodb.query;
 
+import com.google.common.collect.Iterators;
 import com.yandex.yoctodb.immutable.IndexedDatabase;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
 import net.jcip.annotations.NotThreadSafe;
@@ -58,6 +59,32 @@ public interface Query {
             @NotNull
             ArrayBitSetPool bitSetPool);
 
+    /**
+     * Return at most {@code count} first sorted results not taking into
+     * account skip/limit
+     *
+     * Limits {@link #sortedUnlimited} by default.
+     *
+     * @param docs       docs to leave
+     * @param database   database
+     * @param bitSetPool {@link BitSet} factory
+     * @param count      max number of results
+     * @return sorted results
+     */
+    @NotNull
+    default Iterator<? extends ScoredDocument<?>> sortedTop(
+            @NotNull
+            final BitSet docs,
+            @NotNull
+            final IndexedDatabase database,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            final int count) {
+        return Iterators.limit(
+                sortedUnlimited(docs, database, bitSetPool),
+                count);
+    }
+
     int getSkip();
 
     int getLimit();
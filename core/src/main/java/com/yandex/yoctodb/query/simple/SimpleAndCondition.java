@@ -12,15 +12,14 @@ package com.yandex.yoctodb.query.simple;
 
 import com.yandex.yoctodb.immutable.FilterableIndexProvider;
 import com.yandex.yoctodb.query.Condition;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
 import com.yandex.yoctodb.util.mutable.ArrayBitSet;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 
 /**
  * {@code AND} condition
@@ -29,8 +28,15 @@ import java.util.Iterator;
  */
 @Immutable
 public final class SimpleAndCondition implements Condition {
+    /**
+     * Document-at-a-time intersection is used while the most selective
+     * clause matches at most one document per this number of documents,
+     * i.e. fewer documents than there are words in a {@link BitSet}
+     */
+    private static final int LEAPFROG_DENSITY = Long.SIZE;
+
     @NotNull
-    private final Collection<Condition> clauses;
+    private final Condition[] clauses;
 
     public SimpleAndCondition(
             @NotNull
@@ -38,7 +44,7 @@ public final class SimpleAndCondition implements Condition {
         if (conditions.isEmpty())
             throw new IllegalArgumentException("No conditions");
 
-        this.clauses = new ArrayList<>(conditions);
+        this.clauses = conditions.toArray(new Condition[conditions.size()]);
     }
 
     @Override
@@ -49,48 +55,213 @@ public final class SimpleAndCondition implements Condition {
             final BitSet to,
             @NotNull
             final ArrayBitSetPool bitSetPool) {
-        if (clauses.size() == 1) {
-            final Condition c = clauses.iterator().next();
-            return c.set(indexProvider, to, bitSetPool);
+        if (clauses.length == 1) {
+            return clauses[0].set(indexProvider, to, bitSetPool);
         } else { // >= 2 clauses
-            assert !clauses.isEmpty();
+            final long[] estimates = new long[clauses.length];
+            final Condition[] ordered =
+                    plan(indexProvider, to.getSize(), estimates);
+
+            // The most selective clause is small enough to be intersected
+            // document-at-a-time
+            if (estimates[0] <= to.getSize() / LEAPFROG_DENSITY) {
+                final PostingIterator first =
+                        ordered[0].iterator(indexProvider);
+                if (first != null) {
+                    final PostingIterator[] iterators =
+                            new PostingIterator[ordered.length];
+                    iterators[0] = first;
+                    int iteratorCount = 1;
+                    final Condition[] rest = new Condition[ordered.length];
+                    int restCount = 0;
+                    for (int i = 1; i < ordered.length; i++) {
+                        final PostingIterator iterator =
+                                ordered[i].iterator(indexProvider);
+                        if (iterator == null)
+                            rest[restCount++] = ordered[i];
+                        else
+                            iterators[iteratorCount++] = iterator;
+                    }
 
-            final Iterator<Condition> iter = clauses.iterator();
+                    if (iteratorCount > 1) {
+                        if (restCount == 0)
+                            return leapfrog(iterators, iteratorCount, to);
 
-            // Filling result with first clause
+                        // Few documents are left, so they are kept sparse
+                        final BitSet result =
+                                bitSetPool.borrowSparseSet(to.getSize());
+                        try {
+                            return leapfrog(iterators, iteratorCount, result) &&
+                                   and(indexProvider,
+                                       result,
+                                       rest,
+                                       0,
+                                       restCount,
+                                       bitSetPool) &&
+                                   to.or(result);
+                        } finally {
+                            bitSetPool.returnSparseSet(result);
+                        }
+                    }
+                }
+            }
+
+            // Filling result with the most selective clause
             final ArrayBitSet result = bitSetPool.borrowSet(to.getSize());
             try {
-                if (!iter.next().set(
+                return ordered[0].set(indexProvider, result, bitSetPool) &&
+                       and(indexProvider,
+                           result,
+                           ordered,
+                           1,
+                           ordered.length,
+                           bitSetPool) &&
+                       to.or(result);
+            } finally {
+                bitSetPool.returnSet(result);
+            }
+        }
+    }
+
+    /**
+     * Intersects {@code result} with the clauses from the range one by one
+     *
+     * @return if at least one bit is left in {@code result}
+     */
+    private static boolean and(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            @NotNull
+            final BitSet result,
+            @NotNull
+            final Condition[] clauses,
+            final int fromInclusive,
+            final int toExclusive,
+            @NotNull
+            final ArrayBitSetPool bitSetPool) {
+        final ArrayBitSet clauseResult = bitSetPool.borrowSet(result.getSize());
+        try {
+            for (int i = fromInclusive; i < toExclusive; i++) {
+                if (i > fromInclusive)
+                    clauseResult.clear();
+
+                if (!clauses[i].set(
                         indexProvider,
-                        result,
+                        clauseResult,
                         bitSetPool))
                     return false;
 
-                final ArrayBitSet clauseResult =
-                        bitSetPool.borrowSet(to.getSize());
-                try {
-                    do {
-                        if (!iter.next().set(
-                                indexProvider,
-                                clauseResult,
-                                bitSetPool))
-                            return false;
-
-                        if (!result.and(clauseResult)) {
-                            return false;
-                        }
+                if (!result.and(clauseResult)) {
+                    return false;
+                }
+            }
+
+            return true;
+        } finally {
+            bitSetPool.returnSet(clauseResult);
+        }
+    }
 
-                        if (iter.hasNext())
-                            clauseResult.clear();
-                    } while (iter.hasNext());
+    /**
+     * Sets the documents present in all the iterators advancing them
+     * document-at-a-time after the first (the most selective) one, so that
+     * only the neighbourhoods of its documents are read from the other ones
+     *
+     * @param iterators iterators with the most selective one first
+     * @param count     number of iterators
+     * @param to        container of the documents
+     * @return if at least one bit was set
+     */
+    static boolean leapfrog(
+            @NotNull
+            final PostingIterator[] iterators,
+            final int count,
+            @NotNull
+            final BitSet to) {
+        assert count > 1;
 
-                    return to.or(result);
-                } finally {
-                    bitSetPool.returnSet(clauseResult);
+        boolean result = false;
+        final PostingIterator first = iterators[0];
+        int document = first.next();
+        candidates:
+        while (document != PostingIterator.NO_MORE_VALUES) {
+            for (int i = 1; i < count; i++) {
+                final int next = iterators[i].advance(document);
+                if (next != document) {
+                    document = first.advance(next);
+                    continue candidates;
                 }
-            } finally {
-                bitSetPool.returnSet(result);
             }
+
+            to.set(document);
+            result = true;
+            document = first.next();
         }
+
+        return result;
+    }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        long result = documentCount;
+        for (Condition clause : clauses)
+            result = Math.min(
+                    result,
+                    clause.estimate(indexProvider, documentCount));
+
+        return result;
+    }
+
+    /**
+     * Orders the clauses by ascending estimated number of matching documents,
+     * so that the most selective clause produces the initial result and the
+     * intersection becomes empty as early as possible
+     *
+     * @param indexProvider index provider
+     * @param documentCount total number of documents
+     * @return clauses in evaluation order
+     */
+    @NotNull
+    Condition[] plan(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        return plan(indexProvider, documentCount, new long[clauses.length]);
+    }
+
+    /**
+     * @param estimates receives the estimates of the ordered clauses
+     */
+    @NotNull
+    private Condition[] plan(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount,
+            @NotNull
+            final long[] estimates) {
+        assert estimates.length == clauses.length;
+
+        final Condition[] result = clauses.clone();
+        for (int i = 0; i < result.length; i++)
+            estimates[i] = result[i].estimate(indexProvider, documentCount);
+
+        // Stable insertion sort -- there are just a few clauses
+        for (int i = 1; i < result.length; i++) {
+            final Condition clause = result[i];
+            final long estimate = estimates[i];
+            int j = i - 1;
+            while (j >= 0 && estimates[j] > estimate) {
+                result[j + 1] = result[j];
+                estimates[j + 1] = estimates[j];
+                j--;
+            }
+            result[j + 1] = clause;
+            estimates[j + 1] = estimate;
+        }
+
+        return result;
     }
 }
@@ -10,6 +10,7 @@
 
 package com.yandex.yoctodb.query.simple;
 
+import com.yandex.yoctodb.immutable.SortableIndex;
 import com.yandex.yoctodb.util.buf.Buffer;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
@@ -22,6 +23,9 @@ import java.util.Arrays;
 /**
  * Document score based on sort fields {@link Buffer}s
  *
+ * Sort values are referenced by their indexes in {@link SortableIndex}es and
+ * materialized lazily only if scores from different databases are compared.
+ *
  * @author incubos
  */
 @Immutable
@@ -30,17 +34,43 @@ final class SimpleDocumentMultiScore
     @NotNull
     private final Order.SortOrder[] orders;
     @NotNull
-    private final Buffer[] values;
+    private final SortableIndex[] indexes;
+    @NotNull
+    private final int[] sortValueIndexes;
+
+    // Racy but safe -- the values are always the same
+    private Buffer[] values;
 
     SimpleDocumentMultiScore(
             @NotNull
             final Order.SortOrder[] orders,
             @NotNull
-            final Buffer[] values) {
-        assert values.length == orders.length;
+            final SortableIndex[] indexes,
+            @NotNull
+            final int[] sortValueIndexes) {
+        assert indexes.length == orders.length;
+        assert sortValueIndexes.length == orders.length;
 
         this.orders = orders;
-        this.values = values;
+        this.indexes = indexes;
+        this.sortValueIndexes = sortValueIndexes;
+    }
+
+    @NotNull
+    private Buffer value(final int i) {
+        Buffer[] result = values;
+        if (result == null) {
+            result = new Buffer[sortValueIndexes.length];
+            values = result;
+        }
+
+        Buffer value = result[i];
+        if (value == null) {
+            value = indexes[i].getSortValue(sortValueIndexes[i]);
+            result[i] = value;
+        }
+
+        return value;
     }
 
     @Override
@@ -48,13 +78,22 @@ final class SimpleDocumentMultiScore
             @NotNull
             final SimpleDocumentMultiScore o) {
         assert Arrays.equals(orders, o.orders);
-        assert values.length == o.values.length;
+        assert sortValueIndexes.length == o.sortValueIndexes.length;
 
-        for (int i = 0; i < values.length; i++) {
-            final int result =
-                    UnsignedByteArrays.compare(
-                            values[i],
-                            o.values[i]);
+        for (int i = 0; i < sortValueIndexes.length; i++) {
+            final int result;
+            if (indexes[i] == o.indexes[i]) {
+                // Sort value indexes follow the order of the values
+                result =
+                        Integer.compare(
+                                sortValueIndexes[i],
+                                o.sortValueIndexes[i]);
+            } else {
+                result =
+                        UnsignedByteArrays.compare(
+                                value(i),
+                                o.value(i));
+            }
             if (result != 0) {
                 switch (orders[i]) {
                     case ASC:
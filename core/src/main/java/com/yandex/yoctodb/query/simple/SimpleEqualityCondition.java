@@ -14,10 +14,13 @@ import com.yandex.yoctodb.immutable.FilterableIndex;
 import com.yandex.yoctodb.immutable.FilterableIndexProvider;
 import com.yandex.yoctodb.util.UnsignedByteArray;
 import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.immutable.impl.EmptyPostingIterator;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Equality condition
@@ -53,4 +56,26 @@ public final class SimpleEqualityCondition extends AbstractTermCondition {
         final FilterableIndex index = indexProvider.getFilter(getFieldName());
         return index != null && index.eq(to, value);
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        final FilterableIndex index = indexProvider.getFilter(getFieldName());
+        return index == null ?
+                0L :
+                Math.min(index.estimateEq(value), documentCount);
+    }
+
+    @Nullable
+    @Override
+    public PostingIterator iterator(
+            @NotNull
+            final FilterableIndexProvider indexProvider) {
+        final FilterableIndex index = indexProvider.getFilter(getFieldName());
+        return index == null ?
+                EmptyPostingIterator.INSTANCE :
+                index.eqIterator(value);
+    }
 }
@@ -53,4 +53,15 @@ public final class SimpleGreaterThanCondition extends AbstractTermCondition {
         final FilterableIndex index = indexProvider.getFilter(getFieldName());
         return index != null && index.greaterThan(to, value, false);
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        final FilterableIndex index = indexProvider.getFilter(getFieldName());
+        return index == null ?
+                0L :
+                Math.min(index.estimateGreaterThan(value, false), documentCount);
+    }
 }
@@ -54,4 +54,15 @@ public final class SimpleLessThanOrEqualsCondition
         final FilterableIndex index = indexProvider.getFilter(getFieldName());
         return index != null && index.lessThan(to, value, true);
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        final FilterableIndex index = indexProvider.getFilter(getFieldName());
+        return index == null ?
+                0L :
+                Math.min(index.estimateLessThan(value, true), documentCount);
+    }
 }
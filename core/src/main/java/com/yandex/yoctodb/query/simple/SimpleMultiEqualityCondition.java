@@ -65,4 +65,15 @@ public final class SimpleMultiEqualityCondition
         final FilterableIndex index = indexProvider.getFilter(getFieldName());
         return index != null && index.in(to, values);
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        final FilterableIndex index = indexProvider.getFilter(getFieldName());
+        return index == null ?
+                0L :
+                Math.min(index.estimateIn(values), documentCount);
+    }
 }
@@ -51,4 +51,13 @@ public final class SimpleNotCondition implements Condition {
             bitSetPool.returnSet(result);
         }
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        final long matching = delegate.estimate(indexProvider, documentCount);
+        return Math.max(0L, documentCount - matching);
+    }
 }
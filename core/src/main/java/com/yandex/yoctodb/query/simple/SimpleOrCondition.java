@@ -54,4 +54,16 @@ public final class SimpleOrCondition implements Condition {
 
         return notEmpty;
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        long result = 0L;
+        for (Condition clause : clauses)
+            result += clause.estimate(indexProvider, documentCount);
+
+        return Math.min(result, documentCount);
+    }
 }
@@ -70,4 +70,17 @@ public final class SimpleRangeCondition extends AbstractTermCondition {
         return index != null &&
                index.between(dest, from, fromInclusive, to, toInclusive);
     }
+
+    @Override
+    public long estimate(
+            @NotNull
+            final FilterableIndexProvider indexProvider,
+            final int documentCount) {
+        final FilterableIndex index = indexProvider.getFilter(getFieldName());
+        return index == null ?
+                0L :
+                Math.min(
+                        index.estimateBetween(from, fromInclusive, to, toInclusive),
+                        documentCount);
+    }
 }
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -150,6 +151,33 @@ public final class SimpleSelect implements Select {
         }
     }
 
+    @NotNull
+    @Override
+    public Iterator<? extends ScoredDocument<?>> sortedTop(
+            @NotNull
+            final BitSet docs,
+            @NotNull
+            final IndexedDatabase database,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            final int count) {
+        assert !docs.isEmpty();
+        assert count >= 0;
+
+        if (count == 0) {
+            return Collections.emptyIterator();
+        } else if (sorts.isEmpty()) {
+            // Already lazy
+            return new IdScoredDocumentIterator(database, docs);
+        } else {
+            return new TopScoredDocumentIterator(
+                    database,
+                    docs,
+                    sorts,
+                    count);
+        }
+    }
+
     @SuppressWarnings("CloneDoesntCallSuperClone")
     @NotNull
     @Override
@@ -111,6 +111,19 @@ public final class SimpleWhereClause implements Where {
         return select.sortedUnlimited(docs, database, bitSetPool);
     }
 
+    @NotNull
+    @Override
+    public Iterator<? extends ScoredDocument<?>> sortedTop(
+            @NotNull
+            final BitSet docs,
+            @NotNull
+            final IndexedDatabase database,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            final int count) {
+        return select.sortedTop(docs, database, bitSetPool, count);
+    }
+
     @SuppressWarnings("CloneDoesntCallSuperClone")
     @NotNull
     @Override
@@ -10,25 +10,27 @@
 
 package com.yandex.yoctodb.query.simple;
 
-import com.google.common.collect.Iterators;
 import com.yandex.yoctodb.immutable.Database;
 import com.yandex.yoctodb.immutable.IndexedDatabase;
 import com.yandex.yoctodb.immutable.SortableIndex;
 import com.yandex.yoctodb.query.Order;
-import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.immutable.IntToIntArray;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.NotThreadSafe;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * {@link Iterator} implementation producing {@link SimpleScoredDocument}s
  *
+ * Documents sharing the first sort value are ordered by the other sort value
+ * indexes packed into {@code long}s together with the document positions, so
+ * the chunks are sorted with primitive stable passes without allocations.
+ *
  * @author incubos
  */
 @NotThreadSafe
@@ -42,8 +44,24 @@ final class SortingScoredDocumentIterator
     private final Order.SortOrder[] orders;
     @NotNull
     private final Iterator<IntToIntArray> baseIterator;
+
+    // Current chunk
+    private int firstValueIndex;
+    @NotNull
+    private int[] ids = new int[0];
+    private int count;
+    private int position;
+    // Other sort value indexes of i-th document for s-th sort (s >= 1)
+    // are located at (s - 1) * count + i
+    @NotNull
+    private int[] sortValueIndexes = new int[0];
+    // Document positions in sorted order
+    @NotNull
+    private int[] order = new int[0];
+    @NotNull
+    private int[] reordered = new int[0];
     @NotNull
-    private Iterator<LocalScoredDocument> chunk;
+    private long[] packed = new long[0];
 
     SortingScoredDocumentIterator(
             @NotNull
@@ -76,148 +94,112 @@ final class SortingScoredDocumentIterator
             baseIterator = indexes[0].descending(docs);
 
         assert baseIterator.hasNext();
-
-        this.chunk = Collections.emptyIterator();
     }
 
     @Override
     public boolean hasNext() {
-        return chunk.hasNext() || baseIterator.hasNext();
+        return position < count || baseIterator.hasNext();
     }
 
-    private int withOrder(
+    private static int withOrder(
             final Order.SortOrder order,
             final int value) {
         return order.isAscending() ? value : -value;
     }
 
     private void fillChunk() {
-        assert !chunk.hasNext();
+        assert position == count;
 
         final IntToIntArray taggedDocuments = baseIterator.next();
-        final int firstValueIndex = taggedDocuments.getKey();
-        final int[] ids = taggedDocuments.getValues();
-        final int count = taggedDocuments.getCount();
+        firstValueIndex = taggedDocuments.getKey();
+        ids = taggedDocuments.getValues();
+        count = taggedDocuments.getCount();
+        position = 0;
 
         assert count > 0;
 
-        final LocalScoredDocument[] docs = new LocalScoredDocument[count];
+        if (order.length < count) {
+            order = new int[count];
+        }
+        for (int i = 0; i < count; i++)
+            order[i] = i;
 
-        for (int i = 0; i < count; i++) {
-            final int id = ids[i];
-            final int[] sortValueIndexes = new int[indexes.length];
-            sortValueIndexes[0] = firstValueIndex;
-            for (int s = 1; s < sortValueIndexes.length; s++)
-                sortValueIndexes[s] =
-                        withOrder(
-                                orders[s],
-                                indexes[s].getSortValueIndex(id));
+        // The only sort
+        if (indexes.length == 1) {
+            return;
+        }
 
-            docs[i] =
-                    new LocalScoredDocument(
-                            id,
-                            new LocalScore(sortValueIndexes));
+        final int others = indexes.length - 1;
+        if (sortValueIndexes.length < others * count) {
+            sortValueIndexes = new int[others * count];
+        }
+        for (int s = 1; s <= others; s++) {
+            final int offset = (s - 1) * count;
+            for (int i = 0; i < count; i++)
+                sortValueIndexes[offset + i] =
+                        indexes[s].getSortValueIndex(ids[i]);
         }
 
         // Special case for good index selectivity
-        if (docs.length == 1) {
-            chunk = Iterators.singletonIterator(docs[0]);
-        } else {
-            Arrays.sort(docs);
-            chunk = Iterators.forArray(docs);
+        if (count == 1) {
+            return;
         }
-    }
-
-    @Override
-    public SimpleScoredDocument next() {
-        if (!chunk.hasNext())
-            fillChunk();
-
-        return chunk.next().toScoredDocument();
-    }
-
-    @Override
-    public void remove() {
-        throw new UnsupportedOperationException("Removal is not supported");
-    }
 
-    /**
-     * Score based on sort value indexes
-     */
-    private final class LocalScore implements Comparable<LocalScore> {
-        @NotNull
-        private final int[] sortValueIndexes;
-
-        private LocalScore(
-                @NotNull
-                final int[] sortValueIndexes) {
-            assert sortValueIndexes.length > 0;
-
-            this.sortValueIndexes = sortValueIndexes;
+        if (packed.length < count) {
+            packed = new long[count];
+            reordered = new int[count];
         }
 
-        @Override
-        public int compareTo(
-                @NotNull
-                final LocalScore o) {
-            assert sortValueIndexes.length == o.sortValueIndexes.length;
-
-            for (int i = 0; i < sortValueIndexes.length; i++) {
-                final int cmp =
-                        Integer.compare(
-                                sortValueIndexes[i],
-                                o.sortValueIndexes[i]);
-                if (cmp != 0) {
-                    return cmp;
-                }
+        // Stable passes from the least significant sort, because the
+        // positions in the lower bits keep the order of the previous pass
+        for (int s = others; s >= 1; s--) {
+            final int offset = (s - 1) * count;
+            for (int i = 0; i < count; i++) {
+                final int key =
+                        withOrder(
+                                orders[s],
+                                sortValueIndexes[offset + order[i]]);
+                packed[i] = ((long) key << 32) | i;
             }
 
-            return 0;
-        }
+            Arrays.sort(packed, 0, count);
 
-        @NotNull
-        SimpleDocumentMultiScore toScore() {
-            final Buffer[] sortValues =
-                    new Buffer[sortValueIndexes.length];
-            for (int i = 0; i < sortValueIndexes.length; i++) {
-                sortValues[i] =
-                        indexes[i].getSortValue(
-                                Math.abs(sortValueIndexes[i]));
-            }
+            for (int i = 0; i < count; i++)
+                reordered[i] = order[(int) packed[i]];
 
-            return new SimpleDocumentMultiScore(orders, sortValues);
+            final int[] tmp = order;
+            order = reordered;
+            reordered = tmp;
         }
     }
 
-    /**
-     * Document scored using {@link LocalScore}
-     */
-    private final class LocalScoredDocument
-            implements Comparable<LocalScoredDocument> {
-        @NotNull
-        private final LocalScore score;
-        private final int id;
-
-        private LocalScoredDocument(
-                final int id,
-                @NotNull
-                final LocalScore score) {
-            assert id >= 0;
-
-            this.id = id;
-            this.score = score;
-        }
+    @Override
+    public SimpleScoredDocument next() {
+        if (position == count) {
+            if (!baseIterator.hasNext())
+                throw new NoSuchElementException();
 
-        @Override
-        public int compareTo(
-                @NotNull
-                final LocalScoredDocument o) {
-            return score.compareTo(o.score);
+            fillChunk();
         }
 
-        @NotNull
-        SimpleScoredDocument toScoredDocument() {
-            return new SimpleScoredDocument(ctx, score.toScore(), id);
-        }
+        final int i = order[position++];
+
+        final int[] scoreValueIndexes = new int[indexes.length];
+        scoreValueIndexes[0] = firstValueIndex;
+        for (int s = 1; s < scoreValueIndexes.length; s++)
+            scoreValueIndexes[s] = sortValueIndexes[(s - 1) * count + i];
+
+        return new SimpleScoredDocument(
+                ctx,
+                new SimpleDocumentMultiScore(
+                        orders,
+                        indexes,
+                        scoreValueIndexes),
+                ids[i]);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removal is not supported");
     }
 }
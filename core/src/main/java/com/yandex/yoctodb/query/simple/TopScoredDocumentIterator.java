@@ -0,0 +1,296 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.query.simple;
+
+import com.yandex.yoctodb.immutable.Database;
+import com.yandex.yoctodb.immutable.IndexedDatabase;
+import com.yandex.yoctodb.immutable.SortableIndex;
+import com.yandex.yoctodb.query.Order;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link Iterator} implementation producing at most {@code count} first
+ * {@link SimpleScoredDocument}s in the same order as
+ * {@link SortingScoredDocumentIterator} does.
+ *
+ * The best candidates are selected using a bounded binary max-heap stored in
+ * primitive arrays, so only the returned documents are materialized.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+final class TopScoredDocumentIterator
+        implements Iterator<SimpleScoredDocument> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    @NotNull
+    private final Database ctx;
+    @NotNull
+    private final SortableIndex[] indexes;
+    @NotNull
+    private final Order.SortOrder[] orders;
+    private final int keyCount;
+    private final int count;
+
+    // Heap of candidates ordered by sort value indexes and then by arrival
+    @NotNull
+    private int[] ids;
+    @NotNull
+    private int[] arrivals;
+    @NotNull
+    private int[] keys;
+    private int size;
+
+    private int current;
+
+    TopScoredDocumentIterator(
+            @NotNull
+            final IndexedDatabase ctx,
+            @NotNull
+            final BitSet docs,
+            @NotNull
+            final List<Order> sorts,
+            final int count) {
+        assert !docs.isEmpty();
+        assert !sorts.isEmpty();
+        assert count > 0;
+
+        this.ctx = ctx;
+        this.count = count;
+
+        // Preparing sorting structures
+        keyCount = sorts.size();
+        indexes = new SortableIndex[keyCount];
+        orders = new Order.SortOrder[keyCount];
+        {
+            int i = 0;
+            for (Order sort : sorts) {
+                indexes[i] = ctx.getSorter(sort.getFieldName());
+                orders[i] = sort.getOrder();
+                i++;
+            }
+        }
+
+        final int capacity = Math.min(count, INITIAL_CAPACITY);
+        ids = new int[capacity];
+        arrivals = new int[capacity];
+        keys = new int[capacity * keyCount];
+
+        select(docs);
+        sort();
+    }
+
+    private static int withOrder(
+            final Order.SortOrder order,
+            final int value) {
+        return order.isAscending() ? value : -value;
+    }
+
+    private void select(
+            @NotNull
+            final BitSet docs) {
+        final Iterator<IntToIntArray> base;
+        if (orders[0].isAscending())
+            base = indexes[0].ascending(docs);
+        else
+            base = indexes[0].descending(docs);
+
+        final int[] candidate = new int[keyCount];
+        int arrival = 0;
+        while (base.hasNext()) {
+            final IntToIntArray taggedDocuments = base.next();
+            candidate[0] = withOrder(orders[0], taggedDocuments.getKey());
+
+            // The following documents can't beat the worst candidate
+            if (size == count && (keyCount == 1 || keys[0] < candidate[0]))
+                break;
+
+            final int[] chunk = taggedDocuments.getValues();
+            for (int i = 0; i < taggedDocuments.getCount(); i++) {
+                final int id = chunk[i];
+                for (int s = 1; s < keyCount; s++)
+                    candidate[s] =
+                            withOrder(
+                                    orders[s],
+                                    indexes[s].getSortValueIndex(id));
+
+                if (size < count) {
+                    push(id, arrival, candidate);
+                } else if (less(candidate, 0, arrival, 0)) {
+                    replaceTop(id, arrival, candidate);
+                }
+
+                arrival++;
+            }
+        }
+    }
+
+    /**
+     * Compares candidate keys from {@code a} at {@code aOffset} to the
+     * heap entry {@code b}
+     */
+    private boolean less(
+            @NotNull
+            final int[] a,
+            final int aOffset,
+            final int aArrival,
+            final int b) {
+        final int bOffset = b * keyCount;
+        for (int s = 0; s < keyCount; s++) {
+            final int cmp = Integer.compare(a[aOffset + s], keys[bOffset + s]);
+            if (cmp != 0)
+                return cmp < 0;
+        }
+
+        return aArrival < arrivals[b];
+    }
+
+    private boolean less(
+            final int a,
+            final int b) {
+        return less(keys, a * keyCount, arrivals[a], b);
+    }
+
+    private void set(
+            final int i,
+            final int id,
+            final int arrival,
+            @NotNull
+            final int[] candidate) {
+        ids[i] = id;
+        arrivals[i] = arrival;
+        System.arraycopy(candidate, 0, keys, i * keyCount, keyCount);
+    }
+
+    private void swap(
+            final int a,
+            final int b) {
+        final int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+
+        final int arrival = arrivals[a];
+        arrivals[a] = arrivals[b];
+        arrivals[b] = arrival;
+
+        final int aOffset = a * keyCount;
+        final int bOffset = b * keyCount;
+        for (int s = 0; s < keyCount; s++) {
+            final int key = keys[aOffset + s];
+            keys[aOffset + s] = keys[bOffset + s];
+            keys[bOffset + s] = key;
+        }
+    }
+
+    private void push(
+            final int id,
+            final int arrival,
+            @NotNull
+            final int[] candidate) {
+        if (size == ids.length) {
+            final int capacity = (int) Math.min(count, 2L * size);
+            ids = Arrays.copyOf(ids, capacity);
+            arrivals = Arrays.copyOf(arrivals, capacity);
+            keys = Arrays.copyOf(keys, capacity * keyCount);
+        }
+
+        set(size, id, arrival, candidate);
+
+        // Sift up the new entry
+        int i = size++;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (!less(parent, i))
+                break;
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void replaceTop(
+            final int id,
+            final int arrival,
+            @NotNull
+            final int[] candidate) {
+        set(0, id, arrival, candidate);
+        siftDown(0, size);
+    }
+
+    private void siftDown(
+            int i,
+            final int size) {
+        while (true) {
+            final int left = 2 * i + 1;
+            if (left >= size)
+                break;
+
+            final int right = left + 1;
+            final int greatest =
+                    right < size && less(left, right) ? right : left;
+            if (!less(i, greatest))
+                break;
+
+            swap(i, greatest);
+            i = greatest;
+        }
+    }
+
+    /**
+     * Heap sort leaving the entries in ascending order
+     */
+    private void sort() {
+        for (int last = size - 1; last > 0; last--) {
+            swap(0, last);
+            siftDown(0, last);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return current < size;
+    }
+
+    @Override
+    public SimpleScoredDocument next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        final int offset = current * keyCount;
+        final int[] sortValueIndexes = new int[keyCount];
+        for (int s = 0; s < keyCount; s++)
+            sortValueIndexes[s] = Math.abs(keys[offset + s]);
+
+        final SimpleScoredDocument result =
+                new SimpleScoredDocument(
+                        ctx,
+                        new SimpleDocumentMultiScore(
+                                orders,
+                                indexes,
+                                sortValueIndexes),
+                        ids[current]);
+        current++;
+
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removal is not supported");
+    }
+}
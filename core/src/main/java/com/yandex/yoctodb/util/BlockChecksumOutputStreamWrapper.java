@@ -0,0 +1,111 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * Wraps {@link OutputStream} and calculates {@link Checksum} of every
+ * {@code blockSize} bytes written
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class BlockChecksumOutputStreamWrapper extends OutputStream {
+    @NotNull
+    private final OutputStream delegate;
+    @NotNull
+    private final Checksum checksum;
+    private final int blockSize;
+    private int blockPosition = 0;
+    private int[] checksums = new int[16];
+    private int count = 0;
+
+    public BlockChecksumOutputStreamWrapper(
+            @NotNull
+            final OutputStream delegate,
+            @NotNull
+            final Checksum checksum,
+            final int blockSize) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException(
+                    "Wrong block size " + blockSize);
+
+        this.delegate = delegate;
+        this.checksum = checksum;
+        this.blockSize = blockSize;
+        checksum.reset();
+    }
+
+    private void finishBlock() {
+        if (count == checksums.length)
+            checksums = Arrays.copyOf(checksums, count * 2);
+        checksums[count++] = (int) checksum.getValue();
+        checksum.reset();
+        blockPosition = 0;
+    }
+
+    /**
+     * Finishes the last incomplete block
+     *
+     * @return checksums of the written blocks
+     */
+    @NotNull
+    public int[] checksums() {
+        if (blockPosition > 0)
+            finishBlock();
+
+        return Arrays.copyOf(checksums, count);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        checksum.update(b);
+        delegate.write(b);
+        if (++blockPosition == blockSize)
+            finishBlock();
+    }
+
+    @Override
+    public void write(
+            @NotNull
+            final byte[] b,
+            int off,
+            int len) throws IOException {
+        delegate.write(b, off, len);
+
+        while (len > 0) {
+            final int chunk = Math.min(len, blockSize - blockPosition);
+            checksum.update(b, off, chunk);
+            blockPosition += chunk;
+            off += chunk;
+            len -= chunk;
+            if (blockPosition == blockSize)
+                finishBlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
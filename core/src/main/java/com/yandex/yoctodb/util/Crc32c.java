@@ -0,0 +1,107 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) {@link Checksum} processing 8 bytes at a time using
+ * slicing-by-8 tables
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class Crc32c implements Checksum {
+    // Reversed Castagnoli polynomial
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[] T0 = new int[256];
+    private static final int[] T1 = new int[256];
+    private static final int[] T2 = new int[256];
+    private static final int[] T3 = new int[256];
+    private static final int[] T4 = new int[256];
+    private static final int[] T5 = new int[256];
+    private static final int[] T6 = new int[256];
+    private static final int[] T7 = new int[256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++)
+                c = (c & 1) != 0 ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+            T0[n] = c;
+        }
+
+        final int[][] tables = {T0, T1, T2, T3, T4, T5, T6, T7};
+        for (int t = 1; t < tables.length; t++)
+            for (int n = 0; n < 256; n++) {
+                final int previous = tables[t - 1][n];
+                tables[t][n] = (previous >>> 8) ^ T0[previous & 0xff];
+            }
+    }
+
+    private int crc = ~0;
+
+    @Override
+    public void update(final int b) {
+        crc = (crc >>> 8) ^ T0[(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(
+            @NotNull
+            final byte[] b,
+            final int off,
+            final int len) {
+        assert 0 <= off && 0 <= len && off + len <= b.length;
+
+        int c = crc;
+        int i = off;
+        final int end = off + len;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            final int lo =
+                    c ^ ((b[i] & 0xff) |
+                         (b[i + 1] & 0xff) << 8 |
+                         (b[i + 2] & 0xff) << 16 |
+                         (b[i + 3] & 0xff) << 24);
+            final int hi =
+                    (b[i + 4] & 0xff) |
+                    (b[i + 5] & 0xff) << 8 |
+                    (b[i + 6] & 0xff) << 16 |
+                    (b[i + 7] & 0xff) << 24;
+            c = T7[lo & 0xff] ^
+                T6[(lo >>> 8) & 0xff] ^
+                T5[(lo >>> 16) & 0xff] ^
+                T4[lo >>> 24] ^
+                T3[hi & 0xff] ^
+                T2[(hi >>> 8) & 0xff] ^
+                T1[(hi >>> 16) & 0xff] ^
+                T0[hi >>> 24];
+        }
+
+        for (; i < end; i++)
+            c = (c >>> 8) ^ T0[(c ^ b[i]) & 0xff];
+
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = ~0;
+    }
+}
@@ -124,6 +124,24 @@ public class UnsignedByteArrays {
         return (byte) (bytes.data[0] ^ Byte.MIN_VALUE);
     }
 
+    /**
+     * Packs up to {@link Longs#BYTES} bytes into the lowest bytes of a
+     * {@code long} preserving the unsigned order
+     */
+    public static long toUnsignedLong(
+            @NotNull
+            final UnsignedByteArray bytes) {
+        if (bytes.length() > Longs.BYTES)
+            throw new IllegalArgumentException("Wrong length");
+
+        long result = 0L;
+        for (byte b : bytes.data) {
+            result = (result << 8) | (b & 0xFF);
+        }
+
+        return result;
+    }
+
     private final static UnsignedByteArray TRUE = from(new byte[]{0x1});
     private final static UnsignedByteArray FALSE = from(new byte[]{0x0});
 
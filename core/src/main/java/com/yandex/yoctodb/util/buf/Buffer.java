@@ -50,6 +50,29 @@ public abstract class Buffer implements Comparable<Buffer> {
         return new FileChannelBuffer(file);
     }
 
+    @NotNull
+    public static Buffer from(
+            @NotNull
+            final FileChannel file,
+            final long cacheSizeInBytes) {
+        return new CachedFileChannelBuffer(file, cacheSizeInBytes);
+    }
+
+    /**
+     * Wraps mmapped memory using {@link ByteBufferWrapper} or using
+     * {@link UnsafeBuffer} if enabled (see {@link UnsafeBuffer#isEnabled()})
+     */
+    @NotNull
+    static Buffer fromMapped(
+            @NotNull
+            final ByteBuffer mapped) {
+        if (UnsafeBuffer.isEnabled()) {
+            return UnsafeBuffer.from(mapped);
+        } else {
+            return Buffer.from(mapped);
+        }
+    }
+
     @NotNull
     public static Buffer mmap(
             @NotNull
@@ -57,24 +80,33 @@ public abstract class Buffer implements Comparable<Buffer> {
             @SuppressWarnings("SameParameterValue")
             final boolean forceToMemory) throws IOException {
         assert f.exists() : "File doesn't exist: " + f;
-        assert f.length() <= Integer.MAX_VALUE :
-                "mmapping of files >2 GB is not supported yet";
 
         // Mapping the file
-        final MappedByteBuffer buffer;
         try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
             try (FileChannel ch = raf.getChannel()) {
-                buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+                final long size = ch.size();
+
+                // Files over 2 GB are mapped by chunks
+                if (size > Integer.MAX_VALUE) {
+                    return MappedChunksBuffer.map(
+                            ch,
+                            size,
+                            MappedChunksBuffer.DEFAULT_CHUNK_SHIFT,
+                            forceToMemory);
+                }
+
+                final MappedByteBuffer buffer =
+                        ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+                // Forcing data loading
+                if (forceToMemory) {
+                    buffer.load();
+                }
+
+                // Setting byte order
+                return fromMapped(buffer.order(ByteOrder.BIG_ENDIAN));
             }
         }
-
-        // Forcing data loading
-        if (forceToMemory) {
-            buffer.load();
-        }
-
-        // Setting byte order
-        return Buffer.from(buffer.order(ByteOrder.BIG_ENDIAN));
     }
 
     @NotNull
@@ -120,6 +152,48 @@ public abstract class Buffer implements Comparable<Buffer> {
 
     public abstract long getLong(long index);
 
+    /**
+     * Reads {@code length} big-endian {@code int}s starting from absolute
+     * {@code index} into {@code dst} without changing the position
+     */
+    public Buffer getInts(
+            final long index,
+            @NotNull
+            final int[] dst,
+            final int offset,
+            final int length) {
+        assert 0 <= offset && offset + length <= dst.length;
+
+        long current = index;
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] = getInt(current);
+            current += Integer.BYTES;
+        }
+
+        return this;
+    }
+
+    /**
+     * Reads {@code length} big-endian {@code long}s starting from absolute
+     * {@code index} into {@code dst} without changing the position
+     */
+    public Buffer getLongs(
+            final long index,
+            @NotNull
+            final long[] dst,
+            final int offset,
+            final int length) {
+        assert 0 <= offset && offset + length <= dst.length;
+
+        long current = index;
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] = getLong(current);
+            current += Long.BYTES;
+        }
+
+        return this;
+    }
+
     public abstract char getChar();
 
     public abstract char getChar(long index);
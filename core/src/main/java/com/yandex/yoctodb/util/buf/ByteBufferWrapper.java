@@ -22,6 +22,11 @@ import java.nio.ByteBuffer;
  */
 @NotThreadSafe
 public final class ByteBufferWrapper extends Buffer {
+    /**
+     * Max number of elements read one by one in bulk reads
+     */
+    static final int SHORT_READ_LENGTH = 16;
+
     @NotNull
     private final ByteBuffer delegate;
 
@@ -117,6 +122,48 @@ public final class ByteBufferWrapper extends Buffer {
         return delegate.getLong((int) index);
     }
 
+    @Override
+    public Buffer getInts(
+            final long index,
+            @NotNull
+            final int[] dst,
+            final int offset,
+            final int length) {
+        assert index + ((long) length << 2) <= Integer.MAX_VALUE;
+
+        // Short reads are cheaper than allocating the views
+        if (length <= SHORT_READ_LENGTH) {
+            return super.getInts(index, dst, offset, length);
+        }
+
+        final ByteBuffer view = delegate.duplicate();
+        view.position((int) index);
+        view.asIntBuffer().get(dst, offset, length);
+
+        return this;
+    }
+
+    @Override
+    public Buffer getLongs(
+            final long index,
+            @NotNull
+            final long[] dst,
+            final int offset,
+            final int length) {
+        assert index + ((long) length << 3) <= Integer.MAX_VALUE;
+
+        // Short reads are cheaper than allocating the views
+        if (length <= SHORT_READ_LENGTH) {
+            return super.getLongs(index, dst, offset, length);
+        }
+
+        final ByteBuffer view = delegate.duplicate();
+        view.position((int) index);
+        view.asLongBuffer().get(dst, offset, length);
+
+        return this;
+    }
+
     @Override
     public char getChar() {
         return delegate.getChar();
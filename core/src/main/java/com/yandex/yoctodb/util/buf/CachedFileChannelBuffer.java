@@ -0,0 +1,460 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.buf;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Big-endian implementation of {@link Buffer} based on {@link FileChannel}
+ * with a bounded LRU cache of fixed-size pages shared among all the slices
+ * <p>
+ * Sequential page misses trigger read-ahead of the following pages in a
+ * single {@link FileChannel#read(ByteBuffer, long)} call.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class CachedFileChannelBuffer extends Buffer {
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_READ_AHEAD_PAGES = 8;
+
+    @NotNull
+    private final PageCache cache;
+    private final long offset;
+    private final long limit;
+    private long position;
+
+    // Racy but safe -- pages are immutable
+    private Page last;
+    private long lastMiss = -1L;
+
+    public CachedFileChannelBuffer(
+            @NotNull
+            final FileChannel ch,
+            final long cacheSizeInBytes) {
+        this(
+                ch,
+                DEFAULT_PAGE_SIZE,
+                (int) Math.max(1L, cacheSizeInBytes / DEFAULT_PAGE_SIZE),
+                DEFAULT_READ_AHEAD_PAGES);
+    }
+
+    public CachedFileChannelBuffer(
+            @NotNull
+            final FileChannel ch,
+            final int pageSize,
+            final int pageCount,
+            final int readAheadPages) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1)
+            throw new IllegalArgumentException(
+                    "Page size should be a power of 2: " + pageSize);
+        if (pageCount <= 0)
+            throw new IllegalArgumentException(
+                    "Wrong page count: " + pageCount);
+        if (readAheadPages < 0)
+            throw new IllegalArgumentException(
+                    "Wrong read-ahead: " + readAheadPages);
+
+        final long size;
+        try {
+            size = ch.size();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.cache =
+                new PageCache(
+                        ch,
+                        size,
+                        pageSize,
+                        pageCount,
+                        readAheadPages);
+        this.offset = 0L;
+        this.limit = size;
+        this.position = 0L;
+    }
+
+    private CachedFileChannelBuffer(
+            @NotNull
+            final PageCache cache,
+            final long offset,
+            final long limit) {
+        assert 0 <= offset;
+        assert 0 <= limit;
+        assert offset + limit <= cache.size;
+
+        this.cache = cache;
+        this.offset = offset;
+        this.limit = limit;
+        this.position = 0L;
+    }
+
+    @NotNull
+    private Page page(final long address) {
+        final long number = address >>> cache.pageShift;
+
+        final Page candidate = last;
+        if (candidate != null && candidate.number == number) {
+            return candidate;
+        }
+
+        Page page = cache.pages.getIfPresent(number);
+        if (page == null) {
+            final boolean sequential = lastMiss + 1 == number;
+            lastMiss = number;
+            page = cache.load(number, sequential);
+        }
+
+        last = page;
+
+        return page;
+    }
+
+    private int pageOffset(final long address) {
+        return (int) (address & cache.pageMask);
+    }
+
+    /**
+     * Checks whether {@code bytes} starting at {@code address} are located
+     * within a single page
+     */
+    private boolean samePage(
+            final long address,
+            final int bytes) {
+        return pageOffset(address) + bytes <= cache.pageSize;
+    }
+
+    private void read(
+            long address,
+            @NotNull
+            final byte[] dst,
+            int offset,
+            int length) {
+        while (length > 0) {
+            final Page page = page(address);
+            final int from = pageOffset(address);
+            final int count = Math.min(length, page.data.limit() - from);
+            assert count > 0;
+
+            final ByteBuffer data = page.data.duplicate();
+            data.position(from);
+            data.get(dst, offset, count);
+
+            address += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Assembles the value crossing page boundary byte by byte without
+     * allocations
+     */
+    private long readBigEndian(
+            final long address,
+            final int bytes) {
+        long result = 0L;
+        for (int i = 0; i < bytes; i++) {
+            final long current = address + i;
+            result = (result << 8) |
+                     (page(current).data.get(pageOffset(current)) & 0xFF);
+        }
+
+        return result;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public Buffer position(final long position) {
+        assert 0 <= position && position <= limit;
+
+        this.position = position;
+
+        return this;
+    }
+
+    @Override
+    public Buffer advance(final long bytes) {
+        assert position + bytes <= limit;
+
+        this.position += bytes;
+
+        return this;
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    @Override
+    public long remaining() {
+        return limit - position;
+    }
+
+    @Override
+    public Buffer get(
+            final byte[] dst,
+            final int offset,
+            final int length) {
+        assert length <= remaining();
+
+        read(this.offset + this.position, dst, offset, length);
+
+        this.position += length;
+
+        return this;
+    }
+
+    @Override
+    public Buffer get(final byte[] dst) {
+        return get(dst, 0, dst.length);
+    }
+
+    @Override
+    public byte get() {
+        assert hasRemaining();
+
+        final byte result = get(position);
+        this.position++;
+        return result;
+    }
+
+    @Override
+    public byte get(final long index) {
+        assert 0 <= index && index < limit;
+
+        final long address = offset + index;
+        return page(address).data.get(pageOffset(address));
+    }
+
+    @Override
+    public int getInt() {
+        assert remaining() >= Integer.BYTES;
+
+        final int result = getInt(position);
+        this.position += Integer.BYTES;
+        return result;
+    }
+
+    @Override
+    public int getInt(final long index) {
+        assert index + Integer.BYTES <= limit;
+
+        final long address = offset + index;
+        if (samePage(address, Integer.BYTES)) {
+            return page(address).data.getInt(pageOffset(address));
+        } else {
+            return (int) readBigEndian(address, Integer.BYTES);
+        }
+    }
+
+    @Override
+    public long getLong() {
+        assert remaining() >= Long.BYTES;
+
+        final long result = getLong(position);
+        this.position += Long.BYTES;
+        return result;
+    }
+
+    @Override
+    public long getLong(final long index) {
+        assert index + Long.BYTES <= limit;
+
+        final long address = offset + index;
+        if (samePage(address, Long.BYTES)) {
+            return page(address).data.getLong(pageOffset(address));
+        } else {
+            return readBigEndian(address, Long.BYTES);
+        }
+    }
+
+    @Override
+    public char getChar() {
+        assert remaining() >= Character.BYTES;
+
+        final char result = getChar(position);
+        this.position += Character.BYTES;
+        return result;
+    }
+
+    @Override
+    public char getChar(final long index) {
+        assert index + Character.BYTES <= limit;
+
+        final long address = offset + index;
+        if (samePage(address, Character.BYTES)) {
+            return page(address).data.getChar(pageOffset(address));
+        } else {
+            return (char) readBigEndian(address, Character.BYTES);
+        }
+    }
+
+    @Override
+    public short getShort() {
+        assert remaining() >= Short.BYTES;
+
+        final short result = getShort(position);
+        this.position += Short.BYTES;
+        return result;
+    }
+
+    @Override
+    public short getShort(final long index) {
+        assert index + Short.BYTES <= limit;
+
+        final long address = offset + index;
+        if (samePage(address, Short.BYTES)) {
+            return page(address).data.getShort(pageOffset(address));
+        } else {
+            return (short) readBigEndian(address, Short.BYTES);
+        }
+    }
+
+    @Override
+    public Buffer slice(
+            final long from,
+            final long size) {
+        assert 0 <= from;
+        assert 0 <= size;
+        assert from + size <= limit;
+
+        return new CachedFileChannelBuffer(
+                cache,
+                this.offset + from,
+                size);
+    }
+
+    @Immutable
+    private static final class Page {
+        private final long number;
+        @NotNull
+        private final ByteBuffer data;
+
+        private Page(
+                final long number,
+                @NotNull
+                final ByteBuffer data) {
+            this.number = number;
+            this.data = data;
+        }
+    }
+
+    @ThreadSafe
+    private static final class PageCache {
+        @NotNull
+        private final FileChannel ch;
+        private final long size;
+        private final int pageSize;
+        private final int pageShift;
+        private final long pageMask;
+        private final int readAheadPages;
+        @NotNull
+        private final Cache<Long, Page> pages;
+
+        private PageCache(
+                @NotNull
+                final FileChannel ch,
+                final long size,
+                final int pageSize,
+                final int pageCount,
+                final int readAheadPages) {
+            this.ch = ch;
+            this.size = size;
+            this.pageSize = pageSize;
+            this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+            this.pageMask = pageSize - 1;
+            this.readAheadPages = Math.min(readAheadPages, pageCount - 1);
+            this.pages =
+                    CacheBuilder.newBuilder()
+                            .maximumSize(pageCount)
+                            .build();
+        }
+
+        /**
+         * Reads the page (and the following ones if {@code sequential}) in
+         * a single call and puts them into the cache
+         */
+        @NotNull
+        private Page load(
+                final long number,
+                final boolean sequential) {
+            final long from = number << pageShift;
+            assert from < size;
+
+            final int count = sequential ? 1 + readAheadPages : 1;
+            final int length =
+                    (int) Math.min(((long) count) << pageShift, size - from);
+            final ByteBuffer buf = ByteBuffer.allocate(length);
+            try {
+                while (buf.hasRemaining()) {
+                    final int c = ch.read(buf, from + buf.position());
+                    if (c < 0) {
+                        throw new IOException(
+                                "Unexpected end of file at " +
+                                (from + buf.position()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            if (length <= pageSize) {
+                final Page page = new Page(number, ByteBuffer.wrap(buf.array()));
+                pages.put(number, page);
+                return page;
+            }
+
+            // Each page gets its own array not to retain the whole read-ahead
+            Page result = null;
+            for (int start = 0; start < length; start += pageSize) {
+                final Page page =
+                        new Page(
+                                number + (start >>> pageShift),
+                                ByteBuffer.wrap(
+                                        Arrays.copyOfRange(
+                                                buf.array(),
+                                                start,
+                                                Math.min(
+                                                        start + pageSize,
+                                                        length))));
+                if (result == null) {
+                    result = page;
+                }
+                pages.put(page.number, page);
+            }
+
+            assert result != null;
+
+            return result;
+        }
+    }
+}
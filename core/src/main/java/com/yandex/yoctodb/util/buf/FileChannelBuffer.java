@@ -62,6 +62,28 @@ public final class FileChannelBuffer extends Buffer {
         this.position = 0L;
     }
 
+    /**
+     * Reads from the channel starting at {@code address} until {@code dst}
+     * is full, because a single read might return fewer bytes
+     */
+    private void readFully(
+            @NotNull
+            final ByteBuffer dst,
+            final long address) {
+        long current = address;
+        try {
+            while (dst.hasRemaining()) {
+                final int c = ch.read(dst, current);
+                if (c < 0)
+                    throw new IOException(
+                            "Unexpected end of file at " + current);
+                current += c;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public long position() {
         return position;
@@ -104,13 +126,9 @@ public final class FileChannelBuffer extends Buffer {
     public Buffer get(byte[] dst, int offset, int length) {
         assert length <= remaining();
 
-        try {
-            final int c =
-                    ch.read(ByteBuffer.wrap(dst, offset, length), this.offset + this.position);
-            assert c == length;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(
+                ByteBuffer.wrap(dst, offset, length),
+                this.offset + this.position);
 
         this.position += length;
 
@@ -121,13 +139,7 @@ public final class FileChannelBuffer extends Buffer {
     public Buffer get(final byte[] dst) {
         assert dst.length <= remaining();
 
-        try {
-            final int c =
-                    ch.read(ByteBuffer.wrap(dst), this.offset + this.position);
-            assert c == dst.length;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(ByteBuffer.wrap(dst), this.offset + this.position);
 
         this.position += dst.length;
 
@@ -139,12 +151,7 @@ public final class FileChannelBuffer extends Buffer {
         assert hasRemaining();
 
         final ByteBuffer byteBuf = byteBufCache.get();
-        try {
-            final int c = ch.read(byteBuf, this.offset + this.position);
-            assert c == Byte.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(byteBuf, this.offset + this.position);
 
         this.position++;
 
@@ -156,12 +163,7 @@ public final class FileChannelBuffer extends Buffer {
         assert 0 <= index && index < limit;
 
         final ByteBuffer byteBuf = byteBufCache.get();
-        try {
-            final int c = ch.read(byteBuf, this.offset + index);
-            assert c == Byte.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(byteBuf, this.offset + index);
 
         return byteBuf.get(0);
     }
@@ -172,12 +174,7 @@ public final class FileChannelBuffer extends Buffer {
 
         final ByteBuffer intBuf = intBufCache.get();
         intBuf.rewind();
-        try {
-            final int c = ch.read(intBuf, this.offset + this.position);
-            assert c == Integer.BYTES;;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(intBuf, this.offset + this.position);
 
         this.position += Integer.BYTES;
 
@@ -189,12 +186,7 @@ public final class FileChannelBuffer extends Buffer {
         assert index + Integer.BYTES <= limit;
 
         final ByteBuffer intBuf = intBufCache.get();
-        try {
-            final int c = ch.read(intBuf, this.offset + index);
-            assert c == Integer.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(intBuf, this.offset + index);
 
         return intBuf.getInt(0);
     }
@@ -204,12 +196,7 @@ public final class FileChannelBuffer extends Buffer {
         assert remaining() >= Long.BYTES;
 
         final ByteBuffer longBuf = longBufCache.get();
-        try {
-            final int c = ch.read(longBuf, this.offset + this.position);
-            assert c == Long.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(longBuf, this.offset + this.position);
 
         this.position += Long.BYTES;
 
@@ -221,27 +208,69 @@ public final class FileChannelBuffer extends Buffer {
         assert index + 8 <= limit;
 
         final ByteBuffer longBuf = longBufCache.get();
-        try {
-            final int c = ch.read(longBuf, this.offset + index);
-            assert c == Long.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(longBuf, this.offset + index);
 
         return longBuf.getLong(0);
     }
 
+    @NotNull
+    private ByteBuffer read(
+            final long index,
+            final int length) {
+        assert index + length <= limit;
+
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+        readFully(buf, this.offset + index);
+        buf.rewind();
+
+        return buf;
+    }
+
+    private static int bulkSize(
+            final int length,
+            final int elementSize) {
+        final long result = ((long) length) * elementSize;
+        if (length < 0 || result > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    "Too many elements to read: " + length);
+
+        return (int) result;
+    }
+
+    @Override
+    public Buffer getInts(
+            final long index,
+            @NotNull
+            final int[] dst,
+            final int offset,
+            final int length) {
+        read(index, bulkSize(length, Integer.BYTES))
+                .asIntBuffer()
+                .get(dst, offset, length);
+
+        return this;
+    }
+
+    @Override
+    public Buffer getLongs(
+            final long index,
+            @NotNull
+            final long[] dst,
+            final int offset,
+            final int length) {
+        read(index, bulkSize(length, Long.BYTES))
+                .asLongBuffer()
+                .get(dst, offset, length);
+
+        return this;
+    }
+
     @Override
     public char getChar() {
         assert remaining() >= Character.BYTES;
 
         final ByteBuffer charBuf = charBufCache.get();
-        try {
-            final int c = ch.read(charBuf, this.offset + this.position);
-            assert c == Character.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(charBuf, this.offset + this.position);
 
         this.position += Character.BYTES;
 
@@ -253,12 +282,7 @@ public final class FileChannelBuffer extends Buffer {
         assert index + Character.BYTES <= limit;
 
         final ByteBuffer charBuf = charBufCache.get();
-        try {
-            final int c = ch.read(charBuf, this.offset + index);
-            assert c == Character.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(charBuf, this.offset + index);
 
         return charBuf.getChar(0);
     }
@@ -268,12 +292,7 @@ public final class FileChannelBuffer extends Buffer {
         assert remaining() >= Short.BYTES;
 
         final ByteBuffer shortBuf = shortBufCache.get();
-        try {
-            final int c = ch.read(shortBuf, this.offset + this.position);
-            assert c == Short.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(shortBuf, this.offset + this.position);
 
         this.position += Short.BYTES;
 
@@ -285,12 +304,7 @@ public final class FileChannelBuffer extends Buffer {
         assert index + Short.BYTES <= limit;
 
         final ByteBuffer shortBuf = shortBufCache.get();
-        try {
-            final int c = ch.read(shortBuf, this.offset + index);
-            assert c == Short.BYTES;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        readFully(shortBuf, this.offset + index);
 
         return shortBuf.getShort(0);
     }
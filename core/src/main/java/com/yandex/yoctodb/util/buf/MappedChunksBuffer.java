@@ -0,0 +1,273 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.buf;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Big-endian implementation of {@link Buffer} stitched together from several
+ * {@link MappedByteBuffer}s to support files over 2 GB.
+ * <p>
+ * Each chunk covers {@code 1 << chunkShift} bytes of the file and overlaps
+ * with the next chunk by {@link #OVERLAP} bytes, so any primitive read is
+ * served by a single chunk.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class MappedChunksBuffer extends Buffer {
+    static final int DEFAULT_CHUNK_SHIFT = 30; // 1 GB
+    static final int OVERLAP = Long.BYTES - 1;
+
+    @NotNull
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long chunkMask;
+    private final long offset;
+    private final long limit;
+    private long position;
+
+    private MappedChunksBuffer(
+            @NotNull
+            final ByteBuffer[] chunks,
+            final int chunkShift,
+            final long offset,
+            final long limit) {
+        assert 0 <= offset;
+        assert 0 <= limit;
+
+        this.chunks = chunks;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.offset = offset;
+        this.limit = limit;
+        this.position = 0L;
+    }
+
+    @NotNull
+    static MappedChunksBuffer map(
+            @NotNull
+            final FileChannel ch,
+            final long size,
+            final int chunkShift,
+            final boolean forceToMemory) throws IOException {
+        assert 0 < chunkShift && chunkShift <= DEFAULT_CHUNK_SHIFT;
+
+        final long chunkSize = 1L << chunkShift;
+        final int count = (int) ((size + chunkSize - 1) >>> chunkShift);
+        final ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            final long from = ((long) i) << chunkShift;
+            final long length = Math.min(size - from, chunkSize + OVERLAP);
+            final MappedByteBuffer chunk =
+                    ch.map(FileChannel.MapMode.READ_ONLY, from, length);
+            if (forceToMemory) {
+                chunk.load();
+            }
+            chunks[i] = chunk.order(ByteOrder.BIG_ENDIAN);
+        }
+
+        return new MappedChunksBuffer(chunks, chunkShift, 0L, size);
+    }
+
+    private ByteBuffer chunk(final long index) {
+        return chunks[(int) ((offset + index) >>> chunkShift)];
+    }
+
+    private int chunkOffset(final long index) {
+        return (int) ((offset + index) & chunkMask);
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public Buffer position(final long position) {
+        assert 0 <= position && position <= limit;
+
+        this.position = position;
+
+        return this;
+    }
+
+    @Override
+    public Buffer advance(final long bytes) {
+        assert position + bytes <= limit;
+
+        this.position += bytes;
+
+        return this;
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    @Override
+    public long remaining() {
+        return limit - position;
+    }
+
+    @Override
+    public Buffer get(
+            final byte[] dst,
+            final int offset,
+            final int length) {
+        assert length <= remaining();
+
+        int done = 0;
+        while (done < length) {
+            final long index = this.position + done;
+            final ByteBuffer chunk = chunk(index).duplicate();
+            final int from = chunkOffset(index);
+            final int count =
+                    (int) Math.min(
+                            length - done,
+                            (1L << chunkShift) - from);
+            chunk.position(from);
+            chunk.get(dst, offset + done, count);
+            done += count;
+        }
+
+        this.position += length;
+
+        return this;
+    }
+
+    @Override
+    public Buffer get(final byte[] dst) {
+        return get(dst, 0, dst.length);
+    }
+
+    @Override
+    public byte get() {
+        assert hasRemaining();
+
+        final byte result = get(position);
+        this.position++;
+        return result;
+    }
+
+    @Override
+    public byte get(final long index) {
+        assert 0 <= index && index < limit;
+
+        return chunk(index).get(chunkOffset(index));
+    }
+
+    @Override
+    public int getInt() {
+        assert remaining() >= Integer.BYTES;
+
+        final int result = getInt(position);
+        this.position += Integer.BYTES;
+        return result;
+    }
+
+    @Override
+    public int getInt(final long index) {
+        assert index + Integer.BYTES <= limit;
+
+        return chunk(index).getInt(chunkOffset(index));
+    }
+
+    @Override
+    public long getLong() {
+        assert remaining() >= Long.BYTES;
+
+        final long result = getLong(position);
+        this.position += Long.BYTES;
+        return result;
+    }
+
+    @Override
+    public long getLong(final long index) {
+        assert index + Long.BYTES <= limit;
+
+        return chunk(index).getLong(chunkOffset(index));
+    }
+
+    @Override
+    public char getChar() {
+        assert remaining() >= Character.BYTES;
+
+        final char result = getChar(position);
+        this.position += Character.BYTES;
+        return result;
+    }
+
+    @Override
+    public char getChar(final long index) {
+        assert index + Character.BYTES <= limit;
+
+        return chunk(index).getChar(chunkOffset(index));
+    }
+
+    @Override
+    public short getShort() {
+        assert remaining() >= Short.BYTES;
+
+        final short result = getShort(position);
+        this.position += Short.BYTES;
+        return result;
+    }
+
+    @Override
+    public short getShort(final long index) {
+        assert index + Short.BYTES <= limit;
+
+        return chunk(index).getShort(chunkOffset(index));
+    }
+
+    @Override
+    public Buffer slice(
+            final long from,
+            final long size) {
+        if (from < 0 || size < 0 || from > limit - size)
+            throw new IndexOutOfBoundsException(
+                    "Range [" + from + ", " + from + " + " + size +
+                    ") is out of [0, " + limit + ")");
+
+        // Falling back to a single ByteBuffer if the slice fits into a chunk
+        final int chunkIndex = (int) ((offset + from) >>> chunkShift);
+        if (chunkIndex < chunks.length) {
+            final ByteBuffer chunk = chunks[chunkIndex];
+            final int start = chunkOffset(from);
+            if (start + size <= chunk.limit()) {
+                final ByteBuffer slice = chunk.duplicate();
+                slice.position(start);
+                slice.limit((int) (start + size));
+                return fromMapped(slice.slice());
+            }
+        }
+
+        return new MappedChunksBuffer(
+                chunks,
+                chunkShift,
+                this.offset + from,
+                size);
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.buf;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Big-endian implementation of {@link Buffer} reading directly from the
+ * native memory of a direct (e.g. mmapped) {@link ByteBuffer} with {@code long}
+ * addressing and without {@link ByteBuffer} bounds checks.
+ * <p>
+ * Only slicing, positioning and bulk reads check the bounds, so reading out
+ * of a slice is not detected without {@code -ea} and might crash the JVM.
+ * That's why {@link Buffer#mmap(java.io.File)} uses it only if enabled with
+ * {@code -Dyoctodb.unsafe=true} (see {@link #isEnabled()}) and if available
+ * at runtime (see {@link #isSupported()}), otherwise
+ * {@link ByteBufferWrapper} is used.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class UnsafeBuffer extends Buffer {
+    private static final boolean ENABLED =
+            Boolean.getBoolean("yoctodb.unsafe");
+    private static final MethodHandle GET_BYTE;
+    private static final MethodHandle GET_SHORT;
+    private static final MethodHandle GET_CHAR;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle COPY_MEMORY;
+    private static final MethodHandle ADDRESS;
+    private static final long BYTE_ARRAY_OFFSET;
+    private static final boolean SUPPORTED;
+    private static final boolean SWAP =
+            ByteOrder.nativeOrder() != ByteOrder.BIG_ENDIAN;
+
+    static {
+        MethodHandle getByte = null;
+        MethodHandle getShort = null;
+        MethodHandle getChar = null;
+        MethodHandle getInt = null;
+        MethodHandle getLong = null;
+        MethodHandle copyMemory = null;
+        MethodHandle address = null;
+        long byteArrayOffset = -1L;
+        boolean supported = false;
+        try {
+            if (unalignedAccess()) {
+                // Reflection keeps the internal API out of the compiled code
+                final Class<?> type = Class.forName("sun.misc.Unsafe");
+                final Field f = type.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                final Object unsafe = f.get(null);
+                final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+                getByte = handle(lookup, type, unsafe, "getByte", long.class);
+                getShort = handle(lookup, type, unsafe, "getShort", long.class);
+                getChar = handle(lookup, type, unsafe, "getChar", long.class);
+                getInt = handle(lookup, type, unsafe, "getInt", long.class);
+                getLong = handle(lookup, type, unsafe, "getLong", long.class);
+                copyMemory =
+                        handle(lookup, type, unsafe, "copyMemory",
+                                Object.class, long.class,
+                                Object.class, long.class,
+                                long.class);
+
+                final long addressOffset =
+                        (Long) type.getMethod("objectFieldOffset", Field.class)
+                                .invoke(
+                                        unsafe,
+                                        java.nio.Buffer.class.getDeclaredField(
+                                                "address"));
+                address =
+                        MethodHandles.insertArguments(
+                                handle(lookup, type, unsafe, "getLong",
+                                        Object.class, long.class),
+                                1,
+                                addressOffset)
+                                .asType(MethodType.methodType(
+                                        long.class,
+                                        ByteBuffer.class));
+                byteArrayOffset =
+                        (Integer) type.getMethod("arrayBaseOffset", Class.class)
+                                .invoke(unsafe, byte[].class);
+                supported = true;
+            }
+        } catch (Throwable t) {
+            supported = false;
+        }
+
+        GET_BYTE = getByte;
+        GET_SHORT = getShort;
+        GET_CHAR = getChar;
+        GET_INT = getInt;
+        GET_LONG = getLong;
+        COPY_MEMORY = copyMemory;
+        ADDRESS = address;
+        BYTE_ARRAY_OFFSET = byteArrayOffset;
+        SUPPORTED = supported;
+    }
+
+    @NotNull
+    private static MethodHandle handle(
+            @NotNull
+            final MethodHandles.Lookup lookup,
+            @NotNull
+            final Class<?> type,
+            @NotNull
+            final Object unsafe,
+            @NotNull
+            final String name,
+            @NotNull
+            final Class<?>... parameters) throws ReflectiveOperationException {
+        final Method method = type.getMethod(name, parameters);
+        return lookup.unreflect(method).bindTo(unsafe);
+    }
+
+    private static boolean unalignedAccess() {
+        final String arch = System.getProperty("os.arch", "");
+        return arch.equals("amd64") ||
+               arch.equals("x86_64") ||
+               arch.equals("aarch64");
+    }
+
+    /**
+     * @return whether the runtime provides unchecked memory access
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * @return whether mmapped files should be read by {@link UnsafeBuffer}
+     */
+    public static boolean isEnabled() {
+        return ENABLED && SUPPORTED;
+    }
+
+    private static IndexOutOfBoundsException outOfBounds(
+            final long from,
+            final long size,
+            final long limit) {
+        return new IndexOutOfBoundsException(
+                "Range [" + from + ", " + from + " + " + size +
+                ") is out of [0, " + limit + ")");
+    }
+
+    private static void checkRange(
+            final long from,
+            final long size,
+            final long limit) {
+        if (from < 0 || size < 0 || from > limit - size)
+            throw outOfBounds(from, size, limit);
+    }
+
+    // Handles throw only what the Unsafe methods throw, i.e. nothing checked
+
+    private static byte readByte(final long address) {
+        try {
+            return (byte) GET_BYTE.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static short readShort(final long address) {
+        try {
+            return (short) GET_SHORT.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static char readChar(final long address) {
+        try {
+            return (char) GET_CHAR.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static int readInt(final long address) {
+        try {
+            return (int) GET_INT.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static long readLong(final long address) {
+        try {
+            return (long) GET_LONG.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void copyMemory(
+            final long address,
+            final byte[] dst,
+            final int offset,
+            final int length) {
+        try {
+            COPY_MEMORY.invokeExact(
+                    (Object) null,
+                    address,
+                    (Object) dst,
+                    BYTE_ARRAY_OFFSET + offset,
+                    (long) length);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Keeps the underlying memory reachable
+     */
+    @NotNull
+    private final ByteBuffer attachment;
+    private final long address;
+    private final long limit;
+    private long position;
+
+    private UnsafeBuffer(
+            @NotNull
+            final ByteBuffer attachment,
+            final long address,
+            final long limit) {
+        assert 0 <= limit;
+
+        this.attachment = attachment;
+        this.address = address;
+        this.limit = limit;
+        this.position = 0L;
+    }
+
+    @NotNull
+    public static Buffer from(
+            @NotNull
+            final ByteBuffer direct) {
+        if (!SUPPORTED)
+            throw new UnsupportedOperationException(
+                    "Unsafe memory access is not supported");
+        if (!direct.isDirect())
+            throw new IllegalArgumentException("Direct buffer expected");
+
+        final long address;
+        try {
+            address = (long) ADDRESS.invokeExact(direct) + direct.position();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        return new UnsafeBuffer(direct, address, direct.remaining());
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public Buffer position(final long position) {
+        checkRange(position, 0L, limit);
+
+        this.position = position;
+
+        return this;
+    }
+
+    @Override
+    public Buffer advance(final long bytes) {
+        checkRange(position, bytes, limit);
+
+        this.position += bytes;
+
+        return this;
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    @Override
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    @Override
+    public long remaining() {
+        return limit - position;
+    }
+
+    @Override
+    public Buffer get(
+            final byte[] dst,
+            final int offset,
+            final int length) {
+        checkRange(position, length, limit);
+        checkRange(offset, length, dst.length);
+
+        copyMemory(address + position, dst, offset, length);
+
+        this.position += length;
+
+        return this;
+    }
+
+    @Override
+    public Buffer get(final byte[] dst) {
+        return get(dst, 0, dst.length);
+    }
+
+    @Override
+    public byte get() {
+        assert hasRemaining();
+
+        return readByte(address + position++);
+    }
+
+    @Override
+    public byte get(final long index) {
+        assert 0 <= index && index < limit;
+
+        return readByte(address + index);
+    }
+
+    @Override
+    public int getInt() {
+        final int result = getInt(position);
+        this.position += Integer.BYTES;
+        return result;
+    }
+
+    @Override
+    public int getInt(final long index) {
+        assert 0 <= index && index + Integer.BYTES <= limit;
+
+        final int result = readInt(address + index);
+        return SWAP ? Integer.reverseBytes(result) : result;
+    }
+
+    @Override
+    public long getLong() {
+        final long result = getLong(position);
+        this.position += Long.BYTES;
+        return result;
+    }
+
+    @Override
+    public long getLong(final long index) {
+        assert 0 <= index && index + Long.BYTES <= limit;
+
+        final long result = readLong(address + index);
+        return SWAP ? Long.reverseBytes(result) : result;
+    }
+
+    @Override
+    public Buffer getInts(
+            final long index,
+            @NotNull
+            final int[] dst,
+            final int offset,
+            final int length) {
+        checkRange(index, ((long) length) << 2, limit);
+        checkRange(offset, length, dst.length);
+
+        long current = address + index;
+        for (int i = offset; i < offset + length; i++) {
+            final int value = readInt(current);
+            dst[i] = SWAP ? Integer.reverseBytes(value) : value;
+            current += Integer.BYTES;
+        }
+
+        return this;
+    }
+
+    @Override
+    public Buffer getLongs(
+            final long index,
+            @NotNull
+            final long[] dst,
+            final int offset,
+            final int length) {
+        checkRange(index, ((long) length) << 3, limit);
+        checkRange(offset, length, dst.length);
+
+        long current = address + index;
+        for (int i = offset; i < offset + length; i++) {
+            final long value = readLong(current);
+            dst[i] = SWAP ? Long.reverseBytes(value) : value;
+            current += Long.BYTES;
+        }
+
+        return this;
+    }
+
+    @Override
+    public char getChar() {
+        final char result = getChar(position);
+        this.position += Character.BYTES;
+        return result;
+    }
+
+    @Override
+    public char getChar(final long index) {
+        assert 0 <= index && index + Character.BYTES <= limit;
+
+        final char result = readChar(address + index);
+        return SWAP ? Character.reverseBytes(result) : result;
+    }
+
+    @Override
+    public short getShort() {
+        final short result = getShort(position);
+        this.position += Short.BYTES;
+        return result;
+    }
+
+    @Override
+    public short getShort(final long index) {
+        assert 0 <= index && index + Short.BYTES <= limit;
+
+        final short result = readShort(address + index);
+        return SWAP ? Short.reverseBytes(result) : result;
+    }
+
+    @Override
+    public Buffer slice(
+            final long from,
+            final long size) {
+        // Guards the unchecked reads from the slice
+        checkRange(from, size, limit);
+
+        return new UnsafeBuffer(attachment, address + from, size);
+    }
+}
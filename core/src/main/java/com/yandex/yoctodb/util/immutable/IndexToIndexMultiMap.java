@@ -12,6 +12,7 @@ package com.yandex.yoctodb.util.immutable;
 
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import com.yandex.yoctodb.util.mutable.BitSet;
 
 import java.util.Iterator;
@@ -53,4 +54,37 @@ public interface IndexToIndexMultiMap {
             BitSet valueFilter);
 
     int getKeysCount();
+
+    /**
+     * Estimates the number of values associated with the keys from the range
+     * without touching the values themselves, so it is cheap enough to be
+     * used for query planning.
+     *
+     * The implementations unable to estimate conservatively return
+     * {@link Long#MAX_VALUE} meaning any number of values by default.
+     *
+     * @param fromInclusive lowest key index (inclusive)
+     * @param toExclusive   highest key index (exclusive)
+     * @return estimated number of values
+     */
+    default long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Iterates over the values of the key document-at-a-time, so that the
+     * sets of several keys might be intersected without materializing them.
+     *
+     * The implementations without random access to the values return
+     * {@code null} by default and are read through {@link BitSet}s only.
+     *
+     * @param key key index
+     * @return iterator over the values in ascending order or {@code null}
+     */
+    @Nullable
+    default PostingIterator iterator(final int key) {
+        return null;
+    }
 }
@@ -0,0 +1,46 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Document-at-a-time iterator over the ascending values of a key of
+ * {@link IndexToIndexMultiMap}, so that the sets might be intersected
+ * without materializing them.
+ *
+ * The iterator is initially positioned before the first value.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public interface PostingIterator {
+    /**
+     * Position after the last value
+     */
+    int NO_MORE_VALUES = Integer.MAX_VALUE;
+
+    /**
+     * Moves to the next value
+     *
+     * @return the value or {@link #NO_MORE_VALUES}
+     */
+    int next();
+
+    /**
+     * Moves to the first value not less than {@code target} or stays at the
+     * current value if it is not less than {@code target} already
+     *
+     * @param target lowest value (inclusive)
+     * @return the value or {@link #NO_MORE_VALUES}
+     */
+    int advance(int target);
+}
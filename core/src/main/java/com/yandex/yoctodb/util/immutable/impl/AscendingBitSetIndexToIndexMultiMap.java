@@ -13,15 +13,17 @@ package com.yandex.yoctodb.util.immutable.impl;
 import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
 import com.yandex.yoctodb.util.mutable.ArrayBitSet;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
-import com.yandex.yoctodb.util.mutable.impl.ThreadLocalCachedArrayBitSetPool;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -29,6 +31,8 @@ import java.util.stream.Stream;
  * {@link IndexToIndexMultiMap} implementation based on accumulated {@link BitSet}s.
  * Main idea of this index is storing not the documents that satisfies key,
  * but only the ones which less than that key.
+ * So any range of keys is the difference of two accumulated bit sets and is
+ * merged into the destination in a single pass over both of them.
  *
  * Restriction: document with this index type must not provide more than one value.
  *
@@ -41,9 +45,12 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
     private final Buffer elements;
     private final int bitSetSizeInLongs;
     private final long bitSetSizeInBytes;
-
-    private volatile BitSet nonNullBitSet; // lazy-evaluated
-    private volatile ThreadLocalCachedArrayBitSetPool bitSetPool; // lazy-evaluated
+    /**
+     * Lazily counted documents with keys less than each key (including the
+     * non-null one) shifted by one ({@code 0} means unknown)
+     */
+    @NotNull
+    private final int[] cardinalities;
 
     @NotNull
     public static AscendingBitSetIndexToIndexMultiMap from(
@@ -69,53 +76,14 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
         this.bitSetSizeInLongs = bitSetSizeInLongs;
         this.bitSetSizeInBytes = ((long) bitSetSizeInLongs) << 3;
         this.elements = elements;
-    }
-
-    private ArrayBitSet borrowBitSet(int size) {
-        ThreadLocalCachedArrayBitSetPool pool = bitSetPool;
-        if (pool == null) {
-            synchronized (this) {
-                if (bitSetPool == null) {
-                    bitSetPool = new ThreadLocalCachedArrayBitSetPool(bitSetSizeInLongs * Long.SIZE, 1.0f);
-                }
-            }
-
-            return bitSetPool.borrowSet(size);
-        }
-
-        return pool.borrowSet(size);
-    }
-
-    private void release(@NotNull ArrayBitSet bitset) {
-        bitSetPool.returnSet(bitset);
-    }
-
-    /**
-     * @param sizeHint hint for bit set size
-     * @return {@link BitSet} that contains every document that was associated with key (e.g. not null)
-     */
-    private BitSet getNonNull(int sizeHint) {
-        BitSet result = nonNullBitSet;
-        if (result == null) {
-            synchronized (this) {
-                if (nonNullBitSet == null) {
-                    result = LongArrayBitSet.zero(sizeHint);
-                    result.or(elements, keysCount * bitSetSizeInBytes, bitSetSizeInLongs);
-                    nonNullBitSet = result;
-                }
-            }
-        }
-
-        assert result.getSize() == sizeHint;
-
-        return result;
+        this.cardinalities = new int[keysCount + 1];
     }
 
     /**
      * Sets document bits for provided key index
      *
      * Complexity: O(1)
-     * Additional space: O(1)
+     * Additional space: -
      *
      * @param dest destination {@link BitSet}
      * @param key key index
@@ -135,7 +103,7 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
      * Sets document bits for documents for keys which is greater or equals to key index
      *
      * Complexity: O(1)
-     * Additional space: O(1)
+     * Additional space: -
      *
      * @param dest destination {@link BitSet}
      * @param fromInclusive lowest key index (inclusive)
@@ -168,11 +136,6 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
             final int toExclusive) {
         assert 0 < toExclusive && toExclusive <= keysCount;
 
-        // edge case optimization
-        if (toExclusive == keysCount) {
-            return dest.or(getNonNull(dest.getSize()));
-        }
-
         return dest.or(elements, toExclusive * bitSetSizeInBytes, bitSetSizeInLongs);
     }
 
@@ -180,7 +143,7 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
      * Sets document bits for documents for keys which is between selected keys
      *
      * Complexity: O(1)
-     * Additional space: O(1)
+     * Additional space: -
      *
      * @param dest destination {@link BitSet}
      * @param fromInclusive lowest key index (inclusive)
@@ -197,25 +160,98 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
                 fromInclusive < toExclusive &&
                 toExclusive <= keysCount;
 
-        final ArrayBitSet target = borrowBitSet(dest.getSize());
+        // edge case optimization
+        if (fromInclusive == 0) {
+            return getTo(dest, toExclusive);
+        }
+
+        // Single pass without temporary bit sets
+        return dest.orXor(
+                elements,
+                toExclusive * bitSetSizeInBytes,
+                fromInclusive * bitSetSizeInBytes,
+                bitSetSizeInLongs);
+    }
 
-        try {
-            getTo(target, toExclusive);
+    @Override
+    public int getKeysCount() {
+        return keysCount;
+    }
 
-            // edge case optimization
-            if (fromInclusive != 0) {
-                target.xor(elements, fromInclusive * bitSetSizeInBytes, bitSetSizeInLongs);
-            }
+    /**
+     * Exact value, because the documents with keys from the range are the
+     * difference of two accumulated {@link BitSet}s
+     *
+     * Complexity: O(1) for already counted keys
+     * Additional space: -
+     *
+     * @param fromInclusive lowest key index (inclusive)
+     * @param toExclusive highest key index (exclusive)
+     * @return number of documents
+     */
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+                fromInclusive <= toExclusive &&
+                toExclusive <= keysCount;
 
-            return dest.or(target);
-        } finally {
-            release(target);
+        if (fromInclusive == toExclusive) {
+            return 0L;
         }
+
+        final int to = accumulatedCardinality(toExclusive);
+        return fromInclusive == 0 ?
+                to :
+                to - accumulatedCardinality(fromInclusive);
     }
 
+    /**
+     * Counts documents with keys less than {@code key} once and caches the
+     * value
+     */
+    private int accumulatedCardinality(final int key) {
+        // Racy but safe -- the value is always the same
+        final int cached = cardinalities[key];
+        if (cached != 0) {
+            return cached - 1;
+        }
+
+        final int result =
+                BufferBitSet.cardinality(
+                        elements,
+                        key * bitSetSizeInBytes,
+                        bitSetSizeInLongs);
+        cardinalities[key] = result + 1;
+
+        return result;
+    }
+
+    /**
+     * Reads only the words of the two accumulated {@link BitSet}s around the
+     * requested values, because the documents of the key are their difference
+     */
+    @NotNull
     @Override
-    public int getKeysCount() {
-        return keysCount;
+    public PostingIterator iterator(final int key) {
+        assert 0 <= key && key < keysCount;
+
+        final long from = key * bitSetSizeInBytes;
+        final long to = from + bitSetSizeInBytes;
+
+        return new BitSetPostingIterator(bitSetSizeInLongs) {
+            @Override
+            long word(final int index) {
+                final long offset = ((long) index) << 3;
+                final long result = elements.getLong(to + offset);
+
+                // edge case optimization
+                return key == 0 ?
+                        result :
+                        result ^ elements.getLong(from + offset);
+            }
+        };
     }
 
     @Override
@@ -231,9 +267,9 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
             @NotNull
             final BitSet valueFilter) {
         final ArrayBitSet bs = LongArrayBitSet.zero(valueFilter.getSize());
-        return IntStream.iterate(0, i -> i + 1)
+        return IntStream.range(0, keysCount)
                 .mapToObj(i -> getIntToIntArray(valueFilter, bs, i))
-                .limit(keysCount)
+                .filter(Objects::nonNull)
                 .iterator();
     }
 
@@ -244,12 +280,16 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
             final BitSet valueFilter) {
         final ArrayBitSet bs = LongArrayBitSet.zero(valueFilter.getSize());
         return IntStream.iterate(keysCount - 1, i -> i - 1)
-                .mapToObj(i -> getIntToIntArray(valueFilter, bs, i))
                 .limit(keysCount)
+                .mapToObj(i -> getIntToIntArray(valueFilter, bs, i))
+                .filter(Objects::nonNull)
                 .iterator();
     }
 
-    @NotNull
+    /**
+     * @return {@code null} if none of the key documents pass the filter
+     */
+    @Nullable
     private IntToIntArray getIntToIntArray(
             @NotNull
             final BitSet valueFilter,
@@ -259,6 +299,8 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
         get(dest, i);
         dest.and(valueFilter);
         final int count = dest.cardinality();
+        if (count == 0)
+            return null;
 
         return new IntToIntArray(
                 i,
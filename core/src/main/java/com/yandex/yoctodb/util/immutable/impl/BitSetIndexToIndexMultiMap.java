@@ -17,6 +17,7 @@ import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
 import com.yandex.yoctodb.util.mutable.BitSet;
 
 import java.util.Iterator;
@@ -24,15 +25,30 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
+ * Ranges of keys are answered by merging the bit sets of the keys one by one,
+ * because a document might have several values of a multi-valued field.
+ *
  * @author svyatoslav
  */
 @Immutable
 public class BitSetIndexToIndexMultiMap implements IndexToIndexMultiMap {
+    /**
+     * Wider ranges are not counted, because each key takes a whole
+     * {@link BitSet} to count
+     */
+    static final int MAX_ESTIMATED_KEYS = 16;
+
     private final int keysCount;
     @NotNull
     private final Buffer elements;
     private final int bitSetSizeInLongs;
     private final long bitSetSizeInBytes;
+    /**
+     * Lazily counted documents of each key shifted by one ({@code 0} means
+     * unknown)
+     */
+    @NotNull
+    private final int[] cardinalities;
 
     @NotNull
     public static BitSetIndexToIndexMultiMap from(
@@ -58,6 +74,7 @@ public class BitSetIndexToIndexMultiMap implements IndexToIndexMultiMap {
         this.bitSetSizeInLongs = bitSetSizeInLongs;
         this.bitSetSizeInBytes = ((long) bitSetSizeInLongs) << 3;
         this.elements = elements;
+        this.cardinalities = new int[keysCount];
     }
 
     @Override
@@ -143,6 +160,67 @@ public class BitSetIndexToIndexMultiMap implements IndexToIndexMultiMap {
         return keysCount;
     }
 
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+                fromInclusive <= toExclusive &&
+                toExclusive <= keysCount;
+
+        // Any document might be in a wide range
+        final long documents = ((long) bitSetSizeInLongs) << 6;
+        if (toExclusive - fromInclusive > MAX_ESTIMATED_KEYS) {
+            return documents;
+        }
+
+        long result = 0L;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            result += cardinality(key);
+        }
+
+        return Math.min(result, documents);
+    }
+
+    /**
+     * Counts documents of the key once and caches the value
+     */
+    private int cardinality(final int key) {
+        // Racy but safe -- the value is always the same
+        final int cached = cardinalities[key];
+        if (cached != 0) {
+            return cached - 1;
+        }
+
+        final int result =
+                BufferBitSet.cardinality(
+                        elements,
+                        key * bitSetSizeInBytes,
+                        bitSetSizeInLongs);
+        cardinalities[key] = result + 1;
+
+        return result;
+    }
+
+    /**
+     * Reads only the words of the key {@link BitSet} around the requested
+     * values
+     */
+    @NotNull
+    @Override
+    public PostingIterator iterator(final int key) {
+        assert 0 <= key && key < keysCount;
+
+        final long start = key * bitSetSizeInBytes;
+
+        return new BitSetPostingIterator(bitSetSizeInLongs) {
+            @Override
+            long word(final int index) {
+                return elements.getLong(start + (((long) index) << 3));
+            }
+        };
+    }
+
     @Override
     public String toString() {
         return "BitSetBasedIndexToIndexMultiMap{" +
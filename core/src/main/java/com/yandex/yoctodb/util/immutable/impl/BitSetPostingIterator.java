@@ -0,0 +1,69 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * {@link PostingIterator} over the set bits of a bit set stored as
+ * {@code long} words, reading only the words around the requested values
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+abstract class BitSetPostingIterator implements PostingIterator {
+    private final int wordCount;
+    private int current = -1;
+
+    BitSetPostingIterator(final int wordCount) {
+        assert wordCount >= 0;
+
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * @param index word index
+     * @return word of the bit set
+     */
+    abstract long word(int index);
+
+    @Override
+    public int next() {
+        if (current == NO_MORE_VALUES)
+            return NO_MORE_VALUES;
+
+        return current = nextSetBit(current + 1);
+    }
+
+    @Override
+    public int advance(final int target) {
+        if (current >= target)
+            return current;
+
+        return current = nextSetBit(target);
+    }
+
+    private int nextSetBit(final int fromInclusive) {
+        int u = fromInclusive >>> 6;
+        if (u >= wordCount)
+            return NO_MORE_VALUES;
+
+        long word = word(u) & (-1L << fromInclusive);
+        while (word == 0L) {
+            if (++u == wordCount)
+                return NO_MORE_VALUES;
+            word = word(u);
+        }
+
+        return (u << 6) | Long.numberOfTrailingZeros(word);
+    }
+}
@@ -14,6 +14,16 @@ import com.yandex.yoctodb.util.buf.Buffer;
 import org.jetbrains.annotations.NotNull;
 
 public class BufferBitSet {
+    /**
+     * Max number of words read from {@link Buffer} at once
+     */
+    private static final int BLOCK_SIZE = 512;
+    /**
+     * Per-thread scratch space for the words read from {@link Buffer}
+     */
+    private static final ThreadLocal<long[]> BLOCK =
+            ThreadLocal.withInitial(() -> new long[BLOCK_SIZE]);
+
     public static boolean get(@NotNull final Buffer buf,
                               final long bufferOffset,
                               final int i) {
@@ -84,6 +94,34 @@ public class BufferBitSet {
         return result;
     }
 
+    /**
+     * @param buf buffer with array of long, representing bit set
+     * @param bufferOffset offset in buffer where array starts
+     * @param sizeInLongs bit set size in longs
+     * @return number of set bits
+     */
+    public static int cardinality(@NotNull final Buffer buf,
+                                  final long bufferOffset,
+                                  final int sizeInLongs) {
+        assert bufferOffset + ((long) sizeInLongs) * Long.BYTES <= buf.limit();
+
+        int result = 0;
+        final long[] block = BLOCK.get();
+        long offset = bufferOffset;
+        int remaining = sizeInLongs;
+        while (remaining > 0) {
+            final int count = Math.min(remaining, block.length);
+            buf.getLongs(offset, block, 0, count);
+            for (int i = 0; i < count; i++) {
+                result += Long.bitCount(block[i]);
+            }
+            offset += ((long) count) * Long.BYTES;
+            remaining -= count;
+        }
+
+        return result;
+    }
+
     public static int arraySize(final int bitCount) {
         return (bitCount >>> 6) + ((bitCount & 0x3f) != 0 ? 1 : 0);
     }
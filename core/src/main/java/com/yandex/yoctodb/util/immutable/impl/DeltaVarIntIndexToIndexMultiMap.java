@@ -0,0 +1,322 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import net.jcip.annotations.Immutable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads {@link com.yandex.yoctodb.util.mutable.impl.DeltaVarIntIndexToIndexMultiMap}
+ * decoding the sets by blocks of bytes
+ *
+ * @author incubos
+ */
+@Immutable
+public final class DeltaVarIntIndexToIndexMultiMap
+        implements IndexToIndexMultiMap {
+    private final int keysCount;
+    private final int offsetSize;
+    @NotNull
+    private final Buffer offsets;
+    @NotNull
+    private final Buffer elements;
+
+    @NotNull
+    public static DeltaVarIntIndexToIndexMultiMap from(
+            @NotNull
+            final Buffer buf) {
+        final int keysCount = buf.getInt();
+        final int offsetSize = buf.getInt();
+        if (offsetSize != Integer.BYTES && offsetSize != Long.BYTES)
+            throw new IllegalArgumentException(
+                    "Wrong offset size " + offsetSize);
+
+        final Buffer offsets = buf.slice((keysCount + 1L) * offsetSize);
+        final Buffer elements =
+                buf.slice().position(offsets.remaining()).slice();
+
+        return new DeltaVarIntIndexToIndexMultiMap(
+                keysCount,
+                offsetSize,
+                offsets,
+                elements);
+    }
+
+    private DeltaVarIntIndexToIndexMultiMap(
+            final int keysCount,
+            final int offsetSize,
+            @NotNull
+            final Buffer offsets,
+            @NotNull
+            final Buffer elements) {
+        assert keysCount >= 0 : "Negative keys count";
+
+        this.keysCount = keysCount;
+        this.offsetSize = offsetSize;
+        this.offsets = offsets;
+        this.elements = elements;
+    }
+
+    private long offset(final int key) {
+        assert 0 <= key && key <= keysCount;
+
+        if (offsetSize == Integer.BYTES)
+            return offsets.getInt(((long) key) << 2) & 0xFFFFFFFFL;
+        else
+            return offsets.getLong(((long) key) << 3);
+    }
+
+    /**
+     * Sets the values of the keys from the range in {@code dest}
+     */
+    private boolean fill(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        final VarIntDecoder decoder =
+                new VarIntDecoder(elements, offset(fromInclusive), offset(toExclusive));
+
+        boolean result = false;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            int size = decoder.next();
+            result |= size > 0;
+            int value = 0;
+            while (size > 0) {
+                value += decoder.next();
+                dest.set(value);
+                size--;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean get(
+            @NotNull
+            final BitSet dest,
+            final int key) {
+        assert 0 <= key && key < keysCount;
+
+        return fill(dest, key, key + 1);
+    }
+
+    @Override
+    public boolean getFrom(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive) {
+        assert 0 <= fromInclusive && fromInclusive < keysCount;
+
+        return fill(dest, fromInclusive, keysCount);
+    }
+
+    @Override
+    public boolean getTo(
+            @NotNull
+            final BitSet dest,
+            final int toExclusive) {
+        assert 0 < toExclusive && toExclusive <= keysCount;
+
+        return fill(dest, 0, toExclusive);
+    }
+
+    @Override
+    public boolean getBetween(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive < toExclusive &&
+               toExclusive <= keysCount;
+
+        return fill(dest, fromInclusive, toExclusive);
+    }
+
+    @Override
+    public int getKeysCount() {
+        return keysCount;
+    }
+
+    /**
+     * Exact value reading only the size prefixes of the sets
+     */
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive <= toExclusive &&
+               toExclusive <= keysCount;
+
+        long result = 0L;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            result += size(key);
+        }
+
+        return result;
+    }
+
+    private int size(final int key) {
+        long position = offset(key);
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = elements.get(position++);
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return result;
+    }
+
+    @Nullable
+    private IntToIntArray getFilteredValues(
+            final int key,
+            @NotNull
+            final BitSet valueFilter) {
+        assert 0 <= key && key < keysCount;
+
+        final VarIntDecoder decoder =
+                new VarIntDecoder(elements, offset(key), offset(key + 1));
+        final int size = decoder.next();
+
+        assert size > 0;
+
+        int[] values = null;
+        int count = 0;
+
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            value += decoder.next();
+            if (valueFilter.get(value)) {
+                // Lazy allocation
+                if (values == null) {
+                    values = new int[size - i];
+                }
+                values[count] = value;
+                count++;
+            }
+        }
+
+        if (values == null) {
+            return null;
+        } else {
+            return new IntToIntArray(key, values, count);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> ascending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = 0;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key < keysCount) {
+                    next = getFilteredValues(key++, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> descending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = keysCount - 1;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key >= 0) {
+                    next = getFilteredValues(key--, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "DeltaVarIntIndexToIndexMultiMap{" +
+               "keysCount=" + keysCount +
+               '}';
+    }
+}
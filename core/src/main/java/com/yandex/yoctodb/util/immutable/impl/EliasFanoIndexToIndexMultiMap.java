@@ -0,0 +1,481 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads {@link com.yandex.yoctodb.util.mutable.impl.EliasFanoIndexToIndexMultiMap}
+ * decoding the sets by blocks of {@code long}s and skipping the zero high
+ * bits a word at a time
+ *
+ * @author incubos
+ */
+@Immutable
+public final class EliasFanoIndexToIndexMultiMap
+        implements IndexToIndexMultiMap {
+    /**
+     * Max number of {@code long}s read from {@link Buffer} at once
+     */
+    private static final int BLOCK_SIZE = 128;
+
+    private final int keysCount;
+    private final int documentsCount;
+    @NotNull
+    private final Buffer offsets;
+    @NotNull
+    private final Buffer elements;
+
+    @NotNull
+    public static EliasFanoIndexToIndexMultiMap from(
+            @NotNull
+            final Buffer buf) {
+        final int keysCount = buf.getInt();
+        final int documentsCount = buf.getInt();
+        final Buffer offsets = buf.slice((keysCount + 1L) << 3);
+        final Buffer elements =
+                buf.slice().position(offsets.remaining()).slice();
+
+        return new EliasFanoIndexToIndexMultiMap(
+                keysCount,
+                documentsCount,
+                offsets,
+                elements);
+    }
+
+    private EliasFanoIndexToIndexMultiMap(
+            final int keysCount,
+            final int documentsCount,
+            @NotNull
+            final Buffer offsets,
+            @NotNull
+            final Buffer elements) {
+        assert keysCount >= 0 : "Negative keys count";
+        assert documentsCount > 0 : "Nonpositive documents count";
+
+        this.keysCount = keysCount;
+        this.documentsCount = documentsCount;
+        this.offsets = offsets;
+        this.elements = elements;
+    }
+
+    private long offset(final int key) {
+        assert 0 <= key && key <= keysCount;
+
+        return offsets.getLong(((long) key) << 3);
+    }
+
+    private int size(final int key) {
+        return elements.getInt(offset(key));
+    }
+
+    /**
+     * Sets the values of the keys from the range in {@code dest}
+     */
+    private boolean fill(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        boolean result = false;
+        final Decoder decoder = new Decoder();
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            decoder.reset(key);
+            result |= decoder.size > 0;
+            while (decoder.hasNext()) {
+                dest.set(decoder.next());
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean get(
+            @NotNull
+            final BitSet dest,
+            final int key) {
+        assert 0 <= key && key < keysCount;
+
+        return fill(dest, key, key + 1);
+    }
+
+    @Override
+    public boolean getFrom(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive) {
+        assert 0 <= fromInclusive && fromInclusive < keysCount;
+
+        return fill(dest, fromInclusive, keysCount);
+    }
+
+    @Override
+    public boolean getTo(
+            @NotNull
+            final BitSet dest,
+            final int toExclusive) {
+        assert 0 < toExclusive && toExclusive <= keysCount;
+
+        return fill(dest, 0, toExclusive);
+    }
+
+    @Override
+    public boolean getBetween(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive < toExclusive &&
+               toExclusive <= keysCount;
+
+        return fill(dest, fromInclusive, toExclusive);
+    }
+
+    @Override
+    public int getKeysCount() {
+        return keysCount;
+    }
+
+    /**
+     * Exact value reading only the sizes of the sets
+     */
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive <= toExclusive &&
+               toExclusive <= keysCount;
+
+        long result = 0L;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            result += size(key);
+        }
+
+        return result;
+    }
+
+    @Nullable
+    private IntToIntArray getFilteredValues(
+            final int key,
+            @NotNull
+            final BitSet valueFilter) {
+        assert 0 <= key && key < keysCount;
+
+        final Decoder decoder = new Decoder();
+        decoder.reset(key);
+        final int size = decoder.size;
+
+        assert size > 0;
+
+        int[] values = null;
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            final int value = decoder.next();
+            if (valueFilter.get(value)) {
+                // Lazy allocation
+                if (values == null) {
+                    values = new int[size - i];
+                }
+                values[count] = value;
+                count++;
+            }
+        }
+
+        if (values == null) {
+            return null;
+        } else {
+            return new IntToIntArray(key, values, count);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> ascending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = 0;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key < keysCount) {
+                    next = getFilteredValues(key++, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> descending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = keysCount - 1;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key >= 0) {
+                    next = getFilteredValues(key--, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    /**
+     * Skips the words of the high bits with all the values less than the
+     * target without decoding their low bits
+     */
+    @NotNull
+    @Override
+    public PostingIterator iterator(final int key) {
+        assert 0 <= key && key < keysCount;
+
+        final Decoder decoder = new Decoder();
+        decoder.reset(key);
+
+        return new PostingIterator() {
+            private int current = -1;
+
+            @Override
+            public int next() {
+                return current =
+                        decoder.hasNext() ? decoder.next() : NO_MORE_VALUES;
+            }
+
+            @Override
+            public int advance(final int target) {
+                if (current >= target)
+                    return current;
+
+                decoder.skipBelow(target);
+                while (decoder.hasNext()) {
+                    final int value = decoder.next();
+                    if (value >= target)
+                        return current = value;
+                }
+
+                return current = NO_MORE_VALUES;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "EliasFanoIndexToIndexMultiMap{" +
+               "keysCount=" + keysCount +
+               ", documentsCount=" + documentsCount +
+               '}';
+    }
+
+    /**
+     * Reads {@code long}s from a range of {@link #elements} by blocks
+     */
+    @NotThreadSafe
+    private final class Words {
+        @NotNull
+        private final long[] block = new long[BLOCK_SIZE];
+        // Range of the words
+        private long start;
+        private long limit;
+        // Index of the first word in the block
+        private long blockFirst;
+        private int blockLength;
+
+        void reset(
+                final long from,
+                final long to) {
+            this.start = from;
+            this.limit = to;
+            this.blockFirst = 0L;
+            this.blockLength = 0;
+        }
+
+        /**
+         * @param index word index from the start of the range
+         */
+        long get(final long index) {
+            if (index < blockFirst || index >= blockFirst + blockLength) {
+                final long position = start + (index << 3);
+                assert position < limit;
+
+                blockFirst = index;
+                blockLength =
+                        (int) Math.min(BLOCK_SIZE, (limit - position) >>> 3);
+                elements.getLongs(position, block, 0, blockLength);
+            }
+
+            return block[(int) (index - blockFirst)];
+        }
+    }
+
+    /**
+     * Decodes the values of a set in ascending order
+     */
+    @NotThreadSafe
+    private final class Decoder {
+        @NotNull
+        private final Words low = new Words();
+        @NotNull
+        private final Words high = new Words();
+        int size;
+        private int width;
+        private long mask;
+
+        // Next value index
+        private int i;
+        // Current high bits word
+        private long highWordIndex;
+        private long highWord;
+
+        void reset(final int key) {
+            final long offset = offset(key);
+            final long end = offset(key + 1);
+            size = elements.getInt(offset);
+            width = elements.getInt(offset + 4L);
+            mask = (1L << width) - 1L;
+
+            final long lowStart = offset + 8L;
+            final long highStart =
+                    lowStart + (((long) size * width + Long.SIZE - 1) >>> 6 << 3);
+            low.reset(lowStart, highStart);
+            high.reset(highStart, end);
+
+            i = 0;
+            highWordIndex = 0L;
+            highWord = size > 0 ? high.get(0L) : 0L;
+        }
+
+        boolean hasNext() {
+            return i < size;
+        }
+
+        /**
+         * Skips the words of the high bits containing only the values with
+         * the high bits less than the high bits of {@code target}
+         */
+        void skipBelow(final int target) {
+            final long targetHigh = target >>> width;
+            while (i < size) {
+                while (highWord == 0L) {
+                    highWord = high.get(++highWordIndex);
+                }
+
+                // High bits of the last value in the word
+                final int ones = Long.bitCount(highWord);
+                final long lastPosition =
+                        (highWordIndex << 6) + 63 -
+                        Long.numberOfLeadingZeros(highWord);
+                if (lastPosition - (i + ones - 1) >= targetHigh)
+                    return;
+
+                i += ones;
+                highWord = 0L;
+            }
+        }
+
+        int next() {
+            assert hasNext();
+
+            // Skipping the words without ones
+            while (highWord == 0L) {
+                highWord = high.get(++highWordIndex);
+            }
+
+            final long position =
+                    (highWordIndex << 6) + Long.numberOfTrailingZeros(highWord);
+            highWord &= highWord - 1L;
+
+            long value = (position - i) << width;
+            if (width > 0) {
+                final long bit = (long) i * width;
+                final long word = bit >>> 6;
+                final int shift = (int) (bit & 63);
+                long bits = low.get(word) >>> shift;
+                if (shift + width > Long.SIZE)
+                    bits |= low.get(word + 1) << (Long.SIZE - shift);
+                value |= bits & mask;
+            }
+            i++;
+
+            return (int) value;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import net.jcip.annotations.ThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link PostingIterator} without values
+ *
+ * @author incubos
+ */
+@ThreadSafe
+public final class EmptyPostingIterator implements PostingIterator {
+    @NotNull
+    public static final PostingIterator INSTANCE = new EmptyPostingIterator();
+
+    private EmptyPostingIterator() {
+        // Stateless
+    }
+
+    @Override
+    public int next() {
+        return NO_MORE_VALUES;
+    }
+
+    @Override
+    public int advance(final int target) {
+        return NO_MORE_VALUES;
+    }
+}
@@ -16,19 +16,45 @@ import com.yandex.yoctodb.util.UnsignedByteArrays;
 import com.yandex.yoctodb.util.buf.Buffer;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * {@link com.yandex.yoctodb.util.immutable.ByteArraySortedSet} with fixed size
  * elements
  *
+ * Sorted elements are split into blocks of about {@link #BLOCK_SIZE_IN_BYTES}
+ * bytes and the first element of every block is copied to a small in-heap
+ * top-level index, so a lookup in a large set searches the index which stays
+ * in cache between lookups and then just a single block of the elements
+ * instead of touching a new cache line or page on almost every probe.
+ *
  * @author incubos
  */
 @Immutable
 public final class FixedLengthByteArraySortedSet
         extends AbstractByteArraySortedSet {
+    /**
+     * Approximate size of a block of elements indexed by the top-level index
+     */
+    static final int BLOCK_SIZE_IN_BYTES = 512;
+    /**
+     * Smaller sets are searched without the top-level index
+     */
+    static final int INDEX_THRESHOLD_IN_BYTES = 64 * 1024;
+
     private final int elementSize;
     private final int size;
     private final Buffer elements;
+    /**
+     * Elements in a block
+     */
+    private final int blockSize;
+    /**
+     * The first elements of the blocks or {@code null} for small sets
+     */
+    @Nullable
+    private final Buffer blocks;
+    private final int blocksCount;
 
     @NotNull
     public static FixedLengthByteArraySortedSet from(
@@ -53,6 +79,132 @@ public final class FixedLengthByteArraySortedSet
         this.elementSize = elementSize;
         this.size = elementCount;
         this.elements = elements;
+
+        if (elementSize > 0 &&
+            ((long) elementSize) * elementCount > INDEX_THRESHOLD_IN_BYTES) {
+            this.blockSize = Math.max(1, BLOCK_SIZE_IN_BYTES / elementSize);
+            this.blocksCount = (elementCount + blockSize - 1) / blockSize;
+            final byte[] firsts = new byte[blocksCount * elementSize];
+            for (int block = 0; block < blocksCount; block++) {
+                elements.slice(
+                        ((long) block) * blockSize * elementSize,
+                        elementSize)
+                        .get(firsts, block * elementSize, elementSize);
+            }
+            this.blocks = Buffer.from(firsts);
+        } else {
+            this.blockSize = 0;
+            this.blocksCount = 0;
+            this.blocks = null;
+        }
+    }
+
+    /**
+     * @param e      element to compare to
+     * @param strict whether to look for the elements greater than {@code e}
+     *               or for the elements greater than or equal to {@code e}
+     *
+     * @return index of the first element greater than (or equal to) {@code e}
+     * or {@link #size()} if there is no such element
+     */
+    private int first(
+            @NotNull
+            final Buffer e,
+            final boolean strict) {
+        assert blocks != null;
+
+        // Blocks with the first elements not satisfying the condition
+        int start = 0;
+        int end = blocksCount - 1;
+        while (start <= end) {
+            final int mid = (start + end) >>> 1;
+            final int compare =
+                    UnsignedByteArrays.compare(
+                            blocks,
+                            ((long) mid) * elementSize,
+                            elementSize,
+                            e);
+            if (compare < 0 || (strict && compare == 0)) {
+                start = mid + 1;
+            } else {
+                end = mid - 1;
+            }
+        }
+
+        if (start == 0) {
+            return 0;
+        }
+
+        // Searching the last block with unsatisfying first element
+        int from = (start - 1) * blockSize + 1;
+        int to = Math.min(start * blockSize, size);
+        while (from < to) {
+            final int mid = (from + to) >>> 1;
+            final int compare = compare(mid, e);
+            if (compare < 0 || (strict && compare == 0)) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+
+        return from;
+    }
+
+    @Override
+    public int indexOf(
+            @NotNull
+            final Buffer e) {
+        if (blocks == null) {
+            return super.indexOf(e);
+        }
+
+        final int result = first(e, false);
+        if (result < size && compare(result, e) == 0) {
+            return result;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int indexOfGreaterThan(
+            @NotNull
+            final Buffer e,
+            final boolean orEquals,
+            final int upToIndexInclusive) {
+        if (blocks == null) {
+            return super.indexOfGreaterThan(e, orEquals, upToIndexInclusive);
+        }
+
+        assert 0 <= upToIndexInclusive && upToIndexInclusive < size;
+
+        final int result = first(e, !orEquals);
+        if (result <= upToIndexInclusive) {
+            return result;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int indexOfLessThan(
+            @NotNull
+            final Buffer e,
+            final boolean orEquals,
+            final int fromIndexInclusive) {
+        if (blocks == null) {
+            return super.indexOfLessThan(e, orEquals, fromIndexInclusive);
+        }
+
+        assert 0 <= fromIndexInclusive && fromIndexInclusive < size;
+
+        final int result = first(e, orEquals) - 1;
+        if (result >= fromIndexInclusive) {
+            return result;
+        } else {
+            return -1;
+        }
     }
 
     @Override
@@ -138,6 +290,7 @@ public final class FixedLengthByteArraySortedSet
         return "FixedLengthByteArraySortedSet{" +
                "elementSize=" + elementSize +
                ", size=" + size +
+               ", blocks=" + blocksCount +
                '}';
     }
 }
@@ -0,0 +1,41 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Chooses the {@link ByteArraySortedSet} implementation reading the fixed
+ * length sorted set format
+ *
+ * @author incubos
+ */
+public final class FixedLengthByteArraySortedSets {
+    private FixedLengthByteArraySortedSets() {
+        // Can't instantiate
+    }
+
+    /**
+     * @return {@link FixedLengthNumericSortedSet} for the elements of numeric
+     * sizes and {@link FixedLengthByteArraySortedSet} for the others
+     */
+    @NotNull
+    public static ByteArraySortedSet from(
+            @NotNull
+            final Buffer buf) {
+        if (FixedLengthNumericSortedSet.isSupported(buf.getInt(buf.position())))
+            return FixedLengthNumericSortedSet.from(buf);
+        else
+            return FixedLengthByteArraySortedSet.from(buf);
+    }
+}
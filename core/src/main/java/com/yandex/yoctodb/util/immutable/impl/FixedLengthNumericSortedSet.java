@@ -0,0 +1,327 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.buf.Buffer;
+import net.jcip.annotations.Immutable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link com.yandex.yoctodb.util.immutable.ByteArraySortedSet} with fixed size
+ * elements of {@link Byte#BYTES}, {@link Short#BYTES}, {@link Integer#BYTES}
+ * or {@link Long#BYTES} bytes, i.e. numbers encoded by
+ * {@link UnsignedByteArrays}.
+ *
+ * Binary compatible with {@link FixedLengthByteArraySortedSet}, but compares
+ * the elements as numbers read at once instead of byte by byte and decodes
+ * the looked up element just once. The search has no data-dependent branches
+ * except for the loop and keeps the first elements of the blocks of large sets
+ * in heap like {@link FixedLengthByteArraySortedSet} does.
+ *
+ * @author incubos
+ */
+@Immutable
+public final class FixedLengthNumericSortedSet
+        extends AbstractByteArraySortedSet {
+    private final int elementSize;
+    private final int size;
+    @NotNull
+    private final Buffer elements;
+    /**
+     * Elements in a block
+     */
+    private final int blockSize;
+    /**
+     * The first elements of the blocks or {@code null} for small sets
+     */
+    @Nullable
+    private final long[] blocks;
+
+    /**
+     * @param elementSize element size in bytes
+     *
+     * @return whether elements of the size might be compared as numbers
+     */
+    public static boolean isSupported(final int elementSize) {
+        return elementSize == Byte.BYTES ||
+               elementSize == Short.BYTES ||
+               elementSize == Integer.BYTES ||
+               elementSize == Long.BYTES;
+    }
+
+    @NotNull
+    public static FixedLengthNumericSortedSet from(
+            @NotNull
+            final Buffer buf) {
+        final int elementSize = buf.getInt();
+        if (!isSupported(elementSize))
+            throw new IllegalArgumentException(
+                    "Unsupported element size " + elementSize);
+        final int elementsCount = buf.getInt();
+
+        return new FixedLengthNumericSortedSet(
+                elementSize,
+                elementsCount,
+                buf.slice());
+    }
+
+    private FixedLengthNumericSortedSet(
+            final int elementSize,
+            final int elementCount,
+            @NotNull
+            final Buffer elements) {
+        assert isSupported(elementSize) : "Unsupported element size";
+        assert elementCount >= 0 : "Negative element count";
+
+        this.elementSize = elementSize;
+        this.size = elementCount;
+        this.elements = elements;
+
+        if (((long) elementSize) * elementCount >
+            FixedLengthByteArraySortedSet.INDEX_THRESHOLD_IN_BYTES) {
+            this.blockSize =
+                    FixedLengthByteArraySortedSet.BLOCK_SIZE_IN_BYTES /
+                    elementSize;
+            final int blocksCount = (elementCount + blockSize - 1) / blockSize;
+            this.blocks = new long[blocksCount];
+            for (int block = 0; block < blocksCount; block++) {
+                blocks[block] = element(block * blockSize);
+            }
+        } else {
+            this.blockSize = 0;
+            this.blocks = null;
+        }
+    }
+
+    /**
+     * @return {@code i}th element as a number preserving unsigned byte order
+     */
+    private long element(final int i) {
+        assert 0 <= i && i < size;
+
+        switch (elementSize) {
+            case Long.BYTES:
+                return elements.getLong(((long) i) << 3) ^ Long.MIN_VALUE;
+            case Integer.BYTES:
+                return elements.getInt(((long) i) << 2) & 0xFFFFFFFFL;
+            case Short.BYTES:
+                return elements.getChar(((long) i) << 1);
+            default:
+                return elements.get(i) & 0xFFL;
+        }
+    }
+
+    /**
+     * @return {@code e} as a number comparable to {@link #element(int)}
+     */
+    private long key(
+            @NotNull
+            final Buffer e) {
+        assert e.remaining() == elementSize;
+
+        final long position = e.position();
+        switch (elementSize) {
+            case Long.BYTES:
+                return e.getLong(position) ^ Long.MIN_VALUE;
+            case Integer.BYTES:
+                return e.getInt(position) & 0xFFFFFFFFL;
+            case Short.BYTES:
+                return e.getChar(position);
+            default:
+                return e.get(position) & 0xFFL;
+        }
+    }
+
+    /**
+     * @return index of the first element not less than {@code key} or
+     * {@link #size()} if there is no such element
+     */
+    private int first(final long key) {
+        int from = 0;
+        int count = size;
+
+        if (blocks != null) {
+            // Index of the last block with the first element less than key
+            int base = 0;
+            int n = blocks.length;
+            while (n > 1) {
+                final int half = n >>> 1;
+                base = blocks[base + half] < key ? base + half : base;
+                n -= half;
+            }
+            if (blocks[base] >= key) {
+                return 0;
+            }
+
+            from = base * blockSize + 1;
+            count = Math.min(blockSize - 1, size - from);
+        }
+
+        if (count == 0) {
+            return from;
+        }
+
+        // Index of the last element less than key or the first one
+        int base = from;
+        int n = count;
+        while (n > 1) {
+            final int half = n >>> 1;
+            base = element(base + half) < key ? base + half : base;
+            n -= half;
+        }
+
+        return element(base) < key ? base + 1 : base;
+    }
+
+    /**
+     * @return index of the first element greater than {@code key} or
+     * {@link #size()} if there is no such element
+     */
+    private int firstGreater(final long key) {
+        if (key == Long.MAX_VALUE) {
+            return size;
+        }
+
+        return first(key + 1);
+    }
+
+    @Override
+    protected int compare(
+            final int ith,
+            @NotNull
+            final Buffer that) {
+        assert 0 <= ith && ith < size;
+
+        return UnsignedByteArrays.compare(
+                elements,
+                ((long) ith) * elementSize,
+                elementSize,
+                that);
+    }
+
+    @Override
+    public int indexOf(
+            @NotNull
+            final Buffer e) {
+        if (e.remaining() != elementSize) {
+            return super.indexOf(e);
+        }
+
+        final long key = key(e);
+        final int result = first(key);
+        if (result < size && element(result) == key) {
+            return result;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int indexOfGreaterThan(
+            @NotNull
+            final Buffer e,
+            final boolean orEquals,
+            final int upToIndexInclusive) {
+        if (e.remaining() != elementSize) {
+            return super.indexOfGreaterThan(e, orEquals, upToIndexInclusive);
+        }
+
+        assert 0 <= upToIndexInclusive && upToIndexInclusive < size;
+
+        final long key = key(e);
+        final int result = orEquals ? first(key) : firstGreater(key);
+        if (result <= upToIndexInclusive) {
+            return result;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int indexOfLessThan(
+            @NotNull
+            final Buffer e,
+            final boolean orEquals,
+            final int fromIndexInclusive) {
+        if (e.remaining() != elementSize) {
+            return super.indexOfLessThan(e, orEquals, fromIndexInclusive);
+        }
+
+        assert 0 <= fromIndexInclusive && fromIndexInclusive < size;
+
+        final long key = key(e);
+        final int result = (orEquals ? firstGreater(key) : first(key)) - 1;
+        if (result >= fromIndexInclusive) {
+            return result;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @NotNull
+    @Override
+    public Buffer get(final int i) {
+        assert 0 <= i && i < size;
+
+        return elements.slice(((long) i) * elementSize, elementSize);
+    }
+
+    @Override
+    public long getLongUnsafe(final int i) {
+        assert elementSize == Long.BYTES;
+
+        return element(i);
+    }
+
+    @Override
+    public int getIntUnsafe(final int i) {
+        assert elementSize == Integer.BYTES;
+
+        return (int) element(i) ^ Integer.MIN_VALUE;
+    }
+
+    @Override
+    public short getShortUnsafe(final int i) {
+        assert elementSize == Short.BYTES;
+
+        return (short) (element(i) ^ Short.MIN_VALUE);
+    }
+
+    @Override
+    public char getCharUnsafe(final int i) {
+        assert elementSize == Character.BYTES;
+
+        return (char) element(i);
+    }
+
+    @Override
+    public byte getByteUnsafe(final int i) {
+        assert elementSize == Byte.BYTES;
+
+        return (byte) (element(i) ^ Byte.MIN_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "FixedLengthNumericSortedSet{" +
+               "elementSize=" + elementSize +
+               ", size=" + size +
+               ", blocks=" + (blocks == null ? 0 : blocks.length) +
+               '}';
+    }
+}
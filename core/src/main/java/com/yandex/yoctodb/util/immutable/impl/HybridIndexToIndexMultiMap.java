@@ -0,0 +1,357 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import net.jcip.annotations.Immutable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads {@link com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap}
+ * dispatching on the container of each key
+ *
+ * @author incubos
+ */
+@Immutable
+public final class HybridIndexToIndexMultiMap implements IndexToIndexMultiMap {
+    private static final int LIST =
+            com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap.LIST;
+    private static final int BIT_SET =
+            com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap.BIT_SET;
+    /**
+     * Max number of elements read from {@link Buffer} at once
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    private final int keysCount;
+    private final int bitSetSizeInLongs;
+    @NotNull
+    private final Buffer offsets;
+    @NotNull
+    private final Buffer elements;
+
+    @NotNull
+    public static HybridIndexToIndexMultiMap from(
+            @NotNull
+            final Buffer buf) {
+        final int keysCount = buf.getInt();
+        final int bitSetSizeInLongs = buf.getInt();
+        final Buffer offsets = buf.slice((keysCount + 1L) << 3);
+        final Buffer elements =
+                buf.slice().position(offsets.remaining()).slice();
+
+        return new HybridIndexToIndexMultiMap(
+                keysCount,
+                bitSetSizeInLongs,
+                offsets,
+                elements);
+    }
+
+    private HybridIndexToIndexMultiMap(
+            final int keysCount,
+            final int bitSetSizeInLongs,
+            @NotNull
+            final Buffer offsets,
+            @NotNull
+            final Buffer elements) {
+        assert keysCount >= 0 : "Negative keys count";
+        assert bitSetSizeInLongs >= 0 : "Negative bit set size";
+
+        this.keysCount = keysCount;
+        this.bitSetSizeInLongs = bitSetSizeInLongs;
+        this.offsets = offsets;
+        this.elements = elements;
+    }
+
+    private long offset(final int key) {
+        assert 0 <= key && key <= keysCount;
+
+        return offsets.getLong(((long) key) << 3);
+    }
+
+    private int container(final long offset) {
+        final int result = elements.getInt(offset + 4L);
+        if (result != LIST && result != BIT_SET)
+            throw new IllegalStateException("Unknown container " + result);
+
+        return result;
+    }
+
+    /**
+     * Sets the values of the keys from the range in {@code dest}
+     */
+    private boolean fill(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        boolean result = false;
+        int[] block = null;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            final long offset = offset(key);
+            int size = elements.getInt(offset);
+            if (size == 0)
+                continue;
+
+            result = true;
+            long from = offset + 8L;
+            if (container(offset) == BIT_SET) {
+                dest.or(elements, from, bitSetSizeInLongs);
+            } else {
+                // Lazy allocation
+                if (block == null)
+                    block = new int[BLOCK_SIZE];
+                while (size > 0) {
+                    final int count = Math.min(size, block.length);
+                    elements.getInts(from, block, 0, count);
+                    for (int i = 0; i < count; i++)
+                        dest.set(block[i]);
+                    from += ((long) count) << 2;
+                    size -= count;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean get(
+            @NotNull
+            final BitSet dest,
+            final int key) {
+        assert 0 <= key && key < keysCount;
+
+        return fill(dest, key, key + 1);
+    }
+
+    @Override
+    public boolean getFrom(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive) {
+        assert 0 <= fromInclusive && fromInclusive < keysCount;
+
+        return fill(dest, fromInclusive, keysCount);
+    }
+
+    @Override
+    public boolean getTo(
+            @NotNull
+            final BitSet dest,
+            final int toExclusive) {
+        assert 0 < toExclusive && toExclusive <= keysCount;
+
+        return fill(dest, 0, toExclusive);
+    }
+
+    @Override
+    public boolean getBetween(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive < toExclusive &&
+               toExclusive <= keysCount;
+
+        return fill(dest, fromInclusive, toExclusive);
+    }
+
+    @Override
+    public int getKeysCount() {
+        return keysCount;
+    }
+
+    /**
+     * Exact value reading only the sizes of the sets
+     */
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive <= toExclusive &&
+               toExclusive <= keysCount;
+
+        long result = 0L;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            result += elements.getInt(offset(key));
+        }
+
+        return result;
+    }
+
+    /**
+     * Galloping search over the lists and reading only the words around the
+     * requested values of the bit sets
+     */
+    @NotNull
+    @Override
+    public PostingIterator iterator(final int key) {
+        assert 0 <= key && key < keysCount;
+
+        final long offset = offset(key);
+        final long first = offset + 8L;
+        if (container(offset) == BIT_SET) {
+            return new BitSetPostingIterator(bitSetSizeInLongs) {
+                @Override
+                long word(final int index) {
+                    return elements.getLong(first + (((long) index) << 3));
+                }
+            };
+        } else {
+            return new IntListPostingIterator(
+                    elements,
+                    first,
+                    elements.getInt(offset));
+        }
+    }
+
+    @Nullable
+    private IntToIntArray getFilteredValues(
+            final int key,
+            @NotNull
+            final BitSet valueFilter) {
+        assert 0 <= key && key < keysCount;
+
+        final int size = elements.getInt(offset(key));
+
+        assert size > 0;
+
+        final PostingIterator iterator = iterator(key);
+
+        int[] values = null;
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            final int value = iterator.next();
+            if (valueFilter.get(value)) {
+                // Lazy allocation
+                if (values == null) {
+                    values = new int[size - i];
+                }
+                values[count] = value;
+                count++;
+            }
+        }
+
+        if (values == null) {
+            return null;
+        } else {
+            return new IntToIntArray(key, values, count);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> ascending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = 0;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key < keysCount) {
+                    next = getFilteredValues(key++, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> descending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = keysCount - 1;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key >= 0) {
+                    next = getFilteredValues(key--, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "HybridIndexToIndexMultiMap{" +
+               "keysCount=" + keysCount +
+               ", bitSetSizeInLongs=" + bitSetSizeInLongs +
+               '}';
+    }
+}
@@ -37,6 +37,14 @@ public final class IndexToIndexMultiMapReader {
             return BitSetIndexToIndexMultiMap.from(byteBuffer.slice());
         } else if (type == V1DatabaseFormat.MultiMapType.ASCENDING_BIT_SET_BASED.getCode()) {
             return AscendingBitSetIndexToIndexMultiMap.from(byteBuffer.slice());
+        } else if (type == V1DatabaseFormat.MultiMapType.DELTA_VAR_INT_BASED.getCode()) {
+            return DeltaVarIntIndexToIndexMultiMap.from(byteBuffer.slice());
+        } else if (type == V1DatabaseFormat.MultiMapType.ELIAS_FANO_BASED.getCode()) {
+            return EliasFanoIndexToIndexMultiMap.from(byteBuffer.slice());
+        } else if (type == V1DatabaseFormat.MultiMapType.SKIP_LIST_BASED.getCode()) {
+            return SkipListIndexToIndexMultiMap.from(byteBuffer.slice());
+        } else if (type == V1DatabaseFormat.MultiMapType.HYBRID_BASED.getCode()) {
+            return HybridIndexToIndexMultiMap.from(byteBuffer.slice());
         } else {
             throw new UnsupportedOperationException(
                     "Unsupported IndexToIndexMultiMap type: " + type);
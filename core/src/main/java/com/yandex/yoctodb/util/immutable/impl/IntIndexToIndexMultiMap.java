@@ -16,6 +16,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
 import com.yandex.yoctodb.util.mutable.BitSet;
 
 import java.util.Iterator;
@@ -26,6 +27,20 @@ import java.util.NoSuchElementException;
  */
 @Immutable
 public final class IntIndexToIndexMultiMap implements IndexToIndexMultiMap {
+    /**
+     * Max number of elements read from {@link Buffer} at once
+     */
+    private static final int BLOCK_SIZE = 256;
+    /**
+     * Max number of elements read one by one without a block
+     */
+    private static final int SHORT_SET_SIZE = 8;
+    /**
+     * Per-thread scratch space for the elements read from {@link Buffer}
+     */
+    private static final ThreadLocal<int[]> BLOCK =
+            ThreadLocal.withInitial(() -> new int[BLOCK_SIZE]);
+
     private final int keysCount;
     @NotNull
     private final Buffer offsets;
@@ -70,14 +85,55 @@ public final class IntIndexToIndexMultiMap implements IndexToIndexMultiMap {
         final long start = offsets.getLong(((long) key) << 3);
 
         final int size = elements.getInt(start);
-        final long from = start + 4L;
-        final long to = from + (((long) size) << 2);
-        for (long i = from; i < to; i += 4L)
-            dest.set(elements.getInt(i));
+        if (size > 0) {
+            set(dest,
+                start + 4L,
+                size,
+                size <= SHORT_SET_SIZE ?
+                        null :
+                        BLOCK.get());
+        }
 
         return size > 0;
     }
 
+    /**
+     * Sets {@code size} elements starting from {@code from} in {@code dest}
+     * reading them by blocks through {@code block} or one by one if there is
+     * a few of them
+     *
+     * @return position after the last element
+     */
+    private long set(
+            @NotNull
+            final BitSet dest,
+            long from,
+            int size,
+            @Nullable
+            final int[] block) {
+        if (size <= SHORT_SET_SIZE) {
+            for (int i = 0; i < size; i++) {
+                dest.set(elements.getInt(from));
+                from += 4L;
+            }
+
+            return from;
+        }
+
+        assert block != null;
+
+        while (size > 0) {
+            final int count = Math.min(size, block.length);
+            elements.getInts(from, block, 0, count);
+            for (int i = 0; i < count; i++)
+                dest.set(block[i]);
+            from += ((long) count) << 2;
+            size -= count;
+        }
+
+        return from;
+    }
+
     @Override
     public boolean getFrom(
             @NotNull
@@ -92,14 +148,11 @@ public final class IntIndexToIndexMultiMap implements IndexToIndexMultiMap {
 
         assert remaining <= Integer.MAX_VALUE;
 
+        final int[] block = BLOCK.get();
         while (current < remaining) {
-            int size = elements.getInt(current);
-            current += 4L;
+            final int size = elements.getInt(current);
             result |= size > 0;
-            for (; 0 < size; size--) {
-                dest.set(elements.getInt(current));
-                current += 4L;
-            }
+            current = set(dest, current + 4L, size, block);
         }
 
         return result;
@@ -112,16 +165,13 @@ public final class IntIndexToIndexMultiMap implements IndexToIndexMultiMap {
             final int count) {
         boolean result = false;
 
+        final int[] block = BLOCK.get();
         long current = from;
         int remaining = count;
         while (remaining > 0) {
-            int size = elements.getInt(current);
-            current += 4L;
+            final int size = elements.getInt(current);
             result |= size > 0;
-            for (; 0 < size; size--) {
-                dest.set(elements.getInt(current));
-                current += 4L;
-            }
+            current = set(dest, current + 4L, size, block);
             remaining--;
         }
 
@@ -159,6 +209,46 @@ public final class IntIndexToIndexMultiMap implements IndexToIndexMultiMap {
         return keysCount;
     }
 
+    /**
+     * Exact value, because each posting list occupies a size prefix and its
+     * elements between adjacent offsets
+     */
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive <= toExclusive &&
+               toExclusive <= keysCount;
+
+        final long start = offset(fromInclusive);
+        final long end = offset(toExclusive);
+
+        return ((end - start) >>> 2) - (toExclusive - fromInclusive);
+    }
+
+    private long offset(final int key) {
+        return key == keysCount ?
+                elements.limit() :
+                offsets.getLong(((long) key) << 3);
+    }
+
+    /**
+     * Galloping search over the elements
+     */
+    @NotNull
+    @Override
+    public PostingIterator iterator(final int key) {
+        assert 0 <= key && key < keysCount;
+
+        final long start = offset(key);
+
+        return new IntListPostingIterator(
+                elements,
+                start + 4L,
+                elements.getInt(start));
+    }
+
     @Override
     public String toString() {
         return "IntIndexToIndexMultiMap{" +
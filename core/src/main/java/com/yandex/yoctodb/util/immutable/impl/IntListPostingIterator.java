@@ -0,0 +1,93 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link PostingIterator} over a sorted list of {@code int}s advancing by
+ * galloping search, so that only a logarithmic number of elements is read
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+final class IntListPostingIterator implements PostingIterator {
+    @NotNull
+    private final Buffer elements;
+    private final long first;
+    private final int size;
+    // Index of the current element
+    private int i = -1;
+    private int current = -1;
+
+    /**
+     * @param elements buffer with the list
+     * @param first    position of the first element
+     * @param size     number of elements
+     */
+    IntListPostingIterator(
+            @NotNull
+            final Buffer elements,
+            final long first,
+            final int size) {
+        assert size >= 0;
+
+        this.elements = elements;
+        this.first = first;
+        this.size = size;
+    }
+
+    private int element(final int index) {
+        return elements.getInt(first + (((long) index) << 2));
+    }
+
+    private int moveTo(final int index) {
+        i = index;
+        return current = index < size ? element(index) : NO_MORE_VALUES;
+    }
+
+    @Override
+    public int next() {
+        return i < size ? moveTo(i + 1) : NO_MORE_VALUES;
+    }
+
+    @Override
+    public int advance(final int target) {
+        if (current >= target)
+            return current;
+
+        // Galloping to the range containing the target
+        int lo = i + 1;
+        int step = 1;
+        int hi = lo;
+        while (hi < size && element(hi) < target) {
+            lo = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        if (hi > size)
+            hi = size;
+
+        // Binary search for the first element not less than target
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (element(mid) < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return moveTo(lo);
+    }
+}
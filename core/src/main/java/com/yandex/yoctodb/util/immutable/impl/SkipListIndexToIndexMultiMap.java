@@ -0,0 +1,494 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads {@link com.yandex.yoctodb.util.mutable.impl.SkipListIndexToIndexMultiMap}
+ * decoding the whole sets as a single stream of gaps or advancing through the
+ * skip pointers block by block
+ *
+ * @author incubos
+ */
+@Immutable
+public final class SkipListIndexToIndexMultiMap
+        implements IndexToIndexMultiMap {
+    private static final int BLOCK_SIZE =
+            com.yandex.yoctodb.util.mutable.impl.SkipListIndexToIndexMultiMap.BLOCK_SIZE;
+    // The longest int encoding
+    private static final int MAX_VAR_INT_SIZE = 5;
+
+    private final int keysCount;
+    @NotNull
+    private final Buffer offsets;
+    @NotNull
+    private final Buffer elements;
+
+    @NotNull
+    public static SkipListIndexToIndexMultiMap from(
+            @NotNull
+            final Buffer buf) {
+        final int keysCount = buf.getInt();
+        final Buffer offsets = buf.slice((keysCount + 1L) << 3);
+        final Buffer elements =
+                buf.slice().position(offsets.remaining()).slice();
+
+        return new SkipListIndexToIndexMultiMap(
+                keysCount,
+                offsets,
+                elements);
+    }
+
+    private SkipListIndexToIndexMultiMap(
+            final int keysCount,
+            @NotNull
+            final Buffer offsets,
+            @NotNull
+            final Buffer elements) {
+        assert keysCount >= 0 : "Negative keys count";
+
+        this.keysCount = keysCount;
+        this.offsets = offsets;
+        this.elements = elements;
+    }
+
+    private long offset(final int key) {
+        assert 0 <= key && key <= keysCount;
+
+        return offsets.getLong(((long) key) << 3);
+    }
+
+    private int size(final int key) {
+        return elements.getInt(offset(key));
+    }
+
+    private static int skipsCount(final int size) {
+        return size == 0 ? 0 : (size - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * @return position of the first gap of the set
+     */
+    private long gaps(
+            final long offset,
+            final int size) {
+        return offset + 4L + 8L * skipsCount(size);
+    }
+
+    /**
+     * Sets the values of the keys from the range in {@code dest}
+     */
+    private boolean fill(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        boolean result = false;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            final long offset = offset(key);
+            int size = elements.getInt(offset);
+            if (size == 0)
+                continue;
+
+            result = true;
+            final VarIntDecoder decoder =
+                    new VarIntDecoder(
+                            elements,
+                            gaps(offset, size),
+                            offset(key + 1));
+            int value = 0;
+            while (size > 0) {
+                value += decoder.next();
+                dest.set(value);
+                size--;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean get(
+            @NotNull
+            final BitSet dest,
+            final int key) {
+        assert 0 <= key && key < keysCount;
+
+        return fill(dest, key, key + 1);
+    }
+
+    @Override
+    public boolean getFrom(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive) {
+        assert 0 <= fromInclusive && fromInclusive < keysCount;
+
+        return fill(dest, fromInclusive, keysCount);
+    }
+
+    @Override
+    public boolean getTo(
+            @NotNull
+            final BitSet dest,
+            final int toExclusive) {
+        assert 0 < toExclusive && toExclusive <= keysCount;
+
+        return fill(dest, 0, toExclusive);
+    }
+
+    @Override
+    public boolean getBetween(
+            @NotNull
+            final BitSet dest,
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive < toExclusive &&
+               toExclusive <= keysCount;
+
+        return fill(dest, fromInclusive, toExclusive);
+    }
+
+    @Override
+    public int getKeysCount() {
+        return keysCount;
+    }
+
+    /**
+     * Exact value reading only the sizes of the sets
+     */
+    @Override
+    public long estimateBetween(
+            final int fromInclusive,
+            final int toExclusive) {
+        assert 0 <= fromInclusive &&
+               fromInclusive <= toExclusive &&
+               toExclusive <= keysCount;
+
+        long result = 0L;
+        for (int key = fromInclusive; key < toExclusive; key++) {
+            result += size(key);
+        }
+
+        return result;
+    }
+
+    /**
+     * Searches the skip pointers for the block and decodes just that block
+     */
+    @NotNull
+    @Override
+    public PostingIterator iterator(final int key) {
+        assert 0 <= key && key < keysCount;
+
+        return new SkipListPostingIterator(offset(key), offset(key + 1));
+    }
+
+    @Nullable
+    private IntToIntArray getFilteredValues(
+            final int key,
+            @NotNull
+            final BitSet valueFilter) {
+        assert 0 <= key && key < keysCount;
+
+        final long offset = offset(key);
+        final int size = elements.getInt(offset);
+
+        assert size > 0;
+
+        final VarIntDecoder decoder =
+                new VarIntDecoder(
+                        elements,
+                        gaps(offset, size),
+                        offset(key + 1));
+
+        int[] values = null;
+        int count = 0;
+
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            value += decoder.next();
+            if (valueFilter.get(value)) {
+                // Lazy allocation
+                if (values == null) {
+                    values = new int[size - i];
+                }
+                values[count] = value;
+                count++;
+            }
+        }
+
+        if (values == null) {
+            return null;
+        } else {
+            return new IntToIntArray(key, values, count);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> ascending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = 0;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key < keysCount) {
+                    next = getFilteredValues(key++, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public Iterator<IntToIntArray> descending(
+            @NotNull
+            final BitSet valueFilter) {
+        return new Iterator<IntToIntArray>() {
+            private int key = keysCount - 1;
+            private IntToIntArray next = null;
+
+            private void advance() {
+                while (next == null && key >= 0) {
+                    next = getFilteredValues(key--, valueFilter);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+
+                advance();
+
+                return next != null;
+            }
+
+            @Override
+            public IntToIntArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final IntToIntArray result = next;
+                next = null;
+
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "Removal not supported");
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "SkipListIndexToIndexMultiMap{" +
+               "keysCount=" + keysCount +
+               '}';
+    }
+
+    /**
+     * Decodes the values of a set block by block
+     */
+    @NotThreadSafe
+    private final class SkipListPostingIterator implements PostingIterator {
+        private final int size;
+        private final int blocks;
+        private final long skips;
+        private final long gaps;
+        private final long end;
+        @NotNull
+        private final int[] values = new int[BLOCK_SIZE];
+        @NotNull
+        private final byte[] bytes;
+        // Decoded block
+        private int block = -1;
+        private int count = 0;
+        // Index of the current value in the block
+        private int i = -1;
+        private int current = -1;
+
+        SkipListPostingIterator(
+                final long offset,
+                final long end) {
+            this.size = elements.getInt(offset);
+            this.blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.skips = offset + 4L;
+            this.gaps = gaps(offset, size);
+            this.end = end;
+            this.bytes =
+                    new byte[(int) Math.min(
+                            BLOCK_SIZE * MAX_VAR_INT_SIZE,
+                            end - gaps)];
+        }
+
+        /**
+         * @return the last value of the block before the {@code block}
+         */
+        private int base(final int block) {
+            assert 0 < block && block < blocks;
+
+            return elements.getInt(skips + 8L * (block - 1));
+        }
+
+        private long blockStart(final int block) {
+            assert 0 <= block && block <= blocks;
+
+            if (block == 0)
+                return gaps;
+            else if (block == blocks)
+                return end;
+            else
+                return gaps + elements.getInt(skips + 8L * (block - 1) + 4L);
+        }
+
+        private void decode(final int block) {
+            assert block < blocks;
+
+            final long from = blockStart(block);
+            final int length = (int) (blockStart(block + 1) - from);
+            elements.slice(from, length).get(bytes, 0, length);
+
+            this.block = block;
+            this.count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+            this.i = -1;
+
+            int value = block == 0 ? 0 : base(block);
+            int position = 0;
+            for (int j = 0; j < count; j++) {
+                byte b = bytes[position++];
+                int gap = b & 0x7F;
+                int shift = 7;
+                while (b < 0) {
+                    b = bytes[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                }
+                value += gap;
+                values[j] = value;
+            }
+
+            assert position == length;
+        }
+
+        @Override
+        public int next() {
+            if (current == NO_MORE_VALUES)
+                return NO_MORE_VALUES;
+
+            if (i + 1 == count) {
+                if (block + 1 == blocks)
+                    return current = NO_MORE_VALUES;
+
+                decode(block + 1);
+            }
+
+            return current = values[++i];
+        }
+
+        /**
+         * @return the first block after the current one with the last value
+         * not less than {@code target}, i.e. the only block which might
+         * contain the target
+         */
+        private int search(final int target) {
+            // The last value of block b is the base of block b + 1,
+            // the last block is always a candidate
+            int lo = block + 1;
+            int step = 1;
+            int hi = lo;
+            while (hi < blocks - 1 && base(hi + 1) < target) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            if (hi > blocks - 1)
+                hi = blocks - 1;
+
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (base(mid + 1) < target)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+
+            return lo;
+        }
+
+        @Override
+        public int advance(final int target) {
+            if (current >= target)
+                return current;
+
+            if (count == 0 || values[count - 1] < target) {
+                if (block + 1 >= blocks)
+                    return current = NO_MORE_VALUES;
+
+                decode(search(target));
+            }
+
+            // Scanning the block
+            do {
+                if (++i == count)
+                    return current = NO_MORE_VALUES;
+            } while (values[i] < target);
+
+            return current = values[i];
+        }
+    }
+}
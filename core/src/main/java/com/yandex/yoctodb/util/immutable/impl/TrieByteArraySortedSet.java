@@ -15,6 +15,9 @@ import com.yandex.yoctodb.util.common.BufferIterator;
 import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+import java.util.function.Consumer;
+
 import static com.yandex.yoctodb.util.common.TrieNodeMetadata.*;
 
 /**
@@ -56,6 +59,95 @@ public class TrieByteArraySortedSet implements ByteArraySortedSet {
         return keysCount;
     }
 
+    /**
+     * Visits all the keys in ascending order, i.e. the n-th visited key has
+     * index n.
+     * Complexity: O(trie size)
+     *
+     * @param consumer receives a copy of every key
+     */
+    public void forEach(@NotNull final Consumer<byte[]> consumer) {
+        if (keysCount > 0) {
+            forEach(0L, new byte[16], 0, consumer);
+        }
+    }
+
+    /**
+     * @return the key buffer which might have been grown
+     */
+    private byte[] forEach(long movingOffset,
+                           byte[] key,
+                           int length,
+                           @NotNull final Consumer<byte[]> consumer) {
+        final int metadata = Byte.toUnsignedInt(nodes.get(movingOffset));
+        movingOffset += Byte.BYTES;
+
+        if (hasPrefix(metadata)) { // there is a prefix, append it to the key
+            final int prefixSize = nodes.getInt(movingOffset);
+            movingOffset += Integer.BYTES;
+            key = ensureCapacity(key, length + prefixSize);
+            nodes.slice(movingOffset, prefixSize).get(key, length, prefixSize);
+            length += prefixSize;
+            movingOffset += prefixSize * Byte.BYTES;
+        }
+
+        if (hasValue(metadata)) { // the key ends here and precedes the keys below
+            movingOffset += Integer.BYTES;
+            consumer.accept(Arrays.copyOf(key, length));
+        }
+
+        key = ensureCapacity(key, length + 1);
+        switch (edgeType(metadata)) {
+            case EDGES_SINGLE: {
+                key[length] = nodes.get(movingOffset++);
+                key = forEach(nodes.getLong(movingOffset), key, length + 1, consumer);
+                break;
+            }
+            case EDGES_BITSET: {
+                int min = Byte.toUnsignedInt(nodes.get(movingOffset++));
+                int max = Byte.toUnsignedInt(nodes.get(movingOffset++));
+                final long bitsetOffset = movingOffset;
+                movingOffset += BufferBitSet.arraySize(max - min + 1) * Long.BYTES;
+                int index = 0;
+                for (int i = 0; i <= max - min; i++) {
+                    if (BufferBitSet.get(nodes, bitsetOffset, i)) {
+                        key[length] = (byte) (min + i);
+                        key = forEach(
+                                nodes.getLong(movingOffset + index * Long.BYTES),
+                                key,
+                                length + 1,
+                                consumer);
+                        index++;
+                    }
+                }
+                break;
+            }
+            case EDGES_CONDENSED: {
+                int min = Byte.toUnsignedInt(nodes.get(movingOffset++));
+                int max = Byte.toUnsignedInt(nodes.get(movingOffset++));
+                for (int i = 0; i <= max - min; i++) {
+                    key[length] = (byte) (min + i);
+                    key = forEach(
+                            nodes.getLong(movingOffset + i * Long.BYTES),
+                            key,
+                            length + 1,
+                            consumer);
+                }
+                break;
+            }
+            default:
+                // Terminal node
+        }
+
+        return key;
+    }
+
+    private static byte[] ensureCapacity(final byte[] key, final int length) {
+        return key.length >= length ?
+                key :
+                Arrays.copyOf(key, Math.max(length, 2 * key.length));
+    }
+
     /**
      * We unable to provide get() implementation since
      * there is no continuous buffer with key value.
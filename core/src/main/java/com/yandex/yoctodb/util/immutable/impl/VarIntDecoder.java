@@ -0,0 +1,92 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decodes variable length integers from a range of {@link Buffer}
+ * copying it by blocks
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+final class VarIntDecoder {
+    /**
+     * Max number of bytes read from {@link Buffer} at once
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    @NotNull
+    private final Buffer buffer;
+    private final long limit;
+    @NotNull
+    private final byte[] block;
+    // Buffer position of the next block
+    private long position;
+    private int blockPosition = 0;
+    private int blockLimit = 0;
+
+    VarIntDecoder(
+            @NotNull
+            final Buffer buffer,
+            final long from,
+            final long to) {
+        assert 0 <= from && from <= to && to <= buffer.limit();
+
+        this.buffer = buffer;
+        this.position = from;
+        this.limit = to;
+        this.block = new byte[(int) Math.min(BLOCK_SIZE, to - from)];
+    }
+
+    private byte nextByte() {
+        if (blockPosition == blockLimit) {
+            final int length = (int) Math.min(block.length, limit - position);
+            if (length == 0)
+                throw new IllegalStateException("Truncated value");
+
+            buffer.slice(position, length).get(block, 0, length);
+            position += length;
+            blockPosition = 0;
+            blockLimit = length;
+        }
+
+        return block[blockPosition++];
+    }
+
+    int next() {
+        // Fast path for the values within the current block
+        if (blockLimit - blockPosition >= 5) {
+            byte b = block[blockPosition++];
+            int result = b & 0x7F;
+            int shift = 7;
+            while (b < 0) {
+                b = block[blockPosition++];
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            return result;
+        }
+
+        byte b = nextByte();
+        int result = b & 0x7F;
+        int shift = 7;
+        while (b < 0) {
+            b = nextByte();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return result;
+    }
+}
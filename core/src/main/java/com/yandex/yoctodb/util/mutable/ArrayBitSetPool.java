@@ -32,4 +32,30 @@ public interface ArrayBitSetPool {
     void returnSet(
             @NotNull
             ArrayBitSet set);
+
+    /**
+     * Borrow a zeroed compressed {@link BitSet} instance suitable for sparse
+     * sets of bits, i.e. taking memory proportional to the bits set instead
+     * of {@code size}.
+     *
+     * Falls back to {@link #borrowSet(int)} by default.
+     *
+     * @param size size of {@link BitSet}
+     * @return An instance of {@link BitSet}
+     */
+    @NotNull
+    default BitSet borrowSparseSet(final int size) {
+        return borrowSet(size);
+    }
+
+    /**
+     * Return a set borrowed by {@link #borrowSparseSet(int)}.
+     *
+     * Falls back to {@link #returnSet(ArrayBitSet)} by default.
+     */
+    default void returnSparseSet(
+            @NotNull
+            final BitSet set) {
+        returnSet((ArrayBitSet) set);
+    }
 }
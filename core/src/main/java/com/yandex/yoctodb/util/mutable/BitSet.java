@@ -153,6 +153,40 @@ public interface BitSet {
             long startPosition,
             int bitSetSizeInLongs);
 
+    /**
+     * Modify current bit set by applying bitwise {@code |} operation with
+     * the result of bitwise {@code ^} of two bit sets.
+     *
+     * The default implementation sets the bits of the difference one by
+     * one, so the implementations override it to merge whole words.
+     *
+     * @param longArrayBitSetsInByteBuffer source bit sets
+     * @param firstPosition                position of the first bit set
+     * @param secondPosition               position of the second bit set
+     * @param bitSetSizeInLongs            bit set size in {@code long}s
+     *
+     * @return whether there are nonzero bits
+     */
+    default boolean orXor(
+            @NotNull
+            final Buffer longArrayBitSetsInByteBuffer,
+            final long firstPosition,
+            final long secondPosition,
+            final int bitSetSizeInLongs) {
+        for (int i = 0; i < bitSetSizeInLongs; i++) {
+            final long offset = ((long) i) << 3;
+            long word =
+                    longArrayBitSetsInByteBuffer.getLong(firstPosition + offset) ^
+                    longArrayBitSetsInByteBuffer.getLong(secondPosition + offset);
+            while (word != 0L) {
+                set((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+
+        return !isEmpty();
+    }
+
     /**
      * Checks whether there are nonzero bits in current bit set
      *
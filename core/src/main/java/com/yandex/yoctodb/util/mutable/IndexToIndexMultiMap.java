@@ -12,6 +12,8 @@ package com.yandex.yoctodb.util.mutable;
 
 import net.jcip.annotations.NotThreadSafe;
 import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Integer to Integer multi map
@@ -20,4 +22,9 @@ import com.yandex.yoctodb.util.OutputStreamWritable;
  */
 @NotThreadSafe
 public interface IndexToIndexMultiMap extends OutputStreamWritable {
+    /**
+     * @return type written before the multimap
+     */
+    @NotNull
+    V1DatabaseFormat.MultiMapType getType();
 }
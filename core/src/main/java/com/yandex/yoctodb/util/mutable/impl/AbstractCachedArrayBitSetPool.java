@@ -12,6 +12,7 @@ package com.yandex.yoctodb.util.mutable.impl;
 
 import com.yandex.yoctodb.util.mutable.ArrayBitSet;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
 
@@ -73,4 +74,23 @@ abstract class AbstractCachedArrayBitSetPool implements ArrayBitSetPool {
             final ArrayBitSet set) {
         getCache().addFirst(set.toArray());
     }
+
+    /**
+     * Sparse sets are not cached, because they take memory proportional to
+     * their contents
+     */
+    @NotNull
+    @Override
+    public final BitSet borrowSparseSet(final int size) {
+        assert size > 0;
+
+        return new RoaringBitSet(size);
+    }
+
+    @Override
+    public final void returnSparseSet(
+            @NotNull
+            final BitSet set) {
+        // Left to GC
+    }
 }
@@ -2,6 +2,7 @@ package com.yandex.yoctodb.util.mutable.impl;
 
 import com.yandex.yoctodb.util.mutable.ArrayBitSet;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
 
@@ -31,4 +32,17 @@ public final class AllocatingArrayBitSetPool implements ArrayBitSetPool {
             final ArrayBitSet set) {
         // Do nothing
     }
+
+    @NotNull
+    @Override
+    public BitSet borrowSparseSet(final int size) {
+        return new RoaringBitSet(size);
+    }
+
+    @Override
+    public void returnSparseSet(
+            @NotNull
+            final BitSet set) {
+        // Do nothing
+    }
 }
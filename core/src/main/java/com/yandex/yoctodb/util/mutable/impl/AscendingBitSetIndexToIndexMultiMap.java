@@ -47,6 +47,12 @@ public class AscendingBitSetIndexToIndexMultiMap implements IndexToIndexMultiMap
         this.documentsCount = documentsCount;
     }
 
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.ASCENDING_BIT_SET_BASED;
+    }
+
     @Override
     public long getSizeInBytes() {
         /*
@@ -45,6 +45,12 @@ public final class BitSetIndexToIndexMultiMap implements IndexToIndexMultiMap {
         this.documentsCount = documentsCount;
     }
 
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.LONG_ARRAY_BIT_SET_BASED;
+    }
+
     @Override
     public long getSizeInBytes() {
         return 4L + // Type
@@ -0,0 +1,241 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * {@link IndexToIndexMultiMap} implementation storing ascending values of
+ * each key as gaps between them encoded as variable length integers (7 bits
+ * per byte, least significant group first, the highest bit set in all the
+ * bytes except the last one)
+ *
+ * Format:
+ *
+ * <pre>
+ * {@code
+ * type (int)
+ * keys count (int)
+ * offset size (int) -- 4 or 8 bytes
+ * offsets -- keys count + 1 offsets of the sets
+ *   offset1 (int or long)
+ *   offset2 (int or long)
+ *   ...
+ * sets
+ *   set1
+ *     size (varint)
+ *     value1 (varint)
+ *     value2 - value1 (varint)
+ *     ...
+ *   set2
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class DeltaVarIntIndexToIndexMultiMap
+        implements IndexToIndexMultiMap {
+    private static final int WRITE_BUFFER_SIZE = 8 * 1024;
+    // The longest int encoding
+    private static final int MAX_VAR_INT_SIZE = 5;
+
+    @NotNull
+    private final Collection<? extends Collection<Integer>> map;
+    private final long elementsSizeInBytes;
+    private final int offsetSize;
+
+    /**
+     * @param map values of every key in ascending order
+     */
+    public DeltaVarIntIndexToIndexMultiMap(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map) {
+        this(map, elementsSizeInBytes(map));
+    }
+
+    /**
+     * @param map                 values of every key in ascending order
+     * @param elementsSizeInBytes total size of the sets calculated with
+     *                            {@link #setSizeInBytes(int, long)}
+     */
+    DeltaVarIntIndexToIndexMultiMap(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map,
+            final long elementsSizeInBytes) {
+        this.map = map;
+        this.elementsSizeInBytes = elementsSizeInBytes;
+        this.offsetSize =
+                elementsSizeInBytes <= Integer.MAX_VALUE ?
+                        Integer.BYTES :
+                        Long.BYTES;
+    }
+
+    private static long elementsSizeInBytes(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map) {
+        long result = 0L;
+        for (Collection<Integer> values : map) {
+            result += setSizeInBytes(values.size(), gapsSizeInBytes(values));
+        }
+
+        return result;
+    }
+
+    static int varIntSize(final int value) {
+        assert value >= 0;
+
+        if (value < (1 << 7))
+            return 1;
+        if (value < (1 << 14))
+            return 2;
+        if (value < (1 << 21))
+            return 3;
+        if (value < (1 << 28))
+            return 4;
+        return MAX_VAR_INT_SIZE;
+    }
+
+    /**
+     * @return the size of the gaps between {@code values} encoded as
+     * variable length integers
+     */
+    static long gapsSizeInBytes(
+            @NotNull
+            final Collection<Integer> values) {
+        long result = 0L;
+        int previous = 0;
+        for (int value : values) {
+            if (value < previous)
+                throw new IllegalArgumentException(
+                        "Values are not in ascending order");
+
+            result += varIntSize(value - previous);
+            previous = value;
+        }
+
+        return result;
+    }
+
+    static long setSizeInBytes(
+            final int size,
+            final long gapsSizeInBytes) {
+        return varIntSize(size) + gapsSizeInBytes;
+    }
+
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.DELTA_VAR_INT_BASED;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 4L + // Type
+               4L + // Keys count
+               4L + // Offset size
+               (long) offsetSize * (map.size() + 1) + // Offsets
+               elementsSizeInBytes;
+    }
+
+    @Override
+    public void writeTo(
+            @NotNull
+            final OutputStream os) throws IOException {
+        // Type
+        os.write(
+                Ints.toByteArray(
+                        V1DatabaseFormat.MultiMapType.DELTA_VAR_INT_BASED.getCode()));
+
+        // Keys count
+        os.write(Ints.toByteArray(map.size()));
+
+        // Offsets
+        os.write(Ints.toByteArray(offsetSize));
+        long offset = 0L;
+        for (Collection<Integer> values : map) {
+            writeOffset(os, offset);
+            offset += setSizeInBytes(values.size(), gapsSizeInBytes(values));
+        }
+        writeOffset(os, offset);
+
+        assert offset == elementsSizeInBytes;
+
+        // Sets
+        final byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        int position = 0;
+        for (Collection<Integer> values : map) {
+            if (position + MAX_VAR_INT_SIZE > buffer.length) {
+                os.write(buffer, 0, position);
+                position = 0;
+            }
+            position = writeVarInt(buffer, position, values.size());
+
+            int previous = 0;
+            for (int value : values) {
+                if (position + MAX_VAR_INT_SIZE > buffer.length) {
+                    os.write(buffer, 0, position);
+                    position = 0;
+                }
+                position = writeVarInt(buffer, position, value - previous);
+                previous = value;
+            }
+        }
+        os.write(buffer, 0, position);
+    }
+
+    private void writeOffset(
+            @NotNull
+            final OutputStream os,
+            final long offset) throws IOException {
+        if (offsetSize == Integer.BYTES)
+            os.write(Ints.toByteArray((int) offset));
+        else
+            os.write(Longs.toByteArray(offset));
+    }
+
+    /**
+     * @return position after the written value
+     */
+    private static int writeVarInt(
+            @NotNull
+            final byte[] buffer,
+            int position,
+            int value) {
+        assert value >= 0;
+
+        while (value >= 0x80) {
+            buffer[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "DeltaVarIntIndexToIndexMultiMap{" +
+               "keys=" + map.size() +
+               ", elementsSizeInBytes=" + elementsSizeInBytes +
+               '}';
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * {@link IndexToIndexMultiMap} implementation storing ascending values of
+ * each key in Elias-Fano encoding.
+ *
+ * Every value of a set of {@code n} values from {@code [0, documents count)}
+ * is split into {@code l = floor(log2(documents count / n))} low bits stored
+ * as is and the high bits stored as unary coded gaps, so that {@code i}-th
+ * value has its high bits equal to the position of {@code i}-th one bit
+ * minus {@code i}. The bits are packed into {@code long}s least
+ * significant bit first.
+ *
+ * Format:
+ *
+ * <pre>
+ * {@code
+ * type (int)
+ * keys count (int)
+ * documents count (int)
+ * offsets -- keys count + 1 offsets of the sets
+ *   offset1 (long)
+ *   offset2 (long)
+ *   ...
+ * sets
+ *   set1
+ *     size (int)
+ *     low bits width (int)
+ *     low bits (long * ceil(size * width / 64))
+ *     high bits (long * ceil((size + (documents count - 1) >> width + 1) / 64))
+ *   set2
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class EliasFanoIndexToIndexMultiMap
+        implements IndexToIndexMultiMap {
+    @NotNull
+    private final Collection<? extends Collection<Integer>> map;
+    private final int documentsCount;
+    private final long elementsSizeInBytes;
+
+    /**
+     * @param map            values of every key in ascending order
+     * @param documentsCount upper bound (exclusive) of the values
+     */
+    public EliasFanoIndexToIndexMultiMap(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map,
+            final int documentsCount) {
+        if (documentsCount <= 0)
+            throw new IllegalArgumentException("Nonpositive documents count");
+
+        this.map = map;
+        this.documentsCount = documentsCount;
+
+        long size = 0L;
+        for (Collection<Integer> values : map) {
+            size += setSizeInBytes(values.size());
+        }
+        this.elementsSizeInBytes = size;
+    }
+
+    /**
+     * @return low bits width of a set of {@code size} values
+     */
+    private int lowBitsWidth(final int size) {
+        if (size == 0 || size >= documentsCount)
+            return 0;
+
+        return 31 - Integer.numberOfLeadingZeros(documentsCount / size);
+    }
+
+    private static int words(final long bits) {
+        return (int) ((bits + Long.SIZE - 1) >>> 6);
+    }
+
+    private int lowWords(final int size) {
+        return words((long) size * lowBitsWidth(size));
+    }
+
+    private int highWords(final int size) {
+        return words(
+                size + ((documentsCount - 1L) >>> lowBitsWidth(size)) + 1L);
+    }
+
+    private long setSizeInBytes(final int size) {
+        return 4L + // Size
+               4L + // Low bits width
+               8L * (lowWords(size) + highWords(size));
+    }
+
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.ELIAS_FANO_BASED;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 4L + // Type
+               4L + // Keys count
+               4L + // Documents count
+               8L * (map.size() + 1) + // Offsets
+               elementsSizeInBytes;
+    }
+
+    @Override
+    public void writeTo(
+            @NotNull
+            final OutputStream os) throws IOException {
+        // Type
+        os.write(
+                Ints.toByteArray(
+                        V1DatabaseFormat.MultiMapType.ELIAS_FANO_BASED.getCode()));
+
+        // Keys count
+        os.write(Ints.toByteArray(map.size()));
+
+        // Documents count
+        os.write(Ints.toByteArray(documentsCount));
+
+        // Offsets
+        long offset = 0L;
+        for (Collection<Integer> values : map) {
+            os.write(Longs.toByteArray(offset));
+            offset += setSizeInBytes(values.size());
+        }
+        os.write(Longs.toByteArray(offset));
+
+        assert offset == elementsSizeInBytes;
+
+        // Sets
+        for (Collection<Integer> values : map) {
+            writeSet(os, values);
+        }
+    }
+
+    private void writeSet(
+            @NotNull
+            final OutputStream os,
+            @NotNull
+            final Collection<Integer> values) throws IOException {
+        final int size = values.size();
+        final int width = lowBitsWidth(size);
+        final long mask = (1L << width) - 1L;
+        final long[] low = new long[lowWords(size)];
+        final long[] high = new long[highWords(size)];
+
+        long i = 0;
+        int previous = 0;
+        for (int value : values) {
+            if (value < previous)
+                throw new IllegalArgumentException(
+                        "Values are not in ascending order");
+            if (value >= documentsCount)
+                throw new IllegalArgumentException(
+                        "Value " + value + " is out of range");
+            previous = value;
+
+            // Low bits
+            if (width > 0) {
+                final long bit = i * width;
+                final int word = (int) (bit >>> 6);
+                final int shift = (int) (bit & 63);
+                final long bits = value & mask;
+                low[word] |= bits << shift;
+                if (shift + width > Long.SIZE)
+                    low[word + 1] |= bits >>> (Long.SIZE - shift);
+            }
+
+            // High bits
+            final long position = (value >>> width) + i;
+            high[(int) (position >>> 6)] |= 1L << position;
+
+            i++;
+        }
+
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(
+                        4 + // Size
+                        4 + // Low bits width
+                        8 * (low.length + high.length));
+        buffer.putInt(size);
+        buffer.putInt(width);
+        buffer.asLongBuffer().put(low).put(high);
+        os.write(buffer.array());
+    }
+
+    @Override
+    public String toString() {
+        return "EliasFanoIndexToIndexMultiMap{" +
+               "keys=" + map.size() +
+               ", documentsCount=" + documentsCount +
+               ", elementsSizeInBytes=" + elementsSizeInBytes +
+               '}';
+    }
+}
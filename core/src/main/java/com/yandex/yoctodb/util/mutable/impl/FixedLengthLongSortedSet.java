@@ -0,0 +1,134 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.mutable.ByteArraySortedSet;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link ByteArraySortedSet} with fixed size elements of at most
+ * {@link Longs#BYTES} bytes packed into a sorted {@code long[]} (see
+ * {@link UnsignedByteArrays#toUnsignedLong(UnsignedByteArray)}).
+ *
+ * Binary compatible with {@link FixedLengthByteArraySortedSet}.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class FixedLengthLongSortedSet implements ByteArraySortedSet {
+    private static final int WRITE_BUFFER_SIZE = 8 * 1024;
+
+    @NotNull
+    private final long[] elements;
+    private final int size;
+    private final int elementSize;
+
+    /**
+     * @param elements    distinct elements sorted as unsigned {@code long}s
+     * @param size        element count
+     * @param elementSize element size in bytes
+     */
+    public FixedLengthLongSortedSet(
+            @NotNull
+            final long[] elements,
+            final int size,
+            final int elementSize) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Empty set");
+        if (size > elements.length)
+            throw new IllegalArgumentException("Wrong size");
+        if (elementSize <= 0 || elementSize > Longs.BYTES)
+            throw new IllegalArgumentException(
+                    "Wrong element size " + elementSize);
+
+        this.elements = elements;
+        this.size = size;
+        this.elementSize = elementSize;
+    }
+
+    @Override
+    public int indexOf(
+            @NotNull
+            final UnsignedByteArray e) throws NoSuchElementException {
+        if (e.length() != elementSize)
+            throw new NoSuchElementException();
+
+        return indexOf(UnsignedByteArrays.toUnsignedLong(e));
+    }
+
+    public int indexOf(final long e) throws NoSuchElementException {
+        int from = 0;
+        int to = size - 1;
+        while (from <= to) {
+            final int middle = (from + to) >>> 1;
+            final int cmp = Long.compareUnsigned(elements[middle], e);
+            if (cmp < 0)
+                from = middle + 1;
+            else if (cmp > 0)
+                to = middle - 1;
+            else
+                return middle;
+        }
+
+        throw new NoSuchElementException();
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 4L + // Element size
+               4L + // Element count
+               (long) elementSize * size;
+    }
+
+    @Override
+    public void writeTo(
+            @NotNull
+            final OutputStream os) throws IOException {
+        // Element size
+        os.write(Ints.toByteArray(elementSize));
+
+        // Element count
+        os.write(Ints.toByteArray(size));
+
+        // Elements
+        final byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            if (position + elementSize > buffer.length) {
+                os.write(buffer, 0, position);
+                position = 0;
+            }
+
+            final long e = elements[i];
+            for (int shift = (elementSize - 1) << 3; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (e >>> shift);
+            }
+        }
+        os.write(buffer, 0, position);
+    }
+
+    @Override
+    public String toString() {
+        return "FixedLengthLongSortedSet{" +
+               "elementsCount=" + size +
+               ", elementSize=" + elementSize +
+               '}';
+    }
+}
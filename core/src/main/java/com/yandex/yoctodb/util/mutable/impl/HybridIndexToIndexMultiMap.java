@@ -0,0 +1,212 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.mutable.ArrayBitSet;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * {@link IndexToIndexMultiMap} implementation choosing the container of each
+ * key separately: the values of frequent keys are stored as
+ * {@link LongArrayBitSet}s and the values of rare ones are stored as sorted
+ * lists, whichever is smaller, so that the fields with a few huge keys and a
+ * long tail of rare ones pay neither for a bit set per key nor for long lists.
+ *
+ * Format:
+ *
+ * <pre>
+ * {@code
+ * type (int)
+ * keys count (int)
+ * bit set size in longs (int)
+ * offsets -- keys count + 1 offsets of the sets
+ *   offset1 (long)
+ *   offset2 (long)
+ *   ...
+ * sets
+ *   set1
+ *     size (int)
+ *     container (int) -- LIST or BIT_SET
+ *     value1 (int) ... -- for LIST
+ *     word1 (long) ... -- for BIT_SET
+ *   set2
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class HybridIndexToIndexMultiMap implements IndexToIndexMultiMap {
+    /**
+     * Container of the values sorted in ascending order
+     */
+    public static final int LIST = 0;
+    /**
+     * Container of the values as a bit set of all the documents
+     */
+    public static final int BIT_SET = 1;
+
+    @NotNull
+    private final Collection<? extends Collection<Integer>> map;
+    private final int documentsCount;
+    private final int bitSetSizeInLongs;
+    private final int bitSetKeysCount;
+    private final long elementsSizeInBytes;
+
+    /**
+     * @param map            values of every key in ascending order
+     * @param documentsCount upper bound (exclusive) of the values
+     */
+    public HybridIndexToIndexMultiMap(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map,
+            final int documentsCount) {
+        if (documentsCount <= 0)
+            throw new IllegalArgumentException("Nonpositive documents count");
+
+        this.map = map;
+        this.documentsCount = documentsCount;
+        this.bitSetSizeInLongs = LongArrayBitSet.arraySize(documentsCount);
+
+        int bitSets = 0;
+        long size = 0L;
+        for (Collection<Integer> values : map) {
+            final int container = container(values.size());
+            if (container == BIT_SET)
+                bitSets++;
+            size += setSizeInBytes(values.size(), container);
+        }
+        this.bitSetKeysCount = bitSets;
+        this.elementsSizeInBytes = size;
+    }
+
+    /**
+     * @return the smaller container of {@code size} values
+     */
+    private int container(final int size) {
+        return 4L * size > 8L * bitSetSizeInLongs ? BIT_SET : LIST;
+    }
+
+    private long setSizeInBytes(
+            final int size,
+            final int container) {
+        return 4L + // Size
+               4L + // Container
+               (container == BIT_SET ?
+                       8L * bitSetSizeInLongs :
+                       4L * size);
+    }
+
+    /**
+     * @return the number of keys with values stored as bit sets
+     */
+    public int getBitSetKeysCount() {
+        return bitSetKeysCount;
+    }
+
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.HYBRID_BASED;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 4L + // Type
+               4L + // Keys count
+               4L + // Bit set size in longs
+               8L * (map.size() + 1) + // Offsets
+               elementsSizeInBytes;
+    }
+
+    @Override
+    public void writeTo(
+            @NotNull
+            final OutputStream os) throws IOException {
+        // Type
+        os.write(
+                Ints.toByteArray(
+                        V1DatabaseFormat.MultiMapType.HYBRID_BASED.getCode()));
+
+        // Keys count
+        os.write(Ints.toByteArray(map.size()));
+
+        // Count longs in bit-set
+        os.write(Ints.toByteArray(bitSetSizeInLongs));
+
+        // Offsets
+        long offset = 0L;
+        for (Collection<Integer> values : map) {
+            os.write(Longs.toByteArray(offset));
+            offset +=
+                    setSizeInBytes(
+                            values.size(),
+                            container(values.size()));
+        }
+        os.write(Longs.toByteArray(offset));
+
+        assert offset == elementsSizeInBytes;
+
+        // Sets
+        final ArrayBitSet docs = LongArrayBitSet.zero(documentsCount);
+        for (Collection<Integer> values : map) {
+            final int size = values.size();
+            final int container = container(size);
+            os.write(Ints.toByteArray(size));
+            os.write(Ints.toByteArray(container));
+
+            if (container == BIT_SET) {
+                docs.clear();
+                for (int value : values) {
+                    if (value < 0 || value >= documentsCount)
+                        throw new IllegalArgumentException(
+                                "Value " + value + " is out of range");
+                    docs.set(value);
+                }
+                final long[] words = docs.toArray();
+                final ByteBuffer buffer = ByteBuffer.allocate(8 * words.length);
+                buffer.asLongBuffer().put(words);
+                os.write(buffer.array());
+            } else {
+                final ByteBuffer buffer = ByteBuffer.allocate(4 * size);
+                int previous = 0;
+                for (int value : values) {
+                    if (value < previous)
+                        throw new IllegalArgumentException(
+                                "Values are not in ascending order");
+                    previous = value;
+                    buffer.putInt(value);
+                }
+                os.write(buffer.array());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HybridIndexToIndexMultiMap{" +
+               "keys=" + map.size() +
+               ", bitSetKeys=" + bitSetKeysCount +
+               ", documentsCount=" + documentsCount +
+               '}';
+    }
+}
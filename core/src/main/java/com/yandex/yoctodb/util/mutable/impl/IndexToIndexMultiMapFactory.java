@@ -24,6 +24,19 @@ import java.util.Collection;
  * @author incubos
  */
 public final class IndexToIndexMultiMapFactory {
+    /**
+     * How many times {@link AscendingBitSetIndexToIndexMultiMap} might be
+     * larger than {@link EliasFanoIndexToIndexMultiMap} to be preferred for
+     * its constant time ranges
+     */
+    static final int ASCENDING_BIT_SET_SPACE_FACTOR = 8;
+
+    /**
+     * How many times {@link DeltaVarIntIndexToIndexMultiMap} should be
+     * smaller than the other posting lists to be preferred in spite of
+     * having no skip pointers
+     */
+    static final int SKIP_POINTERS_SPACE_FACTOR = 2;
 
     private IndexToIndexMultiMapFactory() {
         // Can't instantiate
@@ -61,25 +74,112 @@ public final class IndexToIndexMultiMapFactory {
         if (documentsCount <= 0)
             throw new IllegalArgumentException("Nonpositive documents count");
 
-        /**
-         * If all of the documents have exactly one value we can use {@link AscendingBitSetIndexToIndexMultiMap}
-         */
-        if (hasDocumentsWithMultipleKeys(valueToDocuments, documentsCount)) {
+        // Sizing the compressed posting lists and looking for documents
+        // with multiple keys in a single pass
+        final byte[] counters = new byte[documentsCount];
+        boolean multipleKeys = false;
+        long deltaVarIntSize = 0L;
+        long skipListSize = 0L;
+        for (Collection<Integer> documents : valueToDocuments) {
+            long gaps = 0L;
+            int previous = 0;
+            for (int document : documents) {
+                if (document < previous)
+                    throw new IllegalArgumentException(
+                            "Values are not in ascending order");
+                if (!multipleKeys) {
+                    if (counters[document] > 0)
+                        multipleKeys = true;
+                    else
+                        counters[document]++;
+                }
+
+                gaps += DeltaVarIntIndexToIndexMultiMap.varIntSize(
+                        document - previous);
+                previous = document;
+            }
+
+            deltaVarIntSize +=
+                    DeltaVarIntIndexToIndexMultiMap.setSizeInBytes(
+                            documents.size(),
+                            gaps);
+            skipListSize +=
+                    SkipListIndexToIndexMultiMap.setSizeInBytes(
+                            documents.size(),
+                            gaps);
+        }
+
+        // The rest of the candidates are sized by the set sizes only
+
+        if (multipleKeys) {
+            // Bit set or list chosen per key
+            final HybridIndexToIndexMultiMap hybrid =
+                    new HybridIndexToIndexMultiMap(
+                            valueToDocuments,
+                            documentsCount);
+
             if (((long) uniqueValuesCount) * documentsCount / Long.SIZE <
                     documentsCount * Integer.BYTES) {
                 // BitSet might be more effective
-                return buildIndexToIndexMultiMap(
-                        V1DatabaseFormat.MultiMapType.LONG_ARRAY_BIT_SET_BASED,
-                        valueToDocuments,
-                        documentsCount);
+                final IndexToIndexMultiMap bitSet =
+                        buildIndexToIndexMultiMap(
+                                V1DatabaseFormat.MultiMapType.LONG_ARRAY_BIT_SET_BASED,
+                                valueToDocuments,
+                                documentsCount);
+
+                // Unless most of the keys are rare
+                return hybrid.getSizeInBytes() * 2 < bitSet.getSizeInBytes() ?
+                        hybrid :
+                        bitSet;
             } else {
-                return buildIndexToIndexMultiMap(
-                        V1DatabaseFormat.MultiMapType.LIST_BASED,
-                        valueToDocuments,
-                        documentsCount);
+                // Compressed posting lists are usually much smaller.
+                // Gaps are stored with skip pointers to keep
+                // document-at-a-time intersection cheap.
+                IndexToIndexMultiMap result =
+                        new IntIndexToIndexMultiMap(valueToDocuments);
+                for (IndexToIndexMultiMap compressed :
+                        new IndexToIndexMultiMap[]{
+                                new SkipListIndexToIndexMultiMap(
+                                        valueToDocuments,
+                                        skipListSize),
+                                new EliasFanoIndexToIndexMultiMap(
+                                        valueToDocuments,
+                                        documentsCount)}) {
+                    if (compressed.getSizeInBytes() < result.getSizeInBytes())
+                        result = compressed;
+                }
+
+                // Plain gaps without skip pointers only if much smaller
+                final IndexToIndexMultiMap deltaVarInt =
+                        new DeltaVarIntIndexToIndexMultiMap(
+                                valueToDocuments,
+                                deltaVarIntSize);
+                if (deltaVarInt.getSizeInBytes() * SKIP_POINTERS_SPACE_FACTOR <
+                        result.getSizeInBytes())
+                    result = deltaVarInt;
+
+                // But frequent keys are much cheaper to read from bit sets
+                return hybrid.getBitSetKeysCount() > 0 &&
+                       hybrid.getSizeInBytes() < result.getSizeInBytes() * 2 ?
+                        hybrid :
+                        result;
             }
         } else {
-            return new AscendingBitSetIndexToIndexMultiMap(valueToDocuments, documentsCount);
+            final IndexToIndexMultiMap ascending =
+                    new AscendingBitSetIndexToIndexMultiMap(
+                            valueToDocuments,
+                            documentsCount);
+            final IndexToIndexMultiMap eliasFano =
+                    new EliasFanoIndexToIndexMultiMap(
+                            valueToDocuments,
+                            documentsCount);
+
+            // A bit set per key is quadratic for high cardinality fields
+            // (e.g. timestamps or prices)
+            return ascending.getSizeInBytes() <=
+                   eliasFano.getSizeInBytes() * ASCENDING_BIT_SET_SPACE_FACTOR ?
+                    ascending :
+                    eliasFano;
         }
     }
 
@@ -101,6 +201,14 @@ public final class IndexToIndexMultiMapFactory {
                     return new BitSetIndexToIndexMultiMap(valueToDocuments, documentsCount);
                 case ASCENDING_BIT_SET_BASED:
                     return buildIndexToIndexMultiMap(valueToDocuments, documentsCount);
+                case DELTA_VAR_INT_BASED:
+                    return new DeltaVarIntIndexToIndexMultiMap(valueToDocuments);
+                case ELIAS_FANO_BASED:
+                    return new EliasFanoIndexToIndexMultiMap(valueToDocuments, documentsCount);
+                case SKIP_LIST_BASED:
+                    return new SkipListIndexToIndexMultiMap(valueToDocuments);
+                case HYBRID_BASED:
+                    return new HybridIndexToIndexMultiMap(valueToDocuments, documentsCount);
             }
         }
 
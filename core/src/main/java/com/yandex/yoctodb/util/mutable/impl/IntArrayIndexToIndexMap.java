@@ -0,0 +1,98 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.google.common.primitives.Ints;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMap;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * {@link IndexToIndexMap} implementation for continuous keys based on
+ * {@code int[]} and binary compatible with {@link IntIndexToIndexMap}
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class IntArrayIndexToIndexMap implements IndexToIndexMap {
+    private static final int ABSENT = -1;
+
+    @NotNull
+    private int[] elements;
+    private int size = 0;
+
+    public IntArrayIndexToIndexMap(final int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Negative size");
+
+        this.elements = new int[expectedSize];
+        Arrays.fill(elements, ABSENT);
+    }
+
+    @Override
+    public void put(final int key, final int value) {
+        if (key < 0)
+            throw new IllegalArgumentException("Negative key");
+        if (value < 0)
+            throw new IllegalArgumentException("Negative value");
+
+        if (key >= elements.length) {
+            final int previousLength = elements.length;
+            elements =
+                    Arrays.copyOf(
+                            elements,
+                            Math.max(key + 1, 2 * previousLength));
+            Arrays.fill(elements, previousLength, elements.length, ABSENT);
+        }
+
+        final int previous = elements[key];
+        if (previous != ABSENT)
+            throw new IllegalArgumentException(
+                    "Key <" + key + "> was already bound to <" + previous +
+                    ">");
+
+        elements[key] = value;
+        size++;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 4L + 4L * size;
+    }
+
+    @Override
+    public void writeTo(
+            @NotNull
+            final OutputStream os) throws IOException {
+        // Elements count
+        os.write(Ints.toByteArray(size));
+
+        // Values
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == ABSENT) {
+                throw new IllegalStateException("Indexes are not continuous");
+            }
+
+            os.write(Ints.toByteArray(elements[i]));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IntArrayIndexToIndexMap{" +
+               "elements=" + size +
+               '}';
+    }
+}
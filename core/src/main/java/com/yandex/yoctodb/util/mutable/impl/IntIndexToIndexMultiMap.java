@@ -70,6 +70,12 @@ public final class IntIndexToIndexMultiMap implements IndexToIndexMultiMap {
                 4L * elements;    // set elements
     }
 
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.LIST_BASED;
+    }
+
     @Override
     public long getSizeInBytes() {
         return sizeInBytes;
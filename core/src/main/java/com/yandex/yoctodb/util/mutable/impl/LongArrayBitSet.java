@@ -10,12 +10,12 @@
 
 package com.yandex.yoctodb.util.mutable.impl;
 
-import com.google.common.primitives.Longs;
 import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.mutable.ArrayBitSet;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.NotThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 
@@ -23,15 +23,27 @@ import java.util.Arrays;
  * {@link BitSet} implementation based on {@code long} array.
  *
  * Based on Lucene {@code FixedBitSet}.
+ * <p>
+ * Word-wise kernels are kept branch-free to let the JIT vectorize them.
  *
  * @author incubos
  */
 @NotThreadSafe
 public final class LongArrayBitSet implements ArrayBitSet {
+    /**
+     * Max number of words read from {@link Buffer} at once
+     */
+    private static final int BLOCK_SIZE = 512;
+
     private final int size;
     private final int usedWords;
     @NotNull
     private final long[] words;
+    /**
+     * Lazily allocated scratch space for the words read from {@link Buffer}
+     */
+    @Nullable
+    private long[] blocks;
 
     private LongArrayBitSet(
             final int size,
@@ -49,6 +61,23 @@ public final class LongArrayBitSet implements ArrayBitSet {
         return (size >>> 6) + ((size & 0x3f) != 0 ? 1 : 0);
     }
 
+    private int blockSize() {
+        return Math.min(usedWords, BLOCK_SIZE);
+    }
+
+    /**
+     * @return scratch space for two blocks of {@link #blockSize()} words
+     */
+    @NotNull
+    private long[] blocks() {
+        long[] result = blocks;
+        if (result == null) {
+            result = new long[blockSize() << 1];
+            blocks = result;
+        }
+        return result;
+    }
+
     @NotNull
     static ArrayBitSet zero(
             final int size,
@@ -129,31 +158,26 @@ public final class LongArrayBitSet implements ArrayBitSet {
 
     @Override
     public boolean inverse() {
-        boolean notEmpty = false;
+        long nonZero = 0L;
 
         // Inverse all the words except last one
         final int last = usedWords - 1;
         for (int i = 0; i < last; i++) {
-            words[i] = ~words[i];
-            if (words[i] != 0)
-                notEmpty = true;
+            final long word = ~words[i];
+            words[i] = word;
+            nonZero |= word;
         }
 
         // Fix bits in last word
         final int shift = size & 0x3f;
         if (shift == 0) {
             words[last] = ~words[last];
-            if (words[last] != 0) {
-                notEmpty = true;
-            }
         } else {
             words[last] = ~words[last] & ~(-1L << shift);
-            if (words[last] != 0) {
-                notEmpty = true;
-            }
         }
+        nonZero |= words[last];
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     public void set() {
@@ -168,23 +192,42 @@ public final class LongArrayBitSet implements ArrayBitSet {
         }
     }
 
+    /**
+     * Gets words of {@code set} copying them if {@code set} is not an
+     * {@link ArrayBitSet}
+     */
+    @NotNull
+    private long[] wordsOf(
+            @NotNull
+            final BitSet set) {
+        if (set instanceof ArrayBitSet) {
+            return ((ArrayBitSet) set).toArray();
+        }
+
+        final long[] result = new long[usedWords];
+        for (int i = set.nextSetBit(0);
+             i >= 0;
+             i = i + 1 < size ? set.nextSetBit(i + 1) : -1) {
+            result[i >>> 6] |= 1L << i;
+        }
+        return result;
+    }
+
     @Override
     public boolean and(
             @NotNull
             final BitSet set) {
         assert size == set.getSize();
 
-        boolean notEmpty = false;
-        final long[] from = ((ArrayBitSet) set).toArray();
+        final long[] from = wordsOf(set);
+        long nonZero = 0L;
         for (int i = 0; i < usedWords; i++) {
             final long word = words[i] & from[i];
             words[i] = word;
-            if (word != 0) {
-                notEmpty = true;
-            }
+            nonZero |= word;
         }
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     @Override
@@ -193,17 +236,15 @@ public final class LongArrayBitSet implements ArrayBitSet {
             final BitSet set) {
         assert size == set.getSize();
 
-        boolean notEmpty = false;
-        final long[] from = ((ArrayBitSet) set).toArray();
+        final long[] from = wordsOf(set);
+        long nonZero = 0L;
         for (int i = 0; i < usedWords; i++) {
             final long word = words[i] | from[i];
             words[i] = word;
-            if (word != 0) {
-                notEmpty = true;
-            }
+            nonZero |= word;
         }
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     @Override
@@ -212,43 +253,45 @@ public final class LongArrayBitSet implements ArrayBitSet {
             BitSet set) {
         assert size == set.getSize();
 
-        boolean notEmpty = false;
-        final long[] from = ((ArrayBitSet) set).toArray();
+        final long[] from = wordsOf(set);
+        long nonZero = 0L;
         for (int i = 0; i < usedWords; i++) {
             final long word = words[i] ^ from[i];
             words[i] = word;
-            if (word != 0) {
-                notEmpty = true;
-            }
+            nonZero |= word;
         }
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     @Override
     public boolean and(
             @NotNull
-            Buffer longArrayBitSetInByteBuffer,
-            long startPosition,
-            int bitSetSizeInLongs) {
-        boolean notEmpty = false;
-        long currentPosition = startPosition;
-
+            final Buffer longArrayBitSetInByteBuffer,
+            final long startPosition,
+            final int bitSetSizeInLongs) {
         assert usedWords == bitSetSizeInLongs;
 
-        for (int i = 0; i < usedWords; i++) {
-            final long currentWord =
-                    longArrayBitSetInByteBuffer.getLong(
-                            currentPosition);
-            currentPosition += Longs.BYTES;
-            final long word = words[i] & currentWord;
-            words[i] = word;
-            if (word != 0) {
-                notEmpty = true;
+        long nonZero = 0L;
+        long currentPosition = startPosition;
+        final long[] block = blocks();
+        final int blockSize = blockSize();
+        for (int from = 0; from < usedWords; from += blockSize) {
+            final int count = Math.min(blockSize, usedWords - from);
+            longArrayBitSetInByteBuffer.getLongs(
+                    currentPosition,
+                    block,
+                    0,
+                    count);
+            currentPosition += ((long) count) << 3;
+            for (int i = 0; i < count; i++) {
+                final long word = words[from + i] & block[i];
+                words[from + i] = word;
+                nonZero |= word;
             }
         }
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     @Override
@@ -257,56 +300,99 @@ public final class LongArrayBitSet implements ArrayBitSet {
             final Buffer longArrayBitSetInByteBuffer,
             final long startPosition,
             final int bitSetSizeInLongs) {
-        boolean notEmpty = false;
-        long currentPosition = startPosition;
-
         assert usedWords == bitSetSizeInLongs;
 
-        for (int i = 0; i < usedWords; i++) {
-            final long currentWord =
-                    longArrayBitSetInByteBuffer.getLong(
-                            currentPosition);
-            currentPosition += Longs.BYTES;
-            final long word = words[i] | currentWord;
-            words[i] = word;
-            if (word != 0) {
-                notEmpty = true;
+        long nonZero = 0L;
+        long currentPosition = startPosition;
+        final long[] block = blocks();
+        final int blockSize = blockSize();
+        for (int from = 0; from < usedWords; from += blockSize) {
+            final int count = Math.min(blockSize, usedWords - from);
+            longArrayBitSetInByteBuffer.getLongs(
+                    currentPosition,
+                    block,
+                    0,
+                    count);
+            currentPosition += ((long) count) << 3;
+            for (int i = 0; i < count; i++) {
+                final long word = words[from + i] | block[i];
+                words[from + i] = word;
+                nonZero |= word;
             }
         }
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     @Override
     public boolean xor(
             @NotNull
-            Buffer longArrayBitSetInByteBuffer,
-            long startPosition,
-            int bitSetSizeInLongs) {
-        boolean notEmpty = false;
+            final Buffer longArrayBitSetInByteBuffer,
+            final long startPosition,
+            final int bitSetSizeInLongs) {
+        assert usedWords == bitSetSizeInLongs;
+
+        long nonZero = 0L;
         long currentPosition = startPosition;
+        final long[] block = blocks();
+        final int blockSize = blockSize();
+        for (int from = 0; from < usedWords; from += blockSize) {
+            final int count = Math.min(blockSize, usedWords - from);
+            longArrayBitSetInByteBuffer.getLongs(
+                    currentPosition,
+                    block,
+                    0,
+                    count);
+            currentPosition += ((long) count) << 3;
+            for (int i = 0; i < count; i++) {
+                final long word = words[from + i] ^ block[i];
+                words[from + i] = word;
+                nonZero |= word;
+            }
+        }
 
+        return nonZero != 0L;
+    }
+
+    @Override
+    public boolean orXor(
+            @NotNull
+            final Buffer longArrayBitSetsInByteBuffer,
+            final long firstPosition,
+            final long secondPosition,
+            final int bitSetSizeInLongs) {
         assert usedWords == bitSetSizeInLongs;
 
-        for (int i = 0; i < usedWords; i++) {
-            final long currentWord =
-                    longArrayBitSetInByteBuffer.getLong(
-                            currentPosition);
-            currentPosition += Longs.BYTES;
-            final long word = words[i] ^ currentWord;
-            words[i] = word;
-            if (word != 0) {
-                notEmpty = true;
+        long nonZero = 0L;
+        long first = firstPosition;
+        long second = secondPosition;
+        final long[] block = blocks();
+        final int blockSize = blockSize();
+        for (int from = 0; from < usedWords; from += blockSize) {
+            final int count = Math.min(blockSize, usedWords - from);
+            longArrayBitSetsInByteBuffer.getLongs(first, block, 0, count);
+            longArrayBitSetsInByteBuffer.getLongs(
+                    second,
+                    block,
+                    blockSize,
+                    count);
+            first += ((long) count) << 3;
+            second += ((long) count) << 3;
+            for (int i = 0; i < count; i++) {
+                final long word =
+                        words[from + i] | (block[i] ^ block[blockSize + i]);
+                words[from + i] = word;
+                nonZero |= word;
             }
         }
 
-        return notEmpty;
+        return nonZero != 0L;
     }
 
     @Override
     public boolean isEmpty() {
-        for (long w : words)
-            if (w != 0) {
+        for (int i = 0; i < usedWords; i++)
+            if (words[i] != 0) {
                 return false;
             }
 
@@ -110,6 +110,16 @@ public final class ReadOnlyOneBitSet implements BitSet {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean orXor(
+            @NotNull
+            final Buffer longArrayBitSetsInByteBuffer,
+            final long firstPosition,
+            final long secondPosition,
+            final int bitSetSizeInLongs) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean isEmpty() {
         return false;
@@ -103,6 +103,16 @@ public final class ReadOnlyZeroBitSet implements BitSet {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean orXor(
+            @NotNull
+            final Buffer longArrayBitSetsInByteBuffer,
+            final long firstPosition,
+            final long secondPosition,
+            final int bitSetSizeInLongs) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean isEmpty() {
         return true;
@@ -2,6 +2,7 @@ package com.yandex.yoctodb.util.mutable.impl;
 
 import com.yandex.yoctodb.util.mutable.ArrayBitSet;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.BitSet;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
 
@@ -31,4 +32,17 @@ public final class RejectingArrayBitSetPool implements ArrayBitSetPool {
             final ArrayBitSet set) {
         throw new UnsupportedOperationException();
     }
+
+    @NotNull
+    @Override
+    public BitSet borrowSparseSet(final int size) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void returnSparseSet(
+            @NotNull
+            final BitSet set) {
+        throw new UnsupportedOperationException();
+    }
 }
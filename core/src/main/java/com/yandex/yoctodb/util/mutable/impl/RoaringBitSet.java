@@ -0,0 +1,1138 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.ArrayBitSet;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Compressed {@link BitSet} implementation splitting bits into 64K chunks,
+ * each stored in the most compact of sorted array, bitmap or run-length
+ * encoded containers.
+ * <p>
+ * Based on the Roaring bitmap design.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class RoaringBitSet implements BitSet {
+    static final int CHUNK_BITS = 1 << 16;
+    static final int CHUNK_WORDS = CHUNK_BITS >>> 6;
+    static final int ARRAY_MAX = 4096;
+
+    private final int size;
+    private final int chunkCount;
+    @NotNull
+    private char[] keys = new char[4];
+    @NotNull
+    private Container[] containers = new Container[4];
+    private int count = 0;
+
+    public RoaringBitSet(final int size) {
+        assert size >= 0;
+
+        this.size = size;
+        this.chunkCount = (size >>> 16) + ((size & 0xffff) != 0 ? 1 : 0);
+    }
+
+    private int chunkLimit(final int key) {
+        return Math.min(CHUNK_BITS, size - (key << 16));
+    }
+
+    private int find(final int key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midKey = keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(
+            final int index,
+            final int key,
+            @NotNull
+            final Container container) {
+        if (count == keys.length) {
+            final int capacity = Math.min(chunkCount, count * 2);
+            keys = Arrays.copyOf(keys, Math.max(capacity, count + 1));
+            containers = Arrays.copyOf(containers, keys.length);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        keys[index] = (char) key;
+        containers[index] = container;
+        count++;
+    }
+
+    /**
+     * Replaces container at {@code index} removing it if empty
+     *
+     * @return whether the container was kept
+     */
+    private boolean replace(
+            final int index,
+            @NotNull
+            final Container container) {
+        if (container.cardinality() == 0) {
+            System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+            System.arraycopy(
+                    containers, index + 1,
+                    containers, index,
+                    count - index - 1);
+            count--;
+            containers[count] = null;
+            return false;
+        } else {
+            containers[index] = container;
+            return true;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int cardinality() {
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            result += containers[i].cardinality();
+        }
+        return result;
+    }
+
+    @Override
+    public void set(final int i) {
+        assert 0 <= i && i < size;
+
+        final int key = i >>> 16;
+        final int index = find(key);
+        if (index >= 0) {
+            containers[index] = containers[index].add((char) i);
+        } else {
+            insert(-index - 1, key, new ArrayContainer().add((char) i));
+        }
+    }
+
+    @Override
+    public boolean get(final int i) {
+        assert 0 <= i && i < size;
+
+        final int index = find(i >>> 16);
+        return index >= 0 && containers[index].contains((char) i);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(containers, 0, count, null);
+        count = 0;
+    }
+
+    @Override
+    public boolean inverse() {
+        final char[] newKeys = new char[chunkCount];
+        final Container[] newContainers = new Container[chunkCount];
+        int newCount = 0;
+        int index = 0;
+        for (int key = 0; key < chunkCount; key++) {
+            final int limit = chunkLimit(key);
+            final Container inversed;
+            if (index < count && keys[index] == key) {
+                inversed = containers[index++].inverse(limit);
+            } else {
+                inversed = RunContainer.full(limit);
+            }
+
+            if (inversed.cardinality() > 0) {
+                newKeys[newCount] = (char) key;
+                newContainers[newCount] = inversed;
+                newCount++;
+            }
+        }
+
+        keys = newKeys;
+        containers = newContainers;
+        count = newCount;
+
+        return count > 0;
+    }
+
+    @Override
+    public void set() {
+        keys = new char[chunkCount];
+        containers = new Container[chunkCount];
+        for (int key = 0; key < chunkCount; key++) {
+            keys[key] = (char) key;
+            containers[key] = RunContainer.full(chunkLimit(key));
+        }
+        count = chunkCount;
+    }
+
+    @Override
+    public int nextSetBit(final int fromIndexInclusive) {
+        assert 0 <= fromIndexInclusive;
+
+        if (fromIndexInclusive >= size) {
+            return -1;
+        }
+
+        final int key = fromIndexInclusive >>> 16;
+        int index = find(key);
+        if (index >= 0) {
+            final int low =
+                    containers[index].nextSetBit(fromIndexInclusive & 0xffff);
+            if (low >= 0) {
+                return (key << 16) | low;
+            }
+            index++;
+        } else {
+            index = -index - 1;
+        }
+
+        if (index < count) {
+            return (keys[index] << 16) | containers[index].nextSetBit(0);
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Bitwise operations
+
+    private enum Operation {
+        AND, OR, XOR
+    }
+
+    @Override
+    public boolean and(
+            @NotNull
+            final BitSet set) {
+        return apply(Operation.AND, set);
+    }
+
+    @Override
+    public boolean or(
+            @NotNull
+            final BitSet set) {
+        return apply(Operation.OR, set);
+    }
+
+    @Override
+    public boolean xor(
+            @NotNull
+            final BitSet set) {
+        return apply(Operation.XOR, set);
+    }
+
+    @Override
+    public boolean and(
+            @NotNull
+            final Buffer longArrayBitSetInByteBuffer,
+            final long startPosition,
+            final int bitSetSizeInLongs) {
+        return apply(
+                Operation.AND,
+                longArrayBitSetInByteBuffer,
+                startPosition,
+                bitSetSizeInLongs);
+    }
+
+    @Override
+    public boolean or(
+            @NotNull
+            final Buffer longArrayBitSetInByteBuffer,
+            final long startPosition,
+            final int bitSetSizeInLongs) {
+        return apply(
+                Operation.OR,
+                longArrayBitSetInByteBuffer,
+                startPosition,
+                bitSetSizeInLongs);
+    }
+
+    @Override
+    public boolean xor(
+            @NotNull
+            final Buffer longArrayBitSetInByteBuffer,
+            final long startPosition,
+            final int bitSetSizeInLongs) {
+        return apply(
+                Operation.XOR,
+                longArrayBitSetInByteBuffer,
+                startPosition,
+                bitSetSizeInLongs);
+    }
+
+    @Override
+    public boolean orXor(
+            @NotNull
+            final Buffer longArrayBitSetsInByteBuffer,
+            final long firstPosition,
+            final long secondPosition,
+            final int bitSetSizeInLongs) {
+        assert bitSetSizeInLongs == LongArrayBitSet.arraySize(size);
+
+        final long[] window = new long[CHUNK_WORDS];
+        final long[] other = new long[CHUNK_WORDS];
+        for (int key = 0; key < chunkCount; key++) {
+            final boolean first =
+                    read(
+                            longArrayBitSetsInByteBuffer,
+                            firstPosition,
+                            bitSetSizeInLongs,
+                            key,
+                            window);
+            final boolean second =
+                    read(
+                            longArrayBitSetsInByteBuffer,
+                            secondPosition,
+                            bitSetSizeInLongs,
+                            key,
+                            other);
+            if (first || second) {
+                long nonZero = 0L;
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    window[i] ^= other[i];
+                    nonZero |= window[i];
+                }
+                if (nonZero != 0L) {
+                    apply(Operation.OR, key, window);
+                }
+            }
+        }
+
+        return !isEmpty();
+    }
+
+    private boolean apply(
+            @NotNull
+            final Operation operation,
+            @NotNull
+            final BitSet set) {
+        assert size == set.getSize();
+
+        if (set instanceof RoaringBitSet) {
+            apply(operation, (RoaringBitSet) set);
+            return !isEmpty();
+        }
+
+        // Generic bit sets are processed by 64K word windows
+        final long[] window = new long[CHUNK_WORDS];
+        if (operation == Operation.AND) {
+            for (int i = 0; i < count; ) {
+                final int key = keys[i];
+                if (window(set, key, window)) {
+                    if (replace(i, containers[i].and(window))) {
+                        i++;
+                    }
+                } else {
+                    replace(i, ArrayContainer.EMPTY);
+                }
+            }
+        } else {
+            for (int key = 0; key < chunkCount; key++) {
+                if (window(set, key, window)) {
+                    apply(operation, key, window);
+                }
+            }
+        }
+
+        return !isEmpty();
+    }
+
+    private boolean apply(
+            @NotNull
+            final Operation operation,
+            @NotNull
+            final Buffer buf,
+            final long startPosition,
+            final int sizeInLongs) {
+        assert sizeInLongs == LongArrayBitSet.arraySize(size);
+
+        final long[] window = new long[CHUNK_WORDS];
+        if (operation == Operation.AND) {
+            for (int i = 0; i < count; ) {
+                final int key = keys[i];
+                read(buf, startPosition, sizeInLongs, key, window);
+                if (replace(i, containers[i].and(window))) {
+                    i++;
+                }
+            }
+        } else {
+            for (int key = 0; key < chunkCount; key++) {
+                if (read(buf, startPosition, sizeInLongs, key, window)) {
+                    apply(operation, key, window);
+                }
+            }
+        }
+
+        return !isEmpty();
+    }
+
+    /**
+     * Applies {@code OR} or {@code XOR} to the chunk {@code key}
+     */
+    private void apply(
+            @NotNull
+            final Operation operation,
+            final int key,
+            @NotNull
+            final long[] window) {
+        final int index = find(key);
+        if (index >= 0) {
+            final Container current = containers[index];
+            replace(
+                    index,
+                    operation == Operation.OR ?
+                            current.or(window) :
+                            current.xor(window));
+        } else {
+            insert(-index - 1, key, BitmapContainer.of(window).optimize());
+        }
+    }
+
+    private void apply(
+            @NotNull
+            final Operation operation,
+            @NotNull
+            final RoaringBitSet that) {
+        if (operation == Operation.AND) {
+            for (int i = 0; i < count; ) {
+                final int index = that.find(keys[i]);
+                final Container result =
+                        index >= 0 ?
+                                containers[i].and(that.containers[index]) :
+                                ArrayContainer.EMPTY;
+                if (replace(i, result)) {
+                    i++;
+                }
+            }
+        } else {
+            for (int j = 0; j < that.count; j++) {
+                final int key = that.keys[j];
+                final Container other = that.containers[j];
+                final int index = find(key);
+                if (index >= 0) {
+                    final Container current = containers[index];
+                    replace(
+                            index,
+                            operation == Operation.OR ?
+                                    current.or(other) :
+                                    current.xor(other));
+                } else {
+                    insert(-index - 1, key, other.copy());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills {@code window} with the words of chunk {@code key} of {@code set}
+     *
+     * @return whether there are nonzero bits in the window
+     */
+    private static boolean window(
+            @NotNull
+            final BitSet set,
+            final int key,
+            @NotNull
+            final long[] window) {
+        Arrays.fill(window, 0L);
+
+        final int from = key << 16;
+        final int to = Math.min(from + CHUNK_BITS, set.getSize());
+        if (set instanceof ArrayBitSet) {
+            final long[] words = ((ArrayBitSet) set).toArray();
+            final int first = from >>> 6;
+            final int length =
+                    Math.min(
+                            CHUNK_WORDS,
+                            LongArrayBitSet.arraySize(set.getSize()) - first);
+            long nonZero = 0L;
+            for (int i = 0; i < length; i++) {
+                window[i] = words[first + i];
+                nonZero |= window[i];
+            }
+            return nonZero != 0L;
+        } else {
+            boolean notEmpty = false;
+            for (int i = set.nextSetBit(from);
+                 0 <= i && i < to;
+                 i = i + 1 < to ? set.nextSetBit(i + 1) : -1) {
+                final int low = i - from;
+                window[low >>> 6] |= 1L << low;
+                notEmpty = true;
+            }
+            return notEmpty;
+        }
+    }
+
+    /**
+     * Reads the words of chunk {@code key} from {@code buf} into {@code window}
+     *
+     * @return whether there are nonzero bits in the window
+     */
+    private static boolean read(
+            @NotNull
+            final Buffer buf,
+            final long startPosition,
+            final int sizeInLongs,
+            final int key,
+            @NotNull
+            final long[] window) {
+        final int first = key * CHUNK_WORDS;
+        final int length = Math.min(CHUNK_WORDS, sizeInLongs - first);
+        buf.getLongs(
+                startPosition + (((long) first) << 3),
+                window,
+                0,
+                length);
+        Arrays.fill(window, length, CHUNK_WORDS, 0L);
+
+        long nonZero = 0L;
+        for (int i = 0; i < length; i++) {
+            nonZero |= window[i];
+        }
+        return nonZero != 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "RoaringBitSet{" +
+               "size=" + size +
+               ", containers=" + count +
+               '}';
+    }
+
+    // Word helpers
+
+    private static int nextSetBit(
+            @NotNull
+            final long[] words,
+            final int from) {
+        if (from >= CHUNK_BITS) {
+            return -1;
+        }
+
+        int u = from >>> 6;
+        long word = words[u] & (-1L << from);
+        while (true) {
+            if (word != 0L) {
+                return (u << 6) | Long.numberOfTrailingZeros(word);
+            }
+            if (++u == CHUNK_WORDS) {
+                return -1;
+            }
+            word = words[u];
+        }
+    }
+
+    private static int nextClearBit(
+            @NotNull
+            final long[] words,
+            final int from) {
+        if (from >= CHUNK_BITS) {
+            return CHUNK_BITS;
+        }
+
+        int u = from >>> 6;
+        long word = ~words[u] & (-1L << from);
+        while (true) {
+            if (word != 0L) {
+                return (u << 6) | Long.numberOfTrailingZeros(word);
+            }
+            if (++u == CHUNK_WORDS) {
+                return CHUNK_BITS;
+            }
+            word = ~words[u];
+        }
+    }
+
+    private static void setRange(
+            @NotNull
+            final long[] words,
+            final int fromInclusive,
+            final int toExclusive) {
+        if (fromInclusive >= toExclusive) {
+            return;
+        }
+
+        final int first = fromInclusive >>> 6;
+        final int last = (toExclusive - 1) >>> 6;
+        final long firstMask = -1L << fromInclusive;
+        final long lastMask = -1L >>> -toExclusive;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+        } else {
+            words[first] |= firstMask;
+            for (int i = first + 1; i < last; i++) {
+                words[i] = -1L;
+            }
+            words[last] |= lastMask;
+        }
+    }
+
+    private static int cardinality(
+            @NotNull
+            final long[] words) {
+        int result = 0;
+        for (long word : words) {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+
+    private static int runs(
+            @NotNull
+            final long[] words) {
+        int result = 0;
+        long previous = 0L;
+        for (long word : words) {
+            result += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+            previous = word;
+        }
+        return result;
+    }
+
+    // Containers
+
+    /**
+     * Set of low 16 bits of the values within a single chunk
+     */
+    private static abstract class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        /**
+         * @return container with the value added (possibly a new one)
+         */
+        @NotNull
+        abstract Container add(char value);
+
+        /**
+         * @return next set bit or -1
+         */
+        abstract int nextSetBit(int from);
+
+        abstract void toWords(
+                @NotNull
+                long[] words);
+
+        @NotNull
+        abstract Container copy();
+
+        @NotNull
+        BitmapContainer toBitmap() {
+            final long[] words = new long[CHUNK_WORDS];
+            toWords(words);
+            return new BitmapContainer(words, cardinality());
+        }
+
+        @NotNull
+        Container inverse(final int limit) {
+            final BitmapContainer result = toBitmap();
+            final long[] words = result.words;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                words[i] = ~words[i];
+            }
+            if (limit < CHUNK_BITS) {
+                final int last = limit >>> 6;
+                if ((limit & 0x3f) != 0) {
+                    words[last] &= -1L >>> -limit;
+                    Arrays.fill(words, last + 1, CHUNK_WORDS, 0L);
+                } else {
+                    Arrays.fill(words, last, CHUNK_WORDS, 0L);
+                }
+            }
+            result.cardinality = RoaringBitSet.cardinality(words);
+            return result.optimize();
+        }
+
+        @NotNull
+        Container and(
+                @NotNull
+                final long[] window) {
+            final BitmapContainer result = toBitmap();
+            final long[] words = result.words;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                words[i] &= window[i];
+            }
+            result.cardinality = RoaringBitSet.cardinality(words);
+            return result.optimize();
+        }
+
+        @NotNull
+        Container or(
+                @NotNull
+                final long[] window) {
+            final BitmapContainer result = toBitmap();
+            final long[] words = result.words;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                words[i] |= window[i];
+            }
+            result.cardinality = RoaringBitSet.cardinality(words);
+            return result.optimize();
+        }
+
+        @NotNull
+        Container xor(
+                @NotNull
+                final long[] window) {
+            final BitmapContainer result = toBitmap();
+            final long[] words = result.words;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                words[i] ^= window[i];
+            }
+            result.cardinality = RoaringBitSet.cardinality(words);
+            return result.optimize();
+        }
+
+        @NotNull
+        Container and(
+                @NotNull
+                final Container that) {
+            if (that instanceof ArrayContainer) {
+                return that.copy().and(this);
+            }
+
+            final long[] window = new long[CHUNK_WORDS];
+            that.toWords(window);
+            return and(window);
+        }
+
+        @NotNull
+        Container or(
+                @NotNull
+                final Container that) {
+            final long[] window = new long[CHUNK_WORDS];
+            that.toWords(window);
+            return or(window);
+        }
+
+        @NotNull
+        Container xor(
+                @NotNull
+                final Container that) {
+            final long[] window = new long[CHUNK_WORDS];
+            that.toWords(window);
+            return xor(window);
+        }
+    }
+
+    /**
+     * Sorted array of up to {@link #ARRAY_MAX} values
+     */
+    private static final class ArrayContainer extends Container {
+        private static final ArrayContainer EMPTY =
+                new ArrayContainer(new char[0], 0);
+
+        @NotNull
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(
+                @NotNull
+                final char[] values,
+                final int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @NotNull
+        @Override
+        Container add(final char value) {
+            final int index =
+                    Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+
+            final int insertion = -index - 1;
+            if (cardinality == values.length) {
+                values =
+                        Arrays.copyOf(
+                                values,
+                                Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(
+                    values, insertion,
+                    values, insertion + 1,
+                    cardinality - insertion);
+            values[insertion] = value;
+            cardinality++;
+
+            return this;
+        }
+
+        @Override
+        int nextSetBit(final int from) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        void toWords(
+                @NotNull
+                final long[] words) {
+            Arrays.fill(words, 0L);
+            for (int i = 0; i < cardinality; i++) {
+                final char value = values[i];
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+
+        @NotNull
+        @Override
+        Container copy() {
+            return new ArrayContainer(
+                    Arrays.copyOf(values, cardinality),
+                    cardinality);
+        }
+
+        @NotNull
+        @Override
+        Container and(
+                @NotNull
+                final long[] window) {
+            int result = 0;
+            for (int i = 0; i < cardinality; i++) {
+                final char value = values[i];
+                if ((window[value >>> 6] & (1L << value)) != 0L) {
+                    values[result++] = value;
+                }
+            }
+            cardinality = result;
+            return this;
+        }
+
+        @NotNull
+        @Override
+        Container and(
+                @NotNull
+                final Container that) {
+            int result = 0;
+            for (int i = 0; i < cardinality; i++) {
+                final char value = values[i];
+                if (that.contains(value)) {
+                    values[result++] = value;
+                }
+            }
+            cardinality = result;
+            return this;
+        }
+
+        @NotNull
+        @Override
+        Container or(
+                @NotNull
+                final Container that) {
+            if (that instanceof ArrayContainer &&
+                cardinality + that.cardinality() <= ARRAY_MAX) {
+                final ArrayContainer other = (ArrayContainer) that;
+                final char[] merged =
+                        new char[cardinality + other.cardinality];
+                int i = 0;
+                int j = 0;
+                int k = 0;
+                while (i < cardinality && j < other.cardinality) {
+                    final char left = values[i];
+                    final char right = other.values[j];
+                    if (left < right) {
+                        merged[k++] = left;
+                        i++;
+                    } else if (left > right) {
+                        merged[k++] = right;
+                        j++;
+                    } else {
+                        merged[k++] = left;
+                        i++;
+                        j++;
+                    }
+                }
+                while (i < cardinality) {
+                    merged[k++] = values[i++];
+                }
+                while (j < other.cardinality) {
+                    merged[k++] = other.values[j++];
+                }
+                return new ArrayContainer(merged, k);
+            }
+
+            return super.or(that);
+        }
+    }
+
+    /**
+     * Plain 64K bitmap
+     */
+    private static final class BitmapContainer extends Container {
+        @NotNull
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(
+                @NotNull
+                final long[] words,
+                final int cardinality) {
+            assert words.length == CHUNK_WORDS;
+
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @NotNull
+        static BitmapContainer of(
+                @NotNull
+                final long[] window) {
+            final long[] words = window.clone();
+            return new BitmapContainer(
+                    words,
+                    RoaringBitSet.cardinality(words));
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return (words[value >>> 6] & (1L << value)) != 0L;
+        }
+
+        @NotNull
+        @Override
+        Container add(final char value) {
+            final int word = value >>> 6;
+            final long before = words[word];
+            final long after = before | (1L << value);
+            if (before != after) {
+                words[word] = after;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        int nextSetBit(final int from) {
+            return RoaringBitSet.nextSetBit(words, from);
+        }
+
+        @Override
+        void toWords(
+                @NotNull
+                final long[] words) {
+            System.arraycopy(this.words, 0, words, 0, CHUNK_WORDS);
+        }
+
+        @NotNull
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @NotNull
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        /**
+         * @return the most compact representation
+         */
+        @NotNull
+        Container optimize() {
+            final int runs = runs(words);
+            final int runBytes = runs * 4;
+            if (cardinality <= ARRAY_MAX) {
+                if (runBytes < cardinality * 2) {
+                    return RunContainer.of(words, runs);
+                }
+
+                final char[] values = new char[cardinality];
+                int k = 0;
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    long word = words[i];
+                    while (word != 0L) {
+                        values[k++] =
+                                (char) ((i << 6) +
+                                        Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                return new ArrayContainer(values, cardinality);
+            }
+
+            if (runBytes < CHUNK_WORDS * Long.BYTES) {
+                return RunContainer.of(words, runs);
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * Run-length encoded container of {@code [start, start + length]} runs
+     */
+    private static final class RunContainer extends Container {
+        // Interleaved run starts and lengths minus one
+        @NotNull
+        private final char[] runs;
+        private final int runCount;
+        private final int cardinality;
+
+        private RunContainer(
+                @NotNull
+                final char[] runs,
+                final int runCount) {
+            this.runs = runs;
+            this.runCount = runCount;
+            int result = 0;
+            for (int i = 0; i < runCount; i++) {
+                result += runs[2 * i + 1] + 1;
+            }
+            this.cardinality = result;
+        }
+
+        @NotNull
+        static RunContainer full(final int limit) {
+            assert 0 < limit && limit <= CHUNK_BITS;
+
+            return new RunContainer(new char[]{0, (char) (limit - 1)}, 1);
+        }
+
+        @NotNull
+        static RunContainer of(
+                @NotNull
+                final long[] words,
+                final int runCount) {
+            final char[] runs = new char[2 * runCount];
+            int k = 0;
+            int start = RoaringBitSet.nextSetBit(words, 0);
+            while (start >= 0) {
+                final int end = nextClearBit(words, start);
+                runs[k++] = (char) start;
+                runs[k++] = (char) (end - start - 1);
+                start = RoaringBitSet.nextSetBit(words, end);
+            }
+            assert k == runs.length;
+
+            return new RunContainer(runs, runCount);
+        }
+
+        /**
+         * @return index of the last run starting at or before {@code value}
+         * or -1
+         */
+        private int floor(final int value) {
+            int low = 0;
+            int high = runCount - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (runs[2 * mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            final int run = floor(value);
+            return run >= 0 && value <= runs[2 * run] + runs[2 * run + 1];
+        }
+
+        @NotNull
+        @Override
+        Container add(final char value) {
+            if (contains(value)) {
+                return this;
+            }
+
+            return toBitmap().add(value);
+        }
+
+        @Override
+        int nextSetBit(final int from) {
+            final int run = floor(from);
+            if (run >= 0 && from <= runs[2 * run] + runs[2 * run + 1]) {
+                return from;
+            }
+            return run + 1 < runCount ? runs[2 * (run + 1)] : -1;
+        }
+
+        @Override
+        void toWords(
+                @NotNull
+                final long[] words) {
+            Arrays.fill(words, 0L);
+            for (int i = 0; i < runCount; i++) {
+                final int start = runs[2 * i];
+                setRange(words, start, start + runs[2 * i + 1] + 1);
+            }
+        }
+
+        @NotNull
+        @Override
+        Container copy() {
+            // Immutable
+            return this;
+        }
+    }
+}
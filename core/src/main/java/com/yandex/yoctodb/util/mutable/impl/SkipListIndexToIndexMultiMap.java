@@ -0,0 +1,223 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * {@link IndexToIndexMultiMap} implementation storing ascending values of
+ * each key as gaps between them encoded as variable length integers (see
+ * {@link DeltaVarIntIndexToIndexMultiMap}) split into blocks of
+ * {@link #BLOCK_SIZE} values with skip pointers to every block except the
+ * first one, so that the reader might advance to a value decoding just a
+ * single block.
+ *
+ * The first gap of a block is relative to the last value of the previous
+ * block, so the gaps of a set are still a single stream.
+ *
+ * Format:
+ *
+ * <pre>
+ * {@code
+ * type (int)
+ * keys count (int)
+ * offsets -- keys count + 1 offsets of the sets
+ *   offset1 (long)
+ *   offset2 (long)
+ *   ...
+ * sets
+ *   set1
+ *     size (int)
+ *     skips -- ceil(size / block size) - 1 skip pointers
+ *       skip1
+ *         last value of the first block (int)
+ *         offset of the second block from the first gap (int)
+ *       skip2
+ *         ...
+ *     value1 (varint)
+ *     value2 - value1 (varint)
+ *     ...
+ *   set2
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class SkipListIndexToIndexMultiMap
+        implements IndexToIndexMultiMap {
+    /**
+     * Number of values between skip pointers
+     */
+    public static final int BLOCK_SIZE = 128;
+
+    @NotNull
+    private final Collection<? extends Collection<Integer>> map;
+    private final long elementsSizeInBytes;
+
+    /**
+     * @param map values of every key in ascending order
+     */
+    public SkipListIndexToIndexMultiMap(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map) {
+        this(map, elementsSizeInBytes(map));
+    }
+
+    /**
+     * @param map                 values of every key in ascending order
+     * @param elementsSizeInBytes total size of the sets calculated with
+     *                            {@link #setSizeInBytes(int, long)}
+     */
+    SkipListIndexToIndexMultiMap(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map,
+            final long elementsSizeInBytes) {
+        this.map = map;
+        this.elementsSizeInBytes = elementsSizeInBytes;
+    }
+
+    private static long elementsSizeInBytes(
+            @NotNull
+            final Collection<? extends Collection<Integer>> map) {
+        long result = 0L;
+        for (Collection<Integer> values : map) {
+            result += setSizeInBytes(values);
+        }
+
+        return result;
+    }
+
+    private static int skipsCount(final int size) {
+        return size == 0 ? 0 : (size - 1) / BLOCK_SIZE;
+    }
+
+    private static long setSizeInBytes(
+            @NotNull
+            final Collection<Integer> values) {
+        return setSizeInBytes(
+                values.size(),
+                DeltaVarIntIndexToIndexMultiMap.gapsSizeInBytes(values));
+    }
+
+    /**
+     * @param gapsSizeInBytes size of the gaps encoded as in
+     *                        {@link DeltaVarIntIndexToIndexMultiMap}
+     */
+    static long setSizeInBytes(
+            final int size,
+            final long gapsSizeInBytes) {
+        if (gapsSizeInBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too large set");
+
+        return 4L + // Size
+               8L * skipsCount(size) + // Skips
+               gapsSizeInBytes;
+    }
+
+    @NotNull
+    @Override
+    public V1DatabaseFormat.MultiMapType getType() {
+        return V1DatabaseFormat.MultiMapType.SKIP_LIST_BASED;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 4L + // Type
+               4L + // Keys count
+               8L * (map.size() + 1) + // Offsets
+               elementsSizeInBytes;
+    }
+
+    @Override
+    public void writeTo(
+            @NotNull
+            final OutputStream os) throws IOException {
+        // Type
+        os.write(
+                Ints.toByteArray(
+                        V1DatabaseFormat.MultiMapType.SKIP_LIST_BASED.getCode()));
+
+        // Keys count
+        os.write(Ints.toByteArray(map.size()));
+
+        // Offsets
+        long offset = 0L;
+        for (Collection<Integer> values : map) {
+            os.write(Longs.toByteArray(offset));
+            offset += setSizeInBytes(values);
+        }
+        os.write(Longs.toByteArray(offset));
+
+        assert offset == elementsSizeInBytes;
+
+        // Sets
+        final ByteArrayOutputStream gaps = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[5];
+        for (Collection<Integer> values : map) {
+            final int size = values.size();
+            os.write(Ints.toByteArray(size));
+
+            gaps.reset();
+            int i = 0;
+            int previous = 0;
+            for (int value : values) {
+                if (i > 0 && i % BLOCK_SIZE == 0) {
+                    // Skip to the block
+                    os.write(Ints.toByteArray(previous));
+                    os.write(Ints.toByteArray(gaps.size()));
+                }
+                gaps.write(buffer, 0, writeVarInt(buffer, value - previous));
+                previous = value;
+                i++;
+            }
+            gaps.writeTo(os);
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private static int writeVarInt(
+            @NotNull
+            final byte[] buffer,
+            int value) {
+        assert value >= 0;
+
+        int position = 0;
+        while (value >= 0x80) {
+            buffer[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "SkipListIndexToIndexMultiMap{" +
+               "keys=" + map.size() +
+               ", elementsSizeInBytes=" + elementsSizeInBytes +
+               '}';
+    }
+}
@@ -13,14 +13,21 @@ package com.yandex.yoctodb.v1;
 import com.yandex.yoctodb.DatabaseFormat;
 import com.yandex.yoctodb.immutable.DatabaseReader;
 import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.mutable.DatabaseMerger;
 import com.yandex.yoctodb.mutable.DocumentBuilder;
+import com.yandex.yoctodb.util.Crc32c;
 import com.yandex.yoctodb.v1.immutable.V1DatabaseReader;
 import com.yandex.yoctodb.v1.mutable.V1DatabaseBuilder;
+import com.yandex.yoctodb.v1.mutable.V1DatabaseMerger;
 import com.yandex.yoctodb.v1.mutable.V1DocumentBuilder;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 /**
  * First {@link DatabaseFormat} implementation
@@ -65,10 +72,76 @@ public final class V1DatabaseFormat extends DatabaseFormat {
         digestSize.set(size);
     }
 
+    private final static AtomicReference<ChecksumType> checksumType =
+            new AtomicReference<>(ChecksumType.MESSAGE_DIGEST);
+
+    @NotNull
+    public static ChecksumType getChecksumType() {
+        return checksumType.get();
+    }
+
+    public static void setChecksumType(
+            @NotNull
+            final ChecksumType type) {
+        checksumType.set(type);
+    }
+
+    private final static AtomicReference<Integer> checksumBlockSize =
+            new AtomicReference<>(1 << 20);
+
+    @NotNull
+    public static Integer getChecksumBlockSizeInBytes() {
+        return checksumBlockSize.get();
+    }
+
+    public static void setChecksumBlockSizeInBytes(final int size) {
+        assert size > 0;
+
+        checksumBlockSize.set(size);
+    }
+
     public enum Feature {
         LEGACY(6), // 0b110
         ASCENDING_BIT_SET_INDEX(1 << 3),
-        TRIE_BYTE_ARRAY_SORTED_SET(1 << 4);
+        TRIE_BYTE_ARRAY_SORTED_SET(1 << 4),
+        /**
+         * Table of contents is written after the segments:
+         * {@code [int count]([int name length][name][int type][long offset][long length])*[long size]},
+         * where offset and length of a segment (including its size and type)
+         * are relative to the first segment and size covers the table without
+         * the trailing size itself
+         */
+        TABLE_OF_CONTENTS(1 << 5),
+        /**
+         * Message digest is replaced with checksums of fixed-size blocks:
+         * {@code [int checksum]*[int type][int block size][int count]}
+         */
+        BLOCK_CHECKSUM(1 << 6),
+        /**
+         * Every table of contents entry ends with {@code [int checksum]},
+         * i.e. CRC-32C of the segment without its size and type
+         */
+        SEGMENT_CHECKSUM(1 << 7),
+        /**
+         * Posting lists might be stored as gaps encoded as variable length
+         * integers, see {@link MultiMapType#DELTA_VAR_INT_BASED}
+         */
+        DELTA_VAR_INT_INDEX(1 << 8),
+        /**
+         * Posting lists might be stored in Elias-Fano encoding, see
+         * {@link MultiMapType#ELIAS_FANO_BASED}
+         */
+        ELIAS_FANO_INDEX(1 << 9),
+        /**
+         * Posting lists might be stored as gaps with skip pointers, see
+         * {@link MultiMapType#SKIP_LIST_BASED}
+         */
+        SKIP_LIST_INDEX(1 << 10),
+        /**
+         * Posting lists might be stored as bit sets or lists chosen per key,
+         * see {@link MultiMapType#HYBRID_BASED}
+         */
+        HYBRID_INDEX(1 << 11);
 
         private final int code;
 
@@ -116,20 +189,82 @@ public final class V1DatabaseFormat extends DatabaseFormat {
         }
     }
 
+    public enum ChecksumType {
+        // Digest of the whole body, see getMessageDigestAlgorithm()
+        MESSAGE_DIGEST(0),
+        CRC32(1000),
+        CRC32C(2000);
+
+        private final int code;
+
+        ChecksumType(final int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @return new block {@link Checksum}
+         */
+        @NotNull
+        public Checksum newChecksum() {
+            switch (this) {
+                case CRC32:
+                    return new CRC32();
+                case CRC32C:
+                    return new Crc32c();
+                default:
+                    throw new UnsupportedOperationException(
+                            "Not a block checksum: " + this);
+            }
+        }
+
+        @NotNull
+        public static ChecksumType fromCode(final int code) {
+            for (ChecksumType type : values())
+                if (type.code == code)
+                    return type;
+
+            throw new IllegalArgumentException(
+                    "Unknown checksum type " + code);
+        }
+    }
+
     public enum MultiMapType {
-        LIST_BASED(1000),
-        LONG_ARRAY_BIT_SET_BASED(2000),
-        ASCENDING_BIT_SET_BASED(3000);
+        LIST_BASED(1000, null),
+        LONG_ARRAY_BIT_SET_BASED(2000, null),
+        ASCENDING_BIT_SET_BASED(3000, Feature.ASCENDING_BIT_SET_INDEX),
+        DELTA_VAR_INT_BASED(4000, Feature.DELTA_VAR_INT_INDEX),
+        ELIAS_FANO_BASED(5000, Feature.ELIAS_FANO_INDEX),
+        SKIP_LIST_BASED(6000, Feature.SKIP_LIST_INDEX),
+        HYBRID_BASED(7000, Feature.HYBRID_INDEX);
 
         private final int code;
+        @Nullable
+        private final Feature feature;
 
-        MultiMapType(final int code) {
+        MultiMapType(
+                final int code,
+                @Nullable
+                final Feature feature) {
             this.code = code;
+            this.feature = feature;
         }
 
         public int getCode() {
             return code;
         }
+
+        /**
+         * @return database feature required to read the multimap or
+         * {@code null} if supported by any reader
+         */
+        @Nullable
+        public Feature getFeature() {
+            return feature;
+        }
     }
 
     @NotNull
@@ -144,6 +279,28 @@ public final class V1DatabaseFormat extends DatabaseFormat {
         return new V1DatabaseBuilder();
     }
 
+    @NotNull
+    @Override
+    public DatabaseBuilder newDatabaseBuilder(
+            @NotNull
+            final Executor executor) {
+        return new V1DatabaseBuilder(executor);
+    }
+
+    @NotNull
+    @Override
+    public DatabaseMerger newDatabaseMerger() {
+        return new V1DatabaseMerger();
+    }
+
+    @NotNull
+    @Override
+    public DatabaseMerger newDatabaseMerger(
+            @NotNull
+            final Executor executor) {
+        return new V1DatabaseMerger(executor);
+    }
+
     @NotNull
     @Override
     public DatabaseReader getDatabaseReader() {
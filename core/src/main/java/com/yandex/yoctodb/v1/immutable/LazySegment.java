@@ -0,0 +1,106 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.immutable;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.ChecksumType;
+import com.yandex.yoctodb.v1.immutable.segment.Segment;
+import com.yandex.yoctodb.v1.immutable.segment.SegmentRegistry;
+import net.jcip.annotations.ThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index {@link Segment} read by {@link SegmentRegistry} on first access.
+ * If the checksum is known, the segment is verified before reading.
+ *
+ * @author incubos
+ */
+@ThreadSafe
+final class LazySegment {
+    private final int type;
+    private final boolean verify;
+    private final int checksum;
+    @Nullable
+    private Buffer buffer;
+    @Nullable
+    private volatile Object index;
+
+    LazySegment(
+            final int type,
+            @NotNull
+            final Buffer buffer) {
+        this.type = type;
+        this.verify = false;
+        this.checksum = 0;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @param checksum expected CRC-32C of {@code buffer}
+     */
+    LazySegment(
+            final int type,
+            @NotNull
+            final Buffer buffer,
+            final int checksum) {
+        this.type = type;
+        this.verify = true;
+        this.checksum = checksum;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Wraps already built index
+     */
+    LazySegment(
+            @NotNull
+            final Object index) {
+        this.type = -1;
+        this.verify = false;
+        this.checksum = 0;
+        this.buffer = null;
+        this.index = index;
+    }
+
+    boolean isLoaded() {
+        return index != null;
+    }
+
+    @NotNull
+    Object get() {
+        Object result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    assert buffer != null;
+
+                    if (verify &&
+                        V1DatabaseReader.calculateChecksum(
+                                ChecksumType.CRC32C,
+                                buffer.slice()) != checksum) {
+                        throw new IllegalStateException(
+                                "The segment of type " + type +
+                                " is corrupted");
+                    }
+
+                    result = SegmentRegistry.read(type, buffer);
+                    index = result;
+                    // The buffer is not needed anymore
+                    buffer = null;
+                }
+            }
+        }
+
+        return result;
+    }
+}
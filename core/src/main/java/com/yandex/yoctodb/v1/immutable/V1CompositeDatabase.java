@@ -23,8 +23,13 @@ import com.yandex.yoctodb.util.mutable.BitSet;
 import com.yandex.yoctodb.util.mutable.impl.ReadOnlyOneBitSet;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 /**
  * Composite database for a set of {@link V1Database}s
@@ -33,6 +38,11 @@ import java.util.*;
  */
 @Immutable
 public final class V1CompositeDatabase implements Database {
+    /**
+     * Max number of databases filtered ahead of the consumer
+     */
+    static final int PREFETCHED_DATABASES = 4;
+
     private static final Comparator<ScoredDocument> SCORED_DOCUMENT_COMPARATOR = new Comparator<ScoredDocument>() {
         @SuppressWarnings("unchecked")
         @Override
@@ -46,6 +56,8 @@ public final class V1CompositeDatabase implements Database {
     private final List<IndexedDatabase> databases;
     @NotNull
     private final ArrayBitSetPool bitSetPool;
+    @Nullable
+    private final Executor executor;
     @NotNull
     private final int[] documentOffsets;
     private final int documentCount;
@@ -55,6 +67,23 @@ public final class V1CompositeDatabase implements Database {
             final Collection<? extends IndexedDatabase> databases,
             @NotNull
             final ArrayBitSetPool bitSetPool) {
+        this(databases, bitSetPool, null);
+    }
+
+    /**
+     * @param databases  databases to compose
+     * @param bitSetPool {@link BitSet} factory
+     * @param executor   executor processing the databases in parallel or
+     *                   {@code null} to process them sequentially in the
+     *                   calling thread
+     */
+    public V1CompositeDatabase(
+            @NotNull
+            final Collection<? extends IndexedDatabase> databases,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            @Nullable
+            final Executor executor) {
         this.databases = new ArrayList<>(databases);
         this.documentOffsets = new int[databases.size()];
         int documentCount = 0;
@@ -66,6 +95,7 @@ public final class V1CompositeDatabase implements Database {
         }
         this.documentCount = documentCount;
         this.bitSetPool = bitSetPool;
+        this.executor = executor;
     }
 
     @Override
@@ -165,6 +195,107 @@ public final class V1CompositeDatabase implements Database {
                 );
     }
 
+    /**
+     * Applies {@code task} to each database in parallel if there is an
+     * executor or sequentially in the calling thread otherwise
+     *
+     * @return results in the order of the databases
+     */
+    @NotNull
+    private <T> List<T> map(
+            @NotNull
+            final Function<IndexedDatabase, T> task) {
+        final List<T> result = new ArrayList<>(databases.size());
+        if (executor == null) {
+            for (IndexedDatabase db : databases) {
+                result.add(task.apply(db));
+            }
+        } else {
+            for (CompletableFuture<T> future : submit(task)) {
+                result.add(join(future));
+            }
+        }
+
+        return result;
+    }
+
+    @NotNull
+    private <T> List<CompletableFuture<T>> submit(
+            @NotNull
+            final Function<IndexedDatabase, T> task) {
+        final List<CompletableFuture<T>> result =
+                new ArrayList<>(databases.size());
+        for (IndexedDatabase db : databases) {
+            result.add(submit(task, db));
+        }
+
+        return result;
+    }
+
+    @NotNull
+    private <T> CompletableFuture<T> submit(
+            @NotNull
+            final Function<IndexedDatabase, T> task,
+            @NotNull
+            final IndexedDatabase db) {
+        assert executor != null;
+
+        return CompletableFuture.supplyAsync(() -> task.apply(db), executor);
+    }
+
+    private static <T> T join(
+            @NotNull
+            final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Filters the database leaving {@code null} for no documents
+     */
+    @Nullable
+    private Filtered filter(
+            @NotNull
+            final Query query,
+            @NotNull
+            final IndexedDatabase db) {
+        final BitSet docs = query.filteredUnlimited(db, bitSetPool);
+        if (docs == null) {
+            return null;
+        }
+
+        assert !docs.isEmpty();
+
+        final int dbSize = db.getDocumentCount();
+        final int count = docs.cardinality();
+        final BitSet filter;
+        if (count == dbSize) {
+            filter = new ReadOnlyOneBitSet(dbSize);
+        } else {
+            filter = docs;
+        }
+
+        final QueryContext context = new QueryContext(filter, db, bitSetPool);
+        if (query.hasSorting()) {
+            return new Filtered(
+                    context,
+                    count,
+                    V1Database.sorted(query, filter, db, bitSetPool));
+        } else {
+            return new Filtered(context, count, null);
+        }
+    }
+
     @Override
     public void execute(
             @NotNull
@@ -172,22 +303,25 @@ public final class V1CompositeDatabase implements Database {
             @NotNull
             final DocumentProcessor processor) {
         final Iterator<ScoredDocument<?>> iterator;
+        PrefetchingIterator prefetching = null;
 
         // Doing merging iff there is sorting
         if (query.hasSorting()) {
             final List<Iterator<? extends ScoredDocument<?>>> results =
-                    new ArrayList<>(
-                            databases.size());
-            for (IndexedDatabase db : databases) {
+                    new ArrayList<>(databases.size());
+            for (Iterator<? extends ScoredDocument<?>> sorted : map(db -> {
                 final BitSet docs = query.filteredUnlimited(db, bitSetPool);
-
                 if (docs == null) {
-                    continue;
+                    return null;
                 }
 
                 assert !docs.isEmpty();
 
-                results.add(query.sortedUnlimited(docs, db, bitSetPool));
+                return V1Database.sorted(query, docs, db, bitSetPool);
+            })) {
+                if (sorted != null) {
+                    results.add(sorted);
+                }
             }
 
             if (results.isEmpty()) {
@@ -198,34 +332,57 @@ public final class V1CompositeDatabase implements Database {
                     Iterators.mergeSorted(
                             results,
                             SCORED_DOCUMENT_COMPARATOR);
-        } else {
+        } else if (executor == null) {
+            // Lazily filtering databases
             iterator =
                     Iterators.concat(
                             new FilterResultIterator(
                                     query,
                                     databases.iterator(),
                                     bitSetPool));
+        } else {
+            // Filtering databases in parallel and consuming them in order
+            prefetching =
+                    new PrefetchingIterator(db -> {
+                        final BitSet docs =
+                                query.filteredUnlimited(db, bitSetPool);
+                        if (docs == null) {
+                            return Collections.emptyIterator();
+                        } else {
+                            return query.sortedUnlimited(
+                                    docs,
+                                    db,
+                                    bitSetPool);
+                        }
+                    });
+            iterator = Iterators.concat(prefetching);
         }
 
-        // Skipping values
-        if (query.getSkip() != 0) {
-            Iterators.advance(iterator, query.getSkip());
-        }
+        try {
+            // Skipping values
+            if (query.getSkip() != 0) {
+                Iterators.advance(iterator, query.getSkip());
+            }
 
-        // Limited
-        final Iterator<ScoredDocument<?>> limitedIterator;
-        if (query.getLimit() == Integer.MAX_VALUE) {
-            limitedIterator = iterator;
-        } else {
-            limitedIterator = Iterators.limit(iterator, query.getLimit());
-        }
+            // Limited
+            final Iterator<ScoredDocument<?>> limitedIterator;
+            if (query.getLimit() == Integer.MAX_VALUE) {
+                limitedIterator = iterator;
+            } else {
+                limitedIterator = Iterators.limit(iterator, query.getLimit());
+            }
 
-        while (limitedIterator.hasNext()) {
-            final ScoredDocument<?> document = limitedIterator.next();
-            if (!processor.process(
-                    document.getDocument(),
-                    document.getDatabase())) {
-                return;
+            while (limitedIterator.hasNext()) {
+                final ScoredDocument<?> document = limitedIterator.next();
+                if (!processor.process(
+                        document.getDocument(),
+                        document.getDatabase())) {
+                    return;
+                }
+            }
+        } finally {
+            if (prefetching != null) {
+                prefetching.cancel();
             }
         }
     }
@@ -237,37 +394,28 @@ public final class V1CompositeDatabase implements Database {
             @NotNull
             final DocumentProcessor processor) {
         int result = 0;
+        final List<Filtered> filtered = new ArrayList<>(databases.size());
+        for (Filtered f : map(db -> filter(query, db))) {
+            if (f != null) {
+                filtered.add(f);
+                result += f.count;
+            }
+        }
+
+        if (filtered.isEmpty()) {
+            return 0;
+        }
+
         final Iterator<ScoredDocument<?>> iterator;
 
         // Doing merging iff there is sorting
         if (query.hasSorting()) {
             final List<Iterator<? extends ScoredDocument<?>>> results =
-                    new ArrayList<>(
-                            databases.size());
-            for (IndexedDatabase db : databases) {
-                final BitSet docs = query.filteredUnlimited(db, bitSetPool);
-                if (docs != null) {
-                    assert !docs.isEmpty();
-
-                    final int dbSize = db.getDocumentCount();
-                    final int count = docs.cardinality();
-                    final BitSet filter;
-                    if (count == dbSize) {
-                        filter = new ReadOnlyOneBitSet(dbSize);
-                    } else {
-                        filter = docs;
-                    }
-                    results.add(
-                            query.sortedUnlimited(
-                                    filter,
-                                    db,
-                                    bitSetPool));
-                    result += count;
-                }
-            }
+                    new ArrayList<>(filtered.size());
+            for (Filtered f : filtered) {
+                assert f.sorted != null;
 
-            if (results.isEmpty()) {
-                return 0;
+                results.add(f.sorted);
             }
 
             iterator =
@@ -277,27 +425,9 @@ public final class V1CompositeDatabase implements Database {
                     );
         } else {
             final List<QueryContext> results =
-                    new ArrayList<>(databases.size());
-            for (IndexedDatabase db : databases) {
-                final BitSet docs = query.filteredUnlimited(db, bitSetPool);
-                if (docs != null) {
-                    assert !docs.isEmpty();
-
-                    final int dbSize = db.getDocumentCount();
-                    final int count = docs.cardinality();
-                    final BitSet filter;
-                    if (count == dbSize) {
-                        filter = new ReadOnlyOneBitSet(dbSize);
-                    } else {
-                        filter = docs;
-                    }
-                    results.add(new QueryContext(filter, db, bitSetPool));
-                    result += count;
-                }
-            }
-
-            if (results.isEmpty()) {
-                return 0;
+                    new ArrayList<>(filtered.size());
+            for (Filtered f : filtered) {
+                results.add(f.context);
             }
 
             iterator =
@@ -337,15 +467,94 @@ public final class V1CompositeDatabase implements Database {
             @NotNull
             final Query query) {
         int count = 0;
-        for (IndexedDatabase db : databases) {
+        for (int c : map(db -> {
             final BitSet docs = query.filteredUnlimited(db, bitSetPool);
-            if (docs != null) {
-                count += docs.cardinality();
-            }
+            return docs == null ? 0 : docs.cardinality();
+        })) {
+            count += c;
         }
 
         return Math.min(
                 Math.max(count - query.getSkip(), 0),
                 query.getLimit());
     }
+
+    /**
+     * Applies the task to the databases in order on {@link #executor} keeping
+     * at most {@link #PREFETCHED_DATABASES} of them in flight, so the
+     * consumer stopping early does not pay for all the databases
+     */
+    private final class PrefetchingIterator
+            implements Iterator<Iterator<? extends ScoredDocument<?>>> {
+        @NotNull
+        private final Function<IndexedDatabase, Iterator<? extends ScoredDocument<?>>> task;
+        @NotNull
+        private final Iterator<IndexedDatabase> pending = databases.iterator();
+        @NotNull
+        private final Deque<CompletableFuture<Iterator<? extends ScoredDocument<?>>>> inFlight =
+                new ArrayDeque<>(PREFETCHED_DATABASES);
+
+        private PrefetchingIterator(
+                @NotNull
+                final Function<IndexedDatabase, Iterator<? extends ScoredDocument<?>>> task) {
+            this.task = task;
+            while (inFlight.size() < PREFETCHED_DATABASES &&
+                   pending.hasNext()) {
+                inFlight.addLast(submit(task, pending.next()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public Iterator<? extends ScoredDocument<?>> next() {
+            final CompletableFuture<Iterator<? extends ScoredDocument<?>>> head =
+                    inFlight.pollFirst();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+
+            if (pending.hasNext()) {
+                inFlight.addLast(submit(task, pending.next()));
+            }
+
+            return join(head);
+        }
+
+        /**
+         * Cancels the databases not consumed yet
+         */
+        private void cancel() {
+            for (CompletableFuture<?> future : inFlight) {
+                future.cancel(false);
+            }
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Filtering result of a database
+     */
+    @Immutable
+    private static final class Filtered {
+        @NotNull
+        private final QueryContext context;
+        private final int count;
+        @Nullable
+        private final Iterator<? extends ScoredDocument<?>> sorted;
+
+        private Filtered(
+                @NotNull
+                final QueryContext context,
+                final int count,
+                @Nullable
+                final Iterator<? extends ScoredDocument<?>> sorted) {
+            this.context = context;
+            this.count = count;
+            this.sorted = sorted;
+        }
+    }
 }
@@ -40,11 +40,11 @@ import static java.util.Collections.unmodifiableMap;
 public final class V1Database implements IndexedDatabase {
     private final int size;
     @NotNull
-    private final Map<String, FilterableIndex> filters;
+    private final Map<String, LazySegment> filters;
     @NotNull
-    private final Map<String, SortableIndex> sorters;
+    private final Map<String, LazySegment> sorters;
     @NotNull
-    private final Map<String, StoredIndex> storers;
+    private final Map<String, LazySegment> storers;
     @NotNull
     private final ArrayBitSetPool bitSetPool;
 
@@ -58,6 +58,22 @@ public final class V1Database implements IndexedDatabase {
             final Map<String, StoredIndex> storers,
             @NotNull
             final ArrayBitSetPool bitSetPool) {
+        this(size, bitSetPool, loaded(filters), loaded(sorters), loaded(storers));
+    }
+
+    /**
+     * Builds database instantiating indexes on first access
+     */
+    V1Database(
+            final int size,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            @NotNull
+            final Map<String, LazySegment> filters,
+            @NotNull
+            final Map<String, LazySegment> sorters,
+            @NotNull
+            final Map<String, LazySegment> storers) {
         assert size >= 0;
 
         this.size = size;
@@ -67,10 +83,41 @@ public final class V1Database implements IndexedDatabase {
         this.bitSetPool = bitSetPool;
     }
 
+    @NotNull
+    private static Map<String, LazySegment> loaded(
+            @NotNull
+            final Map<String, ?> indexes) {
+        final Map<String, LazySegment> result =
+                new HashMap<>(indexes.size() * 2);
+        for (Map.Entry<String, ?> e : indexes.entrySet())
+            result.put(e.getKey(), new LazySegment(e.getValue()));
+        return result;
+    }
+
+    @Nullable
+    private static Object index(
+            @NotNull
+            final Map<String, LazySegment> indexes,
+            @NotNull
+            final String fieldName) {
+        final LazySegment index = indexes.get(fieldName);
+        return index == null ? null : index.get();
+    }
+
+    @NotNull
+    private StoredIndex storer(
+            @NotNull
+            final String fieldName) {
+        assert storers.containsKey(fieldName);
+
+        return (StoredIndex) storers.get(fieldName).get();
+    }
+
     @NotNull
     @Override
     public Buffer getDocument(final int i) {
-        final StoredIndex index = storers.get(DocumentBuilder.PAYLOAD);
+        final StoredIndex index =
+                (StoredIndex) index(storers, DocumentBuilder.PAYLOAD);
 
         if (index == null)
             throw new NoSuchElementException(
@@ -89,7 +136,7 @@ public final class V1Database implements IndexedDatabase {
     public FilterableIndex getFilter(
             @NotNull
             final String fieldName) {
-        return filters.get(fieldName);
+        return (FilterableIndex) index(filters, fieldName);
     }
 
     @NotNull
@@ -99,7 +146,7 @@ public final class V1Database implements IndexedDatabase {
             final String fieldName) {
         assert sorters.containsKey(fieldName);
 
-        return sorters.get(fieldName);
+        return (SortableIndex) sorters.get(fieldName).get();
     }
 
     @NotNull
@@ -108,9 +155,7 @@ public final class V1Database implements IndexedDatabase {
             final int document,
             @NotNull
             final String fieldName) {
-        assert storers.containsKey(fieldName);
-
-        return storers.get(fieldName).getStoredValue(document);
+        return storer(fieldName).getStoredValue(document);
     }
 
     @Override
@@ -118,9 +163,7 @@ public final class V1Database implements IndexedDatabase {
             final int document,
             @NotNull
             final String fieldName) {
-        assert storers.containsKey(fieldName);
-
-        return storers.get(fieldName).getLongValue(document);
+        return storer(fieldName).getLongValue(document);
     }
 
     @Override
@@ -128,9 +171,7 @@ public final class V1Database implements IndexedDatabase {
             final int document,
             @NotNull
             final String fieldName) {
-        assert storers.containsKey(fieldName);
-
-        return storers.get(fieldName).getIntValue(document);
+        return storer(fieldName).getIntValue(document);
     }
 
     @Override
@@ -138,9 +179,7 @@ public final class V1Database implements IndexedDatabase {
             final int document,
             @NotNull
             final String fieldName) {
-        assert storers.containsKey(fieldName);
-
-        return storers.get(fieldName).getShortValue(document);
+        return storer(fieldName).getShortValue(document);
     }
 
     @Override
@@ -148,9 +187,7 @@ public final class V1Database implements IndexedDatabase {
             final int document,
             @NotNull
             final String fieldName) {
-        assert storers.containsKey(fieldName);
-
-        return storers.get(fieldName).getCharValue(document);
+        return storer(fieldName).getCharValue(document);
     }
 
     @Override
@@ -158,9 +195,7 @@ public final class V1Database implements IndexedDatabase {
             final int document,
             @NotNull
             final String fieldName) {
-        assert storers.containsKey(fieldName);
-
-        return storers.get(fieldName).getByteValue(document);
+        return storer(fieldName).getByteValue(document);
     }
 
     @Override
@@ -175,7 +210,7 @@ public final class V1Database implements IndexedDatabase {
         }
 
         final Iterator<? extends ScoredDocument<?>> unlimited =
-                query.sortedUnlimited(docs, this, bitSetPool);
+                sorted(query, docs, this, bitSetPool);
 
         if (query.getSkip() != 0) {
             Iterators.advance(unlimited, query.getSkip());
@@ -212,12 +247,13 @@ public final class V1Database implements IndexedDatabase {
         final Iterator<? extends ScoredDocument<?>> unlimited;
         if (result == getDocumentCount()) {
             unlimited =
-                    query.sortedUnlimited(
+                    sorted(
+                            query,
                             new ReadOnlyOneBitSet(getDocumentCount()),
                             this,
                             bitSetPool);
         } else {
-            unlimited = query.sortedUnlimited(docs, this, bitSetPool);
+            unlimited = sorted(query, docs, this, bitSetPool);
         }
 
         if (query.getSkip() != 0) {
@@ -240,6 +276,27 @@ public final class V1Database implements IndexedDatabase {
         return result;
     }
 
+    /**
+     * Sorted results sufficient to apply skip and limit of the query
+     */
+    @NotNull
+    static Iterator<? extends ScoredDocument<?>> sorted(
+            @NotNull
+            final Query query,
+            @NotNull
+            final BitSet docs,
+            @NotNull
+            final IndexedDatabase database,
+            @NotNull
+            final ArrayBitSetPool bitSetPool) {
+        final long top = (long) query.getSkip() + query.getLimit();
+        if (query.getLimit() == Integer.MAX_VALUE || top > Integer.MAX_VALUE) {
+            return query.sortedUnlimited(docs, database, bitSetPool);
+        } else {
+            return query.sortedTop(docs, database, bitSetPool, (int) top);
+        }
+    }
+
     @Override
     public int count(
             @NotNull
@@ -14,16 +14,22 @@ import com.yandex.yoctodb.immutable.*;
 import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.ChecksumType;
 import com.yandex.yoctodb.v1.V1DatabaseFormat.Feature;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.SegmentType;
 import com.yandex.yoctodb.v1.immutable.segment.Segment;
 import com.yandex.yoctodb.v1.immutable.segment.SegmentRegistry;
 import java.util.stream.Collectors;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+import java.util.zip.Checksum;
 
 /**
  * Builds immutable {@link Database}s from bytes in V1 format
@@ -33,10 +39,18 @@ import java.util.*;
 @ThreadSafe
 public class V1DatabaseReader extends DatabaseReader {
     private static final int DIGEST_BUF_SIZE = 4096;
+    private static final int CHECKSUM_BUF_SIZE = 64 * 1024;
     public static final V1DatabaseFormat.Feature[] SUPPORTED_FEATURES = {
         Feature.LEGACY,
         Feature.ASCENDING_BIT_SET_INDEX,
-        Feature.TRIE_BYTE_ARRAY_SORTED_SET
+        Feature.TRIE_BYTE_ARRAY_SORTED_SET,
+        Feature.TABLE_OF_CONTENTS,
+        Feature.BLOCK_CHECKSUM,
+        Feature.SEGMENT_CHECKSUM,
+        Feature.DELTA_VAR_INT_INDEX,
+        Feature.ELIAS_FANO_INDEX,
+        Feature.SKIP_LIST_INDEX,
+        Feature.HYBRID_INDEX
     };
 
 
@@ -82,6 +96,136 @@ public class V1DatabaseReader extends DatabaseReader {
             @NotNull
             final ArrayBitSetPool bitSetPool,
             final boolean checksum) {
+        return from(buffer, bitSetPool, checksum, false);
+    }
+
+    /**
+     * Verifies the segment checksums (if written) of the lazily read
+     * databases only
+     */
+    @NotNull
+    @Override
+    public IndexedDatabase from(
+            @NotNull
+            final Buffer buffer,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            final boolean checksum,
+            final boolean lazy) {
+        return from(buffer, bitSetPool, checksum, lazy, lazy);
+    }
+
+    /**
+     * Builds {@link IndexedDatabase} from {@code buffer}
+     *
+     * @param checksum       verify the whole database upfront
+     * @param lazy           instantiate indexes on first access instead of
+     *                       reading all of them upfront
+     * @param verifySegments verify the segment checksums (if written) on
+     *                       first access of lazily read databases or while
+     *                       reading the segments eagerly, unless the whole
+     *                       database is verified upfront
+     */
+    @NotNull
+    public IndexedDatabase from(
+            @NotNull
+            final Buffer buffer,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            final boolean checksum,
+            final boolean lazy,
+            final boolean verifySegments) {
+        final int dbFeatures = readFeatures(buffer);
+        final int documentCount = readDocumentCount(buffer);
+        final Buffer body = readBody(buffer, dbFeatures, checksum);
+
+        final boolean toc =
+                (dbFeatures & Feature.intValue(Feature.TABLE_OF_CONTENTS)) != 0;
+        final long segmentsEnd = toc ? tableOfContentsOffset(body) : body.limit();
+
+        final boolean segmentChecksums =
+                (dbFeatures & Feature.intValue(Feature.SEGMENT_CHECKSUM)) != 0;
+        // Verify segments if requested and not verified yet
+        final boolean verify = segmentChecksums && verifySegments && !checksum;
+
+        if (lazy) {
+            if (toc)
+                return readTableOfContents(
+                        documentCount,
+                        body,
+                        segmentsEnd,
+                        segmentChecksums,
+                        verify,
+                        bitSetPool);
+            else
+                return readLazily(documentCount, body, bitSetPool);
+        }
+
+        return readEagerly(
+                documentCount,
+                body,
+                segmentsEnd,
+                toc && verify ? segmentChecksums(body, segmentsEnd) : null,
+                bitSetPool);
+    }
+
+    /**
+     * Receives raw segments of a database
+     */
+    public interface SegmentVisitor {
+        /**
+         * @param type      segment type code
+         * @param fieldName field name of a built-in segment or {@code null}
+         * @param segment   segment content following its size and type
+         */
+        void visit(
+                int type,
+                @Nullable
+                String fieldName,
+                @NotNull
+                Buffer segment);
+    }
+
+    /**
+     * Checks the database and visits its raw segments in order without
+     * instantiating the indexes
+     *
+     * @return document count
+     */
+    public static int readSegments(
+            @NotNull
+            final Buffer buffer,
+            final boolean checksum,
+            @NotNull
+            final SegmentVisitor visitor) {
+        final int dbFeatures = readFeatures(buffer);
+        final int documentCount = readDocumentCount(buffer);
+        final Buffer body = readBody(buffer, dbFeatures, checksum);
+
+        final long segmentsEnd =
+                (dbFeatures & Feature.intValue(Feature.TABLE_OF_CONTENTS)) != 0 ?
+                        tableOfContentsOffset(body) :
+                        body.limit();
+        while (body.position() < segmentsEnd) {
+            final long size = body.getLong();
+            final int type = body.getInt();
+
+            final Buffer segmentBuffer = body.slice(size);
+            visitor.visit(
+                    type,
+                    isBuiltIn(type) ? fieldName(segmentBuffer) : null,
+                    segmentBuffer);
+
+            // Skipping the segment
+            body.position(body.position() + size);
+        }
+
+        return documentCount;
+    }
+
+    private static int readFeatures(
+            @NotNull
+            final Buffer buffer) {
         // Checking the magic
         for (int i = 0; i < V1DatabaseFormat.MAGIC.length; i++)
             if (buffer.get() != V1DatabaseFormat.MAGIC[i]) {
@@ -98,12 +242,38 @@ public class V1DatabaseReader extends DatabaseReader {
                         ">. Supported features: <" + supportedFormatsString() + ">.");
         }
 
-        // Checking the format version
+        return dbFeatures;
+    }
+
+    private static int readDocumentCount(
+            @NotNull
+            final Buffer buffer) {
         final int documentCount = buffer.getInt();
         if (documentCount < 0) {
             throw new IllegalArgumentException("Wrong document count " + documentCount);
         }
 
+        return documentCount;
+    }
+
+    @NotNull
+    private static Buffer readBody(
+            @NotNull
+            final Buffer buffer,
+            final int dbFeatures,
+            final boolean checksum) {
+        if ((dbFeatures & Feature.intValue(Feature.BLOCK_CHECKSUM)) != 0) {
+            return blockChecksummedBody(buffer, checksum);
+        } else {
+            return digestedBody(buffer, checksum);
+        }
+    }
+
+    @NotNull
+    private static Buffer digestedBody(
+            @NotNull
+            final Buffer buffer,
+            final boolean checksum) {
         if (buffer.remaining() < V1DatabaseFormat.getDigestSizeInBytes()) {
             throw new IllegalArgumentException("Too small buffer");
         }
@@ -125,16 +295,180 @@ public class V1DatabaseReader extends DatabaseReader {
             }
         }
 
+        return body;
+    }
+
+    @NotNull
+    private static Buffer blockChecksummedBody(
+            @NotNull
+            final Buffer buffer,
+            final boolean checksum) {
+        // Checksum type, block size and block count
+        final long trailer = 3 * Integer.BYTES;
+        if (buffer.remaining() < trailer) {
+            throw new IllegalArgumentException("Too small buffer");
+        }
+
+        final int count = buffer.getInt(buffer.limit() - Integer.BYTES);
+        final int blockSize = buffer.getInt(buffer.limit() - 2 * Integer.BYTES);
+        final ChecksumType type =
+                ChecksumType.fromCode(
+                        buffer.getInt(buffer.limit() - 3 * Integer.BYTES));
+        if (type == ChecksumType.MESSAGE_DIGEST || blockSize <= 0 || count < 0) {
+            throw new IllegalArgumentException("Wrong block checksums");
+        }
+
+        final long checksumsSize = (long) count * Integer.BYTES;
+        if (buffer.remaining() < trailer + checksumsSize) {
+            throw new IllegalArgumentException("Too small buffer");
+        }
+
+        final long bodySize = buffer.remaining() - trailer - checksumsSize;
+        if ((bodySize + blockSize - 1) / blockSize != count) {
+            throw new IllegalArgumentException("Wrong block count " + count);
+        }
+
+        final Buffer body = buffer.slice(bodySize);
+
+        if (checksum) {
+            final Buffer checksums =
+                    buffer.slice(buffer.position() + bodySize, checksumsSize);
+            if (!verifyBlocks(body, checksums, type, blockSize, count)) {
+                throw new IllegalArgumentException(
+                        "The database is corrupted");
+            }
+        }
+
+        return body;
+    }
+
+    /**
+     * Verifies the blocks in parallel, each one through its own slice
+     */
+    private static boolean verifyBlocks(
+            @NotNull
+            final Buffer body,
+            @NotNull
+            final Buffer checksums,
+            @NotNull
+            final ChecksumType type,
+            final int blockSize,
+            final int count) {
+        final Buffer[] blocks = new Buffer[count];
+        final int[] expected = new int[count];
+        for (int i = 0; i < count; i++) {
+            final long from = (long) i * blockSize;
+            blocks[i] = body.slice(from, Math.min(blockSize, body.limit() - from));
+            expected[i] = checksums.getInt((long) i * Integer.BYTES);
+        }
+
+        return IntStream.range(0, count)
+                .parallel()
+                .allMatch(i -> calculateChecksum(type, blocks[i]) == expected[i]);
+    }
+
+    static int calculateChecksum(
+            @NotNull
+            final ChecksumType type,
+            @NotNull
+            final Buffer block) {
+        final Checksum checksum = type.newChecksum();
+        final byte[] buf =
+                new byte[(int) Math.min(CHECKSUM_BUF_SIZE, block.remaining())];
+        while (block.hasRemaining()) {
+            final int length = (int) Math.min(buf.length, block.remaining());
+            block.get(buf, 0, length);
+            checksum.update(buf, 0, length);
+        }
+
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * @return offset of the table of contents in {@code body}
+     */
+    private static long tableOfContentsOffset(
+            @NotNull
+            final Buffer body) {
+        if (body.remaining() < Long.BYTES + Integer.BYTES)
+            throw new IllegalArgumentException("No table of contents");
+
+        final long size = body.getLong(body.limit() - Long.BYTES);
+        final long offset = body.limit() - Long.BYTES - size;
+        if (size < Integer.BYTES || offset < body.position())
+            throw new IllegalArgumentException(
+                    "Wrong table of contents size " + size);
+
+        return offset;
+    }
+
+    /**
+     * @return segment checksums from the table of contents by segment
+     * offsets relative to the first segment
+     */
+    @NotNull
+    private static Map<Long, Integer> segmentChecksums(
+            @NotNull
+            final Buffer body,
+            final long tocOffset) {
+        final Buffer toc =
+                body.slice(
+                        tocOffset,
+                        body.limit() - Long.BYTES - tocOffset);
+
+        final int count = toc.getInt();
+        final Map<Long, Integer> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            // Skipping name and type
+            final int nameLength = toc.getInt();
+            toc.position(toc.position() + nameLength + Integer.BYTES);
+            final long offset = toc.getLong();
+            // Skipping length
+            toc.position(toc.position() + Long.BYTES);
+            result.put(offset, toc.getInt());
+        }
+
+        return result;
+    }
+
+    /**
+     * @param checksums expected segment checksums by segment offsets or
+     *                  {@code null} if the segments are not verified
+     */
+    @NotNull
+    private static IndexedDatabase readEagerly(
+            final int documentCount,
+            @NotNull
+            final Buffer body,
+            final long segmentsEnd,
+            @Nullable
+            final Map<Long, Integer> checksums,
+            @NotNull
+            final ArrayBitSetPool bitSetPool) {
         // Reading the segments
+        final long segmentsStart = body.position();
         final Map<String, FilterableIndex> filters = new HashMap<>();
         final Map<String, SortableIndex> sorters = new HashMap<>();
         final Map<String, StoredIndex> storers = new HashMap<>();
-        while (body.hasRemaining()) {
+        while (body.position() < segmentsEnd) {
+            final long offset = body.position() - segmentsStart;
             final long size = body.getLong();
             final int type = body.getInt();
 
             final Buffer segmentBuffer = body.slice(size);
 
+            if (checksums != null) {
+                final Integer expected = checksums.get(offset);
+                if (expected == null ||
+                    calculateChecksum(
+                            ChecksumType.CRC32C,
+                            segmentBuffer.slice()) != expected) {
+                    throw new IllegalArgumentException(
+                            "The segment of type " + type +
+                            " is corrupted");
+                }
+            }
+
             final Segment segment = SegmentRegistry.read(type, segmentBuffer);
 
             if (segment instanceof FilterableIndex) {
@@ -174,6 +508,222 @@ public class V1DatabaseReader extends DatabaseReader {
         return new V1Database(documentCount, filters, sorters, storers, bitSetPool);
     }
 
+    /**
+     * Builds {@link V1Database} remembering only field names and positions
+     * of known segments, the indexes are instantiated on first access.
+     * Segments of unknown types are read eagerly.
+     */
+    @NotNull
+    private static IndexedDatabase readLazily(
+            final int documentCount,
+            @NotNull
+            final Buffer body,
+            @NotNull
+            final ArrayBitSetPool bitSetPool) {
+        final Map<String, LazySegment> filters = new HashMap<>();
+        final Map<String, LazySegment> sorters = new HashMap<>();
+        final Map<String, LazySegment> storers = new HashMap<>();
+        while (body.hasRemaining()) {
+            final long size = body.getLong();
+            final int type = body.getInt();
+
+            final Buffer segmentBuffer = body.slice(size);
+
+            add(
+                    filters,
+                    sorters,
+                    storers,
+                    type,
+                    segmentType(type) == null ? null : fieldName(segmentBuffer),
+                    new LazySegment(type, segmentBuffer));
+
+            // Skipping the segment
+            body.position(body.position() + size);
+        }
+
+        return new V1Database(documentCount, bitSetPool, filters, sorters, storers);
+    }
+
+    /**
+     * Builds {@link V1Database} locating the segments using the table of
+     * contents without scanning them
+     */
+    @NotNull
+    private static IndexedDatabase readTableOfContents(
+            final int documentCount,
+            @NotNull
+            final Buffer body,
+            final long tocOffset,
+            final boolean segmentChecksums,
+            final boolean verify,
+            @NotNull
+            final ArrayBitSetPool bitSetPool) {
+        final long segmentsStart = body.position();
+        final Buffer toc =
+                body.slice(
+                        tocOffset,
+                        body.limit() - Long.BYTES - tocOffset);
+
+        final int count = toc.getInt();
+        final Map<String, LazySegment> filters = new HashMap<>();
+        final Map<String, LazySegment> sorters = new HashMap<>();
+        final Map<String, LazySegment> storers = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final byte[] name = new byte[toc.getInt()];
+            toc.get(name);
+            final int type = toc.getInt();
+            final long offset = toc.getLong();
+            final long length = toc.getLong();
+            final int checksum = segmentChecksums ? toc.getInt() : 0;
+
+            // Skipping segment size and type
+            final long header = Long.BYTES + Integer.BYTES;
+            if (offset < 0 ||
+                length < header ||
+                segmentsStart + offset + length > tocOffset)
+                throw new IllegalArgumentException(
+                        "Wrong segment bounds in table of contents");
+
+            final Buffer segmentBuffer =
+                    body.slice(
+                            segmentsStart + offset + header,
+                            length - header);
+            add(
+                    filters,
+                    sorters,
+                    storers,
+                    type,
+                    new String(name),
+                    verify ?
+                            new LazySegment(type, segmentBuffer, checksum) :
+                            new LazySegment(type, segmentBuffer));
+        }
+
+        return new V1Database(documentCount, bitSetPool, filters, sorters, storers);
+    }
+
+    private static void add(
+            @NotNull
+            final Map<String, LazySegment> filters,
+            @NotNull
+            final Map<String, LazySegment> sorters,
+            @NotNull
+            final Map<String, LazySegment> storers,
+            final int type,
+            @Nullable
+            final String fieldName,
+            @NotNull
+            final LazySegment segment) {
+        final SegmentType segmentType = segmentType(type);
+        final String name;
+        final boolean filterable;
+        final boolean sortable;
+        final boolean stored;
+        if (segmentType == null) {
+            // Reading unknown segment right away to find out its role
+            final Object read = segment.get();
+            name = read instanceof Index ? ((Index) read).getFieldName() : "";
+            filterable = read instanceof FilterableIndex;
+            sortable = read instanceof SortableIndex;
+            stored = read instanceof StoredIndex;
+        } else {
+            assert fieldName != null;
+
+            name = fieldName;
+            filterable = isFilterable(segmentType);
+            sortable = isSortable(segmentType);
+            stored = segmentType == SegmentType.VARIABLE_LENGTH_STORED_INDEX;
+        }
+
+        if (filterable) {
+            assert !filters.containsKey(name) :
+                    "Duplicate filterable index for field <" + name + ">";
+
+            filters.put(name, segment);
+        }
+
+        if (sortable) {
+            assert !sorters.containsKey(name) :
+                    "Duplicate sortable index for field <" + name + ">";
+
+            sorters.put(name, segment);
+        }
+
+        if (stored) {
+            assert !storers.containsKey(name) :
+                    "Duplicate stored index for field <" + name + ">";
+
+            storers.put(name, segment);
+        }
+    }
+
+    /**
+     * @return built-in segment type which might be read lazily or
+     * {@code null}
+     */
+    @Nullable
+    private static SegmentType segmentType(final int code) {
+        for (SegmentType type : SegmentType.values())
+            if (type.getCode() == code &&
+                type != SegmentType.VARIABLE_LENGTH_FOLDED_INDEX)
+                return type;
+
+        return null;
+    }
+
+    /**
+     * @return whether the segment is one of {@link SegmentType}s
+     */
+    private static boolean isBuiltIn(final int code) {
+        for (SegmentType type : SegmentType.values())
+            if (type.getCode() == code)
+                return true;
+
+        return false;
+    }
+
+    private static boolean isFilterable(
+            @NotNull
+            final SegmentType type) {
+        switch (type) {
+            case FIXED_LENGTH_FILTER:
+            case VARIABLE_LENGTH_FILTER:
+            case TRIE_FILTER:
+            case FIXED_LENGTH_FULL_INDEX:
+            case VARIABLE_LENGTH_FULL_INDEX:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSortable(
+            @NotNull
+            final SegmentType type) {
+        switch (type) {
+            case FIXED_LENGTH_SORTABLE_INDEX:
+            case VARIABLE_LENGTH_SORTABLE_INDEX:
+            case FIXED_LENGTH_FULL_INDEX:
+            case VARIABLE_LENGTH_FULL_INDEX:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Every built-in segment starts with the field name
+     */
+    @NotNull
+    private static String fieldName(
+            @NotNull
+            final Buffer segment) {
+        final int size = segment.getInt(segment.position());
+        final byte[] name = new byte[size];
+        segment.slice(segment.position() + Integer.BYTES, size).get(name);
+        return new String(name);
+    }
+
     @NotNull
     @Override
     public Database composite(
@@ -183,4 +733,16 @@ public class V1DatabaseReader extends DatabaseReader {
             final ArrayBitSetPool bitSetPool) {
         return new V1CompositeDatabase(databases, bitSetPool);
     }
+
+    @NotNull
+    @Override
+    public Database composite(
+            @NotNull
+            final Collection<? extends IndexedDatabase> databases,
+            @NotNull
+            final ArrayBitSetPool bitSetPool,
+            @NotNull
+            final Executor executor) {
+        return new V1CompositeDatabase(databases, bitSetPool, executor);
+    }
 }
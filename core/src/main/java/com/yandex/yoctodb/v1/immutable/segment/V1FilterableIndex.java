@@ -14,7 +14,9 @@ import com.yandex.yoctodb.immutable.FilterableIndex;
 import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
-import com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSet;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.immutable.impl.EmptyPostingIterator;
+import com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSets;
 import com.yandex.yoctodb.util.immutable.impl.IndexToIndexMultiMapReader;
 import com.yandex.yoctodb.util.immutable.impl.TrieByteArraySortedSet;
 import com.yandex.yoctodb.util.immutable.impl.VariableLengthByteArraySortedSet;
@@ -22,6 +24,7 @@ import com.yandex.yoctodb.util.mutable.BitSet;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Immutable {@link FilterableIndex} implementation
@@ -144,6 +147,103 @@ public final class V1FilterableIndex implements FilterableIndex, Segment {
                         toValueIndex + 1);
     }
 
+    @Override
+    public long estimateEq(
+            @NotNull
+            final Buffer value) {
+        final int valueIndex = values.indexOf(value);
+        return valueIndex == -1 ?
+                0L :
+                valueToDocuments.estimateBetween(valueIndex, valueIndex + 1);
+    }
+
+    @Nullable
+    @Override
+    public PostingIterator eqIterator(
+            @NotNull
+            final Buffer value) {
+        final int valueIndex = values.indexOf(value);
+        return valueIndex == -1 ?
+                EmptyPostingIterator.INSTANCE :
+                valueToDocuments.iterator(valueIndex);
+    }
+
+    @Override
+    public long estimateIn(
+            @NotNull
+            final Buffer... value) {
+        long result = 0L;
+        for (Buffer currentValue : value) {
+            final long estimate = estimateEq(currentValue);
+            if (estimate == UNKNOWN_ESTIMATE) {
+                return UNKNOWN_ESTIMATE;
+            }
+            result += estimate;
+        }
+        return result;
+    }
+
+    @Override
+    public long estimateLessThan(
+            @NotNull
+            final Buffer value,
+            final boolean orEquals) {
+        final int greatestValueIndex = values.indexOfLessThan(
+                value,
+                orEquals,
+                0);
+        return greatestValueIndex == -1 ?
+                0L :
+                valueToDocuments.estimateBetween(0, greatestValueIndex + 1);
+    }
+
+    @Override
+    public long estimateGreaterThan(
+            @NotNull
+            final Buffer value,
+            final boolean orEquals) {
+        final int leastValueIndex = values.indexOfGreaterThan(
+                value,
+                orEquals,
+                values.size() - 1);
+        return leastValueIndex == -1 ?
+                0L :
+                valueToDocuments.estimateBetween(
+                        leastValueIndex,
+                        valueToDocuments.getKeysCount());
+    }
+
+    @Override
+    public long estimateBetween(
+            @NotNull
+            final Buffer from,
+            final boolean fromInclusive,
+            @NotNull
+            final Buffer to,
+            final boolean toInclusive) {
+        final int fromValueIndex =
+                values.indexOfGreaterThan(
+                        from,
+                        fromInclusive,
+                        values.size() - 1);
+
+        if (fromValueIndex == -1) {
+            return 0L;
+        }
+
+        final int toValueIndex =
+                values.indexOfLessThan(
+                        to,
+                        toInclusive,
+                        fromValueIndex);
+
+        return toValueIndex == -1 ?
+                0L :
+                valueToDocuments.estimateBetween(
+                        fromValueIndex,
+                        toValueIndex + 1);
+    }
+
     static void registerReader() {
         SegmentRegistry.register(
                 V1DatabaseFormat.SegmentType.FIXED_LENGTH_FILTER.getCode(),
@@ -156,7 +256,7 @@ public final class V1FilterableIndex implements FilterableIndex, Segment {
                         final String fieldName = Segments.extractString(buffer);
 
                         final ByteArraySortedSet values =
-                                FixedLengthByteArraySortedSet.from(
+                                FixedLengthByteArraySortedSets.from(
                                         Segments.extract(buffer));
 
                         final IndexToIndexMultiMap valueToDocuments =
@@ -17,7 +17,8 @@ import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMap;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.util.immutable.IntToIntArray;
-import com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSet;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSets;
 import com.yandex.yoctodb.util.immutable.impl.IndexToIndexMultiMapReader;
 import com.yandex.yoctodb.util.immutable.impl.IntIndexToIndexMap;
 import com.yandex.yoctodb.util.immutable.impl.VariableLengthByteArraySortedSet;
@@ -25,6 +26,7 @@ import com.yandex.yoctodb.util.mutable.BitSet;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import net.jcip.annotations.Immutable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Iterator;
 
@@ -130,6 +132,59 @@ public final class V1FullIndex
                 toInclusive);
     }
 
+    @Override
+    public long estimateEq(
+            @NotNull
+            final Buffer value) {
+        return filterableDelegate.estimateEq(value);
+    }
+
+    @Nullable
+    @Override
+    public PostingIterator eqIterator(
+            @NotNull
+            final Buffer value) {
+        return filterableDelegate.eqIterator(value);
+    }
+
+    @Override
+    public long estimateIn(
+            @NotNull
+            final Buffer... value) {
+        return filterableDelegate.estimateIn(value);
+    }
+
+    @Override
+    public long estimateLessThan(
+            @NotNull
+            final Buffer value,
+            final boolean orEquals) {
+        return filterableDelegate.estimateLessThan(value, orEquals);
+    }
+
+    @Override
+    public long estimateGreaterThan(
+            @NotNull
+            final Buffer value,
+            final boolean orEquals) {
+        return filterableDelegate.estimateGreaterThan(value, orEquals);
+    }
+
+    @Override
+    public long estimateBetween(
+            @NotNull
+            final Buffer from,
+            final boolean fromInclusive,
+            @NotNull
+            final Buffer to,
+            final boolean toInclusive) {
+        return filterableDelegate.estimateBetween(
+                from,
+                fromInclusive,
+                to,
+                toInclusive);
+    }
+
     @Override
     public int getSortValueIndex(final int document) {
         return sortableDelegate.getSortValueIndex(document);
@@ -200,7 +255,7 @@ public final class V1FullIndex
                         final String fieldName = Segments.extractString(buffer);
 
                         final ByteArraySortedSet values =
-                                FixedLengthByteArraySortedSet.from(
+                                FixedLengthByteArraySortedSets.from(
                                         Segments.extract(buffer));
 
                         final IndexToIndexMultiMap valueToDocuments =
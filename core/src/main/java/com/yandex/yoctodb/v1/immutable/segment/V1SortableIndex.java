@@ -16,7 +16,7 @@ import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMap;
 import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.util.immutable.IntToIntArray;
-import com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSet;
+import com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSets;
 import com.yandex.yoctodb.util.immutable.impl.IndexToIndexMultiMapReader;
 import com.yandex.yoctodb.util.immutable.impl.IntIndexToIndexMap;
 import com.yandex.yoctodb.util.immutable.impl.VariableLengthByteArraySortedSet;
@@ -137,7 +137,7 @@ public final class V1SortableIndex
                         final String fieldName = Segments.extractString(buffer);
 
                         final ByteArraySortedSet values =
-                                FixedLengthByteArraySortedSet.from(
+                                FixedLengthByteArraySortedSets.from(
                                         Segments.extract(buffer));
 
                         final IndexToIndexMultiMap valueToDocuments =
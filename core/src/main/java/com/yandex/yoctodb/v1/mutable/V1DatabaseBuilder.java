@@ -11,38 +11,138 @@
 package com.yandex.yoctodb.v1.mutable;
 
 import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 import com.yandex.yoctodb.DatabaseFormat;
 import com.yandex.yoctodb.mutable.DatabaseBuilder;
 import com.yandex.yoctodb.mutable.DocumentBuilder;
+import com.yandex.yoctodb.util.BlockChecksumOutputStreamWrapper;
+import com.yandex.yoctodb.util.Crc32c;
 import com.yandex.yoctodb.util.MessageDigestOutputStreamWrapper;
 import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.OutputStreamWritableBuilder;
 import com.yandex.yoctodb.util.UnsignedByteArray;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.ChecksumType;
 import com.yandex.yoctodb.v1.V1DatabaseFormat.Feature;
 import com.yandex.yoctodb.v1.mutable.segment.*;
 import net.jcip.annotations.NotThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.Checksum;
 
 /**
  * {@link DatabaseBuilder} implementation in V1 format
  *
+ * A builder spilling to disk keeps temporary files until the database is
+ * written, so it should be closed if abandoned.
+ *
  * @author incubos
  */
 @NotThreadSafe
 public final class V1DatabaseBuilder
         extends Freezable
-        implements DatabaseBuilder {
+        implements DatabaseBuilder, Closeable {
     private int currentDocumentId = 0;
 
     private final Map<String, IndexSegment> indexes =
             new HashMap<>();
 
+    @Nullable
+    private final Executor executor;
+
+    @Nullable
+    private final File spillDirectory;
+    private final long heapBudgetInBytes;
+    private long spillableSizeInBytes = 0L;
+    @NotNull
+    private final List<SpilledSegment> spilledSegments = new ArrayList<>();
+
+    private boolean tableOfContents = false;
+    private boolean segmentChecksums = false;
+
+    public V1DatabaseBuilder() {
+        this(null);
+    }
+
+    /**
+     * @param executor builds the segments concurrently if not {@code null}
+     */
+    public V1DatabaseBuilder(
+            @Nullable
+            final Executor executor) {
+        this.executor = executor;
+        this.spillDirectory = null;
+        this.heapBudgetInBytes = Long.MAX_VALUE;
+    }
+
+    /**
+     * Builds a database spilling sorted runs of filterable and sortable
+     * field values to temporary files in {@code spillDirectory} whenever
+     * their estimated heap size exceeds {@code heapBudgetInBytes}.
+     *
+     * The runs are merged field by field even with {@code executor} and
+     * every built segment is moved to a temporary file before merging the
+     * next field, so the heap holds the distinct values of a single field
+     * and an {@code int} per its (value, document) pair at a time. The
+     * temporary files are deleted while writing the database, so it might
+     * be written only once.
+     *
+     * @param executor builds the segments concurrently if not {@code null}
+     */
+    public V1DatabaseBuilder(
+            @Nullable
+            final Executor executor,
+            @NotNull
+            final File spillDirectory,
+            final long heapBudgetInBytes) {
+        if (!spillDirectory.isDirectory())
+            throw new IllegalArgumentException(
+                    "Not a directory: " + spillDirectory);
+        if (heapBudgetInBytes <= 0)
+            throw new IllegalArgumentException(
+                    "Nonpositive heap budget " + heapBudgetInBytes);
+
+        this.executor = executor;
+        this.spillDirectory = spillDirectory;
+        this.heapBudgetInBytes = heapBudgetInBytes;
+    }
+
+    /**
+     * Writes the table of contents after the segments, so that the database
+     * might be read lazily without scanning them
+     */
+    @NotNull
+    public V1DatabaseBuilder withTableOfContents() {
+        checkNotFrozen();
+
+        this.tableOfContents = true;
+
+        return this;
+    }
+
+    /**
+     * Writes the table of contents with CRC-32C of every segment, so that
+     * the segments might be verified one by one instead of the whole body
+     */
+    @NotNull
+    public V1DatabaseBuilder withSegmentChecksums() {
+        checkNotFrozen();
+
+        this.tableOfContents = true;
+        this.segmentChecksums = true;
+
+        return this;
+    }
+
     @NotNull
     @Override
     public DatabaseBuilder merge(
@@ -76,25 +176,35 @@ public final class V1DatabaseBuilder
                 @NotNull
                 final DocumentBuilder.IndexType indexType =
                         builder.length.get(fieldName);
+                final boolean numeric = isNumeric(indexType, values);
 
                 switch (indexOption) {
                     case FILTERABLE:
-                        index = new V1FilterableIndex(
+                        index = numeric ?
+                                new V1NumericFilterableIndex(fieldName) :
+                                new V1FilterableIndex(
                                 fieldName,
                                 indexType == DocumentBuilder.IndexType.FIXED_LENGTH,
-                                indexType == DocumentBuilder.IndexType.TRIE
+                                indexType == DocumentBuilder.IndexType.TRIE,
+                                spillDirectory
                         );
                         break;
                     case SORTABLE:
-                        index = new V1SortableIndex(
+                        index = numeric ?
+                                new V1NumericSortableIndex(fieldName) :
+                                new V1SortableIndex(
                                 fieldName,
-                                indexType == DocumentBuilder.IndexType.FIXED_LENGTH
+                                indexType == DocumentBuilder.IndexType.FIXED_LENGTH,
+                                spillDirectory
                         );
                         break;
                     case FULL:
-                        index = new V1FullIndex(
+                        index = numeric ?
+                                new V1NumericFullIndex(fieldName) :
+                                new V1FullIndex(
                                 fieldName,
-                                indexType == DocumentBuilder.IndexType.FIXED_LENGTH
+                                indexType == DocumentBuilder.IndexType.FIXED_LENGTH,
+                                spillDirectory
                         );
                         break;
                     case STORED:
@@ -106,17 +216,59 @@ public final class V1DatabaseBuilder
                 }
 
                 indexes.put(fieldName, index);
-                index.addDocument(currentDocumentId, values);
+                addDocument(index, values);
             } else {
-                existingIndex.addDocument(currentDocumentId, values);
+                addDocument(existingIndex, values);
             }
         }
 
         currentDocumentId++;
 
+        if (spillableSizeInBytes > heapBudgetInBytes) {
+            for (IndexSegment index : indexes.values()) {
+                if (index instanceof Spillable) {
+                    ((Spillable) index).spill();
+                }
+            }
+            spillableSizeInBytes = 0L;
+        }
+
         return this;
     }
 
+    /**
+     * Fixed length values of at most 8 bytes (e.g. numbers) are kept in
+     * primitive columns unless spilling is enabled
+     */
+    private boolean isNumeric(
+            @NotNull
+            final DocumentBuilder.IndexType indexType,
+            @NotNull
+            final Collection<UnsignedByteArray> values) {
+        if (spillDirectory != null ||
+            indexType != DocumentBuilder.IndexType.FIXED_LENGTH)
+            return false;
+
+        final int length = values.iterator().next().length();
+        return 0 < length && length <= Longs.BYTES;
+    }
+
+    private void addDocument(
+            @NotNull
+            final IndexSegment index,
+            @NotNull
+            final Collection<UnsignedByteArray> values) {
+        if (index instanceof Spillable) {
+            final Spillable spillable = (Spillable) index;
+            final long before = spillable.getSpillableSizeInBytes();
+            index.addDocument(currentDocumentId, values);
+            spillableSizeInBytes +=
+                    spillable.getSpillableSizeInBytes() - before;
+        } else {
+            index.addDocument(currentDocumentId, values);
+        }
+    }
+
     @NotNull
     @Override
     public OutputStreamWritable buildWritable() {
@@ -126,31 +278,224 @@ public final class V1DatabaseBuilder
 
         // Build writables
 
-        final List<OutputStreamWritable> writables =
-                new ArrayList<>(indexes.size() + 1);
-        final Iterator<IndexSegment> indexSegmentIterator =
-                indexes.values().iterator();
-        while (indexSegmentIterator.hasNext()) {
-            final IndexSegment segment = indexSegmentIterator.next();
+        final List<byte[]> fieldNames = new ArrayList<>(indexes.size());
+        final List<IndexSegment> segments = new ArrayList<>(indexes.size());
+        for (Map.Entry<String, IndexSegment> e : indexes.entrySet()) {
+            final IndexSegment segment = e.getValue();
             segment.setDatabaseDocumentsCount(currentDocumentId);
-            writables.add(segment.buildWritable());
-            indexSegmentIterator.remove();
+            fieldNames.add(e.getKey().getBytes());
+            segments.add(segment);
+        }
+        indexes.clear();
+
+        final List<OutputStreamWritable> writables;
+        boolean built = false;
+        try {
+            if (spillDirectory == null) {
+                writables = build(segments, executor);
+            } else {
+                // Merging the spilled fields one by one to bound the heap
+                writables = buildSpilling(segments, spillDirectory);
+                for (OutputStreamWritable writable : writables) {
+                    if (writable instanceof SpilledSegment)
+                        spilledSegments.add((SpilledSegment) writable);
+                }
+            }
+            built = true;
+        } finally {
+            if (!built)
+                close(segments);
+        }
+
+        return writable(
+                currentDocumentId,
+                fieldNames,
+                writables,
+                tableOfContents,
+                segmentChecksums);
+    }
+
+    /**
+     * Deletes the temporary files of the abandoned builder or of the built
+     * database which is not going to be written
+     */
+    @Override
+    public void close() {
+        freeze();
+
+        close(indexes.values());
+        indexes.clear();
+
+        for (SpilledSegment segment : spilledSegments)
+            segment.delete();
+        spilledSegments.clear();
+    }
+
+    private static void close(
+            @NotNull
+            final Collection<IndexSegment> segments) {
+        for (IndexSegment segment : segments) {
+            if (segment instanceof Spillable)
+                ((Spillable) segment).close();
+        }
+    }
+
+    /**
+     * Builds the segments concurrently using {@code executor} if it is not
+     * {@code null}
+     *
+     * @return segment writables in the same order
+     */
+    @NotNull
+    static List<OutputStreamWritable> build(
+            @NotNull
+            final List<? extends OutputStreamWritableBuilder> segments,
+            @Nullable
+            final Executor executor) {
+        final List<OutputStreamWritable> writables =
+                new ArrayList<>(segments.size());
+        if (executor == null) {
+            for (OutputStreamWritableBuilder segment : segments) {
+                writables.add(segment.buildWritable());
+            }
+        } else {
+            // Segments are independent
+            final List<CompletableFuture<OutputStreamWritable>> futures =
+                    new ArrayList<>(segments.size());
+            for (OutputStreamWritableBuilder segment : segments) {
+                futures.add(
+                        CompletableFuture.supplyAsync(
+                                segment::buildWritable,
+                                executor));
+            }
+
+            // Waiting for the segments in order
+            for (CompletableFuture<OutputStreamWritable> future : futures) {
+                writables.add(join(future));
+            }
+        }
+
+        return writables;
+    }
+
+    /**
+     * Builds the segments one by one moving the ones built from
+     * {@link Spillable} builders to temporary files in {@code directory}
+     * before building the next segment
+     *
+     * @return segment writables in the same order
+     */
+    @NotNull
+    static List<OutputStreamWritable> buildSpilling(
+            @NotNull
+            final List<? extends OutputStreamWritableBuilder> segments,
+            @NotNull
+            final File directory) {
+        final List<OutputStreamWritable> writables =
+                new ArrayList<>(segments.size());
+        boolean built = false;
+        try {
+            for (OutputStreamWritableBuilder segment : segments) {
+                final OutputStreamWritable writable = segment.buildWritable();
+                writables.add(
+                        segment instanceof Spillable ?
+                                SpilledSegment.from(writable, directory) :
+                                writable);
+            }
+            built = true;
+        } finally {
+            if (!built) {
+                for (OutputStreamWritable writable : writables) {
+                    if (writable instanceof SpilledSegment)
+                        ((SpilledSegment) writable).delete();
+                }
+            }
         }
 
+        return writables;
+    }
+
+    /**
+     * Writes the database header, the segments with the optional table of
+     * contents and the checksum
+     *
+     * @param tableOfContents  whether to write the table of contents
+     * @param segmentChecksums whether to write segment checksums to the
+     *                         table of contents
+     */
+    @NotNull
+    static OutputStreamWritable writable(
+            final int documentCount,
+            @NotNull
+            final List<byte[]> fieldNames,
+            @NotNull
+            final List<OutputStreamWritable> writables,
+            final boolean tableOfContents,
+            final boolean segmentChecksums) {
+        assert fieldNames.size() == writables.size();
+        assert tableOfContents || !segmentChecksums;
+
+        // Table of contents
+        long tocSize = Integer.BYTES; // Segment count
+        for (byte[] fieldName : fieldNames) {
+            tocSize += Integer.BYTES + // Field name
+                       fieldName.length +
+                       Integer.BYTES + // Segment type
+                       Long.BYTES + // Offset
+                       Long.BYTES; // Length
+            if (segmentChecksums)
+                tocSize += Integer.BYTES; // Checksum
+        }
+        final long tableOfContentsSize = tocSize;
+
+        final ChecksumType checksumType = V1DatabaseFormat.getChecksumType();
+        final int blockSize = V1DatabaseFormat.getChecksumBlockSizeInBytes();
+
+        // Only the features actually used
+        final Set<Feature> used = EnumSet.of(
+                Feature.ASCENDING_BIT_SET_INDEX,
+                Feature.TRIE_BYTE_ARRAY_SORTED_SET);
+        if (tableOfContents)
+            used.add(Feature.TABLE_OF_CONTENTS);
+        if (segmentChecksums)
+            used.add(Feature.SEGMENT_CHECKSUM);
+        if (checksumType != ChecksumType.MESSAGE_DIGEST)
+            used.add(Feature.BLOCK_CHECKSUM);
+        for (OutputStreamWritable writable : writables) {
+            if (writable instanceof SegmentWritable)
+                used.addAll(((SegmentWritable) writable).getFeatures());
+        }
+        final int features =
+                Feature.intValue(used.toArray(new Feature[used.size()]));
+
         return new OutputStreamWritable() {
             @Override
             public long getSizeInBytes() {
-                long size =
-                        V1DatabaseFormat.MAGIC.length +
-                        Ints.BYTES + // Format length
-                        Ints.BYTES + // Document count
-                        V1DatabaseFormat.getDigestSizeInBytes();
-
+                long body = tableOfContents ?
+                        tableOfContentsSize + Long.BYTES :
+                        0L;
                 for (OutputStreamWritable writable : writables) {
-                    size += writable.getSizeInBytes();
+                    body += Longs.BYTES + // Segment size
+                            Ints.BYTES + // Segment type
+                            writable.getSizeInBytes();
                 }
 
-                return size;
+                final long checksum;
+                if (checksumType == ChecksumType.MESSAGE_DIGEST) {
+                    checksum = V1DatabaseFormat.getDigestSizeInBytes();
+                } else {
+                    final long blocks = (body + blockSize - 1) / blockSize;
+                    checksum = blocks * Ints.BYTES +
+                               Ints.BYTES + // Checksum type
+                               Ints.BYTES + // Block size
+                               Ints.BYTES; // Block count
+                }
+
+                return V1DatabaseFormat.MAGIC.length +
+                       Ints.BYTES + // Format length
+                       Ints.BYTES + // Document count
+                       body +
+                       checksum;
             }
 
             @Override
@@ -159,44 +504,296 @@ public final class V1DatabaseBuilder
                     final OutputStream os) throws IOException {
                 // Header
                 os.write(DatabaseFormat.MAGIC);
-                os.write(Ints.toByteArray(
-                    Feature.intValue(
-                        Feature.ASCENDING_BIT_SET_INDEX,
-                        Feature.TRIE_BYTE_ARRAY_SORTED_SET
-                    )
-                ));
-                os.write(Ints.toByteArray(currentDocumentId));
-
-                final MessageDigest md;
-                try {
-                    md = MessageDigest.getInstance(
-                            V1DatabaseFormat.getMessageDigestAlgorithm());
-                } catch (NoSuchAlgorithmException e) {
-                    throw new RuntimeException(e);
-                }
+                os.write(Ints.toByteArray(features));
+                os.write(Ints.toByteArray(documentCount));
 
-                md.reset();
+                // With digest or block checksum calculation
+                final MessageDigestOutputStreamWrapper mdos;
+                final BlockChecksumOutputStreamWrapper bcos;
+                final OutputStream body;
+                if (checksumType == ChecksumType.MESSAGE_DIGEST) {
+                    final MessageDigest md;
+                    try {
+                        md = MessageDigest.getInstance(
+                                V1DatabaseFormat.getMessageDigestAlgorithm());
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new RuntimeException(e);
+                    }
 
-                // With digest calculation
-                final MessageDigestOutputStreamWrapper mdos =
-                        new MessageDigestOutputStreamWrapper(os, md);
+                    md.reset();
 
-                // Segments
-                for (OutputStreamWritable writable : writables) {
-                    writable.writeTo(mdos);
+                    if (V1DatabaseFormat.getDigestSizeInBytes() !=
+                        md.getDigestLength()) {
+                        throw new IllegalStateException(
+                                "Wrong digest size (" +
+                                V1DatabaseFormat.getDigestSizeInBytes() +
+                                " != " + md.getDigestLength() + ")");
+                    }
+
+                    mdos = new MessageDigestOutputStreamWrapper(os, md);
+                    bcos = null;
+                    body = mdos;
+                } else {
+                    mdos = null;
+                    bcos =
+                            new BlockChecksumOutputStreamWrapper(
+                                    os,
+                                    checksumType.newChecksum(),
+                                    blockSize);
+                    body = bcos;
+                }
+
+                if (tableOfContents) {
+                    writeSegmentsWithTableOfContents(body);
+                } else {
+                    for (OutputStreamWritable writable : writables) {
+                        writable.writeTo(body);
+                    }
                 }
 
                 // Writing checksum
-                if (V1DatabaseFormat.getDigestSizeInBytes() !=
-                    md.getDigestLength()) {
-                    throw new IllegalStateException(
-                            "Wrong digest size (" +
-                            V1DatabaseFormat.getDigestSizeInBytes() +
-                            " != " + md.getDigestLength() + ")");
+                if (mdos != null) {
+                    os.write(mdos.digest());
+                } else {
+                    assert bcos != null;
+
+                    final int[] blockChecksums = bcos.checksums();
+                    for (int checksum : blockChecksums) {
+                        os.write(Ints.toByteArray(checksum));
+                    }
+                    os.write(Ints.toByteArray(checksumType.getCode()));
+                    os.write(Ints.toByteArray(blockSize));
+                    os.write(Ints.toByteArray(blockChecksums.length));
+                }
+            }
+
+            private void writeSegmentsWithTableOfContents(
+                    @NotNull
+                    final OutputStream body) throws IOException {
+                // Segments
+                final SegmentOutputStream sos =
+                        new SegmentOutputStream(
+                                body,
+                                segmentChecksums ? new Crc32c() : null);
+                final int[] types = new int[writables.size()];
+                final long[] offsets = new long[writables.size()];
+                final long[] lengths = new long[writables.size()];
+                final int[] checksums = new int[writables.size()];
+                for (int i = 0; i < writables.size(); i++) {
+                    offsets[i] = sos.startSegment();
+                    writables.get(i).writeTo(sos);
+                    types[i] = sos.getSegmentType();
+                    lengths[i] = sos.getSegmentLength();
+                    if (segmentChecksums)
+                        checksums[i] = sos.getSegmentChecksum();
                 }
 
-                os.write(mdos.digest());
+                // Table of contents
+                body.write(Ints.toByteArray(writables.size()));
+                for (int i = 0; i < writables.size(); i++) {
+                    final byte[] fieldName = fieldNames.get(i);
+                    body.write(Ints.toByteArray(fieldName.length));
+                    body.write(fieldName);
+                    body.write(Ints.toByteArray(types[i]));
+                    body.write(Longs.toByteArray(offsets[i]));
+                    body.write(Longs.toByteArray(lengths[i]));
+                    if (segmentChecksums)
+                        body.write(Ints.toByteArray(checksums[i]));
+                }
+                body.write(Longs.toByteArray(tableOfContentsSize));
             }
         };
     }
+
+    @NotNull
+    private static <T> T join(
+            @NotNull
+            final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Segment written to a temporary file not to keep its index in heap
+     * until the database is written. The file is deleted as soon as it is
+     * copied, so the segment might be written only once.
+     */
+    @NotThreadSafe
+    private static final class SpilledSegment implements SegmentWritable {
+        private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+        @NotNull
+        private final File file;
+        private final long sizeInBytes;
+        @NotNull
+        private final Set<Feature> features;
+        private boolean written = false;
+
+        private SpilledSegment(
+                @NotNull
+                final File file,
+                final long sizeInBytes,
+                @NotNull
+                final Set<Feature> features) {
+            this.file = file;
+            this.sizeInBytes = sizeInBytes;
+            this.features = features;
+        }
+
+        @NotNull
+        static SpilledSegment from(
+                @NotNull
+                final OutputStreamWritable writable,
+                @NotNull
+                final File directory) {
+            File file = null;
+            boolean spilled = false;
+            try {
+                file = File.createTempFile("yoctodb-", ".segment", directory);
+                try (OutputStream os =
+                             new BufferedOutputStream(
+                                     new FileOutputStream(file),
+                                     IO_BUFFER_SIZE)) {
+                    writable.writeTo(os);
+                }
+                spilled = true;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (!spilled && file != null)
+                    file.delete();
+            }
+
+            return new SpilledSegment(
+                    file,
+                    writable.getSizeInBytes(),
+                    writable instanceof SegmentWritable ?
+                            ((SegmentWritable) writable).getFeatures() :
+                            Collections.emptySet());
+        }
+
+        @NotNull
+        @Override
+        public Set<Feature> getFeatures() {
+            return features;
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+        @Override
+        public void writeTo(
+                @NotNull
+                final OutputStream os) throws IOException {
+            if (written)
+                throw new IllegalStateException(
+                        "The segment has already been written");
+
+            written = true;
+            try {
+                Files.copy(file.toPath(), os);
+            } finally {
+                delete();
+            }
+        }
+
+        void delete() {
+            written = true;
+            file.delete();
+        }
+    }
+
+    /**
+     * Counts written bytes, remembers the type and calculates the checksum
+     * of the current segment content if any
+     */
+    private static final class SegmentOutputStream extends OutputStream {
+        // Segment size and type
+        private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+        @NotNull
+        private final OutputStream delegate;
+        private final byte[] header = new byte[HEADER_SIZE];
+        @Nullable
+        private final Checksum checksum;
+        private long position = 0L;
+        private long segmentStart = 0L;
+
+        SegmentOutputStream(
+                @NotNull
+                final OutputStream delegate,
+                @Nullable
+                final Checksum checksum) {
+            this.delegate = delegate;
+            this.checksum = checksum;
+        }
+
+        long startSegment() {
+            segmentStart = position;
+            if (checksum != null)
+                checksum.reset();
+            return segmentStart;
+        }
+
+        int getSegmentChecksum() {
+            assert checksum != null;
+
+            return (int) checksum.getValue();
+        }
+
+        long getSegmentLength() {
+            return position - segmentStart;
+        }
+
+        int getSegmentType() {
+            assert getSegmentLength() >= HEADER_SIZE;
+
+            return Ints.fromBytes(
+                    header[Long.BYTES],
+                    header[Long.BYTES + 1],
+                    header[Long.BYTES + 2],
+                    header[Long.BYTES + 3]);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            final long offset = position - segmentStart;
+            if (offset < HEADER_SIZE)
+                header[(int) offset] = (byte) b;
+            else if (checksum != null)
+                checksum.update(b);
+
+            delegate.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(
+                @NotNull
+                final byte[] b,
+                final int off,
+                final int len) throws IOException {
+            final long offset = position - segmentStart;
+            int skip = 0;
+            if (offset < HEADER_SIZE) {
+                skip = (int) Math.min(len, HEADER_SIZE - offset);
+                System.arraycopy(b, off, header, (int) offset, skip);
+            }
+            if (checksum != null)
+                checksum.update(b, off + skip, len - skip);
+
+            delegate.write(b, off, len);
+            position += len;
+        }
+    }
 }
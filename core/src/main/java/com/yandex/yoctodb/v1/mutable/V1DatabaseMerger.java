@@ -0,0 +1,200 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable;
+
+import com.yandex.yoctodb.mutable.DatabaseMerger;
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.SegmentType;
+import com.yandex.yoctodb.v1.immutable.V1DatabaseReader;
+import com.yandex.yoctodb.v1.mutable.segment.Freezable;
+import com.yandex.yoctodb.v1.mutable.segment.V1SegmentMerger;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link DatabaseMerger} implementation in V1 format
+ *
+ * Segments of every field are merged by {@link V1SegmentMerger}s reading
+ * the added databases lazily.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class V1DatabaseMerger
+        extends Freezable
+        implements DatabaseMerger {
+    private final Map<String, V1SegmentMerger> mergers =
+            new LinkedHashMap<>();
+    // Document counts of the added databases
+    private final List<Integer> documentCounts = new ArrayList<>();
+    private int currentDocumentId = 0;
+
+    @Nullable
+    private final Executor executor;
+
+    private boolean tableOfContents = false;
+    private boolean segmentChecksums = false;
+
+    public V1DatabaseMerger() {
+        this(null);
+    }
+
+    /**
+     * @param executor merges the segments concurrently if not {@code null}
+     */
+    public V1DatabaseMerger(
+            @Nullable
+            final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @see V1DatabaseBuilder#withTableOfContents()
+     */
+    @NotNull
+    public V1DatabaseMerger withTableOfContents() {
+        checkNotFrozen();
+
+        this.tableOfContents = true;
+
+        return this;
+    }
+
+    /**
+     * @see V1DatabaseBuilder#withSegmentChecksums()
+     */
+    @NotNull
+    public V1DatabaseMerger withSegmentChecksums() {
+        checkNotFrozen();
+
+        this.tableOfContents = true;
+        this.segmentChecksums = true;
+
+        return this;
+    }
+
+    @NotNull
+    private static SegmentType segmentType(final int code) {
+        for (SegmentType type : SegmentType.values())
+            if (type.getCode() == code)
+                return type;
+
+        throw new UnsupportedOperationException(
+                "Unsupported segment type " + code);
+    }
+
+    @NotNull
+    @Override
+    public DatabaseMerger add(
+            @NotNull
+            final Buffer database) {
+        checkNotFrozen();
+
+        final Map<String, V1SegmentMerger> current = new LinkedHashMap<>();
+        final Set<String> fieldNames = new HashSet<>();
+        final List<Integer> types = new ArrayList<>();
+        final List<Buffer> segments = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final int documentCount =
+                V1DatabaseReader.readSegments(
+                        database.slice(),
+                        true,
+                        (type, fieldName, segment) -> {
+                            if (fieldName == null)
+                                throw new UnsupportedOperationException(
+                                        "Unsupported segment type " + type);
+                            if (!fieldNames.add(fieldName))
+                                throw new IllegalArgumentException(
+                                        "Duplicate field <" + fieldName + ">");
+
+                            types.add(type);
+                            names.add(fieldName);
+                            segments.add(segment);
+                        });
+
+        if (currentDocumentId + (long) documentCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many documents");
+
+        // Validating all the segments before changing any field merger
+        final List<SegmentType> segmentTypes = new ArrayList<>(types.size());
+        for (int i = 0; i < segments.size(); i++) {
+            final SegmentType type = segmentType(types.get(i));
+            final V1SegmentMerger merger = mergers.get(names.get(i));
+            if (merger != null) {
+                merger.checkType(type);
+            }
+            segmentTypes.add(type);
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            final SegmentType type = segmentTypes.get(i);
+            final String fieldName = names.get(i);
+            V1SegmentMerger merger = mergers.get(fieldName);
+            if (merger == null) {
+                // The previous databases don't contain the field
+                merger = new V1SegmentMerger(type, fieldName);
+                for (int count : documentCounts) {
+                    merger.addEmpty(count);
+                }
+            }
+            current.put(fieldName, merger);
+            merger.add(type, segments.get(i), documentCount);
+        }
+
+        for (Map.Entry<String, V1SegmentMerger> e : mergers.entrySet()) {
+            if (!current.containsKey(e.getKey()))
+                e.getValue().addEmpty(documentCount);
+        }
+        for (Map.Entry<String, V1SegmentMerger> e : current.entrySet()) {
+            mergers.putIfAbsent(e.getKey(), e.getValue());
+        }
+
+        documentCounts.add(documentCount);
+        currentDocumentId += documentCount;
+
+        return this;
+    }
+
+    @NotNull
+    @Override
+    public OutputStreamWritable buildWritable() {
+        checkNotFrozen();
+
+        freeze();
+
+        if (currentDocumentId == 0)
+            throw new IllegalStateException("No documents");
+
+        final List<byte[]> fieldNames = new ArrayList<>(mergers.size());
+        for (String fieldName : mergers.keySet()) {
+            fieldNames.add(fieldName.getBytes());
+        }
+
+        return V1DatabaseBuilder.writable(
+                currentDocumentId,
+                fieldNames,
+                V1DatabaseBuilder.build(
+                        new ArrayList<>(mergers.values()),
+                        executor),
+                tableOfContents,
+                segmentChecksums);
+    }
+}
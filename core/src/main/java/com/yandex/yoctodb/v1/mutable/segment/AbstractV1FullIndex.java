@@ -19,18 +19,23 @@ import com.yandex.yoctodb.util.mutable.ByteArraySortedSet;
 import com.yandex.yoctodb.util.mutable.IndexToIndexMap;
 import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.util.mutable.impl.FixedLengthByteArraySortedSet;
+import com.yandex.yoctodb.util.mutable.impl.IndexToIndexMultiMapFactory;
+import com.yandex.yoctodb.util.mutable.impl.IntArrayIndexToIndexMap;
 import com.yandex.yoctodb.util.mutable.impl.IntIndexToIndexMap;
 import com.yandex.yoctodb.util.mutable.impl.IntIndexToIndexMultiMap;
 import com.yandex.yoctodb.util.mutable.impl.VariableLengthByteArraySortedSet;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import net.jcip.annotations.NotThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Index supporting filtering and sorting by specific field
@@ -40,13 +45,15 @@ import java.util.Map;
 @NotThreadSafe
 abstract class AbstractV1FullIndex
         extends Freezable
-        implements IndexSegment {
+        implements IndexSegment, Spillable {
     @NotNull
     private final byte[] fieldName;
     private final boolean fixedLength;
     private TreeMultimap<UnsignedByteArray, Integer> valueToDocuments =
             TreeMultimap.create();
     private Map<Integer, UnsignedByteArray> documentToValue = new HashMap<>();
+    @Nullable
+    private SpillingValueToDocuments spilling;
     private int currentDocumentId = 0;
     private final V1DatabaseFormat.SegmentType segmentType;
 
@@ -55,10 +62,17 @@ abstract class AbstractV1FullIndex
             final String fieldName,
             final boolean fixedLength,
             @NotNull
-            final V1DatabaseFormat.SegmentType segmentType) {
+            final V1DatabaseFormat.SegmentType segmentType,
+            @Nullable
+            final File spillDirectory) {
         this.fieldName = fieldName.getBytes();
         this.fixedLength = fixedLength;
         this.segmentType = segmentType;
+        if (spillDirectory != null) {
+            this.spilling = new SpillingValueToDocuments(spillDirectory);
+            this.valueToDocuments = null;
+            this.documentToValue = null;
+        }
     }
 
     @NotNull
@@ -77,13 +91,38 @@ abstract class AbstractV1FullIndex
         checkNotFrozen();
 
         final UnsignedByteArray value = values.iterator().next();
-        valueToDocuments.put(value, documentId);
-        documentToValue.put(documentId, value);
+        if (spilling != null) {
+            spilling.add(value, documentId);
+        } else {
+            valueToDocuments.put(value, documentId);
+            documentToValue.put(documentId, value);
+        }
         currentDocumentId++;
 
         return this;
     }
 
+    @Override
+    public long getSpillableSizeInBytes() {
+        return spilling == null ? 0L : spilling.getBufferSizeInBytes();
+    }
+
+    @Override
+    public void spill() {
+        if (spilling != null)
+            spilling.spill();
+    }
+
+    @Override
+    public void close() {
+        freeze();
+
+        if (spilling != null) {
+            spilling.close();
+            spilling = null;
+        }
+    }
+
     @Override
     public void setDatabaseDocumentsCount(final int documentsCount) {
         // Ignoring the hint
@@ -96,10 +135,16 @@ abstract class AbstractV1FullIndex
 
         freeze();
 
+        if (spilling != null)
+            return buildMergedWritable(spilling);
+
         // Building index
 
         final IndexToIndexMultiMap valueToDocumentsIndex =
-                new IntIndexToIndexMultiMap(valueToDocuments.asMap().values());
+                valueToDocuments(
+                        segmentType,
+                        valueToDocuments.asMap().values(),
+                        currentDocumentId);
 
         final ByteArraySortedSet values;
         if (fixedLength) {
@@ -124,7 +169,100 @@ abstract class AbstractV1FullIndex
         valueToDocuments = null;
         documentToValue = null;
 
-        return new OutputStreamWritable() {
+        return writable(
+                fieldName,
+                segmentType,
+                values,
+                valueToDocumentsIndex,
+                documentToValueIndex);
+    }
+
+    @NotNull
+    private OutputStreamWritable buildMergedWritable(
+            @NotNull
+            final SpillingValueToDocuments spilling) {
+        // Every document has exactly one value
+        final IndexToIndexMap documentToValueIndex =
+                new IntArrayIndexToIndexMap(currentDocumentId);
+        final MergedValueToDocuments merged = new MergedValueToDocuments();
+        spilling.merge(
+                (value, document) -> {
+                    merged.accept(value, document);
+                    documentToValueIndex.put(
+                            document,
+                            merged.getLastValueIndex());
+                });
+
+        // Free memory
+        this.spilling = null;
+
+        final IndexToIndexMultiMap valueToDocumentsIndex =
+                valueToDocuments(
+                        segmentType,
+                        merged.getValueToDocuments(),
+                        currentDocumentId);
+
+        final ByteArraySortedSet values;
+        if (fixedLength) {
+            values = new FixedLengthByteArraySortedSet(merged.getValues());
+        } else {
+            values = new VariableLengthByteArraySortedSet(merged.getValues());
+        }
+
+        return writable(
+                fieldName,
+                segmentType,
+                values,
+                valueToDocumentsIndex,
+                documentToValueIndex);
+    }
+
+    /**
+     * Every document has exactly one value, so full indexes are always
+     * eligible for {@link IndexToIndexMultiMapFactory} choosing cumulative
+     * bit sets (or Elias-Fano for high cardinality) to answer ranges at
+     * once. Sortable indexes only iterate over the lists.
+     */
+    @NotNull
+    static IndexToIndexMultiMap valueToDocuments(
+            @NotNull
+            final V1DatabaseFormat.SegmentType segmentType,
+            @NotNull
+            final Collection<? extends Collection<Integer>> valueToDocuments,
+            final int documentsCount) {
+        if (valueToDocuments.isEmpty())
+            return new IntIndexToIndexMultiMap(valueToDocuments);
+
+        switch (segmentType) {
+            case FIXED_LENGTH_FULL_INDEX:
+            case VARIABLE_LENGTH_FULL_INDEX:
+                return IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        valueToDocuments,
+                        documentsCount);
+            default:
+                return new IntIndexToIndexMultiMap(valueToDocuments);
+        }
+    }
+
+    @NotNull
+    static OutputStreamWritable writable(
+            @NotNull
+            final byte[] fieldName,
+            @NotNull
+            final V1DatabaseFormat.SegmentType segmentType,
+            @NotNull
+            final OutputStreamWritable values,
+            @NotNull
+            final IndexToIndexMultiMap valueToDocumentsIndex,
+            @NotNull
+            final IndexToIndexMap documentToValueIndex) {
+        return new SegmentWritable() {
+            @NotNull
+            @Override
+            public Set<V1DatabaseFormat.Feature> getFeatures() {
+                return SegmentWritable.features(valueToDocumentsIndex);
+            }
+
             @Override
             public long getSizeInBytes() {
                 return 4L + // Field name
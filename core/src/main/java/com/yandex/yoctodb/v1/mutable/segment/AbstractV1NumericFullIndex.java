@@ -0,0 +1,104 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMap;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * {@link AbstractV1FullIndex} counterpart for fixed length values of at most
+ * 8 bytes (e.g. numbers) stored in primitive columns
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+abstract class AbstractV1NumericFullIndex
+        extends Freezable
+        implements IndexSegment {
+    @NotNull
+    private final byte[] fieldName;
+    private LongValueToDocuments valueToDocuments = new LongValueToDocuments();
+    private int currentDocumentId = 0;
+    private final V1DatabaseFormat.SegmentType segmentType;
+
+    AbstractV1NumericFullIndex(
+            @NotNull
+            final String fieldName,
+            @NotNull
+            final V1DatabaseFormat.SegmentType segmentType) {
+        this.fieldName = fieldName.getBytes();
+        this.segmentType = segmentType;
+    }
+
+    @NotNull
+    @Override
+    public IndexSegment addDocument(
+            final int documentId,
+            @NotNull
+            final Collection<UnsignedByteArray> values) {
+        if (documentId != currentDocumentId)
+            throw new IllegalArgumentException(
+                    "Wrong document ID <" + documentId +
+                    ">. Expecting <" + currentDocumentId + ">.");
+        if (values.size() != 1)
+            throw new IllegalArgumentException("Expecting a single value");
+
+        checkNotFrozen();
+
+        valueToDocuments.add(values.iterator().next(), documentId);
+        currentDocumentId++;
+
+        return this;
+    }
+
+    @Override
+    public void setDatabaseDocumentsCount(final int documentsCount) {
+        // Ignoring the hint
+    }
+
+    @NotNull
+    @Override
+    public OutputStreamWritable buildWritable() {
+        checkNotFrozen();
+
+        freeze();
+
+        valueToDocuments.build();
+
+        // Building index
+
+        final IndexToIndexMultiMap valueToDocumentsIndex =
+                AbstractV1FullIndex.valueToDocuments(
+                        segmentType,
+                        valueToDocuments.getValueToDocuments(),
+                        currentDocumentId);
+        final IndexToIndexMap documentToValueIndex =
+                valueToDocuments.getDocumentToValue(currentDocumentId);
+        final OutputStreamWritable values = valueToDocuments.getValues();
+
+        // Free memory
+        valueToDocuments = null;
+
+        return AbstractV1FullIndex.writable(
+                fieldName,
+                segmentType,
+                values,
+                valueToDocumentsIndex,
+                documentToValueIndex);
+    }
+}
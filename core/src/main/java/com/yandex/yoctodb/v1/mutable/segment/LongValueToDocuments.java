@@ -0,0 +1,225 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMap;
+import com.yandex.yoctodb.util.mutable.impl.FixedLengthLongSortedSet;
+import com.yandex.yoctodb.util.mutable.impl.IntArrayIndexToIndexMap;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed length values of at most {@link Longs#BYTES} bytes and their
+ * documents stored in primitive columns and sorted by LSD radix sort on
+ * {@link #build()}
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+final class LongValueToDocuments {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private int elementSize = -1;
+    // (value, document) pairs in order of addition
+    @NotNull
+    private long[] values = new long[16];
+    @NotNull
+    private int[] documents = new int[16];
+    private int size = 0;
+
+    // Start of value documents in documents array after build
+    private int[] starts = null;
+    private int valueCount = -1;
+
+    /**
+     * @return whether the value can be stored
+     */
+    static boolean fits(
+            @NotNull
+            final UnsignedByteArray value) {
+        return 0 < value.length() && value.length() <= Longs.BYTES;
+    }
+
+    void add(
+            @NotNull
+            final UnsignedByteArray value,
+            final int document) {
+        assert starts == null : "Already built";
+
+        if (elementSize == -1) {
+            if (!fits(value))
+                throw new IllegalArgumentException(
+                        "Wrong value length " + value.length());
+            elementSize = value.length();
+        } else if (value.length() != elementSize) {
+            throw new IllegalArgumentException(
+                    "Value length " + value.length() +
+                    " differs from " + elementSize);
+        }
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            documents = Arrays.copyOf(documents, size * 2);
+        }
+
+        values[size] = UnsignedByteArrays.toUnsignedLong(value);
+        documents[size] = document;
+        size++;
+    }
+
+    /**
+     * Sorts the pairs by value keeping the documents in order of addition
+     * and removes duplicate pairs
+     */
+    void build() {
+        assert starts == null : "Already built";
+
+        if (size == 0)
+            throw new IllegalStateException("No values");
+
+        sort();
+
+        // Removing duplicate pairs and collecting distinct values
+        starts = new int[16];
+        int pairs = 0;
+        valueCount = 0;
+        for (int i = 0; i < size; i++) {
+            final long value = values[i];
+            final int document = documents[i];
+            if (valueCount == 0 || values[valueCount - 1] != value) {
+                if (valueCount == starts.length)
+                    starts = Arrays.copyOf(starts, valueCount * 2);
+                starts[valueCount] = pairs;
+                // Distinct values are compacted in place
+                values[valueCount++] = value;
+            } else if (documents[pairs - 1] == document) {
+                continue;
+            }
+
+            documents[pairs++] = document;
+        }
+        size = pairs;
+    }
+
+    /**
+     * Stable LSD radix sort skipping the digits equal in all the values
+     */
+    private void sort() {
+        final int[][] counts = new int[elementSize][RADIX];
+        for (int i = 0; i < size; i++) {
+            final long value = values[i];
+            for (int digit = 0; digit < elementSize; digit++) {
+                counts[digit][(int) (value >>> (digit * RADIX_BITS)) & (RADIX - 1)]++;
+            }
+        }
+
+        long[] sourceValues = values;
+        int[] sourceDocuments = documents;
+        long[] targetValues = null;
+        int[] targetDocuments = null;
+        for (int digit = 0; digit < elementSize; digit++) {
+            final int[] count = counts[digit];
+            final int shift = digit * RADIX_BITS;
+            if (count[(int) (sourceValues[0] >>> shift) & (RADIX - 1)] == size)
+                continue;
+
+            if (targetValues == null) {
+                targetValues = new long[size];
+                targetDocuments = new int[size];
+            }
+
+            // Bucket offsets
+            int offset = 0;
+            for (int bucket = 0; bucket < RADIX; bucket++) {
+                final int c = count[bucket];
+                count[bucket] = offset;
+                offset += c;
+            }
+
+            for (int i = 0; i < size; i++) {
+                final long value = sourceValues[i];
+                final int position =
+                        count[(int) (value >>> shift) & (RADIX - 1)]++;
+                targetValues[position] = value;
+                targetDocuments[position] = sourceDocuments[i];
+            }
+
+            final long[] values = sourceValues;
+            sourceValues = targetValues;
+            targetValues = values;
+            final int[] documents = sourceDocuments;
+            sourceDocuments = targetDocuments;
+            targetDocuments = documents;
+        }
+
+        values = sourceValues;
+        documents = sourceDocuments;
+    }
+
+    @NotNull
+    FixedLengthLongSortedSet getValues() {
+        assert starts != null : "Not built";
+
+        return new FixedLengthLongSortedSet(values, valueCount, elementSize);
+    }
+
+    /**
+     * @return documents of every value in value order
+     */
+    @NotNull
+    List<List<Integer>> getValueToDocuments() {
+        assert starts != null : "Not built";
+
+        final List<Integer> all = Ints.asList(documents).subList(0, size);
+        return new AbstractList<List<Integer>>() {
+            @Override
+            public List<Integer> get(final int i) {
+                return all.subList(
+                        starts[i],
+                        i + 1 < valueCount ? starts[i + 1] : size);
+            }
+
+            @Override
+            public int size() {
+                return valueCount;
+            }
+        };
+    }
+
+    /**
+     * @param documentsCount document count
+     * @return value index of every document
+     */
+    @NotNull
+    IndexToIndexMap getDocumentToValue(final int documentsCount) {
+        assert starts != null : "Not built";
+
+        final IndexToIndexMap result =
+                new IntArrayIndexToIndexMap(documentsCount);
+        for (int value = 0; value < valueCount; value++) {
+            final int to = value + 1 < valueCount ? starts[value + 1] : size;
+            for (int i = starts[value]; i < to; i++) {
+                result.put(documents[i], value);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.google.common.primitives.Ints;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Sorted values and their documents merged by
+ * {@link SpillingValueToDocuments} and stored in primitive arrays
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+final class MergedValueToDocuments implements SpillingValueToDocuments.Consumer {
+    @NotNull
+    private final SortedSet<UnsignedByteArray> values = new TreeSet<>();
+    private UnsignedByteArray last = null;
+    // Documents of all the values one after another
+    @NotNull
+    private int[] documents = new int[16];
+    private int documentCount = 0;
+    // Start of value documents in documents array
+    @NotNull
+    private int[] starts = new int[16];
+
+    @Override
+    public void accept(
+            @NotNull
+            final UnsignedByteArray value,
+            final int document) {
+        if (last == null || !last.equals(value)) {
+            if (values.size() == starts.length)
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            starts[values.size()] = documentCount;
+            values.add(value);
+            last = value;
+        }
+
+        if (documentCount == documents.length)
+            documents = Arrays.copyOf(documents, documents.length * 2);
+        documents[documentCount++] = document;
+    }
+
+    @NotNull
+    SortedSet<UnsignedByteArray> getValues() {
+        return values;
+    }
+
+    /**
+     * @return the last added value index
+     */
+    int getLastValueIndex() {
+        return values.size() - 1;
+    }
+
+    /**
+     * @return documents of every value in value order
+     */
+    @NotNull
+    List<List<Integer>> getValueToDocuments() {
+        final List<Integer> all = Ints.asList(documents);
+        final int valueCount = values.size();
+        return new AbstractList<List<Integer>>() {
+            @Override
+            public List<Integer> get(final int i) {
+                return all.subList(
+                        starts[i],
+                        i + 1 < valueCount ? starts[i + 1] : documentCount);
+            }
+
+            @Override
+            public int size() {
+                return valueCount;
+            }
+        };
+    }
+}
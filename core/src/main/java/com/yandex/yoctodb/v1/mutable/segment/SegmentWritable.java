@@ -0,0 +1,47 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.Feature;
+import net.jcip.annotations.Immutable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Built segment which might require optional database features to be read
+ *
+ * @author incubos
+ */
+@Immutable
+public interface SegmentWritable extends OutputStreamWritable {
+    /**
+     * @return features used by the segment content
+     */
+    @NotNull
+    Set<Feature> getFeatures();
+
+    /**
+     * @return features required to read {@code multiMap}
+     */
+    @NotNull
+    static Set<Feature> features(
+            @NotNull
+            final IndexToIndexMultiMap multiMap) {
+        final Feature feature = multiMap.getType().getFeature();
+        return feature == null ?
+                Collections.emptySet() :
+                Collections.singleton(feature);
+    }
+}
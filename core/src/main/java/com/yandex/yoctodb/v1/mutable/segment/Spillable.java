@@ -0,0 +1,36 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Index segment able to move its buffered data out of heap
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public interface Spillable {
+    /**
+     * @return estimated heap size of the data which might be spilled
+     */
+    long getSpillableSizeInBytes();
+
+    /**
+     * Moves the buffered data to external memory
+     */
+    void spill();
+
+    /**
+     * Deletes the spilled data of the index which is not going to be built
+     */
+    void close();
+}
@@ -0,0 +1,273 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects (value, document) pairs spilling sorted runs to temporary files
+ * and merging them in (value, document) order without duplicates
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+final class SpillingValueToDocuments {
+    // Object header, reference, value array header and document
+    private static final int PAIR_OVERHEAD = 48;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private static final Comparator<Pair> ORDER =
+            (a, b) -> {
+                final int result = a.value.compareTo(b.value);
+                return result != 0 ?
+                        result :
+                        Integer.compare(a.document, b.document);
+            };
+
+    @NotNull
+    private final File directory;
+    @NotNull
+    private List<Pair> buffer = new ArrayList<>();
+    private long bufferSizeInBytes = 0L;
+    @NotNull
+    private final List<File> runs = new ArrayList<>();
+
+    SpillingValueToDocuments(
+            @NotNull
+            final File directory) {
+        this.directory = directory;
+    }
+
+    void add(
+            @NotNull
+            final UnsignedByteArray value,
+            final int document) {
+        buffer.add(new Pair(value, document));
+        bufferSizeInBytes += value.length() + PAIR_OVERHEAD;
+    }
+
+    long getBufferSizeInBytes() {
+        return bufferSizeInBytes;
+    }
+
+    void spill() {
+        if (buffer.isEmpty())
+            return;
+
+        buffer.sort(ORDER);
+
+        File run = null;
+        try {
+            run = File.createTempFile("yoctodb-", ".run", directory);
+            try (DataOutputStream os =
+                         new DataOutputStream(
+                                 new BufferedOutputStream(
+                                         new FileOutputStream(run),
+                                         IO_BUFFER_SIZE))) {
+                os.writeInt(buffer.size());
+                for (Pair pair : buffer) {
+                    os.writeInt(pair.value.length());
+                    pair.value.writeTo(os);
+                    os.writeInt(pair.document);
+                }
+            }
+            runs.add(run);
+        } catch (IOException e) {
+            if (run != null)
+                run.delete();
+            throw new RuntimeException(e);
+        }
+
+        buffer = new ArrayList<>();
+        bufferSizeInBytes = 0L;
+    }
+
+    /**
+     * Feeds all the pairs in (value, document) order to {@code consumer}
+     * and frees all the resources
+     */
+    void merge(
+            @NotNull
+            final Consumer consumer) {
+        buffer.sort(ORDER);
+
+        final List<Cursor> cursors = new ArrayList<>(runs.size() + 1);
+        try {
+            for (File run : runs)
+                cursors.add(new RunCursor(run));
+            cursors.add(new BufferCursor(buffer));
+
+            final PriorityQueue<Cursor> queue =
+                    new PriorityQueue<>(
+                            cursors.size(),
+                            (a, b) -> ORDER.compare(a.current(), b.current()));
+            for (Cursor cursor : cursors)
+                if (cursor.advance())
+                    queue.add(cursor);
+
+            Pair previous = null;
+            while (!queue.isEmpty()) {
+                final Cursor cursor = queue.poll();
+                final Pair current = cursor.current();
+                if (previous == null || ORDER.compare(previous, current) != 0)
+                    consumer.accept(current.value, current.document);
+                previous = current;
+
+                if (cursor.advance())
+                    queue.add(cursor);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (Cursor cursor : cursors)
+                cursor.close();
+            close();
+        }
+    }
+
+    /**
+     * Deletes the spilled runs and frees the buffer
+     */
+    void close() {
+        for (File run : runs)
+            run.delete();
+        runs.clear();
+        buffer = new ArrayList<>();
+        bufferSizeInBytes = 0L;
+    }
+
+    interface Consumer {
+        void accept(
+                @NotNull
+                UnsignedByteArray value,
+                int document);
+    }
+
+    private static final class Pair {
+        @NotNull
+        final UnsignedByteArray value;
+        final int document;
+
+        Pair(
+                @NotNull
+                final UnsignedByteArray value,
+                final int document) {
+            this.value = value;
+            this.document = document;
+        }
+    }
+
+    private interface Cursor {
+        /**
+         * @return {@code false} if exhausted
+         */
+        boolean advance() throws IOException;
+
+        @NotNull
+        Pair current();
+
+        void close();
+    }
+
+    private static final class BufferCursor implements Cursor {
+        @NotNull
+        private final List<Pair> pairs;
+        private int next = 0;
+        @Nullable
+        private Pair current;
+
+        BufferCursor(
+                @NotNull
+                final List<Pair> pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        public boolean advance() {
+            if (next == pairs.size())
+                return false;
+
+            current = pairs.get(next++);
+            return true;
+        }
+
+        @NotNull
+        @Override
+        public Pair current() {
+            assert current != null;
+
+            return current;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+
+    private static final class RunCursor implements Cursor {
+        @NotNull
+        private final DataInputStream is;
+        private int remaining;
+        @Nullable
+        private Pair current;
+
+        RunCursor(
+                @NotNull
+                final File run) throws IOException {
+            this.is =
+                    new DataInputStream(
+                            new BufferedInputStream(
+                                    new FileInputStream(run),
+                                    IO_BUFFER_SIZE));
+            this.remaining = is.readInt();
+        }
+
+        @Override
+        public boolean advance() throws IOException {
+            if (remaining == 0)
+                return false;
+
+            final byte[] value = new byte[is.readInt()];
+            is.readFully(value);
+            current = new Pair(UnsignedByteArrays.from(value), is.readInt());
+            remaining--;
+            return true;
+        }
+
+        @NotNull
+        @Override
+        public Pair current() {
+            assert current != null;
+
+            return current;
+        }
+
+        @Override
+        public void close() {
+            try {
+                is.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -23,10 +23,14 @@ import com.yandex.yoctodb.util.mutable.impl.VariableLengthByteArraySortedSet;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import net.jcip.annotations.NotThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Set;
+import java.util.SortedSet;
 
 /**
  * Index supporting filtering by specific field
@@ -36,13 +40,15 @@ import java.util.Collection;
 @NotThreadSafe
 public final class V1FilterableIndex
         extends Freezable
-        implements IndexSegment {
+        implements IndexSegment, Spillable {
     @NotNull
     private final byte[] fieldName;
     private TreeMultimap<UnsignedByteArray, Integer> valueToDocuments =
             TreeMultimap.create();
     private final boolean fixedLength;
     private final boolean useTrie;
+    @Nullable
+    private SpillingValueToDocuments spilling;
     private int databaseDocumentsCount = -1;
 
     public V1FilterableIndex(
@@ -57,9 +63,27 @@ public final class V1FilterableIndex
             final String fieldName,
             final boolean fixedLength,
             final boolean useTrie) {
+        this(fieldName, fixedLength, useTrie, null);
+    }
+
+    /**
+     * @param spillDirectory directory to spill sorted runs to or
+     *                       {@code null} to keep everything in heap
+     */
+    public V1FilterableIndex(
+            @NotNull
+            final String fieldName,
+            final boolean fixedLength,
+            final boolean useTrie,
+            @Nullable
+            final File spillDirectory) {
         this.fieldName = fieldName.getBytes();
         this.fixedLength = fixedLength;
         this.useTrie = useTrie;
+        if (spillDirectory != null) {
+            this.spilling = new SpillingValueToDocuments(spillDirectory);
+            this.valueToDocuments = null;
+        }
     }
 
     @NotNull
@@ -76,12 +100,37 @@ public final class V1FilterableIndex
         checkNotFrozen();
 
         for (UnsignedByteArray value : values) {
-            valueToDocuments.put(value, documentId);
+            if (spilling != null) {
+                spilling.add(value, documentId);
+            } else {
+                valueToDocuments.put(value, documentId);
+            }
         }
 
         return this;
     }
 
+    @Override
+    public long getSpillableSizeInBytes() {
+        return spilling == null ? 0L : spilling.getBufferSizeInBytes();
+    }
+
+    @Override
+    public void spill() {
+        if (spilling != null)
+            spilling.spill();
+    }
+
+    @Override
+    public void close() {
+        freeze();
+
+        if (spilling != null) {
+            spilling.close();
+            spilling = null;
+        }
+    }
+
     @Override
     public void setDatabaseDocumentsCount(final int documentsCount) {
         assert documentsCount > 0;
@@ -96,31 +145,65 @@ public final class V1FilterableIndex
 
         freeze();
 
+        final Collection<? extends Collection<Integer>> documents;
+        final SortedSet<UnsignedByteArray> keys;
+        if (spilling != null) {
+            final MergedValueToDocuments merged = new MergedValueToDocuments();
+            spilling.merge(merged);
+            documents = merged.getValueToDocuments();
+            keys = merged.getValues();
+        } else {
+            documents = valueToDocuments.asMap().values();
+            keys = valueToDocuments.keySet();
+        }
+
         // Building the index
         final IndexToIndexMultiMap valueToDocumentsIndex =
                 IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
-                        valueToDocuments.asMap().values(),
+                        documents,
                         databaseDocumentsCount);
 
         final OutputStreamWritable values;
+        final V1DatabaseFormat.SegmentType segmentType;
         if (useTrie) {
-            values =
-                    new TrieByteArraySortedSet(
-                            valueToDocuments.keySet());
+            values = new TrieByteArraySortedSet(keys);
+            segmentType = V1DatabaseFormat.SegmentType.TRIE_FILTER;
         } else if (fixedLength) {
-            values =
-                    new FixedLengthByteArraySortedSet(
-                            valueToDocuments.keySet());
+            values = new FixedLengthByteArraySortedSet(keys);
+            segmentType = V1DatabaseFormat.SegmentType.FIXED_LENGTH_FILTER;
         } else {
-            values =
-                    new VariableLengthByteArraySortedSet(
-                            valueToDocuments.keySet());
+            values = new VariableLengthByteArraySortedSet(keys);
+            segmentType = V1DatabaseFormat.SegmentType.VARIABLE_LENGTH_FILTER;
         }
 
         // Free memory
         valueToDocuments = null;
+        spilling = null;
+
+        return writable(
+                fieldName,
+                segmentType,
+                values,
+                valueToDocumentsIndex);
+    }
+
+    @NotNull
+    static OutputStreamWritable writable(
+            @NotNull
+            final byte[] fieldName,
+            @NotNull
+            final V1DatabaseFormat.SegmentType segmentType,
+            @NotNull
+            final OutputStreamWritable values,
+            @NotNull
+            final IndexToIndexMultiMap valueToDocumentsIndex) {
+        return new SegmentWritable() {
+            @NotNull
+            @Override
+            public Set<V1DatabaseFormat.Feature> getFeatures() {
+                return SegmentWritable.features(valueToDocumentsIndex);
+            }
 
-        return new OutputStreamWritable() {
             @Override
             public long getSizeInBytes() {
                 return 4L + // Field name
@@ -137,15 +220,6 @@ public final class V1FilterableIndex
                     final OutputStream os) throws IOException {
                 os.write(Longs.toByteArray(getSizeInBytes()));
 
-                final V1DatabaseFormat.SegmentType segmentType;
-                if (useTrie) {
-                    segmentType = V1DatabaseFormat.SegmentType.TRIE_FILTER;
-                } else if (fixedLength) {
-                    segmentType = V1DatabaseFormat.SegmentType.FIXED_LENGTH_FILTER;
-                } else {
-                    segmentType = V1DatabaseFormat.SegmentType.VARIABLE_LENGTH_FILTER;
-                }
-
                 // Payload segment type
                 os.write(
                         Ints.toByteArray(
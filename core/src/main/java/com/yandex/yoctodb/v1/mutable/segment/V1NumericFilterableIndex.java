@@ -0,0 +1,100 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.mutable.impl.IndexToIndexMultiMapFactory;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * {@link V1FilterableIndex} counterpart for fixed length values of at most
+ * 8 bytes (e.g. numbers) stored in primitive columns.
+ *
+ * Produces the same segment as {@link V1FilterableIndex} with fixed length
+ * values.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class V1NumericFilterableIndex
+        extends Freezable
+        implements IndexSegment {
+    @NotNull
+    private final byte[] fieldName;
+    private LongValueToDocuments valueToDocuments = new LongValueToDocuments();
+    private int databaseDocumentsCount = -1;
+
+    public V1NumericFilterableIndex(
+            @NotNull
+            final String fieldName) {
+        this.fieldName = fieldName.getBytes();
+    }
+
+    @NotNull
+    @Override
+    public IndexSegment addDocument(
+            final int documentId,
+            @NotNull
+            final Collection<UnsignedByteArray> values) {
+        if (documentId < 0)
+            throw new IllegalArgumentException("Negative document ID");
+        if (values.isEmpty())
+            throw new IllegalArgumentException("No values");
+
+        checkNotFrozen();
+
+        for (UnsignedByteArray value : values) {
+            valueToDocuments.add(value, documentId);
+        }
+
+        return this;
+    }
+
+    @Override
+    public void setDatabaseDocumentsCount(final int documentsCount) {
+        assert documentsCount > 0;
+
+        this.databaseDocumentsCount = documentsCount;
+    }
+
+    @NotNull
+    @Override
+    public OutputStreamWritable buildWritable() {
+        checkNotFrozen();
+
+        freeze();
+
+        valueToDocuments.build();
+
+        // Building the index
+        final IndexToIndexMultiMap valueToDocumentsIndex =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        valueToDocuments.getValueToDocuments(),
+                        databaseDocumentsCount);
+
+        final OutputStreamWritable values = valueToDocuments.getValues();
+
+        // Free memory
+        valueToDocuments = null;
+
+        return V1FilterableIndex.writable(
+                fieldName,
+                V1DatabaseFormat.SegmentType.FIXED_LENGTH_FILTER,
+                values,
+                valueToDocumentsIndex);
+    }
+}
@@ -0,0 +1,643 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.OutputStreamWritableBuilder;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.ByteArrayIndexedList;
+import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.impl.FoldedByteArrayIndexedList;
+import com.yandex.yoctodb.util.immutable.impl.IndexToIndexMultiMapReader;
+import com.yandex.yoctodb.util.immutable.impl.IntIndexToIndexMap;
+import com.yandex.yoctodb.util.immutable.impl.VariableLengthByteArrayIndexedList;
+import com.yandex.yoctodb.util.mutable.IndexToIndexMap;
+import com.yandex.yoctodb.util.mutable.impl.FixedLengthByteArraySortedSet;
+import com.yandex.yoctodb.util.mutable.impl.IndexToIndexMultiMapFactory;
+import com.yandex.yoctodb.util.mutable.impl.IntArrayIndexToIndexMap;
+import com.yandex.yoctodb.util.mutable.impl.ReadOnlyOneBitSet;
+import com.yandex.yoctodb.util.mutable.impl.TrieByteArraySortedSet;
+import com.yandex.yoctodb.util.mutable.impl.VariableLengthByteArraySortedSet;
+import com.yandex.yoctodb.v1.V1DatabaseFormat.SegmentType;
+import net.jcip.annotations.NotThreadSafe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Merges the segments of the same field from several databases into a
+ * single segment.
+ *
+ * The sorted value sets are merged and the documents of every database are
+ * shifted by the document count of the preceding databases.
+ *
+ * @author incubos
+ */
+@NotThreadSafe
+public final class V1SegmentMerger
+        extends Freezable
+        implements OutputStreamWritableBuilder {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @NotNull
+    private final byte[] fieldName;
+    @NotNull
+    private final SegmentType type;
+    private final List<Input> inputs = new ArrayList<>();
+    private int documentCount = 0;
+
+    /**
+     * @param type      segment type of the field
+     * @param fieldName field name
+     */
+    public V1SegmentMerger(
+            @NotNull
+            final SegmentType type,
+            @NotNull
+            final String fieldName) {
+        this.type = type;
+        this.fieldName = fieldName.getBytes();
+    }
+
+    private static boolean isStored(
+            @NotNull
+            final SegmentType type) {
+        return type == SegmentType.VARIABLE_LENGTH_STORED_INDEX ||
+               type == SegmentType.VARIABLE_LENGTH_FOLDED_INDEX;
+    }
+
+    /**
+     * Checks that a segment of {@code type} might be appended
+     *
+     * @throws IllegalArgumentException if the segment type differs
+     */
+    public void checkType(
+            @NotNull
+            final SegmentType type) {
+        if (type != this.type && !(isStored(type) && isStored(this.type)))
+            throw new IllegalArgumentException(
+                    "Segment type " + type + " of field <" +
+                    new String(fieldName) + "> differs from " + this.type);
+    }
+
+    /**
+     * Appends the field segment of the next database
+     *
+     * @param type          segment type
+     * @param segment       segment content following its size and type
+     * @param documentCount database document count
+     */
+    @NotNull
+    public V1SegmentMerger add(
+            @NotNull
+            final SegmentType type,
+            @NotNull
+            final Buffer segment,
+            final int documentCount) {
+        checkType(type);
+
+        return doAdd(new Input(type, segment, documentCount));
+    }
+
+    /**
+     * Appends the next database not containing the field
+     *
+     * @param documentCount database document count
+     */
+    @NotNull
+    public V1SegmentMerger addEmpty(final int documentCount) {
+        return doAdd(new Input(null, null, documentCount));
+    }
+
+    @NotNull
+    private V1SegmentMerger doAdd(
+            @NotNull
+            final Input input) {
+        checkNotFrozen();
+
+        if (input.documentCount < 0)
+            throw new IllegalArgumentException("Negative document count");
+        if (documentCount + (long) input.documentCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many documents");
+
+        inputs.add(input);
+        documentCount += input.documentCount;
+
+        return this;
+    }
+
+    @NotNull
+    @Override
+    public OutputStreamWritable buildWritable() {
+        checkNotFrozen();
+
+        freeze();
+
+        if (documentCount == 0)
+            throw new IllegalStateException("No documents");
+
+        switch (type) {
+            case FIXED_LENGTH_FILTER:
+            case VARIABLE_LENGTH_FILTER:
+            case TRIE_FILTER:
+                return mergeFilter();
+            case FIXED_LENGTH_SORTABLE_INDEX:
+            case VARIABLE_LENGTH_SORTABLE_INDEX:
+            case FIXED_LENGTH_FULL_INDEX:
+            case VARIABLE_LENGTH_FULL_INDEX:
+                return mergeFull();
+            case VARIABLE_LENGTH_STORED_INDEX:
+            case VARIABLE_LENGTH_FOLDED_INDEX:
+                return mergeStored();
+            default:
+                throw new UnsupportedOperationException(
+                        "Unsupported segment type " + type);
+        }
+    }
+
+    /**
+     * Merges the value sets of the inputs visiting every input value in
+     * ascending order (the inputs with equal values in input order)
+     */
+    private void mergeValues(
+            @NotNull
+            final InputValueConsumer consumer) {
+        final PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            final Input input = inputs.get(i);
+            if (input.segment == null)
+                continue;
+
+            final Iterator<UnsignedByteArray> values = input.values();
+            if (values.hasNext())
+                queue.add(new Cursor(i, values));
+        }
+
+        while (!queue.isEmpty()) {
+            final Cursor cursor = queue.poll();
+            consumer.accept(cursor.input, cursor.index, cursor.value);
+            if (cursor.advance())
+                queue.add(cursor);
+        }
+    }
+
+    @NotNull
+    private OutputStreamWritable mergeFilter() {
+        // Posting list iterators of every input
+        final List<Iterator<IntToIntArray>> postings =
+                new ArrayList<>(inputs.size());
+        for (Input input : inputs) {
+            if (input.segment == null) {
+                postings.add(Collections.<IntToIntArray>emptyIterator());
+            } else {
+                final Buffer buffer = input.afterValues();
+                final IndexToIndexMultiMap valueToDocuments =
+                        IndexToIndexMultiMapReader.from(extract(buffer));
+                postings.add(
+                        valueToDocuments.ascending(
+                                new ReadOnlyOneBitSet(input.documentCount)));
+            }
+        }
+
+        // Documents of the same value are visited in ascending order
+        final MergedValueToDocuments merged = new MergedValueToDocuments();
+        mergeValues(
+                (input, index, value) -> {
+                    final IntToIntArray documents = postings.get(input).next();
+                    assert documents.getKey() == index;
+
+                    final int base = inputs.get(input).base;
+                    final int[] ids = documents.getValues();
+                    for (int i = 0; i < documents.getCount(); i++) {
+                        merged.accept(value, base + ids[i]);
+                    }
+                });
+
+        final OutputStreamWritable values;
+        if (type == SegmentType.TRIE_FILTER) {
+            values = new TrieByteArraySortedSet(merged.getValues());
+        } else if (type == SegmentType.FIXED_LENGTH_FILTER) {
+            values = new FixedLengthByteArraySortedSet(merged.getValues());
+        } else {
+            values = new VariableLengthByteArraySortedSet(merged.getValues());
+        }
+
+        return V1FilterableIndex.writable(
+                fieldName,
+                type,
+                values,
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        merged.getValueToDocuments(),
+                        documentCount));
+    }
+
+    @NotNull
+    private OutputStreamWritable mergeFull() {
+        // Every document must have a value
+        final int[][] remap = new int[inputs.size()][];
+        for (int i = 0; i < inputs.size(); i++) {
+            final Input input = inputs.get(i);
+            if (input.segment == null) {
+                if (input.documentCount > 0)
+                    throw new IllegalArgumentException(
+                            "Field <" + new String(fieldName) +
+                            "> is missing in some databases");
+                remap[i] = new int[0];
+            } else {
+                assert input.values != null;
+                remap[i] = new int[input.values.size()];
+            }
+        }
+
+        // Merged value index of every input value
+        final SortedSet<UnsignedByteArray> values = new TreeSet<>();
+        mergeValues(
+                new InputValueConsumer() {
+                    private UnsignedByteArray last = null;
+
+                    @Override
+                    public void accept(
+                            final int input,
+                            final int index,
+                            @NotNull
+                            final UnsignedByteArray value) {
+                        if (last == null || !last.equals(value)) {
+                            values.add(value);
+                            last = value;
+                        }
+                        remap[input][index] = values.size() - 1;
+                    }
+                });
+
+        // Remapping the document values
+        final IndexToIndexMap documentToValue =
+                new IntArrayIndexToIndexMap(documentCount);
+        final int[] documentValues = new int[documentCount];
+        final int[] starts = new int[values.size() + 1];
+        for (int i = 0; i < inputs.size(); i++) {
+            final Input input = inputs.get(i);
+            if (input.segment == null)
+                continue;
+
+            final Buffer buffer = input.afterValues();
+            // Skipping value to documents
+            extract(buffer);
+            final com.yandex.yoctodb.util.immutable.IndexToIndexMap inputDocumentToValue =
+                    IntIndexToIndexMap.from(extract(buffer));
+            for (int document = 0; document < input.documentCount; document++) {
+                final int value =
+                        remap[i][inputDocumentToValue.get(document)];
+                documentValues[input.base + document] = value;
+                documentToValue.put(input.base + document, value);
+                starts[value + 1]++;
+            }
+        }
+
+        // Counting sort of the documents by value
+        for (int value = 0; value < values.size(); value++) {
+            starts[value + 1] += starts[value];
+        }
+        final int[] documents = new int[documentCount];
+        final int[] positions = Arrays.copyOf(starts, values.size());
+        for (int document = 0; document < documentCount; document++) {
+            documents[positions[documentValues[document]]++] = document;
+        }
+        final List<Integer> all = Ints.asList(documents);
+        final List<List<Integer>> valueToDocuments =
+                new AbstractList<List<Integer>>() {
+                    @Override
+                    public List<Integer> get(final int i) {
+                        return all.subList(starts[i], starts[i + 1]);
+                    }
+
+                    @Override
+                    public int size() {
+                        return values.size();
+                    }
+                };
+
+        final OutputStreamWritable valueSet;
+        if (type == SegmentType.FIXED_LENGTH_FULL_INDEX ||
+            type == SegmentType.FIXED_LENGTH_SORTABLE_INDEX) {
+            valueSet = new FixedLengthByteArraySortedSet(values);
+        } else {
+            valueSet = new VariableLengthByteArraySortedSet(values);
+        }
+
+        return AbstractV1FullIndex.writable(
+                fieldName,
+                type,
+                valueSet,
+                AbstractV1FullIndex.valueToDocuments(
+                        type,
+                        valueToDocuments,
+                        documentCount),
+                documentToValue);
+    }
+
+    @NotNull
+    private OutputStreamWritable mergeStored() {
+        final List<ByteArrayIndexedList> lists = new ArrayList<>(inputs.size());
+        boolean folded = false;
+        for (Input input : inputs) {
+            if (input.segment == null) {
+                lists.add(null);
+            } else {
+                final Buffer buffer = input.afterFieldName();
+                if (input.type == SegmentType.VARIABLE_LENGTH_FOLDED_INDEX) {
+                    folded = true;
+                    lists.add(FoldedByteArrayIndexedList.from(extract(buffer)));
+                } else {
+                    lists.add(
+                            VariableLengthByteArrayIndexedList.from(
+                                    extract(buffer)));
+                }
+            }
+        }
+
+        if (folded) {
+            // Folding the values again
+            final V1StoredIndex index = new V1StoredIndex(new String(fieldName));
+            for (int i = 0; i < inputs.size(); i++) {
+                final ByteArrayIndexedList list = lists.get(i);
+                if (list == null)
+                    continue;
+
+                final int base = inputs.get(i).base;
+                for (int document = 0; document < list.size(); document++) {
+                    final Buffer value = list.get(document);
+                    if (value.hasRemaining())
+                        index.addDocument(
+                                base + document,
+                                Collections.singletonList(
+                                        UnsignedByteArrays.from(value)));
+                }
+            }
+            index.setDatabaseDocumentsCount(documentCount);
+            return index.buildWritable();
+        }
+
+        return new StoredWritable(lists);
+    }
+
+    /**
+     * Streams stored values of the inputs as
+     * {@link com.yandex.yoctodb.util.mutable.impl.VariableLengthByteArrayIndexedList}
+     */
+    private final class StoredWritable implements OutputStreamWritable {
+        @NotNull
+        private final List<ByteArrayIndexedList> lists;
+        private final long elementsSize;
+
+        StoredWritable(
+                @NotNull
+                final List<ByteArrayIndexedList> lists) {
+            this.lists = lists;
+            long size = 0L;
+            for (ByteArrayIndexedList list : lists) {
+                if (list == null)
+                    continue;
+                for (int document = 0; document < list.size(); document++) {
+                    size += list.get(document).remaining();
+                }
+            }
+            this.elementsSize = size;
+        }
+
+        private long getValuesSizeInBytes() {
+            return Integer.BYTES + // Element count
+                   Long.BYTES * (documentCount + 1L) + // Element offsets
+                   elementsSize;
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return Integer.BYTES + // Field name
+                   fieldName.length +
+                   Long.BYTES + // Values
+                   getValuesSizeInBytes();
+        }
+
+        @Override
+        public void writeTo(
+                @NotNull
+                final OutputStream os) throws IOException {
+            os.write(Longs.toByteArray(getSizeInBytes()));
+
+            // Payload segment type
+            os.write(
+                    Ints.toByteArray(
+                            SegmentType.VARIABLE_LENGTH_STORED_INDEX.getCode()));
+
+            // Field name
+            os.write(Ints.toByteArray(fieldName.length));
+            os.write(fieldName);
+
+            // Values
+            os.write(Longs.toByteArray(getValuesSizeInBytes()));
+
+            // Element count
+            os.write(Ints.toByteArray(documentCount));
+
+            // Element offsets
+            long offset = 0L;
+            for (int i = 0; i < inputs.size(); i++) {
+                final ByteArrayIndexedList list = lists.get(i);
+                for (int document = 0;
+                     document < inputs.get(i).documentCount;
+                     document++) {
+                    os.write(Longs.toByteArray(offset));
+                    if (list != null)
+                        offset += list.get(document).remaining();
+                }
+            }
+            os.write(Longs.toByteArray(offset));
+
+            // Elements
+            final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            for (ByteArrayIndexedList list : lists) {
+                if (list == null)
+                    continue;
+                for (int document = 0; document < list.size(); document++) {
+                    final Buffer value = list.get(document);
+                    while (value.hasRemaining()) {
+                        final int length =
+                                (int) Math.min(buffer.length, value.remaining());
+                        value.get(buffer, 0, length);
+                        os.write(buffer, 0, length);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads {@code long} size, extracts the slice and advances {@code from}
+     */
+    @NotNull
+    private static Buffer extract(
+            @NotNull
+            final Buffer from) {
+        final long size = from.getLong();
+        final Buffer result = from.slice(size);
+        from.advance(size);
+        return result;
+    }
+
+    private interface InputValueConsumer {
+        void accept(
+                int input,
+                int index,
+                @NotNull
+                UnsignedByteArray value);
+    }
+
+    private final class Input {
+        @Nullable
+        final SegmentType type;
+        @Nullable
+        final Buffer segment;
+        final int documentCount;
+        final int base;
+        @Nullable
+        ByteArraySortedSet values;
+
+        Input(
+                @Nullable
+                final SegmentType type,
+                @Nullable
+                final Buffer segment,
+                final int documentCount) {
+            this.type = type;
+            this.segment = segment;
+            this.documentCount = documentCount;
+            this.base = V1SegmentMerger.this.documentCount;
+            if (segment != null && !isStored(type))
+                this.values = readValues();
+        }
+
+        @NotNull
+        Buffer afterFieldName() {
+            assert segment != null;
+
+            final Buffer result = segment.slice();
+            result.advance(Integer.BYTES + result.getInt(result.position()));
+            return result;
+        }
+
+        @NotNull
+        Buffer afterValues() {
+            final Buffer result = afterFieldName();
+            extract(result);
+            return result;
+        }
+
+        @NotNull
+        private ByteArraySortedSet readValues() {
+            final Buffer values = extract(afterFieldName());
+            switch (V1SegmentMerger.this.type) {
+                case TRIE_FILTER:
+                    return com.yandex.yoctodb.util.immutable.impl.TrieByteArraySortedSet.from(values);
+                case FIXED_LENGTH_FILTER:
+                case FIXED_LENGTH_SORTABLE_INDEX:
+                case FIXED_LENGTH_FULL_INDEX:
+                    return com.yandex.yoctodb.util.immutable.impl.FixedLengthByteArraySortedSet.from(values);
+                default:
+                    return com.yandex.yoctodb.util.immutable.impl.VariableLengthByteArraySortedSet.from(values);
+            }
+        }
+
+        /**
+         * @return values in ascending order
+         */
+        @NotNull
+        Iterator<UnsignedByteArray> values() {
+            assert values != null;
+
+            if (values instanceof com.yandex.yoctodb.util.immutable.impl.TrieByteArraySortedSet) {
+                final List<UnsignedByteArray> result =
+                        new ArrayList<>(values.size());
+                ((com.yandex.yoctodb.util.immutable.impl.TrieByteArraySortedSet) values)
+                        .forEach(key -> result.add(UnsignedByteArrays.from(key)));
+                return result.iterator();
+            }
+
+            final ByteArraySortedSet set = values;
+            return new Iterator<UnsignedByteArray>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < set.size();
+                }
+
+                @Override
+                public UnsignedByteArray next() {
+                    return UnsignedByteArrays.from(set.get(next++));
+                }
+            };
+        }
+    }
+
+    /**
+     * Current value of an input
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        final int input;
+        @NotNull
+        private final Iterator<UnsignedByteArray> values;
+        UnsignedByteArray value;
+        int index = -1;
+
+        Cursor(
+                final int input,
+                @NotNull
+                final Iterator<UnsignedByteArray> values) {
+            this.input = input;
+            this.values = values;
+            advance();
+        }
+
+        boolean advance() {
+            if (!values.hasNext())
+                return false;
+
+            value = values.next();
+            index++;
+            return true;
+        }
+
+        @Override
+        public int compareTo(
+                @NotNull
+                final Cursor o) {
+            final int result = value.compareTo(o.value);
+            return result != 0 ? result : Integer.compare(input, o.input);
+        }
+    }
+}
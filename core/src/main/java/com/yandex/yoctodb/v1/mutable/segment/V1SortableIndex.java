@@ -13,6 +13,9 @@ package com.yandex.yoctodb.v1.mutable.segment;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import net.jcip.annotations.NotThreadSafe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
 
 /**
  * Index supporting sorting by specific field
@@ -25,12 +28,25 @@ public final class V1SortableIndex extends AbstractV1FullIndex {
             @NotNull
             final String fieldName,
             final boolean fixedLength) {
+        this(fieldName, fixedLength, null);
+    }
+
+    /**
+     * @param spillDirectory directory to spill sorted runs to or
+     *                       {@code null} to keep everything in heap
+     */
+    public V1SortableIndex(
+            @NotNull
+            final String fieldName,
+            final boolean fixedLength,
+            @Nullable
+            final File spillDirectory) {
         super(
                 fieldName,
                 fixedLength,
                 fixedLength ?
                         V1DatabaseFormat.SegmentType.FIXED_LENGTH_SORTABLE_INDEX :
-                        V1DatabaseFormat.SegmentType.VARIABLE_LENGTH_SORTABLE_INDEX);
-
+                        V1DatabaseFormat.SegmentType.VARIABLE_LENGTH_SORTABLE_INDEX,
+                spillDirectory);
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb;
+
+import com.yandex.yoctodb.immutable.Database;
+import com.yandex.yoctodb.immutable.DatabaseReader;
+import com.yandex.yoctodb.immutable.IndexedDatabase;
+import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.query.Query;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.impl.AllocatingArrayBitSetPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.yandex.yoctodb.mutable.DocumentBuilder.IndexOption.FILTERABLE;
+import static com.yandex.yoctodb.mutable.DocumentBuilder.IndexOption.FULL;
+import static com.yandex.yoctodb.query.QueryBuilder.*;
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for a composite database processing its databases in parallel
+ *
+ * @author incubos
+ */
+public class CompositeParallelDatabaseTest {
+    private static final int SHARDS = 8;
+    private static final int DOCS = 100;
+    private static final DatabaseFormat FORMAT = DatabaseFormat.getCurrent();
+    private static final DatabaseReader READER = FORMAT.getDatabaseReader();
+    private static final AtomicInteger TASKS = new AtomicInteger();
+
+    private static ExecutorService executor;
+    private static Database sequential;
+    private static Database parallel;
+
+    private static IndexedDatabase buildDatabase(final int shard)
+            throws IOException {
+        final Random random = new Random(shard);
+        final DatabaseBuilder builder = FORMAT.newDatabaseBuilder();
+
+        for (int i = 0; i < DOCS; i++) {
+            builder.merge(
+                    FORMAT.newDocumentBuilder()
+                            .withField("kind", random.nextInt(3), FILTERABLE)
+                            .withField("price", random.nextInt(1000), FULL)
+                            .withField("shard", shard, FULL)
+                            .withPayload((shard + ":" + i).getBytes()));
+        }
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        builder.buildWritable().writeTo(os);
+
+        return READER.from(Buffer.from(os.toByteArray()));
+    }
+
+    @BeforeClass
+    public static void beforeAll() throws IOException {
+        final List<IndexedDatabase> shards = new ArrayList<>(SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(buildDatabase(i));
+        }
+
+        executor = Executors.newFixedThreadPool(4);
+        sequential = READER.composite(shards);
+        parallel =
+                READER.composite(
+                        shards,
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        command -> {
+                            TASKS.incrementAndGet();
+                            executor.execute(command);
+                        });
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        executor.shutdown();
+    }
+
+    private static List<String> payloads(
+            final Database db,
+            final Query query) {
+        final List<String> result = new ArrayList<>();
+        db.execute(
+                query,
+                (document, database) -> {
+                    result.add(
+                            new String(
+                                    database.getDocument(document)
+                                            .toByteArray()));
+                    return true;
+                });
+        return result;
+    }
+
+    private static void check(final Query query) {
+        final List<String> expected = payloads(sequential, query);
+        assertEquals(expected, payloads(parallel, query));
+        assertEquals(sequential.count(query), parallel.count(query));
+
+        final List<String> actual = new ArrayList<>();
+        assertEquals(
+                sequential.executeAndUnlimitedCount(query, (d, db) -> true),
+                parallel.executeAndUnlimitedCount(
+                        query,
+                        (document, database) -> {
+                            actual.add(
+                                    new String(
+                                            database.getDocument(document)
+                                                    .toByteArray()));
+                            return true;
+                        }));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void sameAsSequential() {
+        final int before = TASKS.get();
+
+        check(select());
+        check(select().skip(DOCS + 3).limit(20));
+        check(select().where(eq("kind", from(1))));
+        check(select().where(eq("kind", from(2))).skip(5).limit(10));
+        check(select().where(eq("kind", from(7))));
+        check(select().orderBy(asc("price")).limit(20));
+        check(select().orderBy(desc("price")).skip(30).limit(20));
+        check(select().where(lt("price", from(500)))
+                .orderBy(desc("shard"))
+                .and(asc("price"))
+                .limit(50));
+        check(select().where(eq("kind", from(0)))
+                .orderBy(asc("price")));
+
+        assertTrue(TASKS.get() > before);
+    }
+
+    @Test
+    public void stopProcessing() {
+        final AtomicInteger processed = new AtomicInteger();
+        parallel.execute(
+                select().orderBy(asc("price")),
+                (document, database) -> processed.incrementAndGet() < 3);
+        assertEquals(3, processed.get());
+    }
+
+    @Test
+    public void limitedFilteringDoesNotProcessAllDatabases() {
+        final int before = TASKS.get();
+        final List<String> expected = payloads(sequential, select().limit(1));
+        assertEquals(expected, payloads(parallel, select().limit(1)));
+        assertTrue(TASKS.get() - before < SHARDS);
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.query.simple;
+
+import com.yandex.yoctodb.DatabaseFormat;
+import com.yandex.yoctodb.immutable.FilterableIndexProvider;
+import com.yandex.yoctodb.immutable.IndexedDatabase;
+import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.query.Condition;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.mutable.ArrayBitSet;
+import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import com.yandex.yoctodb.util.mutable.impl.AllocatingArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
+import com.yandex.yoctodb.util.mutable.impl.RejectingArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.impl.RoaringBitSet;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static com.yandex.yoctodb.mutable.DocumentBuilder.IndexOption.FILTERABLE;
+import static com.yandex.yoctodb.mutable.DocumentBuilder.IndexOption.FULL;
+import static com.yandex.yoctodb.query.QueryBuilder.*;
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SimpleAndCondition} planning
+ *
+ * @author incubos
+ */
+public class SimpleAndConditionTest {
+    private static final int DOCS = 100;
+    private static final int RARE = 42;
+
+    private static IndexedDatabase buildDatabase() throws IOException {
+        final DatabaseFormat databaseFormat = DatabaseFormat.getCurrent();
+        final DatabaseBuilder dbBuilder = databaseFormat.newDatabaseBuilder();
+
+        for (int i = 0; i < DOCS; i++) {
+            dbBuilder.merge(
+                    databaseFormat.newDocumentBuilder()
+                            .withField("num", i, FULL)
+                            .withField("rare", i == RARE ? 1 : 0, FILTERABLE)
+                            .withPayload(new byte[]{(byte) i}));
+        }
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dbBuilder.buildWritable().writeTo(os);
+
+        return (IndexedDatabase) databaseFormat.getDatabaseReader().from(
+                Buffer.from(os.toByteArray()));
+    }
+
+    private static final class StubCondition implements Condition {
+        private final long estimate;
+        private final boolean result;
+        private int evaluations = 0;
+
+        StubCondition(
+                final long estimate,
+                final boolean result) {
+            this.estimate = estimate;
+            this.result = result;
+        }
+
+        @Override
+        public boolean set(
+                @NotNull
+                final FilterableIndexProvider indexProvider,
+                @NotNull
+                final BitSet to,
+                @NotNull
+                final ArrayBitSetPool bitSetPool) {
+            evaluations++;
+            if (result)
+                to.set();
+            return result;
+        }
+
+        @Override
+        public long estimate(
+                @NotNull
+                final FilterableIndexProvider indexProvider,
+                final int documentCount) {
+            return estimate;
+        }
+    }
+
+    /**
+     * Condition iterating over the predefined documents
+     */
+    private static final class IteratedCondition implements Condition {
+        private final int[] documents;
+        private int evaluations = 0;
+
+        IteratedCondition(final int... documents) {
+            this.documents = documents;
+        }
+
+        @Override
+        public boolean set(
+                @NotNull
+                final FilterableIndexProvider indexProvider,
+                @NotNull
+                final BitSet to,
+                @NotNull
+                final ArrayBitSetPool bitSetPool) {
+            evaluations++;
+            for (int document : documents)
+                to.set(document);
+            return documents.length > 0;
+        }
+
+        @Override
+        public long estimate(
+                @NotNull
+                final FilterableIndexProvider indexProvider,
+                final int documentCount) {
+            return documents.length;
+        }
+
+        @NotNull
+        @Override
+        public PostingIterator iterator(
+                @NotNull
+                final FilterableIndexProvider indexProvider) {
+            return new PostingIterator() {
+                private int i = -1;
+
+                private int current() {
+                    return i < documents.length ?
+                            documents[i] :
+                            NO_MORE_VALUES;
+                }
+
+                @Override
+                public int next() {
+                    if (i < documents.length)
+                        i++;
+                    return current();
+                }
+
+                @Override
+                public int advance(final int target) {
+                    while (i < 0 || current() < target)
+                        i++;
+                    return current();
+                }
+            };
+        }
+    }
+
+    /**
+     * Pool counting the borrowed bit sets
+     */
+    private static final class CountingArrayBitSetPool
+            implements ArrayBitSetPool {
+        private int borrowed = 0;
+        private int sparseBorrowed = 0;
+        private int sparseReturned = 0;
+
+        @NotNull
+        @Override
+        public ArrayBitSet borrowSet(final int size) {
+            borrowed++;
+            return AllocatingArrayBitSetPool.INSTANCE.borrowSet(size);
+        }
+
+        @Override
+        public void returnSet(
+                @NotNull
+                final ArrayBitSet set) {
+            AllocatingArrayBitSetPool.INSTANCE.returnSet(set);
+        }
+
+        @NotNull
+        @Override
+        public BitSet borrowSparseSet(final int size) {
+            sparseBorrowed++;
+            return AllocatingArrayBitSetPool.INSTANCE.borrowSparseSet(size);
+        }
+
+        @Override
+        public void returnSparseSet(
+                @NotNull
+                final BitSet set) {
+            assertTrue(set instanceof RoaringBitSet);
+            sparseReturned++;
+            AllocatingArrayBitSetPool.INSTANCE.returnSparseSet(set);
+        }
+    }
+
+    private static final FilterableIndexProvider NO_INDEXES =
+            fieldName -> null;
+
+    @Test
+    public void estimates() throws IOException {
+        final IndexedDatabase db = buildDatabase();
+
+        assertEquals(1L, eq("rare", from(1)).estimate(db, DOCS));
+        assertEquals(DOCS - 1, eq("rare", from(0)).estimate(db, DOCS));
+        assertEquals(0L, eq("rare", from(2)).estimate(db, DOCS));
+        assertEquals(0L, eq("missing", from(1)).estimate(db, DOCS));
+        assertEquals(90L, gte("num", from(10)).estimate(db, DOCS));
+        assertEquals(10L, lt("num", from(10)).estimate(db, DOCS));
+        assertEquals(
+                10L,
+                new SimpleRangeCondition(
+                        "num",
+                        from(10),
+                        true,
+                        from(20),
+                        false).estimate(db, DOCS));
+        assertEquals(
+                DOCS - 1,
+                not(eq("rare", from(1))).estimate(db, DOCS));
+        assertEquals(
+                11L,
+                or(eq("rare", from(1)), lt("num", from(10)))
+                        .estimate(db, DOCS));
+        assertEquals(
+                1L,
+                and(gte("num", from(10)), eq("rare", from(1)))
+                        .estimate(db, DOCS));
+    }
+
+    @Test
+    public void mostSelectiveFirst() throws IOException {
+        final IndexedDatabase db = buildDatabase();
+        final Condition broad = gte("num", from(10));
+        final Condition medium = lt("num", from(50));
+        final Condition rare = eq("rare", from(1));
+
+        final SimpleAndCondition and =
+                new SimpleAndCondition(Arrays.asList(broad, medium, rare));
+        assertArrayEquals(
+                new Condition[]{rare, medium, broad},
+                and.plan(db, DOCS));
+
+        final BitSet result = LongArrayBitSet.zero(DOCS);
+        assertTrue(and.set(db, result, AllocatingArrayBitSetPool.INSTANCE));
+        assertEquals(1, result.cardinality());
+        assertTrue(result.get(RARE));
+    }
+
+    @Test
+    public void stableOrder() {
+        final Condition first = new StubCondition(5L, true);
+        final Condition second = new StubCondition(5L, true);
+        final Condition third = new StubCondition(1L, true);
+
+        assertArrayEquals(
+                new Condition[]{third, first, second},
+                new SimpleAndCondition(Arrays.asList(first, second, third))
+                        .plan(NO_INDEXES, DOCS));
+    }
+
+    @Test
+    public void shortCircuitOnSelective() {
+        final StubCondition broad = new StubCondition(DOCS, true);
+        final StubCondition empty = new StubCondition(0L, false);
+
+        assertFalse(
+                new SimpleAndCondition(Arrays.asList(broad, empty)).set(
+                        NO_INDEXES,
+                        LongArrayBitSet.zero(DOCS),
+                        AllocatingArrayBitSetPool.INSTANCE));
+
+        assertEquals(1, empty.evaluations);
+        assertEquals(0, broad.evaluations);
+    }
+
+    @Test
+    public void leapfrogWithoutBitSets() {
+        final IteratedCondition rare = new IteratedCondition(3, 50, 97);
+        final IteratedCondition broad = new IteratedCondition(
+                IntStream.range(0, DOCS).filter(i -> i % 2 == 1).toArray());
+        final IteratedCondition medium = new IteratedCondition(
+                IntStream.range(0, DOCS).filter(i -> i % 3 != 2).toArray());
+
+        final BitSet result = LongArrayBitSet.zero(DOCS * Long.SIZE);
+        assertTrue(
+                new SimpleAndCondition(Arrays.asList(broad, medium, rare)).set(
+                        NO_INDEXES,
+                        result,
+                        RejectingArrayBitSetPool.INSTANCE));
+        assertEquals(2, result.cardinality());
+        assertTrue(result.get(3));
+        assertTrue(result.get(97));
+
+        assertEquals(0, rare.evaluations);
+        assertEquals(0, medium.evaluations);
+        assertEquals(0, broad.evaluations);
+
+        assertFalse(
+                new SimpleAndCondition(
+                        Arrays.asList(
+                                new IteratedCondition(1, 2),
+                                new IteratedCondition(0, 3))).set(
+                        NO_INDEXES,
+                        LongArrayBitSet.zero(DOCS * Long.SIZE),
+                        RejectingArrayBitSetPool.INSTANCE));
+    }
+
+    @Test
+    public void leapfrog() throws IOException {
+        final int documents = 10000;
+        final DatabaseFormat databaseFormat = DatabaseFormat.getCurrent();
+        final DatabaseBuilder dbBuilder = databaseFormat.newDatabaseBuilder();
+        for (int i = 0; i < documents; i++) {
+            dbBuilder.merge(
+                    databaseFormat.newDocumentBuilder()
+                            .withField("num", i, FULL)
+                            .withField("rare", i % 1000 == 7 ? 1 : 0, FILTERABLE)
+                            .withField("multi", i % 300, FILTERABLE)
+                            .withField("multi", 300 + i % 2, FILTERABLE)
+                            .withPayload(new byte[]{(byte) i}));
+        }
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dbBuilder.buildWritable().writeTo(os);
+        final IndexedDatabase db =
+                (IndexedDatabase) databaseFormat.getDatabaseReader().from(
+                        Buffer.from(os.toByteArray()));
+
+        final Condition[][] queries = {
+                // Document-at-a-time
+                {eq("multi", from(301)), eq("rare", from(1))},
+                {eq("multi", from(7)), eq("rare", from(1)), eq("multi", from(301))},
+                {eq("rare", from(1)), eq("multi", from(300)), eq("missing", from(1))},
+                // Document-at-a-time with a range
+                {gte("num", from(5000)), eq("multi", from(301)), eq("rare", from(1))},
+                // Bit sets
+                {eq("multi", from(301)), gte("num", from(5000))}
+        };
+        final boolean[][] matches = new boolean[queries.length][documents];
+        for (int i = 0; i < documents; i++) {
+            final boolean rare = i % 1000 == 7;
+            final boolean odd = i % 2 == 1;
+            matches[0][i] = rare && odd;
+            matches[1][i] = rare && odd && i % 300 == 7;
+            matches[2][i] = false;
+            matches[3][i] = rare && odd && i >= 5000;
+            matches[4][i] = odd && i >= 5000;
+        }
+
+        for (int q = 0; q < queries.length; q++) {
+            final BitSet result = LongArrayBitSet.zero(documents);
+            final boolean any =
+                    new SimpleAndCondition(Arrays.asList(queries[q])).set(
+                            db,
+                            result,
+                            AllocatingArrayBitSetPool.INSTANCE);
+
+            int expected = 0;
+            for (int i = 0; i < documents; i++) {
+                assertEquals(matches[q][i], result.get(i));
+                if (matches[q][i])
+                    expected++;
+            }
+            assertEquals(expected > 0, any);
+        }
+    }
+
+    @Test
+    public void sparseLeapfrogResult() throws IOException {
+        final IndexedDatabase db = buildDatabase();
+        final IteratedCondition rare = new IteratedCondition(RARE);
+
+        // Non-iterable range condition is intersected with the sparse set
+        final CountingArrayBitSetPool pool = new CountingArrayBitSetPool();
+        final BitSet result = LongArrayBitSet.zero(DOCS);
+        assertTrue(
+                new SimpleAndCondition(
+                        Arrays.asList(
+                                gte("num", from(10)),
+                                new IteratedCondition(
+                                        IntStream.range(0, DOCS).toArray()),
+                                rare)).set(db, result, pool));
+        assertEquals(1, result.cardinality());
+        assertTrue(result.get(RARE));
+        assertEquals(1, pool.sparseBorrowed);
+        assertEquals(1, pool.sparseReturned);
+        assertEquals(0, rare.evaluations);
+
+        // Dense clauses are intersected with array bit sets
+        final CountingArrayBitSetPool densePool = new CountingArrayBitSetPool();
+        assertTrue(
+                new SimpleAndCondition(
+                        Arrays.asList(
+                                gte("num", from(10)),
+                                lt("num", from(20)))).set(
+                        db,
+                        LongArrayBitSet.zero(DOCS),
+                        densePool));
+        assertEquals(0, densePool.sparseBorrowed);
+        assertTrue(densePool.borrowed > 0);
+    }
+}
@@ -11,7 +11,9 @@
 package com.yandex.yoctodb.query.simple;
 
 import com.yandex.yoctodb.DatabaseFormat;
+import com.yandex.yoctodb.immutable.SortableIndex;
 import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.query.Order;
 import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.mutable.impl.ReadOnlyOneBitSet;
 import com.yandex.yoctodb.v1.immutable.V1Database;
@@ -19,10 +21,13 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Collections;
+import java.util.*;
 
 import static com.yandex.yoctodb.mutable.DocumentBuilder.IndexOption.FULL;
 import static com.yandex.yoctodb.query.QueryBuilder.asc;
+import static com.yandex.yoctodb.query.QueryBuilder.desc;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link com.yandex.yoctodb.query.simple.SortingScoredDocumentIterator}
@@ -65,4 +70,90 @@ public class SortingScoredDocumentIteratorTest {
 
         iterator.remove();
     }
+
+    @Test
+    public void multipleSorts() throws IOException {
+        final int docs = 1000;
+        final Random random = new Random(0);
+        final DatabaseBuilder dbBuilder = FORMAT.newDatabaseBuilder();
+        for (int i = 0; i < docs; i++) {
+            dbBuilder.merge(
+                    FORMAT.newDocumentBuilder()
+                            .withField("a", random.nextInt(5), FULL)
+                            .withField("b", random.nextInt(50), FULL)
+                            .withField("c", random.nextInt(3), FULL)
+                            .withPayload(new byte[]{(byte) i}));
+        }
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dbBuilder.buildWritable().writeTo(os);
+
+        final V1Database db = (V1Database) DatabaseFormat.getCurrent()
+                .getDatabaseReader()
+                .from(Buffer.from(os.toByteArray()));
+
+        final List<Order> sorts = Arrays.asList(desc("a"), asc("b"), desc("c"));
+
+        // Reference order by sort value indexes and then by document
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < docs; i++) {
+            expected.add(i);
+        }
+        expected.sort((x, y) -> {
+            for (Order sort : sorts) {
+                final SortableIndex index = db.getSorter(sort.getFieldName());
+                final int cmp =
+                        Integer.compare(
+                                index.getSortValueIndex(x),
+                                index.getSortValueIndex(y));
+                if (cmp != 0) {
+                    return sort.getOrder().isAscending() ? cmp : -cmp;
+                }
+            }
+            return Integer.compare(x, y);
+        });
+
+        final SortingScoredDocumentIterator iterator =
+                new SortingScoredDocumentIterator(
+                        db,
+                        new ReadOnlyOneBitSet(docs),
+                        sorts);
+        final List<SimpleScoredDocument> actual = new ArrayList<>();
+        while (iterator.hasNext()) {
+            actual.add(iterator.next());
+        }
+
+        assertEquals(docs, actual.size());
+        for (int i = 0; i < docs; i++) {
+            assertEquals(expected.get(i).intValue(), actual.get(i).getDocument());
+            if (i > 0) {
+                assertTrue(actual.get(i - 1).compareTo(actual.get(i)) <= 0);
+            }
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void exhausted() throws IOException {
+        final DatabaseBuilder dbBuilder = FORMAT.newDatabaseBuilder();
+        dbBuilder.merge(
+                FORMAT.newDocumentBuilder()
+                        .withField("int", 1, FULL)
+                        .withPayload("payload1".getBytes()));
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dbBuilder.buildWritable().writeTo(os);
+
+        final V1Database db = (V1Database) DatabaseFormat.getCurrent()
+                .getDatabaseReader()
+                .from(Buffer.from(os.toByteArray()));
+
+        final SortingScoredDocumentIterator iterator =
+                new SortingScoredDocumentIterator(
+                        db,
+                        new ReadOnlyOneBitSet(db.getDocumentCount()),
+                        Collections.singletonList(asc("int")));
+
+        iterator.next();
+        iterator.next();
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.query.simple;
+
+import com.yandex.yoctodb.DatabaseFormat;
+import com.yandex.yoctodb.immutable.IndexedDatabase;
+import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.query.Order;
+import com.yandex.yoctodb.query.Query;
+import com.yandex.yoctodb.query.ScoredDocument;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.ArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import com.yandex.yoctodb.util.mutable.impl.AllocatingArrayBitSetPool;
+import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
+import com.yandex.yoctodb.util.mutable.impl.ReadOnlyOneBitSet;
+import com.yandex.yoctodb.v1.immutable.V1Database;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static com.yandex.yoctodb.mutable.DocumentBuilder.IndexOption.FULL;
+import static com.yandex.yoctodb.query.QueryBuilder.asc;
+import static com.yandex.yoctodb.query.QueryBuilder.desc;
+import static com.yandex.yoctodb.query.QueryBuilder.select;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Unit tests for {@link TopScoredDocumentIterator} checked against
+ * {@link SortingScoredDocumentIterator}
+ *
+ * @author incubos
+ */
+public class TopScoredDocumentIteratorTest {
+    private static final int DOCS = 1000;
+
+    private final DatabaseFormat FORMAT = DatabaseFormat.getCurrent();
+
+    private V1Database build() throws IOException {
+        final Random random = new Random(0);
+        final DatabaseBuilder dbBuilder = FORMAT.newDatabaseBuilder();
+
+        for (int i = 0; i < DOCS; i++) {
+            dbBuilder.merge(
+                    FORMAT.newDocumentBuilder()
+                            .withField("a", random.nextInt(10), FULL)
+                            .withField("b", random.nextInt(100), FULL)
+                            .withField("c", random.nextInt(4), FULL)
+                            .withPayload(new byte[]{(byte) i}));
+        }
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dbBuilder.buildWritable().writeTo(os);
+
+        return (V1Database) FORMAT.getDatabaseReader()
+                .from(Buffer.from(os.toByteArray()));
+    }
+
+    private static List<Integer> ids(
+            final Iterator<SimpleScoredDocument> iterator,
+            final int count) {
+        final List<Integer> result = new ArrayList<>();
+        while (iterator.hasNext() && result.size() < count) {
+            result.add(iterator.next().getDocument());
+        }
+        return result;
+    }
+
+    private static void check(
+            final V1Database db,
+            final BitSet docs,
+            final List<Order> sorts) {
+        for (int count : new int[]{1, 7, 64, 65, 300, DOCS, 2 * DOCS}) {
+            final List<Integer> expected =
+                    ids(new SortingScoredDocumentIterator(db, docs, sorts),
+                            count);
+            final TopScoredDocumentIterator top =
+                    new TopScoredDocumentIterator(db, docs, sorts, count);
+            assertEquals(expected, ids(top, Integer.MAX_VALUE));
+            assertFalse(top.hasNext());
+        }
+    }
+
+    @Test
+    public void sameAsFullSorting() throws IOException {
+        final V1Database db = build();
+
+        final BitSet sparse = LongArrayBitSet.zero(DOCS);
+        final Random random = new Random(1);
+        for (int i = 0; i < DOCS / 3; i++) {
+            sparse.set(random.nextInt(DOCS));
+        }
+
+        final List<List<Order>> sorts =
+                Arrays.asList(
+                        Collections.singletonList(asc("a")),
+                        Collections.singletonList(desc("b")),
+                        Arrays.asList(asc("a"), desc("b")),
+                        Arrays.asList(desc("a"), asc("c")),
+                        Arrays.asList(desc("c"), asc("a"), desc("b")));
+
+        for (List<Order> sort : sorts) {
+            check(db, new ReadOnlyOneBitSet(DOCS), sort);
+            check(db, sparse, sort);
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void exhausted() throws IOException {
+        final V1Database db = build();
+        final TopScoredDocumentIterator top =
+                new TopScoredDocumentIterator(
+                        db,
+                        new ReadOnlyOneBitSet(DOCS),
+                        Collections.singletonList(asc("a")),
+                        1);
+        top.next();
+        top.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedRemove() throws IOException {
+        final V1Database db = build();
+        new TopScoredDocumentIterator(
+                db,
+                new ReadOnlyOneBitSet(DOCS),
+                Collections.singletonList(asc("a")),
+                1).remove();
+    }
+
+    /**
+     * Relies on the default {@link Query#sortedTop}
+     */
+    private static final class DelegatingQuery implements Query {
+        private final Query delegate;
+
+        private DelegatingQuery(final Query delegate) {
+            this.delegate = delegate;
+        }
+
+        @Nullable
+        @Override
+        public BitSet filteredUnlimited(
+                @NotNull
+                final IndexedDatabase database,
+                @NotNull
+                final ArrayBitSetPool bitSetPool) {
+            return delegate.filteredUnlimited(database, bitSetPool);
+        }
+
+        @NotNull
+        @Override
+        public Iterator<? extends ScoredDocument<?>> sortedUnlimited(
+                @NotNull
+                final BitSet docs,
+                @NotNull
+                final IndexedDatabase database,
+                @NotNull
+                final ArrayBitSetPool bitSetPool) {
+            return delegate.sortedUnlimited(docs, database, bitSetPool);
+        }
+
+        @Override
+        public int getSkip() {
+            return delegate.getSkip();
+        }
+
+        @Override
+        public int getLimit() {
+            return delegate.getLimit();
+        }
+
+        @Override
+        public boolean hasSorting() {
+            return delegate.hasSorting();
+        }
+    }
+
+    private static List<Integer> documents(
+            final Iterator<? extends ScoredDocument<?>> iterator) {
+        final List<Integer> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next().getDocument());
+        }
+        return result;
+    }
+
+    @Test
+    public void defaultSortedTop() throws IOException {
+        final V1Database db = build();
+        final Query query = select().orderBy(desc("b")).and(asc("a"));
+        final Query delegating = new DelegatingQuery(query);
+        final BitSet docs = new ReadOnlyOneBitSet(DOCS);
+
+        for (int count : new int[]{1, 10, DOCS, 2 * DOCS}) {
+            assertEquals(
+                    documents(
+                            query.sortedTop(
+                                    docs,
+                                    db,
+                                    AllocatingArrayBitSetPool.INSTANCE,
+                                    count)),
+                    documents(
+                            delegating.sortedTop(
+                                    docs,
+                                    db,
+                                    AllocatingArrayBitSetPool.INSTANCE,
+                                    count)));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Unit tests for {@link BlockChecksumOutputStreamWrapper}
+ *
+ * @author incubos
+ */
+public class BlockChecksumOutputStreamWrapperTest {
+    private static int crc(
+            final byte[] data,
+            final int from,
+            final int to) {
+        final CRC32 crc = new CRC32();
+        crc.update(data, from, to - from);
+        return (int) crc.getValue();
+    }
+
+    @Test
+    public void blocks() throws IOException {
+        final int blockSize = 10;
+        final byte[] data = new byte[95];
+        new Random(0).nextBytes(data);
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final BlockChecksumOutputStreamWrapper wrapper =
+                new BlockChecksumOutputStreamWrapper(
+                        os,
+                        new CRC32(),
+                        blockSize);
+        wrapper.write(data, 0, 3);
+        wrapper.write(data[3]);
+        wrapper.write(data, 4, 30);
+        wrapper.write(data, 34, data.length - 34);
+
+        final int[] expected = new int[10];
+        for (int i = 0; i < expected.length; i++)
+            expected[i] =
+                    crc(data, i * blockSize, Math.min(data.length, (i + 1) * blockSize));
+
+        assertArrayEquals(data, os.toByteArray());
+        assertArrayEquals(expected, wrapper.checksums());
+    }
+
+    @Test
+    public void exactBlocks() throws IOException {
+        final byte[] data = new byte[20];
+        Arrays.fill(data, (byte) 7);
+
+        final BlockChecksumOutputStreamWrapper wrapper =
+                new BlockChecksumOutputStreamWrapper(
+                        new ByteArrayOutputStream(),
+                        new CRC32(),
+                        10);
+        wrapper.write(data);
+
+        assertArrayEquals(
+                new int[]{crc(data, 0, 10), crc(data, 10, 20)},
+                wrapper.checksums());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongBlockSize() {
+        new BlockChecksumOutputStreamWrapper(
+                new ByteArrayOutputStream(),
+                new CRC32(),
+                0);
+    }
+}
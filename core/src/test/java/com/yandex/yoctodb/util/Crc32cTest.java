@@ -0,0 +1,58 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util;
+
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link Crc32c}
+ *
+ * @author incubos
+ */
+public class Crc32cTest {
+    @Test
+    public void knownValue() {
+        final byte[] data = "123456789".getBytes();
+        final Checksum crc = new Crc32c();
+        crc.update(data, 0, data.length);
+        assertEquals(0xE3069283L, crc.getValue());
+
+        crc.reset();
+        for (byte b : data)
+            crc.update(b);
+        assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    @Test
+    public void sameAsGuava() {
+        final Random random = new Random(0);
+        for (int size = 0; size < 100; size++) {
+            final byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            // Updating in two unaligned parts
+            final Checksum crc = new Crc32c();
+            final int split = size / 3;
+            crc.update(data, 0, split);
+            crc.update(data, split, size - split);
+
+            assertEquals(
+                    Hashing.crc32c().hashBytes(data).asInt(),
+                    (int) crc.getValue());
+        }
+    }
+}
@@ -196,6 +196,23 @@ public class UnsignedByteArraysTest {
         toLong(from(new byte[]{0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6}));
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsignedLongTooBig() {
+        toUnsignedLong(from(new byte[]{0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8}));
+    }
+
+    @Test
+    public void testUnsignedLong() {
+        assertEquals(0L, toUnsignedLong(from(new byte[]{})));
+        assertEquals(0x0102L, toUnsignedLong(from(new byte[]{0x1, 0x2})));
+        assertEquals(0xFFL, toUnsignedLong(from(new byte[]{(byte) 0xFF})));
+        assertEquals(Long.MIN_VALUE, toUnsignedLong(from(0L)));
+        assertEquals(-1L, toUnsignedLong(from(Long.MAX_VALUE)));
+
+        assertTrue(Long.compareUnsigned(toUnsignedLong(from(-1)), toUnsignedLong(from(1))) < 0);
+        assertTrue(Long.compareUnsigned(toUnsignedLong(from(-1L)), toUnsignedLong(from(1L))) < 0);
+    }
+
     @Test
     public void testLong() {
         assertEquals(0L, toLong(from(0L)));
@@ -129,6 +129,62 @@ public abstract class BufferTest {
         assertEquals(data, result);
     }
 
+    @Test
+    public void testGetInts() {
+        final Buffer buf = bufferOf(ALPHABET);
+        final ByteBuffer expected = ByteBuffer.wrap(ALPHABET_BYTES);
+        final int[] ints = new int[6];
+
+        buf.getInts(3, ints, 1, 5);
+
+        assertEquals(0, buf.position());
+        assertEquals(0, ints[0]);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected.getInt(3 + i * 4), ints[i + 1]);
+        }
+    }
+
+    @Test
+    public void testGetLongs() {
+        final Buffer buf = bufferOf(ALPHABET);
+        final ByteBuffer expected = ByteBuffer.wrap(ALPHABET_BYTES);
+        final long[] longs = new long[3];
+
+        buf.getLongs(1, longs, 0, 3);
+
+        assertEquals(0, buf.position());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.getLong(1 + i * 8), longs[i]);
+        }
+    }
+
+    @Test
+    public void testBulkGetIntsAndLongs() {
+        final byte[] data = new byte[1024 + 3];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        final Buffer buf = bufferOf(data);
+        final ByteBuffer expected = ByteBuffer.wrap(data);
+
+        // Element by element and bulk reads
+        for (int length : new int[]{0, 1, 16, 17, 255}) {
+            final int[] ints = new int[length];
+            buf.getInts(3, ints, 0, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected.getInt(3 + i * 4), ints[i]);
+            }
+
+            final long[] longs = new long[length / 2];
+            buf.getLongs(3, longs, 0, longs.length);
+            for (int i = 0; i < longs.length; i++) {
+                assertEquals(expected.getLong(3 + i * 8), longs[i]);
+            }
+        }
+
+        assertEquals(0, buf.position());
+    }
+
     @Test
     public void testToString() {
         final Buffer buf = bufferOf(ALPHABET);
@@ -0,0 +1,149 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.buf;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link CachedFileChannelBuffer}
+ *
+ * @author incubos
+ */
+public class CachedFileChannelBufferTest extends BufferTest {
+    private static final int PAGE_SIZE = 8;
+    private static final int PAGE_COUNT = 4;
+    private static final int READ_AHEAD = 2;
+
+    private static FileChannel channelOf(final byte[] data) {
+        try {
+            final File f =
+                    File.createTempFile("cached_file_channel_buffer_test_", "");
+            f.deleteOnExit();
+            Files.write(f.toPath(), data);
+
+            return FileChannel.open(
+                    f.toPath(),
+                    StandardOpenOption.READ,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    protected Buffer bufferOf(final byte[] data) {
+        return new CachedFileChannelBuffer(
+                channelOf(data),
+                PAGE_SIZE,
+                PAGE_COUNT,
+                READ_AHEAD);
+    }
+
+    private static byte[] sequence(final int size) {
+        final byte[] result = new byte[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (i * 3);
+        }
+        return result;
+    }
+
+    @Test
+    public void primitivesAcrossPages() {
+        final byte[] data = sequence(101);
+        final ByteBuffer expected = ByteBuffer.wrap(data);
+        final Buffer buf = bufferOf(data);
+
+        for (int i = data.length - Long.BYTES; i >= 0; i--) {
+            assertEquals(expected.get(i), buf.get(i));
+            assertEquals(expected.getShort(i), buf.getShort(i));
+            assertEquals(expected.getChar(i), buf.getChar(i));
+            assertEquals(expected.getInt(i), buf.getInt(i));
+            assertEquals(expected.getLong(i), buf.getLong(i));
+        }
+
+        buf.position(5);
+        assertEquals(expected.getLong(5), buf.getLong());
+        assertEquals(expected.getInt(13), buf.getInt());
+        assertEquals(expected.getShort(17), buf.getShort());
+        assertEquals(expected.getChar(19), buf.getChar());
+        assertEquals(expected.get(21), buf.get());
+        assertEquals(22, buf.position());
+    }
+
+    @Test
+    public void sequentialRead() {
+        final byte[] data = sequence(1001);
+        final Buffer buf = bufferOf(data);
+
+        assertArrayEquals(data, buf.toByteArray());
+        assertArrayEquals(data, buf.position(0).toByteArray());
+    }
+
+    @Test
+    public void slices() {
+        final byte[] data = sequence(256);
+        final Buffer buf = bufferOf(data);
+        final Buffer slice = buf.slice(13, 100);
+        final Buffer nested = slice.slice(7, 50);
+
+        assertEquals(ByteBuffer.wrap(data).getLong(20), nested.getLong(0));
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 20, 70),
+                nested.toByteArray());
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 13, 113),
+                slice.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongPageSize() {
+        new CachedFileChannelBuffer(channelOf(new byte[16]), 3, 1, 0);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void brokenSize() throws IOException {
+        final FileChannel broken = mock(FileChannel.class);
+        when(broken.size()).thenThrow(new IOException("Test"));
+        new CachedFileChannelBuffer(broken, 1024L);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void brokenRead() throws IOException {
+        final FileChannel broken = mock(FileChannel.class);
+        when(broken.size()).thenReturn(1024L);
+        when(broken.read(any(ByteBuffer.class), anyLong()))
+                .thenThrow(new IOException("Test"));
+        new CachedFileChannelBuffer(broken, 1024L).getLong(0L);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void truncatedFile() throws IOException {
+        final FileChannel broken = mock(FileChannel.class);
+        when(broken.size()).thenReturn(1024L);
+        when(broken.read(any(ByteBuffer.class), anyLong())).thenReturn(-1);
+        new CachedFileChannelBuffer(broken, 1024L).get(0L);
+    }
+}
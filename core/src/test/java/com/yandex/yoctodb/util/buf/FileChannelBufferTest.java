@@ -17,7 +17,11 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -286,4 +290,168 @@ public class FileChannelBufferTest extends BufferTest {
 
         assertEquals(ch, buf.getChar(0));
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLongBulkRead() {
+        bufferOf(new byte[8]).getLongs(0, new long[0], 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read-only channel returning a single byte per read
+     */
+    private static final class ByteByByteChannel extends FileChannel {
+        private final byte[] data;
+        private final long size;
+
+        private ByteByByteChannel(
+                final byte[] data,
+                final long size) {
+            this.data = data;
+            this.size = size;
+        }
+
+        @Override
+        public int read(
+                final ByteBuffer dst,
+                final long position) {
+            if (position >= data.length)
+                return -1;
+            dst.put(data[(int) position]);
+            return 1;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(
+                final ByteBuffer[] dsts,
+                final int offset,
+                final int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write(
+                final ByteBuffer[] srcs,
+                final int offset,
+                final int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(
+                final ByteBuffer src,
+                final long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel position(final long newPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel truncate(final long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void force(final boolean metaData) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(
+                final long position,
+                final long count,
+                final WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(
+                final ReadableByteChannel src,
+                final long position,
+                final long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(
+                final MapMode mode,
+                final long position,
+                final long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(
+                final long position,
+                final long size,
+                final boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(
+                final long position,
+                final long size,
+                final boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() {
+        }
+    }
+
+    @Test
+    public void shortReads() {
+        final byte[] data = new byte[64];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final Buffer buf = new FileChannelBuffer(
+                        new ByteByByteChannel(data, data.length));
+
+        final byte[] bytes = new byte[16];
+        buf.get(bytes, 2, 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, bytes[2 + i]);
+        }
+        assertEquals(0x0A0B0C0D, buf.getInt());
+        assertEquals(0x0001020304050607L, buf.getLong(0));
+        final long[] longs = new long[2];
+        buf.getLongs(8, longs, 0, 2);
+        assertEquals(0x08090A0B0C0D0E0FL, longs[0]);
+        assertEquals(0x1011121314151617L, longs[1]);
+        final int[] ints = new int[3];
+        buf.getInts(4, ints, 1, 2);
+        assertEquals(0x04050607, ints[1]);
+        assertEquals(0x08090A0BL, ints[2]);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void endOfFile() {
+        new FileChannelBuffer(new ByteByByteChannel(new byte[4], 8L))
+                .getLong(0);
+    }
 }
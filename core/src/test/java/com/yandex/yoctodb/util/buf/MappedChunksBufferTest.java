@@ -0,0 +1,139 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.buf;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MappedChunksBuffer}
+ *
+ * @author incubos
+ */
+public class MappedChunksBufferTest extends BufferTest {
+    private static final int CHUNK_SHIFT = 3;
+
+    @Override
+    protected Buffer bufferOf(final byte[] data) {
+        try {
+            final File f = File.createTempFile("mapped_chunks_buffer_test_", "");
+            f.deleteOnExit();
+            Files.write(f.toPath(), data);
+
+            try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+                try (FileChannel ch = raf.getChannel()) {
+                    return MappedChunksBuffer.map(
+                            ch,
+                            ch.size(),
+                            CHUNK_SHIFT,
+                            false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] sequence(final int size) {
+        final byte[] result = new byte[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) i;
+        }
+        return result;
+    }
+
+    @Test
+    public void primitivesAcrossChunks() {
+        final byte[] data = sequence(64);
+        final ByteBuffer expected = ByteBuffer.wrap(data);
+        final Buffer buf = bufferOf(data);
+
+        for (int i = 0; i + Long.BYTES <= data.length; i++) {
+            assertEquals(expected.get(i), buf.get(i));
+            assertEquals(expected.getShort(i), buf.getShort(i));
+            assertEquals(expected.getChar(i), buf.getChar(i));
+            assertEquals(expected.getInt(i), buf.getInt(i));
+            assertEquals(expected.getLong(i), buf.getLong(i));
+        }
+
+        buf.position(5);
+        assertEquals(expected.getLong(5), buf.getLong());
+        assertEquals(expected.getInt(13), buf.getInt());
+        assertEquals(expected.getShort(17), buf.getShort());
+        assertEquals(expected.getChar(19), buf.getChar());
+        assertEquals(expected.get(21), buf.get());
+        assertEquals(22, buf.position());
+    }
+
+    @Test
+    public void bulkGetAcrossChunks() {
+        final byte[] data = sequence(64);
+        final Buffer buf = bufferOf(data);
+
+        buf.position(3);
+        final byte[] dst = new byte[40];
+        buf.get(dst, 2, 37);
+
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 3, 40),
+                Arrays.copyOfRange(dst, 2, 39));
+        assertEquals(40, buf.position());
+    }
+
+    @Test
+    public void sliceAcrossChunks() {
+        final byte[] data = sequence(64);
+        final Buffer slice = bufferOf(data).slice(6, 30);
+
+        assertTrue(slice instanceof MappedChunksBuffer);
+        assertEquals(30, slice.remaining());
+        assertEquals(ByteBuffer.wrap(data).getLong(10), slice.getLong(4));
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 6, 36),
+                slice.toByteArray());
+
+        final Buffer nested = slice.slice(9, 20);
+        assertEquals(data[15], nested.get(0));
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 15, 35),
+                nested.toByteArray());
+    }
+
+    @Test
+    public void sliceWithinChunk() {
+        final byte[] data = sequence(64);
+        final Buffer slice = bufferOf(data).slice(17, 10);
+
+        assertFalse(slice instanceof MappedChunksBuffer);
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 17, 27),
+                slice.toByteArray());
+    }
+
+    @Test
+    public void emptySliceAtTheEnd() {
+        final Buffer buf = bufferOf(sequence(64));
+
+        assertEquals(0, buf.slice(64, 0).remaining());
+    }
+}
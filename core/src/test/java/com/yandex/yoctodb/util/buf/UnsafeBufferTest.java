@@ -0,0 +1,123 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.buf;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for {@link UnsafeBuffer}
+ *
+ * @author incubos
+ */
+public class UnsafeBufferTest extends BufferTest {
+    @Before
+    public void checkSupported() {
+        assumeTrue(UnsafeBuffer.isSupported());
+    }
+
+    @Override
+    protected Buffer bufferOf(final byte[] data) {
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        direct.flip();
+        return UnsafeBuffer.from(direct);
+    }
+
+    @Test
+    public void bigEndianPrimitives() {
+        final byte[] data = new byte[32];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7 + 1);
+        }
+        final ByteBuffer expected = ByteBuffer.wrap(data);
+        final Buffer buf = bufferOf(data);
+
+        for (int i = 0; i + Long.BYTES <= data.length; i++) {
+            assertEquals(expected.get(i), buf.get(i));
+            assertEquals(expected.getShort(i), buf.getShort(i));
+            assertEquals(expected.getChar(i), buf.getChar(i));
+            assertEquals(expected.getInt(i), buf.getInt(i));
+            assertEquals(expected.getLong(i), buf.getLong(i));
+        }
+
+        assertEquals(expected.getLong(0), buf.getLong());
+        assertEquals(expected.getInt(8), buf.getInt());
+        assertEquals(expected.getShort(12), buf.getShort());
+        assertEquals(expected.getChar(14), buf.getChar());
+        assertEquals(16, buf.position());
+    }
+
+    @Test
+    public void slice() {
+        final byte[] data = new byte[32];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final Buffer buf = bufferOf(data).slice(5, 20).slice(3, 10);
+
+        assertEquals(10, buf.remaining());
+        assertEquals(ByteBuffer.wrap(data).getLong(8), buf.getLong(0));
+        assertArrayEquals(Arrays.copyOfRange(data, 8, 18), buf.toByteArray());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void sliceOutOfBounds() {
+        bufferOf(new byte[16]).slice(4, 10).slice(2, 9);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void negativeSlice() {
+        bufferOf(new byte[16]).slice(-1, 4);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void positionOutOfBounds() {
+        bufferOf(new byte[16]).position(17);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bulkReadOutOfBounds() {
+        bufferOf(new byte[16]).getLongs(8, new long[2], 0, 2);
+    }
+
+    @Test
+    public void disabledByDefault() throws IOException {
+        assertFalse(UnsafeBuffer.isEnabled());
+
+        final File file = File.createTempFile("unsafe", ".dat");
+        try {
+            Files.write(file.toPath(), new byte[]{1, 2, 3, 4});
+            final Buffer buf = Buffer.mmap(file, false);
+            assertTrue(buf instanceof ByteBufferWrapper);
+            assertEquals(0x01020304, buf.getInt(0));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void heapBuffer() {
+        UnsafeBuffer.from(ByteBuffer.allocate(8));
+    }
+}
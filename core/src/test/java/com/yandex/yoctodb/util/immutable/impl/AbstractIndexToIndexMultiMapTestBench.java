@@ -0,0 +1,264 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.IntToIntArray;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.mutable.ArrayBitSet;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
+import com.yandex.yoctodb.util.mutable.impl.ReadOnlyOneBitSet;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Unit tests for any compressed {@link IndexToIndexMultiMap} implementation
+ * checked against {@link IntIndexToIndexMultiMap}
+ *
+ * @author incubos
+ */
+public abstract class AbstractIndexToIndexMultiMapTestBench {
+    protected static final int DOCUMENTS = 10000;
+    private static final int KEYS = 50;
+
+    @NotNull
+    protected abstract com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap writable(
+            List<List<Integer>> map,
+            int documents);
+
+    @NotNull
+    protected abstract V1DatabaseFormat.MultiMapType type();
+
+    protected static List<List<Integer>> generate(final Random random) {
+        final List<List<Integer>> result = new ArrayList<>(KEYS);
+        for (int key = 0; key < KEYS; key++) {
+            final TreeSet<Integer> documents = new TreeSet<>();
+            // Sparse and dense sets
+            final int count =
+                    1 + random.nextInt(key % 3 == 0 ? DOCUMENTS : 20);
+            for (int i = 0; i < count; i++) {
+                documents.add(random.nextInt(DOCUMENTS));
+            }
+            result.add(new ArrayList<>(documents));
+        }
+        return result;
+    }
+
+    protected static Buffer write(final OutputStreamWritable writable)
+            throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writable.writeTo(os);
+        assertEquals(writable.getSizeInBytes(), os.size());
+        return Buffer.from(os.toByteArray());
+    }
+
+    protected IndexToIndexMultiMap compressed(
+            final List<List<Integer>> map,
+            final int documents) throws IOException {
+        final Buffer buf = write(writable(map, documents));
+        assertEquals(type().getCode(), buf.getInt(0));
+        return IndexToIndexMultiMapReader.from(buf);
+    }
+
+    protected static IndexToIndexMultiMap list(
+            final List<List<Integer>> map) throws IOException {
+        return IndexToIndexMultiMapReader.from(
+                write(
+                        new com.yandex.yoctodb.util.mutable.impl.IntIndexToIndexMultiMap(
+                                map)));
+    }
+
+    protected static void assertSameIterators(
+            final Iterator<IntToIntArray> expected,
+            final Iterator<IntToIntArray> actual) {
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            final IntToIntArray e = expected.next();
+            final IntToIntArray a = actual.next();
+            assertEquals(e.getKey(), a.getKey());
+            assertEquals(e.getCount(), a.getCount());
+            assertArrayEquals(
+                    Arrays.copyOf(e.getValues(), e.getCount()),
+                    Arrays.copyOf(a.getValues(), a.getCount()));
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    @Test
+    public void sameAsList() throws IOException {
+        final Random random = new Random(42);
+        final List<List<Integer>> map = generate(random);
+        final IndexToIndexMultiMap expected = list(map);
+        final IndexToIndexMultiMap actual = compressed(map, DOCUMENTS);
+        final int keys = map.size();
+
+        assertEquals(keys, actual.getKeysCount());
+        assertTrue(actual.toString().contains(Integer.toString(keys)));
+
+        for (int i = 0; i < 100; i++) {
+            final int from = random.nextInt(keys);
+            final int to = from + 1 + random.nextInt(keys - from);
+
+            final ArrayBitSet expectedDocs = LongArrayBitSet.zero(DOCUMENTS);
+            final ArrayBitSet actualDocs = LongArrayBitSet.zero(DOCUMENTS);
+            switch (i % 4) {
+                case 0:
+                    assertEquals(
+                            expected.get(expectedDocs, from),
+                            actual.get(actualDocs, from));
+                    break;
+                case 1:
+                    assertEquals(
+                            expected.getFrom(expectedDocs, from),
+                            actual.getFrom(actualDocs, from));
+                    break;
+                case 2:
+                    assertEquals(
+                            expected.getTo(expectedDocs, to),
+                            actual.getTo(actualDocs, to));
+                    break;
+                default:
+                    assertEquals(
+                            expected.getBetween(expectedDocs, from, to),
+                            actual.getBetween(actualDocs, from, to));
+            }
+            assertArrayEquals(expectedDocs.toArray(), actualDocs.toArray());
+
+            assertEquals(
+                    expected.estimateBetween(from, to),
+                    actual.estimateBetween(from, to));
+        }
+    }
+
+    @Test
+    public void iterators() throws IOException {
+        final Random random = new Random(7);
+        final List<List<Integer>> map = generate(random);
+        final IndexToIndexMultiMap expected = list(map);
+        final IndexToIndexMultiMap actual = compressed(map, DOCUMENTS);
+
+        final BitSet filter = LongArrayBitSet.zero(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i += 1 + random.nextInt(5)) {
+            filter.set(i);
+        }
+
+        assertSameIterators(
+                expected.ascending(filter),
+                actual.ascending(filter));
+        assertSameIterators(
+                expected.descending(filter),
+                actual.descending(filter));
+        assertSameIterators(
+                expected.ascending(LongArrayBitSet.one(DOCUMENTS)),
+                actual.ascending(LongArrayBitSet.one(DOCUMENTS)));
+        assertFalse(
+                actual.descending(LongArrayBitSet.zero(DOCUMENTS)).hasNext());
+    }
+
+    /**
+     * Skipped by the implementations without posting iterators
+     */
+    @Test
+    public void postings() throws IOException {
+        final Random random = new Random(3);
+        final List<List<Integer>> map = generate(random);
+        final IndexToIndexMultiMap actual = compressed(map, DOCUMENTS);
+        assumeNotNull(actual.iterator(0));
+
+        for (int key = 0; key < map.size(); key++) {
+            final List<Integer> values = map.get(key);
+
+            // Sequential
+            PostingIterator iterator = actual.iterator(key);
+            assertNotNull(iterator);
+            for (int value : values) {
+                assertEquals(value, iterator.next());
+            }
+            assertEquals(PostingIterator.NO_MORE_VALUES, iterator.next());
+            assertEquals(PostingIterator.NO_MORE_VALUES, iterator.advance(0));
+
+            // Skipping
+            iterator = actual.iterator(key);
+            int target = 0;
+            while (true) {
+                target += random.nextInt(DOCUMENTS / 10);
+                final int expected = ceiling(values, target);
+                assertEquals(expected, iterator.advance(target));
+                if (expected == PostingIterator.NO_MORE_VALUES)
+                    break;
+
+                // Staying at the current value
+                assertEquals(expected, iterator.advance(target));
+                target = expected;
+            }
+        }
+    }
+
+    private static int ceiling(
+            final List<Integer> values,
+            final int target) {
+        for (int value : values) {
+            if (value >= target)
+                return value;
+        }
+        return PostingIterator.NO_MORE_VALUES;
+    }
+
+    @Test
+    public void smallerThanList() {
+        final List<List<Integer>> map = generate(new Random(0));
+        assertTrue(
+                writable(map, DOCUMENTS).getSizeInBytes() * 2 <
+                new com.yandex.yoctodb.util.mutable.impl.IntIndexToIndexMultiMap(map).getSizeInBytes());
+    }
+
+    @Test
+    public void widestGaps() throws IOException {
+        final List<List<Integer>> map = new ArrayList<>();
+        map.add(Arrays.asList(0, 127, 128, 1 << 14, 1 << 21, 1 << 28));
+        map.add(Collections.singletonList(Integer.MAX_VALUE - 1));
+        map.add(Arrays.asList(0, Integer.MAX_VALUE - 1));
+        final IndexToIndexMultiMap expected = list(map);
+        final IndexToIndexMultiMap actual = compressed(map, Integer.MAX_VALUE);
+
+        final BitSet all = new ReadOnlyOneBitSet(Integer.MAX_VALUE);
+        assertSameIterators(expected.ascending(all), actual.ascending(all));
+        assertEquals(9, actual.estimateBetween(0, 3));
+
+        final PostingIterator iterator = actual.iterator(2);
+        if (iterator != null) {
+            assertEquals(Integer.MAX_VALUE - 1, iterator.advance(1));
+            assertEquals(PostingIterator.NO_MORE_VALUES, iterator.next());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void descendingValues() throws IOException {
+        write(writable(Collections.singletonList(Arrays.asList(2, 1)), 3));
+    }
+}
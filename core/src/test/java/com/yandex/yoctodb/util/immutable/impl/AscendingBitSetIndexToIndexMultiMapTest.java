@@ -14,13 +14,16 @@ import com.google.common.collect.TreeMultimap;
 import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
+import com.yandex.yoctodb.util.mutable.impl.RoaringBitSet;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -120,6 +123,31 @@ public class AscendingBitSetIndexToIndexMultiMapTest {
         assertTrue("Documents (4, 5, 6, 7) are set", dest.cardinality() == 0);
     }
 
+    @Test
+    public void getBetweenKeepsDestination() {
+        AscendingBitSetIndexToIndexMultiMap index = build();
+
+        for (BitSet dest : new BitSet[]{
+                LongArrayBitSet.zero(DOCS),
+                new RoaringBitSet(DOCS)}) {
+            dest.set(0);
+            dest.set(127);
+
+            assertTrue("Destination non-zero", index.getBetween(dest, 2, 4));
+            assertEquals(6, dest.cardinality());
+            for (int i = 4; i < 8; i++) {
+                assertTrue(dest.get(i));
+            }
+            assertTrue(dest.get(0));
+            assertTrue(dest.get(127));
+
+            // The whole range
+            assertTrue(index.getBetween(dest, 1, DOCS / 2));
+            assertEquals(DOCS, dest.cardinality() + 1);
+            assertFalse(dest.get(1));
+        }
+    }
+
     @Test
     public void releaseToNullPool() {
         AscendingBitSetIndexToIndexMultiMap index = build();
@@ -152,6 +180,24 @@ public class AscendingBitSetIndexToIndexMultiMapTest {
         });
     }
 
+    @Test
+    public void skipFilteredOutKeys() {
+        // Only the documents of the keys 1 and 3
+        final BitSet filter = LongArrayBitSet.zero(DOCS);
+        filter.set(2);
+        filter.set(7);
+
+        final List<Integer> ascending = new ArrayList<>();
+        build().ascending(filter).forEachRemaining(
+                itia -> ascending.add(itia.getKey()));
+        assertEquals(Arrays.asList(1, 3), ascending);
+
+        final List<Integer> descending = new ArrayList<>();
+        build().descending(filter).forEachRemaining(
+                itia -> descending.add(itia.getKey()));
+        assertEquals(Arrays.asList(3, 1), descending);
+    }
+
     @Test
     public void getKeysCount() {
         int keysCount = build().getKeysCount();
@@ -162,4 +208,14 @@ public class AscendingBitSetIndexToIndexMultiMapTest {
     public void tostring() {
         assertNotNull(build().toString());
     }
+
+    @Test
+    public void estimateBetween() {
+        final AscendingBitSetIndexToIndexMultiMap index = build();
+
+        assertEquals(2L, index.estimateBetween(0, 1));
+        assertEquals(20L, index.estimateBetween(10, 20));
+        assertEquals(DOCS, index.estimateBetween(0, DOCS / 2));
+        assertEquals(0L, index.estimateBetween(5, 5));
+    }
 }
@@ -151,4 +151,20 @@ public class BitSetIndexToIndexMultiMapTest {
             assertTrue(Arrays.stream(itia.getValues()).allMatch(v -> key == v / 2));
         });
     }
+
+    @Test
+    public void estimateBetween() throws IOException {
+        final IndexToIndexMultiMap index = build();
+
+        assertEquals(2L, index.estimateBetween(0, 1));
+        assertEquals(20L, index.estimateBetween(10, 20));
+        assertEquals(DOCS, index.estimateBetween(0, DOCS / 2));
+        assertEquals(0L, index.estimateBetween(5, 5));
+
+        // Wide ranges are not counted
+        final int from = 20;
+        final int to = from + BitSetIndexToIndexMultiMap.MAX_ESTIMATED_KEYS;
+        assertEquals(2L * (to - from), index.estimateBetween(from, to));
+        assertEquals(DOCS, index.estimateBetween(from, to + 1));
+    }
 }
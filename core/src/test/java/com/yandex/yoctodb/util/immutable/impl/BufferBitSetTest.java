@@ -81,6 +81,17 @@ public class BufferBitSetTest {
         assertEquals(-1, BufferBitSet.nextSetBit(emptyBuffer, 0, 64, 0));
     }
 
+    @Test
+    public void cardinality() {
+        assertEquals(0, BufferBitSet.cardinality(bitsetBuffer, 0, 0));
+        assertEquals(32, BufferBitSet.cardinality(bitsetBuffer, 0, 1));
+        assertEquals(64, BufferBitSet.cardinality(bitsetBuffer, 0, 2));
+        assertEquals(160, BufferBitSet.cardinality(bitsetBuffer, 0, 6));
+        assertEquals(48, BufferBitSet.cardinality(bitsetBuffer, 24, 3));
+        assertEquals(0, BufferBitSet.cardinality(emptyBuffer, 0, 1));
+        assertEquals(64, BufferBitSet.cardinality(oneBuffer, 0, 1));
+    }
+
     @Test
     public void cardinalityTo() {
         assertEquals(0, BufferBitSet.cardinalityTo(bitsetBuffer, 0, 0));
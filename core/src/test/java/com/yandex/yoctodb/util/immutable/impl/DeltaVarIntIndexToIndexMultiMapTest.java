@@ -0,0 +1,51 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link DeltaVarIntIndexToIndexMultiMap} checked against
+ * {@link IntIndexToIndexMultiMap}
+ *
+ * @author incubos
+ */
+public class DeltaVarIntIndexToIndexMultiMapTest
+        extends AbstractIndexToIndexMultiMapTestBench {
+    @NotNull
+    @Override
+    protected com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap writable(
+            final List<List<Integer>> map,
+            final int documents) {
+        return new com.yandex.yoctodb.util.mutable.impl.DeltaVarIntIndexToIndexMultiMap(
+                map);
+    }
+
+    @NotNull
+    @Override
+    protected V1DatabaseFormat.MultiMapType type() {
+        return V1DatabaseFormat.MultiMapType.DELTA_VAR_INT_BASED;
+    }
+
+    @Test
+    public void noPostingIterators() throws IOException {
+        assertNull(
+                compressed(generate(new Random(0)), DOCUMENTS).iterator(0));
+    }
+}
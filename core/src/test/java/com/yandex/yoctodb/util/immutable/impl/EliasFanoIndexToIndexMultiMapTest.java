@@ -0,0 +1,82 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import com.yandex.yoctodb.util.mutable.impl.ReadOnlyOneBitSet;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link EliasFanoIndexToIndexMultiMap} checked against
+ * {@link IntIndexToIndexMultiMap}
+ *
+ * @author incubos
+ */
+public class EliasFanoIndexToIndexMultiMapTest
+        extends AbstractIndexToIndexMultiMapTestBench {
+    @NotNull
+    @Override
+    protected com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap writable(
+            final List<List<Integer>> map,
+            final int documents) {
+        return new com.yandex.yoctodb.util.mutable.impl.EliasFanoIndexToIndexMultiMap(
+                map,
+                documents);
+    }
+
+    @NotNull
+    @Override
+    protected V1DatabaseFormat.MultiMapType type() {
+        return V1DatabaseFormat.MultiMapType.ELIAS_FANO_BASED;
+    }
+
+    @Test
+    public void denseSets() throws IOException {
+        final List<List<Integer>> map = new ArrayList<>();
+        final List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            all.add(i);
+        }
+        map.add(all);
+        map.add(all.subList(37, 100));
+        map.add(Collections.singletonList(99));
+        final IndexToIndexMultiMap expected = list(map);
+        final IndexToIndexMultiMap actual = compressed(map, 100);
+
+        final BitSet filter = new ReadOnlyOneBitSet(100);
+        assertSameIterators(expected.ascending(filter), actual.ascending(filter));
+        assertSameIterators(expected.descending(filter), actual.descending(filter));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRangeValues() throws IOException {
+        write(
+                new com.yandex.yoctodb.util.mutable.impl.EliasFanoIndexToIndexMultiMap(
+                        Collections.singletonList(Arrays.asList(1, 3)),
+                        3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonpositiveDocumentsCount() {
+        new com.yandex.yoctodb.util.mutable.impl.EliasFanoIndexToIndexMultiMap(
+                Collections.singletonList(Collections.singletonList(0)),
+                0);
+    }
+}
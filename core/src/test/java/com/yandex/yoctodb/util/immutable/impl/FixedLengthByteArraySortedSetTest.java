@@ -18,11 +18,13 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Random;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -32,6 +34,7 @@ import static org.junit.Assert.assertTrue;
  */
 public class FixedLengthByteArraySortedSetTest {
     private final int VALUES = 128;
+    private static final int WIDE_SIZE = 12;
 
     private ByteArraySortedSet build() throws IOException {
         final SortedSet<UnsignedByteArray> elements =
@@ -62,4 +65,91 @@ public class FixedLengthByteArraySortedSetTest {
         assertTrue(text.contains(Integer.toString(VALUES / 2)));
         assertTrue(text.contains(Integer.toString(Longs.BYTES)));
     }
+
+    /**
+     * @return the first index of the even values {@code [0, 2 * count)} not
+     * less than {@code e}
+     */
+    private static int firstNotLess(
+            final long e,
+            final int count) {
+        if (e <= 0)
+            return 0;
+
+        return (int) Math.min((e + 1) / 2, count);
+    }
+
+    /**
+     * @return {@code e} prefixed to be compared byte by byte
+     */
+    private static UnsignedByteArray wide(final long e) {
+        final byte[] result = new byte[WIDE_SIZE];
+        System.arraycopy(
+                Longs.toByteArray(e ^ Long.MIN_VALUE),
+                0,
+                result,
+                WIDE_SIZE - Longs.BYTES,
+                Longs.BYTES);
+        return from(result);
+    }
+
+    @Test
+    public void largeSet() throws IOException {
+        // Large enough to be indexed
+        final int count =
+                2 * FixedLengthByteArraySortedSet.INDEX_THRESHOLD_IN_BYTES /
+                WIDE_SIZE + 17;
+        final SortedSet<UnsignedByteArray> elements = new TreeSet<>();
+        for (long i = 0L; i < count; i++) {
+            elements.add(wide(2 * i));
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new com.yandex.yoctodb.util.mutable.impl.FixedLengthByteArraySortedSet(
+                elements).writeTo(baos);
+        final ByteArraySortedSet set =
+                FixedLengthByteArraySortedSet.from(
+                        Buffer.from(baos.toByteArray()));
+
+        assertEquals(count, set.size());
+        assertTrue(set instanceof FixedLengthByteArraySortedSet);
+        final int blockSize =
+                FixedLengthByteArraySortedSet.BLOCK_SIZE_IN_BYTES / WIDE_SIZE;
+        assertNotEquals(-1, set.toString().indexOf(
+                "blocks=" + (count + blockSize - 1) / blockSize));
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 2 * count + 10000; i++) {
+            // Including the values out of range and the block boundaries
+            final long e =
+                    i < 2 * count + 2 ?
+                            i - 1 :
+                            random.nextInt(2 * count + 4) - 2;
+            final Buffer value = wide(e).toByteBuffer();
+
+            // Lookup
+            final int expected =
+                    e >= 0 && e < 2L * count && e % 2 == 0 ? (int) (e / 2) : -1;
+            assertEquals(expected, set.indexOf(value));
+
+            // Greater
+            final int upTo = random.nextInt(count);
+            final int greaterOrEqual = firstNotLess(e, count);
+            assertEquals(
+                    greaterOrEqual <= upTo ? greaterOrEqual : -1,
+                    set.indexOfGreaterThan(value, true, upTo));
+            final int greater = firstNotLess(e + 1, count);
+            assertEquals(
+                    greater <= upTo ? greater : -1,
+                    set.indexOfGreaterThan(value, false, upTo));
+
+            // Less
+            final int from = random.nextInt(count);
+            assertEquals(
+                    greater - 1 >= from ? greater - 1 : -1,
+                    set.indexOfLessThan(value, true, from));
+            assertEquals(
+                    greaterOrEqual - 1 >= from ? greaterOrEqual - 1 : -1,
+                    set.indexOfLessThan(value, false, from));
+        }
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.ByteArraySortedSet;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FixedLengthNumericSortedSet}
+ *
+ * @author incubos
+ */
+public class FixedLengthNumericSortedSetTest {
+    private static UnsignedByteArray encode(
+            final long value,
+            final int elementSize) {
+        switch (elementSize) {
+            case Long.BYTES:
+                return from(value);
+            case Integer.BYTES:
+                return from((int) value);
+            case Short.BYTES:
+                return from((short) value);
+            default:
+                return from((byte) value);
+        }
+    }
+
+    private static ByteArraySortedSet build(
+            final long[] values,
+            final int elementSize) throws IOException {
+        final SortedSet<UnsignedByteArray> elements = new TreeSet<>();
+        for (long value : values) {
+            elements.add(encode(value, elementSize));
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new com.yandex.yoctodb.util.mutable.impl.FixedLengthByteArraySortedSet(
+                elements).writeTo(baos);
+
+        final ByteArraySortedSet result =
+                FixedLengthByteArraySortedSets.from(
+                        Buffer.from(baos.toByteArray()));
+        assertTrue(result instanceof FixedLengthNumericSortedSet);
+        assertEquals(values.length, result.size());
+
+        return result;
+    }
+
+    /**
+     * @return index of the first value not less than {@code e}
+     */
+    private static int firstNotLess(
+            final long[] values,
+            final long e) {
+        final int i = Arrays.binarySearch(values, e);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private static void check(
+            final long[] values,
+            final ByteArraySortedSet set,
+            final long e,
+            final int elementSize,
+            final Random random) {
+        final Buffer value = encode(e, elementSize).toByteBuffer();
+
+        // Lookup
+        assertEquals(
+                Math.max(-1, Arrays.binarySearch(values, e)),
+                set.indexOf(value));
+
+        // Greater
+        final int upTo = random.nextInt(values.length);
+        final int greaterOrEqual = firstNotLess(values, e);
+        assertEquals(
+                greaterOrEqual <= upTo ? greaterOrEqual : -1,
+                set.indexOfGreaterThan(value, true, upTo));
+        final int greater =
+                e == Long.MAX_VALUE ?
+                        values.length :
+                        firstNotLess(values, e + 1);
+        assertEquals(
+                greater <= upTo ? greater : -1,
+                set.indexOfGreaterThan(value, false, upTo));
+
+        // Less
+        final int from = random.nextInt(values.length);
+        assertEquals(
+                greater - 1 >= from ? greater - 1 : -1,
+                set.indexOfLessThan(value, true, from));
+        assertEquals(
+                greaterOrEqual - 1 >= from ? greaterOrEqual - 1 : -1,
+                set.indexOfLessThan(value, false, from));
+    }
+
+    /**
+     * Checks every {@code step}th value of the type with all the values of
+     * the type or random ones as queries
+     */
+    private static void check(
+            final int elementSize,
+            final long step) throws IOException {
+        final long min = -(1L << (8 * elementSize - 1));
+        final long max = -(min + 1);
+        final long[] values =
+                new long[(int) Math.min(
+                        (max / step - min / step) + 1,
+                        1 << 16)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = min / step * step + i * step;
+        }
+        Arrays.sort(values);
+        final ByteArraySortedSet set = build(values, elementSize);
+
+        // Positional access
+        for (int i = 0; i < values.length; i++) {
+            switch (elementSize) {
+                case Long.BYTES:
+                    assertEquals(values[i], set.getLongUnsafe(i));
+                    break;
+                case Integer.BYTES:
+                    assertEquals(values[i], set.getIntUnsafe(i));
+                    break;
+                case Short.BYTES:
+                    assertEquals(values[i], set.getShortUnsafe(i));
+                    break;
+                default:
+                    assertEquals(values[i], set.getByteUnsafe(i));
+            }
+            assertEquals(
+                    encode(values[i], elementSize).toByteBuffer(),
+                    set.get(i));
+        }
+
+        final Random random = new Random(elementSize);
+        if (elementSize <= Short.BYTES) {
+            for (long e = min; e <= max; e++) {
+                check(values, set, e, elementSize, random);
+            }
+        } else {
+            check(values, set, min, elementSize, random);
+            check(values, set, max, elementSize, random);
+            for (long value : values) {
+                if (value > min)
+                    check(values, set, value - 1, elementSize, random);
+                check(values, set, value, elementSize, random);
+                if (value < max)
+                    check(values, set, value + 1, elementSize, random);
+            }
+        }
+    }
+
+    @Test
+    public void bytes() throws IOException {
+        check(Byte.BYTES, 1L);
+        check(Byte.BYTES, 3L);
+    }
+
+    @Test
+    public void shorts() throws IOException {
+        // Indexed
+        check(Short.BYTES, 1L);
+        check(Short.BYTES, 7L);
+    }
+
+    @Test
+    public void ints() throws IOException {
+        check(Integer.BYTES, 1L << 16);
+        check(Integer.BYTES, 1L << 24);
+    }
+
+    @Test
+    public void longs() throws IOException {
+        check(Long.BYTES, 1L << 48);
+        check(Long.BYTES, 1L << 56);
+    }
+
+    @Test
+    public void otherLength() throws IOException {
+        final long[] values = {-2L, 0L, 2L};
+        final ByteArraySortedSet set = build(values, Integer.BYTES);
+
+        // Compared byte by byte
+        final Buffer longer = from(0L).toByteBuffer();
+        assertEquals(-1, set.indexOf(longer));
+        final Buffer shorter = Buffer.from(new byte[]{(byte) 0x80});
+        assertEquals(-1, set.indexOf(shorter));
+        assertEquals(1, set.indexOfGreaterThan(shorter, true, 2));
+        assertEquals(0, set.indexOfLessThan(shorter, true, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupported() {
+        final byte[] bytes = new byte[8 + 3];
+        bytes[3] = 3;
+        bytes[7] = 1;
+        FixedLengthNumericSortedSet.from(Buffer.from(bytes));
+    }
+
+    @Test
+    public void nonNumericElementSize() {
+        final byte[] bytes = new byte[8 + 3];
+        bytes[3] = 3;
+        bytes[7] = 1;
+        assertTrue(
+                FixedLengthByteArraySortedSets.from(Buffer.from(bytes))
+                        instanceof FixedLengthByteArraySortedSet);
+    }
+
+    @Test
+    public void string() throws IOException {
+        final String text =
+                build(new long[]{1L, 2L, 3L}, Long.BYTES).toString();
+        assertTrue(text.contains("elementSize=8"));
+        assertTrue(text.contains("size=3"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import com.yandex.yoctodb.util.mutable.ArrayBitSet;
+import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HybridIndexToIndexMultiMap} checked against
+ * {@link IntIndexToIndexMultiMap}
+ *
+ * @author incubos
+ */
+public class HybridIndexToIndexMultiMapTest
+        extends AbstractIndexToIndexMultiMapTestBench {
+    @NotNull
+    @Override
+    protected com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap writable(
+            final List<List<Integer>> map,
+            final int documents) {
+        return new com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap(
+                map,
+                documents);
+    }
+
+    @NotNull
+    @Override
+    protected V1DatabaseFormat.MultiMapType type() {
+        return V1DatabaseFormat.MultiMapType.HYBRID_BASED;
+    }
+
+    @Test
+    public void containers() throws IOException {
+        final List<List<Integer>> map = generate(new Random(0));
+        final com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap hybrid =
+                new com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap(
+                        map,
+                        DOCUMENTS);
+
+        // Dense keys only
+        int dense = 0;
+        for (List<Integer> values : map) {
+            if (values.size() > DOCUMENTS / 32)
+                dense++;
+        }
+        assertTrue(dense > 0);
+        assertEquals(dense, hybrid.getBitSetKeysCount());
+        assertTrue(hybrid.toString().contains(Integer.toString(dense)));
+
+        // Smaller than both
+        assertTrue(
+                hybrid.getSizeInBytes() <
+                new com.yandex.yoctodb.util.mutable.impl.IntIndexToIndexMultiMap(map).getSizeInBytes());
+        assertTrue(
+                hybrid.getSizeInBytes() <
+                new com.yandex.yoctodb.util.mutable.impl.BitSetIndexToIndexMultiMap(map, DOCUMENTS).getSizeInBytes());
+    }
+
+    @Test
+    public void emptyKey() throws IOException {
+        final List<List<Integer>> map = new ArrayList<>();
+        map.add(Arrays.asList(1, 2, 3));
+        map.add(Collections.emptyList());
+        final IndexToIndexMultiMap actual = compressed(map, DOCUMENTS);
+
+        final ArrayBitSet docs = LongArrayBitSet.zero(DOCUMENTS);
+        assertFalse(actual.get(docs, 1));
+        assertTrue(actual.getFrom(docs, 0));
+        assertEquals(3, docs.cardinality());
+        assertEquals(3L, actual.estimateBetween(0, 2));
+        assertEquals(
+                PostingIterator.NO_MORE_VALUES,
+                actual.iterator(1).advance(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRange() throws IOException {
+        write(
+                new com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap(
+                        Collections.singletonList(Arrays.asList(0, 1, 2)),
+                        2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroDocuments() {
+        new com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap(
+                Collections.singletonList(Collections.singletonList(0)),
+                0);
+    }
+}
@@ -162,4 +162,14 @@ public class IntIndexToIndexMultiMapTest {
         assertTrue(iter.hasNext());
         iter.remove();
     }
+
+    @Test
+    public void estimateBetween() throws IOException {
+        final IndexToIndexMultiMap index = build();
+
+        assertEquals(2L, index.estimateBetween(0, 1));
+        assertEquals(20L, index.estimateBetween(10, 20));
+        assertEquals(VALUES, index.estimateBetween(0, VALUES / 2));
+        assertEquals(0L, index.estimateBetween(5, 5));
+    }
 }
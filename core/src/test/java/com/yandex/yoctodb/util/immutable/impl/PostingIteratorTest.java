@@ -0,0 +1,199 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.immutable.IndexToIndexMultiMap;
+import com.yandex.yoctodb.util.immutable.PostingIterator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PostingIterator}s of {@link IndexToIndexMultiMap}
+ * implementations
+ *
+ * @author incubos
+ */
+public class PostingIteratorTest {
+    private static final int DOCUMENTS = 5000;
+    private static final int KEYS = 20;
+
+    private static List<List<Integer>> multiple(final Random random) {
+        final List<List<Integer>> result = new ArrayList<>(KEYS);
+        for (int key = 0; key < KEYS; key++) {
+            final TreeSet<Integer> documents = new TreeSet<>();
+            // Sparse and dense sets
+            final int count =
+                    1 + random.nextInt(key % 3 == 0 ? DOCUMENTS : 20);
+            for (int i = 0; i < count; i++) {
+                documents.add(random.nextInt(DOCUMENTS));
+            }
+            result.add(new ArrayList<>(documents));
+        }
+        return result;
+    }
+
+    private static List<List<Integer>> single(final Random random) {
+        final List<List<Integer>> result = new ArrayList<>(KEYS);
+        for (int key = 0; key < KEYS; key++) {
+            result.add(new ArrayList<>());
+        }
+        for (int document = 0; document < DOCUMENTS; document++) {
+            // Some documents without keys
+            final int key = random.nextInt(KEYS + 1);
+            if (key < KEYS) {
+                result.get(key).add(document);
+            }
+        }
+        return result;
+    }
+
+    private static IndexToIndexMultiMap read(
+            final OutputStreamWritable writable) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writable.writeTo(os);
+        return IndexToIndexMultiMapReader.from(
+                Buffer.from(os.toByteArray()));
+    }
+
+    private static int ceiling(
+            final List<Integer> values,
+            final int target) {
+        for (int value : values) {
+            if (value >= target)
+                return value;
+        }
+        return PostingIterator.NO_MORE_VALUES;
+    }
+
+    private static void check(
+            final List<List<Integer>> map,
+            final IndexToIndexMultiMap actual,
+            final Random random) {
+        for (int key = 0; key < map.size(); key++) {
+            final List<Integer> values = map.get(key);
+
+            // Sequential
+            PostingIterator iterator = actual.iterator(key);
+            assertNotNull(iterator);
+            for (int value : values) {
+                assertEquals(value, iterator.next());
+            }
+            assertEquals(PostingIterator.NO_MORE_VALUES, iterator.next());
+            assertEquals(PostingIterator.NO_MORE_VALUES, iterator.next());
+            assertEquals(PostingIterator.NO_MORE_VALUES, iterator.advance(0));
+
+            // Skipping and stepping
+            iterator = actual.iterator(key);
+            int current = -1;
+            while (current != PostingIterator.NO_MORE_VALUES) {
+                if (random.nextBoolean()) {
+                    final int target =
+                            current + 1 + random.nextInt(DOCUMENTS / 20);
+                    final int expected = ceiling(values, target);
+                    assertEquals(expected, iterator.advance(target));
+                    // Staying at the current value
+                    assertEquals(expected, iterator.advance(target));
+                    current = expected;
+                } else {
+                    final int expected = ceiling(values, current + 1);
+                    assertEquals(expected, iterator.next());
+                    current = expected;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void list() throws IOException {
+        final Random random = new Random(1);
+        final List<List<Integer>> map = multiple(random);
+        check(
+                map,
+                read(new com.yandex.yoctodb.util.mutable.impl.IntIndexToIndexMultiMap(map)),
+                random);
+    }
+
+    @Test
+    public void bitSet() throws IOException {
+        final Random random = new Random(2);
+        final List<List<Integer>> map = multiple(random);
+        check(
+                map,
+                read(new com.yandex.yoctodb.util.mutable.impl.BitSetIndexToIndexMultiMap(map, DOCUMENTS)),
+                random);
+    }
+
+    @Test
+    public void ascendingBitSet() throws IOException {
+        final Random random = new Random(3);
+        final List<List<Integer>> map = single(random);
+        check(
+                map,
+                read(new com.yandex.yoctodb.util.mutable.impl.AscendingBitSetIndexToIndexMultiMap(map, DOCUMENTS)),
+                random);
+    }
+
+    @Test
+    public void eliasFano() throws IOException {
+        final Random random = new Random(4);
+        final List<List<Integer>> map = multiple(random);
+        check(
+                map,
+                read(new com.yandex.yoctodb.util.mutable.impl.EliasFanoIndexToIndexMultiMap(map, DOCUMENTS)),
+                random);
+    }
+
+    @Test
+    public void skipList() throws IOException {
+        final Random random = new Random(5);
+        final List<List<Integer>> map = multiple(random);
+        check(
+                map,
+                read(new com.yandex.yoctodb.util.mutable.impl.SkipListIndexToIndexMultiMap(map)),
+                random);
+    }
+
+    @Test
+    public void hybrid() throws IOException {
+        final Random random = new Random(7);
+        final List<List<Integer>> map = multiple(random);
+        check(
+                map,
+                read(new com.yandex.yoctodb.util.mutable.impl.HybridIndexToIndexMultiMap(map, DOCUMENTS)),
+                random);
+    }
+
+    @Test
+    public void notSupported() throws IOException {
+        final Random random = new Random(6);
+        final List<List<Integer>> map = multiple(random);
+        assertNull(
+                read(new com.yandex.yoctodb.util.mutable.impl.DeltaVarIntIndexToIndexMultiMap(map))
+                        .iterator(0));
+    }
+
+    @Test
+    public void empty() {
+        final PostingIterator iterator = EmptyPostingIterator.INSTANCE;
+        assertEquals(PostingIterator.NO_MORE_VALUES, iterator.next());
+        assertEquals(PostingIterator.NO_MORE_VALUES, iterator.advance(0));
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.immutable.impl;
+
+import com.yandex.yoctodb.v1.V1DatabaseFormat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link SkipListIndexToIndexMultiMap} checked against
+ * {@link IntIndexToIndexMultiMap}
+ *
+ * @author incubos
+ */
+public class SkipListIndexToIndexMultiMapTest
+        extends AbstractIndexToIndexMultiMapTestBench {
+    @NotNull
+    @Override
+    protected com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap writable(
+            final List<List<Integer>> map,
+            final int documents) {
+        return new com.yandex.yoctodb.util.mutable.impl.SkipListIndexToIndexMultiMap(
+                map);
+    }
+
+    @NotNull
+    @Override
+    protected V1DatabaseFormat.MultiMapType type() {
+        return V1DatabaseFormat.MultiMapType.SKIP_LIST_BASED;
+    }
+}
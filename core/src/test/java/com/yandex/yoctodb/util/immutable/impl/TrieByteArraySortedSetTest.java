@@ -181,6 +181,17 @@ public class TrieByteArraySortedSetTest {
         trieSet.getByteUnsafe(0);
     }
 
+    @Test
+    public void forEach() {
+        final List<String> actual = new ArrayList<>();
+        trieSet.forEach(key -> actual.add(new String(key)));
+        assertEquals(keys, actual);
+
+        final List<String> empty = new ArrayList<>();
+        emptyTrieSet.forEach(key -> empty.add(new String(key)));
+        assertEquals(Collections.<String>emptyList(), empty);
+    }
+
     @Test
     public void indexOfMutable() {
         for (String q : keys) {
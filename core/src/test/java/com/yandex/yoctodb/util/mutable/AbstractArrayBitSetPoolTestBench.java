@@ -13,6 +13,7 @@ package com.yandex.yoctodb.util.mutable;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for any {@link ArrayBitSetPool} implementation
@@ -30,6 +31,17 @@ public abstract class AbstractArrayBitSetPoolTestBench {
         assertEquals(0, set.cardinality());
     }
 
+    @Test
+    public void borrowSparse() {
+        final ArrayBitSetPool pool = allocate();
+        final BitSet set = pool.borrowSparseSet(1024);
+        assertEquals(1024, set.getSize());
+        assertTrue(set.isEmpty());
+        set.set(100);
+        assertEquals(1, set.cardinality());
+        pool.returnSparseSet(set);
+    }
+
     @Test
     public void borrowTwo() {
         final ArrayBitSetPool pool = allocate();
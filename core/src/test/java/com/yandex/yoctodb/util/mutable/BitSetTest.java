@@ -0,0 +1,183 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.impl.LongArrayBitSet;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for default {@link BitSet} methods
+ *
+ * @author incubos
+ */
+public class BitSetTest {
+    /**
+     * Delegates everything but the default methods
+     */
+    private static final class DelegatingBitSet implements BitSet {
+        @NotNull
+        private final BitSet delegate;
+
+        DelegatingBitSet(
+                @NotNull
+                final BitSet delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int getSize() {
+            return delegate.getSize();
+        }
+
+        @Override
+        public int cardinality() {
+            return delegate.cardinality();
+        }
+
+        @Override
+        public void set(final int i) {
+            delegate.set(i);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public boolean inverse() {
+            return delegate.inverse();
+        }
+
+        @Override
+        public void set() {
+            delegate.set();
+        }
+
+        @Override
+        public boolean get(final int i) {
+            return delegate.get(i);
+        }
+
+        @Override
+        public int nextSetBit(final int fromIndexInclusive) {
+            return delegate.nextSetBit(fromIndexInclusive);
+        }
+
+        @Override
+        public boolean and(
+                @NotNull
+                final BitSet set) {
+            return delegate.and(set);
+        }
+
+        @Override
+        public boolean or(
+                @NotNull
+                final BitSet set) {
+            return delegate.or(set);
+        }
+
+        @Override
+        public boolean xor(
+                @NotNull
+                final BitSet set) {
+            return delegate.xor(set);
+        }
+
+        @Override
+        public boolean and(
+                @NotNull
+                final Buffer longArrayBitSetInByteBuffer,
+                final long startPosition,
+                final int bitSetSizeInLongs) {
+            return delegate.and(
+                    longArrayBitSetInByteBuffer,
+                    startPosition,
+                    bitSetSizeInLongs);
+        }
+
+        @Override
+        public boolean or(
+                @NotNull
+                final Buffer longArrayBitSetInByteBuffer,
+                final long startPosition,
+                final int bitSetSizeInLongs) {
+            return delegate.or(
+                    longArrayBitSetInByteBuffer,
+                    startPosition,
+                    bitSetSizeInLongs);
+        }
+
+        @Override
+        public boolean xor(
+                @NotNull
+                final Buffer longArrayBitSetInByteBuffer,
+                final long startPosition,
+                final int bitSetSizeInLongs) {
+            return delegate.xor(
+                    longArrayBitSetInByteBuffer,
+                    startPosition,
+                    bitSetSizeInLongs);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return delegate.isEmpty();
+        }
+    }
+
+    @Test
+    public void defaultOrXor() {
+        final int size = 1000;
+        final int sizeInLongs = (size + 63) >>> 6;
+        final Random random = new Random(0);
+        final ByteBuffer bytes = ByteBuffer.allocate(8 + 2 * sizeInLongs * 8);
+        bytes.putLong(-1L);
+        final BitSet first = LongArrayBitSet.zero(size);
+        final BitSet second = LongArrayBitSet.zero(size);
+        for (int i = 0; i < size / 3; i++) {
+            first.set(random.nextInt(size));
+            second.set(random.nextInt(size));
+        }
+        for (BitSet set : new BitSet[]{first, second}) {
+            final long[] words = ((ArrayBitSet) set).toArray();
+            for (int i = 0; i < sizeInLongs; i++) {
+                bytes.putLong(words[i]);
+            }
+        }
+        final Buffer buf = Buffer.from(bytes.array());
+
+        final BitSet expected = LongArrayBitSet.zero(size);
+        final BitSet actual = new DelegatingBitSet(LongArrayBitSet.zero(size));
+        expected.set(7);
+        actual.set(7);
+        assertTrue(expected.orXor(buf, 8, 8 + sizeInLongs * 8, sizeInLongs));
+        assertTrue(actual.orXor(buf, 8, 8 + sizeInLongs * 8, sizeInLongs));
+
+        assertEquals(expected.cardinality(), actual.cardinality());
+        for (int i = 0; i < size; i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+
+        // Empty difference
+        final BitSet empty = new DelegatingBitSet(LongArrayBitSet.zero(size));
+        assertFalse(empty.orXor(buf, 8, 8, sizeInLongs));
+        assertTrue(empty.isEmpty());
+    }
+}
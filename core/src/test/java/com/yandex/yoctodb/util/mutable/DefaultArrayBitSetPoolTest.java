@@ -0,0 +1,64 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable;
+
+import com.yandex.yoctodb.util.mutable.impl.AllocatingArrayBitSetPool;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for default sparse set methods of {@link ArrayBitSetPool}
+ *
+ * @author incubos
+ */
+public class DefaultArrayBitSetPoolTest
+        extends AbstractArrayBitSetPoolTestBench {
+    /**
+     * Implements only the methods required before sparse sets
+     */
+    private static final class LegacyPool implements ArrayBitSetPool {
+        private final List<ArrayBitSet> returned = new ArrayList<>();
+
+        @NotNull
+        @Override
+        public ArrayBitSet borrowSet(final int size) {
+            return AllocatingArrayBitSetPool.INSTANCE.borrowSet(size);
+        }
+
+        @Override
+        public void returnSet(
+                @NotNull
+                final ArrayBitSet set) {
+            returned.add(set);
+        }
+    }
+
+    @Override
+    protected ArrayBitSetPool allocate() {
+        return new LegacyPool();
+    }
+
+    @Test
+    public void sparseSetsFallBackToArraySets() {
+        final LegacyPool pool = new LegacyPool();
+        final BitSet set = pool.borrowSparseSet(128);
+        assertEquals(128, set.getSize());
+        pool.returnSparseSet(set);
+        assertEquals(1, pool.returned.size());
+        assertSame(set, pool.returned.get(0));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.mutable.ByteArraySortedSet;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link FixedLengthLongSortedSet}
+ *
+ * @author incubos
+ */
+public class FixedLengthLongSortedSetTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void empty() {
+        new FixedLengthLongSortedSet(new long[1], 0, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongSize() {
+        new FixedLengthLongSortedSet(new long[1], 2, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLongElements() {
+        new FixedLengthLongSortedSet(new long[1], 1, 9);
+    }
+
+    @Test
+    public void indexing() {
+        final int size = 3;
+        final long[] elements = new long[size];
+        for (int i = 0; i < size; i++)
+            elements[i] = UnsignedByteArrays.toUnsignedLong(from(i - 1));
+        final ByteArraySortedSet set =
+                new FixedLengthLongSortedSet(elements, size, 4);
+        for (int i = 0; i < size; i++)
+            assertEquals(i, set.indexOf(from(i - 1)));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void absent() {
+        new FixedLengthLongSortedSet(new long[]{1L, 3L}, 2, 8).indexOf(2L);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void wrongLength() {
+        new FixedLengthLongSortedSet(new long[]{1L}, 1, 8)
+                .indexOf(from(new byte[]{1}));
+    }
+
+    @Test
+    public void sameAsFixedLengthByteArraySortedSet() throws IOException {
+        final Random random = new Random(42);
+        for (int elementSize = 1; elementSize <= 8; elementSize++) {
+            final SortedSet<UnsignedByteArray> elements = new TreeSet<>();
+            for (int i = 0; i < 5000; i++) {
+                final byte[] bytes = new byte[elementSize];
+                random.nextBytes(bytes);
+                elements.add(from(bytes));
+            }
+
+            final long[] longs = new long[elements.size()];
+            int size = 0;
+            for (UnsignedByteArray e : elements)
+                longs[size++] = UnsignedByteArrays.toUnsignedLong(e);
+
+            final ByteArraySortedSet expected =
+                    new FixedLengthByteArraySortedSet(elements);
+            final ByteArraySortedSet actual =
+                    new FixedLengthLongSortedSet(longs, size, elementSize);
+            assertEquals(expected.getSizeInBytes(), actual.getSizeInBytes());
+
+            final ByteArrayOutputStream expectedBytes =
+                    new ByteArrayOutputStream();
+            expected.writeTo(expectedBytes);
+            final ByteArrayOutputStream actualBytes =
+                    new ByteArrayOutputStream();
+            actual.writeTo(actualBytes);
+            assertArrayEquals(
+                    expectedBytes.toByteArray(),
+                    actualBytes.toByteArray());
+
+            for (UnsignedByteArray e : elements)
+                assertEquals(expected.indexOf(e), actual.indexOf(e));
+        }
+    }
+
+    @Test
+    public void string() {
+        final String text =
+                new FixedLengthLongSortedSet(new long[]{1L, 2L}, 2, 8)
+                        .toString();
+        assertTrue(text.contains("2"));
+        assertTrue(text.contains("8"));
+    }
+}
@@ -15,11 +15,16 @@ import com.yandex.yoctodb.util.mutable.IndexToIndexMultiMap;
 import com.yandex.yoctodb.v1.V1DatabaseFormat;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
 
 import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -69,6 +74,136 @@ public class IndexToIndexMultiMapFactoryTest {
                 IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
                         elements.asMap().values(),
                         1024);
+        assertTrue(map instanceof SkipListIndexToIndexMultiMap);
+    }
+
+    @Test
+    public void deltaVarInt() {
+        final List<List<Integer>> elements = new ArrayList<>();
+        // Many tiny sets of small documents
+        for (int i = 0; i < 1000; i++) {
+            elements.add(singletonList(i % 100));
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        elements,
+                        100);
+        assertTrue(map instanceof DeltaVarIntIndexToIndexMultiMap);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void descendingValues() {
+        IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                singletonList(Arrays.asList(2, 1)),
+                3);
+    }
+
+    @Test
+    public void deltaVarIntTyped() {
+        final TreeMultimap<Integer, Integer> elements = TreeMultimap.create();
+        for (int i = 0; i < 1024; i++) {
+            elements.put(i, i);
+            elements.put(i, i + 1);
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        V1DatabaseFormat.MultiMapType.DELTA_VAR_INT_BASED,
+                        elements.asMap().values(),
+                        1024);
+        assertTrue(map instanceof DeltaVarIntIndexToIndexMultiMap);
+    }
+
+    @Test
+    public void eliasFano() {
+        final Random random = new Random(0);
+        final List<List<Integer>> elements = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            final TreeSet<Integer> documents = new TreeSet<>();
+            // Documents with multiple keys
+            documents.add(0);
+            for (int j = 0; j < 1000; j++) {
+                documents.add(random.nextInt(1000000));
+            }
+            elements.add(new ArrayList<>(documents));
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        elements,
+                        1000000);
+        assertTrue(map instanceof EliasFanoIndexToIndexMultiMap);
+    }
+
+    @Test
+    public void hybrid() {
+        final int documents = 100000;
+        final List<List<Integer>> elements = new ArrayList<>();
+        // A few huge keys
+        final List<Integer> all = new ArrayList<>(documents);
+        final List<Integer> even = new ArrayList<>(documents / 2);
+        for (int i = 0; i < documents; i++) {
+            all.add(i);
+            if (i % 2 == 0)
+                even.add(i);
+        }
+        elements.add(all);
+        elements.add(even);
+        // Long tail
+        for (int i = 0; i < 500; i++) {
+            elements.add(Arrays.asList(i, i + 1000, i + 2000));
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        elements,
+                        documents);
+        assertTrue(map instanceof HybridIndexToIndexMultiMap);
+        assertEquals(
+                2,
+                ((HybridIndexToIndexMultiMap) map).getBitSetKeysCount());
+    }
+
+    @Test
+    public void hybridInsteadOfBitSet() {
+        final int documents = 100000;
+        final List<List<Integer>> elements = new ArrayList<>();
+        final List<Integer> all = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            all.add(i);
+        }
+        elements.add(all);
+        // Rare keys
+        for (int i = 0; i < 100; i++) {
+            elements.add(singletonList(i));
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        elements,
+                        documents);
+        assertTrue(map instanceof HybridIndexToIndexMultiMap);
+    }
+
+    @Test
+    public void hybridTyped() {
+        @SuppressWarnings("unchecked")
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        V1DatabaseFormat.MultiMapType.HYBRID_BASED,
+                        Arrays.asList(singletonList(0), singletonList(1), singletonList(1)),
+                        128);
+        assertTrue(map instanceof HybridIndexToIndexMultiMap);
+    }
+
+    @Test
+    public void listTyped() {
+        final TreeMultimap<Integer, Integer> elements = TreeMultimap.create();
+        for (int i = 0; i < 1024; i++) {
+            elements.put(i, i);
+            elements.put(i, i + 1);
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        V1DatabaseFormat.MultiMapType.LIST_BASED,
+                        elements.asMap().values(),
+                        1024);
         assertTrue(map instanceof IntIndexToIndexMultiMap);
     }
 
@@ -92,6 +227,25 @@ public class IndexToIndexMultiMapFactoryTest {
         assertTrue(map instanceof AscendingBitSetIndexToIndexMultiMap);
     }
 
+    @Test
+    public void eliasFanoForHighCardinality() {
+        final int documents = 10000;
+        final List<List<Integer>> elements = new ArrayList<>();
+        // Every document has a single value shared with a few others
+        for (int i = 0; i < documents / 10; i++) {
+            final List<Integer> values = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                values.add(i * 10 + j);
+            }
+            elements.add(values);
+        }
+        final IndexToIndexMultiMap map =
+                IndexToIndexMultiMapFactory.buildIndexToIndexMultiMap(
+                        elements,
+                        documents);
+        assertTrue(map instanceof EliasFanoIndexToIndexMultiMap);
+    }
+
     @Test
     public void ascendingTyped() {
         @SuppressWarnings("unchecked")
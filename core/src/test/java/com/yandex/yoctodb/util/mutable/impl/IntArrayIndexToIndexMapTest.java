@@ -0,0 +1,84 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.yandex.yoctodb.util.mutable.IndexToIndexMap;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link IntArrayIndexToIndexMap}
+ *
+ * @author incubos
+ */
+public class IntArrayIndexToIndexMapTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSize() {
+        new IntArrayIndexToIndexMap(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeKey() {
+        new IntArrayIndexToIndexMap(1).put(-1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeValue() {
+        new IntArrayIndexToIndexMap(1).put(0, -1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nonContinuous() throws IOException {
+        final IndexToIndexMap idx = new IntArrayIndexToIndexMap(0);
+        idx.put(0, 0);
+        idx.put(2, 0);
+        idx.writeTo(new ByteArrayOutputStream());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overwrite() {
+        final IndexToIndexMap idx = new IntArrayIndexToIndexMap(1);
+        idx.put(0, 0);
+        idx.put(0, 0);
+    }
+
+    @Test
+    public void sameAsIntIndexToIndexMap() throws IOException {
+        final IndexToIndexMap expected = new IntIndexToIndexMap();
+        final IndexToIndexMap actual = new IntArrayIndexToIndexMap(2);
+        for (int i = 9; i >= 0; i--) {
+            expected.put(i, i % 3);
+            actual.put(i, i % 3);
+        }
+
+        assertEquals(expected.getSizeInBytes(), actual.getSizeInBytes());
+
+        final ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        expected.writeTo(expectedBytes);
+        final ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+        actual.writeTo(actualBytes);
+        assertArrayEquals(expectedBytes.toByteArray(), actualBytes.toByteArray());
+    }
+
+    @Test
+    public void string() {
+        final IndexToIndexMap idx = new IntArrayIndexToIndexMap(0);
+        idx.put(0, 0);
+        idx.put(1, 0);
+        assertTrue(idx.toString().contains("2"));
+    }
+}
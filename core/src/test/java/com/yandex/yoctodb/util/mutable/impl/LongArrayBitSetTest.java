@@ -14,6 +14,8 @@ import com.yandex.yoctodb.util.buf.Buffer;
 import com.yandex.yoctodb.util.mutable.BitSet;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.junit.Assert.*;
 
 /**
@@ -97,6 +99,63 @@ public class LongArrayBitSetTest {
         }
     }
 
+    @Test
+    public void orXorLargeBuffer() {
+        final int docs = 100 * 1024;
+        final int arraySize = LongArrayBitSet.arraySize(docs);
+        final ByteBuffer bytes = ByteBuffer.allocate(8 + arraySize * 8);
+        bytes.putLong(-1L);
+        for (int i = 0; i < arraySize; i++) {
+            bytes.putLong(i % 3 == 0 ? 1L : 0L);
+        }
+        final Buffer buf = Buffer.from(bytes.array());
+
+        final BitSet bs = LongArrayBitSet.zero(docs);
+        assertTrue(bs.or(buf, 8, arraySize));
+        assertEquals((arraySize + 2) / 3, bs.cardinality());
+        for (int i = 0; i < arraySize; i++) {
+            assertEquals(i % 3 == 0, bs.get(i * 64));
+        }
+
+        assertFalse(bs.xor(buf, 8, arraySize));
+        assertTrue(bs.isEmpty());
+    }
+
+    @Test
+    public void orXor() {
+        final int docs = 100 * 1024;
+        final int arraySize = LongArrayBitSet.arraySize(docs);
+        final ByteBuffer bytes = ByteBuffer.allocate(8 + 2 * arraySize * 8);
+        bytes.putLong(-1L);
+        for (int i = 0; i < arraySize; i++) {
+            bytes.putLong(i % 3 == 0 ? 3L : 0L);
+        }
+        for (int i = 0; i < arraySize; i++) {
+            bytes.putLong(i % 3 == 0 ? 1L : 0L);
+        }
+        final Buffer buf = Buffer.from(bytes.array());
+
+        final BitSet bs = LongArrayBitSet.zero(docs);
+        assertFalse(bs.orXor(buf, 8, 8, arraySize));
+        bs.set(0);
+        assertTrue(bs.orXor(buf, 8, 8 + arraySize * 8, arraySize));
+        assertEquals((arraySize + 2) / 3 + 1, bs.cardinality());
+        for (int i = 0; i < arraySize; i++) {
+            assertEquals(i == 0, bs.get(i * 64));
+            assertEquals(i % 3 == 0, bs.get(i * 64 + 1));
+        }
+    }
+
+    @Test
+    public void emptyWithDirtyReusedWords() {
+        final long[] words = new long[4];
+        words[3] = -1L;
+
+        final BitSet bs = LongArrayBitSet.zero(64, words);
+        assertTrue(bs.isEmpty());
+        assertEquals(0, bs.cardinality());
+    }
+
     @Test
     public void empty() {
         for (int i = 1; i < SIZE; i++) {
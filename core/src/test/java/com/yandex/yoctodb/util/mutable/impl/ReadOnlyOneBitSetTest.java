@@ -87,6 +87,15 @@ public class ReadOnlyOneBitSetTest {
                 1);
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedOrXorBuffer() {
+        new ReadOnlyOneBitSet(1).orXor(
+                Buffer.from(new byte[]{0, 0, 0, 0, 0, 0, 0, 0}),
+                0,
+                0,
+                1);
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void unsupportedXorBuffer() {
         new ReadOnlyOneBitSet(1).xor(
@@ -107,6 +107,15 @@ public class ReadOnlyZeroBitSetTest {
                 1);
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedOrXorBuffer() {
+        new ReadOnlyZeroBitSet(1).orXor(
+                Buffer.from(new byte[]{0, 0, 0, 0, 0, 0, 0, 0}),
+                0,
+                0,
+                1);
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void unsupportedXorBuffer() {
         new ReadOnlyZeroBitSet(1).xor(
@@ -17,4 +17,14 @@ public class RejectingArrayBitSetPoolTest {
     public void rejectReturn() {
         RejectingArrayBitSetPool.INSTANCE.returnSet(LongArrayBitSet.one(1));
     }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void rejectSparseBorrow() {
+        RejectingArrayBitSetPool.INSTANCE.borrowSparseSet(1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void rejectSparseReturn() {
+        RejectingArrayBitSetPool.INSTANCE.returnSparseSet(new RoaringBitSet(1));
+    }
 }
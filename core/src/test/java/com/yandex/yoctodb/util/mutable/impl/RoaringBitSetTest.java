@@ -0,0 +1,308 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.util.mutable.impl;
+
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.ArrayBitSet;
+import com.yandex.yoctodb.util.mutable.BitSet;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RoaringBitSet} checked against {@link LongArrayBitSet}
+ *
+ * @author incubos
+ */
+public class RoaringBitSetTest {
+    private static final int SIZE = 3 * RoaringBitSet.CHUNK_BITS + 1234;
+
+    private static void assertSame(
+            final BitSet expected,
+            final BitSet actual) {
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        for (int i = expected.nextSetBit(0), j = actual.nextSetBit(0);
+             i >= 0 || j >= 0;
+             i = i + 1 < expected.getSize() ? expected.nextSetBit(i + 1) : -1,
+                     j = j + 1 < actual.getSize() ? actual.nextSetBit(j + 1) : -1) {
+            assertEquals(i, j);
+        }
+    }
+
+    /**
+     * Fills both sets with sparse, dense and consecutive bits
+     */
+    private static void fill(
+            final Random random,
+            final BitSet... sets) {
+        // Sparse chunk
+        for (int i = 0; i < 100; i++) {
+            final int bit = random.nextInt(RoaringBitSet.CHUNK_BITS);
+            for (BitSet set : sets) set.set(bit);
+        }
+
+        // Dense chunk
+        for (int i = 0; i < 20000; i++) {
+            final int bit = RoaringBitSet.CHUNK_BITS + random.nextInt(RoaringBitSet.CHUNK_BITS);
+            for (BitSet set : sets) set.set(bit);
+        }
+
+        // Runs in the last chunk
+        final int from = 3 * RoaringBitSet.CHUNK_BITS + random.nextInt(100);
+        for (int bit = from; bit < SIZE; bit += random.nextInt(2) == 0 ? 1 : 300) {
+            for (BitSet set : sets) set.set(bit);
+        }
+    }
+
+    @Test
+    public void setAndGet() {
+        final Random random = new Random(0);
+        final BitSet expected = LongArrayBitSet.zero(SIZE);
+        final BitSet actual = new RoaringBitSet(SIZE);
+        assertTrue(actual.isEmpty());
+        assertEquals(-1, actual.nextSetBit(0));
+
+        fill(random, expected, actual);
+
+        assertSame(expected, actual);
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void inverseAndSet() {
+        final Random random = new Random(1);
+        final BitSet expected = LongArrayBitSet.zero(SIZE);
+        final BitSet actual = new RoaringBitSet(SIZE);
+        fill(random, expected, actual);
+
+        assertEquals(expected.inverse(), actual.inverse());
+        assertSame(expected, actual);
+
+        actual.set();
+        assertEquals(SIZE, actual.cardinality());
+        assertFalse(actual.inverse());
+        assertTrue(actual.isEmpty());
+
+        actual.set();
+        actual.clear();
+        assertTrue(actual.isEmpty());
+        assertEquals(0, actual.cardinality());
+    }
+
+    @Test
+    public void operationsWithRoaring() {
+        for (int seed = 0; seed < 3; seed++) {
+            final Random random = new Random(seed);
+
+            for (int op = 0; op < 3; op++) {
+                final BitSet expected = LongArrayBitSet.zero(SIZE);
+                final RoaringBitSet actual = new RoaringBitSet(SIZE);
+                fill(random, expected, actual);
+
+                final BitSet expectedOther = LongArrayBitSet.zero(SIZE);
+                final RoaringBitSet actualOther = new RoaringBitSet(SIZE);
+                fill(random, expectedOther, actualOther);
+
+                switch (op) {
+                    case 0:
+                        assertEquals(expected.and(expectedOther), actual.and(actualOther));
+                        break;
+                    case 1:
+                        assertEquals(expected.or(expectedOther), actual.or(actualOther));
+                        break;
+                    default:
+                        assertEquals(expected.xor(expectedOther), actual.xor(actualOther));
+                }
+
+                assertSame(expected, actual);
+                assertSame(expectedOther, actualOther);
+            }
+        }
+    }
+
+    @Test
+    public void operationsWithArrays() {
+        final Random random = new Random(42);
+
+        for (int op = 0; op < 3; op++) {
+            final BitSet expected = LongArrayBitSet.zero(SIZE);
+            final BitSet actual = new RoaringBitSet(SIZE);
+            fill(random, expected, actual);
+
+            final ArrayBitSet other = LongArrayBitSet.zero(SIZE);
+            fill(random, other);
+
+            switch (op) {
+                case 0:
+                    assertEquals(expected.and(other), actual.and(other));
+                    break;
+                case 1:
+                    assertEquals(expected.or(other), actual.or(other));
+                    break;
+                default:
+                    assertEquals(expected.xor(other), actual.xor(other));
+            }
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void operationsWithBuffers() {
+        final Random random = new Random(7);
+
+        for (int op = 0; op < 3; op++) {
+            final BitSet expected = LongArrayBitSet.zero(SIZE);
+            final BitSet actual = new RoaringBitSet(SIZE);
+            fill(random, expected, actual);
+
+            final ArrayBitSet other = LongArrayBitSet.zero(SIZE);
+            fill(random, other);
+            final int sizeInLongs = LongArrayBitSet.arraySize(SIZE);
+            final ByteBuffer bytes = ByteBuffer.allocate(8 + sizeInLongs * 8);
+            bytes.putLong(-1L);
+            for (int i = 0; i < sizeInLongs; i++) {
+                bytes.putLong(other.toArray()[i]);
+            }
+            final Buffer buf = Buffer.from(bytes.array());
+
+            switch (op) {
+                case 0:
+                    assertEquals(
+                            expected.and(buf, 8, sizeInLongs),
+                            actual.and(buf, 8, sizeInLongs));
+                    break;
+                case 1:
+                    assertEquals(
+                            expected.or(buf, 8, sizeInLongs),
+                            actual.or(buf, 8, sizeInLongs));
+                    break;
+                default:
+                    assertEquals(
+                            expected.xor(buf, 8, sizeInLongs),
+                            actual.xor(buf, 8, sizeInLongs));
+            }
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void orXorWithBuffers() {
+        final Random random = new Random(11);
+        final int sizeInLongs = LongArrayBitSet.arraySize(SIZE);
+
+        // Including the same and the empty bit sets
+        final ArrayBitSet first = LongArrayBitSet.zero(SIZE);
+        fill(random, first);
+        final ArrayBitSet second = LongArrayBitSet.zero(SIZE);
+        fill(random, second);
+        final ByteBuffer bytes = ByteBuffer.allocate(8 + 3 * sizeInLongs * 8);
+        bytes.putLong(-1L);
+        for (ArrayBitSet set : new ArrayBitSet[]{first, second}) {
+            for (int i = 0; i < sizeInLongs; i++) {
+                bytes.putLong(set.toArray()[i]);
+            }
+        }
+        final Buffer buf = Buffer.from(bytes.array());
+        final long[] positions = {
+                8, 8 + sizeInLongs * 8L, 8 + 2 * sizeInLongs * 8L};
+
+        for (long firstPosition : positions) {
+            for (long secondPosition : positions) {
+                final BitSet expected = LongArrayBitSet.zero(SIZE);
+                final BitSet array = LongArrayBitSet.zero(SIZE);
+                final BitSet roaring = new RoaringBitSet(SIZE);
+                // Sparse initial bits
+                for (int i = 0; i < 10; i++) {
+                    final int bit = random.nextInt(SIZE);
+                    expected.set(bit);
+                    array.set(bit);
+                    roaring.set(bit);
+                }
+
+                final BitSet difference = LongArrayBitSet.zero(SIZE);
+                difference.or(buf, firstPosition, sizeInLongs);
+                difference.xor(buf, secondPosition, sizeInLongs);
+                expected.or(difference);
+
+                assertTrue(
+                        array.orXor(
+                                buf,
+                                firstPosition,
+                                secondPosition,
+                                sizeInLongs));
+                assertTrue(
+                        roaring.orXor(
+                                buf,
+                                firstPosition,
+                                secondPosition,
+                                sizeInLongs));
+                assertSame(expected, array);
+                assertSame(expected, roaring);
+            }
+        }
+
+        // Empty result
+        final BitSet empty = new RoaringBitSet(SIZE);
+        assertFalse(empty.orXor(buf, 8, 8, sizeInLongs));
+        assertTrue(empty.isEmpty());
+    }
+
+    @Test
+    public void arrayWithRoaring() {
+        final Random random = new Random(3);
+
+        for (int op = 0; op < 3; op++) {
+            final BitSet expected = LongArrayBitSet.zero(SIZE);
+            final BitSet actual = LongArrayBitSet.zero(SIZE);
+            fill(random, expected, actual);
+
+            final BitSet expectedOther = LongArrayBitSet.zero(SIZE);
+            final BitSet actualOther = new RoaringBitSet(SIZE);
+            fill(random, expectedOther, actualOther);
+
+            switch (op) {
+                case 0:
+                    assertEquals(expected.and(expectedOther), actual.and(actualOther));
+                    break;
+                case 1:
+                    assertEquals(expected.or(expectedOther), actual.or(actualOther));
+                    break;
+                default:
+                    assertEquals(expected.xor(expectedOther), actual.xor(actualOther));
+            }
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void andToEmpty() {
+        final BitSet first = new RoaringBitSet(SIZE);
+        first.set(1);
+        first.set(SIZE - 1);
+        final BitSet second = new RoaringBitSet(SIZE);
+        second.set(2);
+
+        assertFalse(first.and(second));
+        assertTrue(first.isEmpty());
+        assertEquals(-1, first.nextSetBit(0));
+        assertEquals(1, second.cardinality());
+    }
+}
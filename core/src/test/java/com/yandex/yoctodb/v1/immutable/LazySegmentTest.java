@@ -0,0 +1,65 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.immutable;
+
+import com.yandex.yoctodb.util.Crc32c;
+import com.yandex.yoctodb.util.buf.Buffer;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LazySegment}
+ *
+ * @author incubos
+ */
+public class LazySegmentTest {
+    private static final int UNKNOWN_TYPE = Integer.MAX_VALUE;
+
+    @Test
+    public void readOnAccess() {
+        final LazySegment segment =
+                new LazySegment(UNKNOWN_TYPE, Buffer.from(new byte[0]));
+        assertFalse(segment.isLoaded());
+
+        try {
+            segment.get();
+            fail();
+        } catch (NoSuchElementException e) {
+            // Expected
+        }
+
+        assertFalse(segment.isLoaded());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void corrupted() {
+        final byte[] data = {1, 2, 3};
+        final Crc32c crc = new Crc32c();
+        crc.update(data, 0, data.length);
+        final LazySegment segment =
+                new LazySegment(
+                        UNKNOWN_TYPE,
+                        Buffer.from(data),
+                        (int) crc.getValue() + 1);
+        segment.get();
+    }
+
+    @Test
+    public void loaded() {
+        final Object index = new Object();
+        final LazySegment segment = new LazySegment(index);
+        assertTrue(segment.isLoaded());
+        assertSame(index, segment.get());
+    }
+}
@@ -10,11 +10,18 @@
 
 package com.yandex.yoctodb.v1.immutable;
 
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 import com.yandex.yoctodb.DatabaseFormat;
+import com.yandex.yoctodb.immutable.IndexedDatabase;
 import com.yandex.yoctodb.mutable.DatabaseBuilder;
 import com.yandex.yoctodb.mutable.DocumentBuilder;
+import com.yandex.yoctodb.query.Query;
+import com.yandex.yoctodb.util.OutputStreamWritable;
 import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.impl.AllocatingArrayBitSetPool;
+import com.yandex.yoctodb.v1.mutable.V1DatabaseBuilder;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
@@ -22,7 +29,11 @@ import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
+import static com.yandex.yoctodb.query.QueryBuilder.eq;
+import static com.yandex.yoctodb.query.QueryBuilder.select;
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
 import static com.yandex.yoctodb.v1.V1DatabaseFormat.*;
+import static org.junit.Assert.*;
 
 /**
  * Unit tests for {@link V1DatabaseReader}
@@ -34,7 +45,7 @@ public class V1DatabaseReaderTest {
 
     private byte[] buildDatabase() throws IOException {
         final DatabaseBuilder dbBuilder =
-                DatabaseFormat.getCurrent().newDatabaseBuilder();
+                new V1DatabaseBuilder().withSegmentChecksums();
 
         // Document 1
         dbBuilder.merge(
@@ -120,4 +131,202 @@ public class V1DatabaseReaderTest {
                         MAGIC.length + getDigestSizeInBytes() - 1);
         INSTANCE.from(Buffer.from(bytes));
     }
+
+    @Test
+    public void lazy() throws IOException {
+        final byte[] bytes = buildDatabase();
+        final IndexedDatabase eager =
+                INSTANCE.from(
+                        Buffer.from(bytes),
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        true);
+        final IndexedDatabase lazy =
+                INSTANCE.from(
+                        Buffer.from(bytes),
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        true,
+                        true);
+
+        assertEquals(eager.getDocumentCount(), lazy.getDocumentCount());
+        assertNull(lazy.getFilter("unknown"));
+        for (int i = 0; i < eager.getDocumentCount(); i++) {
+            assertEquals(eager.getDocument(i), lazy.getDocument(i));
+            assertEquals(
+                    eager.getSorter("int").getSortValueIndex(i),
+                    lazy.getSorter("int").getSortValueIndex(i));
+        }
+
+        final Query query = select().where(eq("text", from("doc2")));
+        assertEquals(eager.count(query), lazy.count(query));
+        assertEquals(1, lazy.count(query));
+        assertSame(lazy.getFilter("text"), lazy.getFilter("text"));
+        assertSame(lazy.getFilter("int"), lazy.getSorter("int"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongTableOfContents() throws IOException {
+        final byte[] bytes = buildDatabase();
+        final int size = bytes.length - getDigestSizeInBytes() - Long.BYTES;
+        System.arraycopy(
+                Longs.toByteArray(bytes.length),
+                0,
+                bytes,
+                size,
+                Long.BYTES);
+        INSTANCE.from(
+                Buffer.from(bytes),
+                AllocatingArrayBitSetPool.INSTANCE,
+                false,
+                true);
+    }
+
+    private byte[] buildDatabase(final ChecksumType type) throws IOException {
+        final ChecksumType originalType = getChecksumType();
+        final int originalBlockSize = getChecksumBlockSizeInBytes();
+        try {
+            setChecksumType(type);
+            setChecksumBlockSizeInBytes(64);
+            return buildDatabase();
+        } finally {
+            setChecksumType(originalType);
+            setChecksumBlockSizeInBytes(originalBlockSize);
+        }
+    }
+
+    @Test
+    public void blockChecksums() throws IOException {
+        final IndexedDatabase expected = INSTANCE.from(Buffer.from(buildDatabase()));
+        for (ChecksumType type : new ChecksumType[]{ChecksumType.CRC32, ChecksumType.CRC32C}) {
+            final byte[] bytes = buildDatabase(type);
+            for (boolean lazy : new boolean[]{false, true}) {
+                final IndexedDatabase db =
+                        INSTANCE.from(
+                                Buffer.from(bytes),
+                                AllocatingArrayBitSetPool.INSTANCE,
+                                true,
+                                lazy);
+                assertEquals(expected.getDocumentCount(), db.getDocumentCount());
+                for (int i = 0; i < expected.getDocumentCount(); i++) {
+                    assertEquals(expected.getDocument(i), db.getDocument(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void corruptedBlock() throws IOException {
+        final byte[] bytes = buildDatabase(ChecksumType.CRC32C);
+        // Somewhere in the middle of the segments
+        bytes[bytes.length / 2]++;
+
+        // Not verified
+        INSTANCE.from(
+                Buffer.from(bytes),
+                AllocatingArrayBitSetPool.INSTANCE,
+                false,
+                true);
+
+        try {
+            INSTANCE.from(Buffer.from(bytes));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongBlockCount() throws IOException {
+        final byte[] bytes = buildDatabase(ChecksumType.CRC32);
+        bytes[bytes.length - 1]++;
+        INSTANCE.from(Buffer.from(bytes));
+    }
+
+    @Test
+    public void sizeInBytes() throws IOException {
+        for (ChecksumType type : ChecksumType.values()) {
+            final ChecksumType originalType = getChecksumType();
+            try {
+                setChecksumType(type);
+                final DatabaseBuilder builder =
+                        DatabaseFormat.getCurrent().newDatabaseBuilder();
+                builder.merge(
+                        DatabaseFormat.getCurrent()
+                                .newDocumentBuilder()
+                                .withField("id", 1, DocumentBuilder.IndexOption.FULL)
+                                .withPayload("payload".getBytes()));
+                final OutputStreamWritable writable = builder.buildWritable();
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                writable.writeTo(os);
+                assertEquals(os.size(), writable.getSizeInBytes());
+            } finally {
+                setChecksumType(originalType);
+            }
+        }
+    }
+
+    @Test
+    public void corruptedSegment() throws IOException {
+        final byte[] bytes = buildDatabase();
+        final byte[] payload = "payload2".getBytes();
+        final int position = Bytes.indexOf(bytes, payload);
+        assertTrue(position > 0);
+        bytes[position]++;
+
+        final IndexedDatabase db =
+                INSTANCE.from(
+                        Buffer.from(bytes),
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        false,
+                        true);
+
+        // Intact segments are available
+        assertEquals(1, db.count(select().where(eq("text", from("doc2")))));
+
+        try {
+            db.getDocument(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void corruptedSegmentEagerly() throws IOException {
+        final byte[] bytes = buildDatabase();
+
+        // Intact segments are verified
+        assertEquals(
+                2,
+                INSTANCE.from(
+                        Buffer.from(bytes),
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        false,
+                        false,
+                        true).getDocumentCount());
+
+        final int position = Bytes.indexOf(bytes, "payload2".getBytes());
+        assertTrue(position > 0);
+        bytes[position]++;
+
+        // Not verified unless requested
+        assertEquals(
+                2,
+                INSTANCE.from(
+                        Buffer.from(bytes),
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        false,
+                        false).getDocumentCount());
+
+        try {
+            INSTANCE.from(
+                    Buffer.from(bytes),
+                    AllocatingArrayBitSetPool.INSTANCE,
+                    false,
+                    false,
+                    true);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
 }
@@ -11,15 +11,37 @@
 package com.yandex.yoctodb.v1.mutable;
 
 import com.yandex.yoctodb.DatabaseFormat;
+import com.yandex.yoctodb.immutable.IndexedDatabase;
 import com.yandex.yoctodb.mutable.DatabaseBuilder;
 import com.yandex.yoctodb.mutable.DocumentBuilder;
+import com.yandex.yoctodb.util.Crc32c;
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.OutputStreamWritableBuilder;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.buf.Buffer;
+import com.yandex.yoctodb.util.mutable.impl.AllocatingArrayBitSetPool;
+import com.yandex.yoctodb.v1.immutable.V1DatabaseReader;
+import com.yandex.yoctodb.v1.mutable.segment.Spillable;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.yandex.yoctodb.v1.V1DatabaseFormat.*;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 /**
  * Unit tests for {@link V1DatabaseBuilder}
@@ -180,4 +202,376 @@ public class V1DatabaseBuilderTest {
             setDigestSizeInBytes(originalDigestSize);
         }
     }
+
+    @Test
+    public void tableOfContents() throws IOException {
+        final DocumentBuilder doc =
+                DatabaseFormat
+                        .getCurrent()
+                        .newDocumentBuilder()
+                        .withField(
+                                "id",
+                                0,
+                                DocumentBuilder.IndexOption.FULL)
+                        .withField(
+                                "tag",
+                                "tag",
+                                DocumentBuilder.IndexOption.FILTERABLE)
+                        .withPayload("payload1".getBytes());
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new V1DatabaseBuilder()
+                .withSegmentChecksums()
+                .merge(doc)
+                .buildWritable()
+                .writeTo(os);
+        final ByteBuffer bytes = ByteBuffer.wrap(os.toByteArray());
+
+        final int features = bytes.getInt(MAGIC.length);
+        assertNotEquals(
+                0,
+                features & Feature.intValue(Feature.TABLE_OF_CONTENTS));
+        assertNotEquals(
+                0,
+                features & Feature.intValue(Feature.SEGMENT_CHECKSUM));
+
+        // Magic, features and document count
+        final int segmentsStart = MAGIC.length + 2 * Integer.BYTES;
+        final int tocEnd =
+                bytes.limit() - getDigestSizeInBytes() - Long.BYTES;
+        final long tocSize = bytes.getLong(tocEnd);
+        bytes.position((int) (tocEnd - tocSize));
+
+        final Set<String> fields = new HashSet<>();
+        final int count = bytes.getInt();
+        for (int i = 0; i < count; i++) {
+            final byte[] name = new byte[bytes.getInt()];
+            bytes.get(name);
+            fields.add(new String(name));
+            final int type = bytes.getInt();
+            final long offset = bytes.getLong();
+            final long length = bytes.getLong();
+            final int checksum = bytes.getInt();
+
+            // Segment record size and type
+            assertEquals(
+                    length - Long.BYTES - Integer.BYTES,
+                    bytes.getLong((int) (segmentsStart + offset)));
+            assertEquals(
+                    type,
+                    bytes.getInt((int) (segmentsStart + offset + Long.BYTES)));
+
+            // Segment content checksum
+            final Crc32c crc = new Crc32c();
+            crc.update(
+                    bytes.array(),
+                    (int) (segmentsStart + offset + Long.BYTES + Integer.BYTES),
+                    (int) (length - Long.BYTES - Integer.BYTES));
+            assertEquals(checksum, (int) crc.getValue());
+        }
+        assertEquals(tocEnd, bytes.position());
+        assertEquals(
+                new HashSet<>(
+                        Arrays.asList(
+                                "id",
+                                "tag",
+                                DocumentBuilder.PAYLOAD)),
+                fields);
+    }
+
+    @Test
+    public void onlyUsedFeatures() throws IOException {
+        final DatabaseBuilder builder =
+                DatabaseFormat.getCurrent().newDatabaseBuilder();
+        for (int i = 0; i < 10; i++) {
+            builder.merge(
+                    DatabaseFormat.getCurrent()
+                            .newDocumentBuilder()
+                            .withField("id", i, DocumentBuilder.IndexOption.FULL)
+                            .withField("mod", "m" + i % 3, DocumentBuilder.IndexOption.FILTERABLE)
+                            .withPayload(("payload" + i).getBytes()));
+        }
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        builder.buildWritable().writeTo(os);
+
+        // Single valued fields are indexed by ascending bit sets
+        final int features = ByteBuffer.wrap(os.toByteArray()).getInt(MAGIC.length);
+        assertEquals(
+                0,
+                features & Feature.intValue(
+                        Feature.TABLE_OF_CONTENTS,
+                        Feature.SEGMENT_CHECKSUM,
+                        Feature.DELTA_VAR_INT_INDEX,
+                        Feature.ELIAS_FANO_INDEX,
+                        Feature.SKIP_LIST_INDEX,
+                        Feature.HYBRID_INDEX));
+        assertEquals(
+                10,
+                DatabaseFormat.getCurrent().getDatabaseReader().from(
+                        Buffer.from(os.toByteArray())).getDocumentCount());
+    }
+
+    @Test
+    public void tableOfContentsWithoutChecksums() throws IOException {
+        final V1DatabaseBuilder builder =
+                new V1DatabaseBuilder().withTableOfContents();
+        builder.merge(
+                DatabaseFormat.getCurrent()
+                        .newDocumentBuilder()
+                        .withField("id", 1, DocumentBuilder.IndexOption.FULL)
+                        .withPayload("payload".getBytes()));
+        final OutputStreamWritable writable = builder.buildWritable();
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writable.writeTo(os);
+        assertEquals(os.size(), writable.getSizeInBytes());
+
+        final int features = ByteBuffer.wrap(os.toByteArray()).getInt(MAGIC.length);
+        assertNotEquals(
+                0,
+                features & Feature.intValue(Feature.TABLE_OF_CONTENTS));
+        assertEquals(
+                0,
+                features & Feature.intValue(Feature.SEGMENT_CHECKSUM));
+
+        // Located by the table of contents
+        final IndexedDatabase db =
+                new V1DatabaseReader().from(
+                        Buffer.from(os.toByteArray()),
+                        AllocatingArrayBitSetPool.INSTANCE,
+                        false,
+                        true);
+        assertEquals(1, db.getDocumentCount());
+        assertEquals(
+                Buffer.from("payload".getBytes()),
+                db.getDocument(0));
+    }
+
+    private static byte[] build(final DatabaseBuilder builder)
+            throws IOException {
+        for (int i = 0; i < 100; i++) {
+            builder.merge(
+                    DatabaseFormat.getCurrent()
+                            .newDocumentBuilder()
+                            .withField("id", i, DocumentBuilder.IndexOption.FULL)
+                            .withField("mod", i % 7, DocumentBuilder.IndexOption.FILTERABLE)
+                            .withField("text", "t" + i % 13, DocumentBuilder.IndexOption.SORTABLE)
+                            .withField("tag", "a" + i % 5, DocumentBuilder.IndexOption.FILTERABLE)
+                            .withField("tag", "b" + i % 3, DocumentBuilder.IndexOption.FILTERABLE)
+                            .withField("tag", "a" + i % 5, DocumentBuilder.IndexOption.FILTERABLE)
+                            .withField("prefix", UnsignedByteArrays.from("p" + i % 11), DocumentBuilder.IndexOption.FILTERABLE, DocumentBuilder.IndexType.TRIE)
+                            .withField("stored", "s" + i, DocumentBuilder.IndexOption.STORED)
+                            .withPayload(("payload" + i).getBytes()));
+        }
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        builder.buildWritable().writeTo(os);
+        return os.toByteArray();
+    }
+
+    @Test
+    public void parallelBuild() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(
+                    build(DatabaseFormat.getCurrent().newDatabaseBuilder()),
+                    build(DatabaseFormat.getCurrent().newDatabaseBuilder(executor)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void spillingBuild() throws IOException {
+        final File directory = Files.createTempDirectory("yoctodb-").toFile();
+        try {
+            assertArrayEquals(
+                    build(new V1DatabaseBuilder()),
+                    build(new V1DatabaseBuilder(null, directory, 1L)));
+            assertArrayEquals(
+                    build(new V1DatabaseBuilder()),
+                    build(new V1DatabaseBuilder(null, directory, 1024L)));
+
+            // Runs are removed after the merge
+            assertEquals(0, directory.list().length);
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void parallelSpillingBuild() throws IOException {
+        final File directory = Files.createTempDirectory("yoctodb-").toFile();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(
+                    build(new V1DatabaseBuilder()),
+                    build(new V1DatabaseBuilder(executor, directory, 1L)));
+            assertEquals(0, directory.list().length);
+        } finally {
+            executor.shutdown();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void closeAbandonedBuilder() throws IOException {
+        final File directory = Files.createTempDirectory("yoctodb-").toFile();
+        try {
+            final V1DatabaseBuilder builder =
+                    new V1DatabaseBuilder(null, directory, 1L);
+            for (int i = 0; i < 10; i++) {
+                builder.merge(
+                        DatabaseFormat.getCurrent()
+                                .newDocumentBuilder()
+                                .withField("id", i, DocumentBuilder.IndexOption.FULL)
+                                .withField("tag", "t" + i % 3, DocumentBuilder.IndexOption.FILTERABLE));
+            }
+            assertTrue(directory.list().length > 0);
+
+            builder.close();
+            assertEquals(0, directory.list().length);
+
+            try {
+                builder.buildWritable();
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void closeBuiltBuilder() throws IOException {
+        final File directory = Files.createTempDirectory("yoctodb-").toFile();
+        try {
+            final V1DatabaseBuilder builder =
+                    new V1DatabaseBuilder(null, directory, 1L);
+            for (int i = 0; i < 10; i++) {
+                builder.merge(
+                        DatabaseFormat.getCurrent()
+                                .newDocumentBuilder()
+                                .withField("id", i, DocumentBuilder.IndexOption.FULL)
+                                .withField("tag", "t" + i % 3, DocumentBuilder.IndexOption.FILTERABLE));
+            }
+
+            // Built segments wait in temporary files
+            final OutputStreamWritable writable = builder.buildWritable();
+            assertEquals(2, directory.list().length);
+
+            builder.close();
+            assertEquals(0, directory.list().length);
+
+            try {
+                writable.writeTo(new ByteArrayOutputStream());
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        } finally {
+            directory.delete();
+        }
+    }
+
+    /**
+     * Tracks the built segments kept in heap
+     */
+    private static final class HeapSegment
+            implements OutputStreamWritableBuilder, Spillable {
+        private static int inHeap = 0;
+        private static int maxInHeap = 0;
+
+        private final byte[] content;
+
+        HeapSegment(final byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public long getSpillableSizeInBytes() {
+            return 0L;
+        }
+
+        @Override
+        public void spill() {
+            // Nothing to spill
+        }
+
+        @Override
+        public void close() {
+            // Nothing to delete
+        }
+
+        @NotNull
+        @Override
+        public OutputStreamWritable buildWritable() {
+            inHeap++;
+            maxInHeap = Math.max(maxInHeap, inHeap);
+
+            return new OutputStreamWritable() {
+                @Override
+                public long getSizeInBytes() {
+                    return content.length;
+                }
+
+                @Override
+                public void writeTo(
+                        @NotNull
+                        final OutputStream os) throws IOException {
+                    os.write(content);
+                    inHeap--;
+                }
+            };
+        }
+    }
+
+    @Test
+    public void spillingBuildKeepsSingleSegmentInHeap() throws IOException {
+        final File directory = Files.createTempDirectory("yoctodb-").toFile();
+        try {
+            final List<HeapSegment> segments = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final byte[] content = new byte[1024 + i];
+                Arrays.fill(content, (byte) i);
+                segments.add(new HeapSegment(content));
+            }
+
+            final List<OutputStreamWritable> writables =
+                    V1DatabaseBuilder.buildSpilling(segments, directory);
+
+            // Every segment is moved out of heap before building the next one
+            assertEquals(1, HeapSegment.maxInHeap);
+            assertEquals(0, HeapSegment.inHeap);
+            assertEquals(segments.size(), directory.list().length);
+
+            for (int i = 0; i < segments.size(); i++) {
+                final OutputStreamWritable writable = writables.get(i);
+                assertEquals(
+                        segments.get(i).content.length,
+                        writable.getSizeInBytes());
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                writable.writeTo(os);
+                assertArrayEquals(segments.get(i).content, os.toByteArray());
+            }
+            assertEquals(0, directory.list().length);
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void spillToNonexistentDirectory() {
+        new V1DatabaseBuilder(null, new File("nonexistent-directory"), 1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonpositiveHeapBudget() throws IOException {
+        final File directory = Files.createTempDirectory("yoctodb-").toFile();
+        try {
+            new V1DatabaseBuilder(null, directory, 0L);
+        } finally {
+            directory.delete();
+        }
+    }
 }
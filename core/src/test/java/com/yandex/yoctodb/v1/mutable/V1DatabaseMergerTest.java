@@ -0,0 +1,323 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable;
+
+import com.yandex.yoctodb.DatabaseFormat;
+import com.yandex.yoctodb.immutable.Database;
+import com.yandex.yoctodb.mutable.DatabaseBuilder;
+import com.yandex.yoctodb.mutable.DatabaseMerger;
+import com.yandex.yoctodb.mutable.DocumentBuilder;
+import com.yandex.yoctodb.query.Query;
+import com.yandex.yoctodb.util.UnsignedByteArrays;
+import com.yandex.yoctodb.util.buf.Buffer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.yandex.yoctodb.query.QueryBuilder.*;
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link V1DatabaseMerger}
+ *
+ * @author incubos
+ */
+public class V1DatabaseMergerTest {
+    private static final int DOCUMENTS = 100;
+
+    private static DocumentBuilder document(final int i) {
+        return DatabaseFormat.getCurrent()
+                .newDocumentBuilder()
+                .withField("id", i, DocumentBuilder.IndexOption.FULL)
+                .withField("mod", i % 7, DocumentBuilder.IndexOption.FILTERABLE)
+                .withField("text", "t" + i % 13, DocumentBuilder.IndexOption.SORTABLE)
+                .withField("tag", "a" + i % 5, DocumentBuilder.IndexOption.FILTERABLE)
+                .withField("tag", "b" + i % 3, DocumentBuilder.IndexOption.FILTERABLE)
+                .withField("prefix", UnsignedByteArrays.from("p" + i % 11), DocumentBuilder.IndexOption.FILTERABLE, DocumentBuilder.IndexType.TRIE)
+                .withField("stored", "s" + i, DocumentBuilder.IndexOption.STORED)
+                .withField("folded", "f" + i % 4, DocumentBuilder.IndexOption.STORED)
+                .withPayload(("payload" + i).getBytes());
+    }
+
+    private static byte[] write(final DatabaseBuilder builder)
+            throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        builder.buildWritable().writeTo(os);
+        return os.toByteArray();
+    }
+
+    private static byte[] write(final DatabaseMerger merger)
+            throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        merger.buildWritable().writeTo(os);
+        return os.toByteArray();
+    }
+
+    private static byte[] build(
+            final int from,
+            final int to) throws IOException {
+        final DatabaseBuilder builder =
+                DatabaseFormat.getCurrent().newDatabaseBuilder();
+        for (int i = from; i < to; i++) {
+            builder.merge(document(i));
+        }
+        return write(builder);
+    }
+
+    private static byte[] merge(
+            final DatabaseMerger merger,
+            final int... bounds) throws IOException {
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            merger.add(Buffer.from(build(bounds[i], bounds[i + 1])));
+        }
+        return write(merger);
+    }
+
+    private static Database read(final byte[] database) {
+        return DatabaseFormat.getCurrent()
+                .getDatabaseReader()
+                .from(Buffer.from(database));
+    }
+
+    private static List<Integer> ids(
+            final Database db,
+            final Query query) {
+        final List<Integer> result = new ArrayList<>();
+        db.execute(
+                query,
+                (document, database) -> {
+                    result.add(document);
+                    return true;
+                });
+        return result;
+    }
+
+    @Test
+    public void mergeEqualsBuild() throws IOException {
+        final byte[] expected = build(0, DOCUMENTS);
+
+        assertArrayEquals(
+                expected,
+                merge(
+                        DatabaseFormat.getCurrent().newDatabaseMerger(),
+                        0, 30, 31, DOCUMENTS));
+        assertArrayEquals(
+                expected,
+                merge(
+                        DatabaseFormat.getCurrent().newDatabaseMerger(),
+                        0, DOCUMENTS));
+    }
+
+    @Test
+    public void parallelMerge() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertArrayEquals(
+                    build(0, DOCUMENTS),
+                    merge(
+                            DatabaseFormat.getCurrent().newDatabaseMerger(executor),
+                            0, 10, 50, DOCUMENTS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void mergeMerged() throws IOException {
+        final DatabaseMerger merger =
+                DatabaseFormat.getCurrent().newDatabaseMerger()
+                        .add(
+                                Buffer.from(
+                                        merge(
+                                                new V1DatabaseMerger(),
+                                                0, 20, 40)));
+        assertArrayEquals(build(0, DOCUMENTS), merge(merger, 40, DOCUMENTS));
+    }
+
+    @Test
+    public void mergeQueries() throws IOException {
+        final Database expected = read(build(0, DOCUMENTS));
+        final Database actual =
+                read(
+                        merge(
+                                DatabaseFormat.getCurrent().newDatabaseMerger(),
+                                0, 1, 42, 43, DOCUMENTS));
+
+        assertEquals(expected.getDocumentCount(), actual.getDocumentCount());
+        final List<Query> queries = new ArrayList<>();
+        queries.add(select().where(eq("mod", from(3))).orderBy(desc("id")));
+        queries.add(select().where(in("tag", from("a1"), from("b2"))).orderBy(asc("text")));
+        queries.add(select().where(gte("id", from(17))).and(lt("text", from("t5"))));
+        queries.add(select().where(in("prefix", from("p1"), from("p10"))).orderBy(desc("text")));
+        for (Query query : queries) {
+            assertEquals(ids(expected, query), ids(actual, query));
+        }
+
+        for (int i = 0; i < DOCUMENTS; i++) {
+            assertEquals(expected.getDocument(i), actual.getDocument(i));
+            assertEquals(
+                    expected.getFieldValue(i, "stored"),
+                    actual.getFieldValue(i, "stored"));
+            assertEquals(
+                    expected.getFieldValue(i, "folded"),
+                    actual.getFieldValue(i, "folded"));
+        }
+    }
+
+    @Test
+    public void mergeMissingFields() throws IOException {
+        final DatabaseBuilder first =
+                DatabaseFormat.getCurrent().newDatabaseBuilder();
+        final DatabaseBuilder second =
+                DatabaseFormat.getCurrent().newDatabaseBuilder();
+        for (int i = 0; i < 10; i++) {
+            final DocumentBuilder document =
+                    DatabaseFormat.getCurrent()
+                            .newDocumentBuilder()
+                            .withField("id", i, DocumentBuilder.IndexOption.FILTERABLE)
+                            .withPayload(("payload" + i).getBytes());
+            if (i < 5) {
+                first.merge(
+                        document.withField("first", i % 2, DocumentBuilder.IndexOption.FILTERABLE));
+            } else {
+                second.merge(
+                        document.withField("second", "s" + i, DocumentBuilder.IndexOption.STORED));
+            }
+        }
+
+        final Database db =
+                read(
+                        write(
+                                DatabaseFormat.getCurrent().newDatabaseMerger()
+                                        .add(Buffer.from(write(first)))
+                                        .add(Buffer.from(write(second)))));
+
+        assertEquals(10, db.getDocumentCount());
+        final List<Integer> odd = new ArrayList<>();
+        odd.add(1);
+        odd.add(3);
+        assertEquals(odd, ids(db, select().where(eq("first", from(1)))));
+        assertEquals(1, db.count(select().where(eq("id", from(7)))));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(
+                    Buffer.from(("payload" + i).getBytes()),
+                    db.getDocument(i));
+            assertEquals(
+                    i < 5 ? 0 : 2,
+                    db.getFieldValue(i, "second").remaining());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingFullField() throws IOException {
+        final DatabaseBuilder first =
+                DatabaseFormat.getCurrent().newDatabaseBuilder()
+                        .merge(
+                                DatabaseFormat.getCurrent()
+                                        .newDocumentBuilder()
+                                        .withField("id", 0, DocumentBuilder.IndexOption.FULL)
+                                        .withPayload("payload0".getBytes()));
+        final DatabaseBuilder second =
+                DatabaseFormat.getCurrent().newDatabaseBuilder()
+                        .merge(
+                                DatabaseFormat.getCurrent()
+                                        .newDocumentBuilder()
+                                        .withField("other", 1, DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withPayload("payload1".getBytes()));
+
+        DatabaseFormat.getCurrent().newDatabaseMerger()
+                .add(Buffer.from(write(first)))
+                .add(Buffer.from(write(second)))
+                .buildWritable();
+    }
+
+    @Test
+    public void mismatchedSegmentTypes() throws IOException {
+        final byte[] first =
+                write(DatabaseFormat.getCurrent().newDatabaseBuilder()
+                        .merge(
+                                DatabaseFormat.getCurrent()
+                                        .newDocumentBuilder()
+                                        .withField("a", 0, DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withField("b", 0, DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withPayload("payload0".getBytes())));
+        final byte[] third =
+                write(DatabaseFormat.getCurrent().newDatabaseBuilder()
+                        .merge(
+                                DatabaseFormat.getCurrent()
+                                        .newDocumentBuilder()
+                                        .withField("a", 1, DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withField("b", 1, DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withPayload("payload2".getBytes())));
+        final byte[] second =
+                write(DatabaseFormat.getCurrent().newDatabaseBuilder()
+                        .merge(
+                                DatabaseFormat.getCurrent()
+                                        .newDocumentBuilder()
+                                        .withField("a", 0, DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withField("b", "value", DocumentBuilder.IndexOption.FILTERABLE)
+                                        .withPayload("payload1".getBytes())));
+
+        // Field "a" precedes field "b" in the databases
+        final DatabaseMerger merger =
+                DatabaseFormat.getCurrent().newDatabaseMerger()
+                        .add(Buffer.from(first));
+        try {
+            merger.add(Buffer.from(second));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        // The rejected database changes nothing
+        merger.add(Buffer.from(third));
+        final Database db = read(write(merger));
+        assertEquals(2, db.getDocumentCount());
+        for (String field : new String[]{"a", "b"}) {
+            assertEquals(
+                    Collections.singletonList(0),
+                    ids(db, select().where(eq(field, from(0)))));
+            assertEquals(
+                    Collections.singletonList(1),
+                    ids(db, select().where(eq(field, from(1)))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corruptedDatabase() throws IOException {
+        final byte[] database = build(0, 10);
+        database[database.length / 2] ^= 1;
+
+        DatabaseFormat.getCurrent().newDatabaseMerger()
+                .add(Buffer.from(database));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenMerger() throws IOException {
+        final DatabaseMerger merger =
+                DatabaseFormat.getCurrent().newDatabaseMerger()
+                        .add(Buffer.from(build(0, 10)));
+        merger.buildWritable();
+        merger.add(Buffer.from(build(10, 20)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyMerger() {
+        DatabaseFormat.getCurrent().newDatabaseMerger().buildWritable();
+    }
+}
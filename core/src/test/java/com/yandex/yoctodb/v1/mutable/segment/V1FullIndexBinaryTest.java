@@ -96,31 +96,20 @@ public class V1FullIndexBinaryTest {
 
         //Reading values to document indexes
         final long valuesToDocumentIndexesSize1 = byteBuffer.getLong();
-        Assert.assertEquals(44, valuesToDocumentIndexesSize1);
+        Assert.assertEquals(36, valuesToDocumentIndexesSize1);
         final int code = byteBuffer.getInt();
-        Assert.assertEquals(V1DatabaseFormat.MultiMapType.LIST_BASED.getCode(), code);
+        Assert.assertEquals(V1DatabaseFormat.MultiMapType.ASCENDING_BIT_SET_BASED.getCode(), code);
         final int valuesToDocumentKeysCount = byteBuffer.getInt();
         Assert.assertEquals(2, valuesToDocumentKeysCount);
-        final long[] documentToValueIndexOffsets = new long[valuesToDocumentKeysCount];
+        final int bitSetSizeInLongs = byteBuffer.getInt();
+        Assert.assertEquals(1, bitSetSizeInLongs);
 
-        for (int i = 0; i < valuesToDocumentKeysCount; i++) {
-            final long currentOffset = byteBuffer.getLong();
-            documentToValueIndexOffsets[i] = currentOffset;
-        }
-        Assert.assertArrayEquals(new long[]{0, 8}, documentToValueIndexOffsets);
-
-        final int[][] valuesToDocumentIndexes = new int[elementsCount][];
-        for (int i = 0; i < valuesToDocumentKeysCount; i++) {
-            final int currentSetSize = byteBuffer.getInt();
-            valuesToDocumentIndexes[i] = new int[currentSetSize];
-            for (int j = 0; j < currentSetSize; j++) {
-                final int index = byteBuffer.getInt();
-                valuesToDocumentIndexes[i][j] = index;
-            }
+        // Documents of the preceding values and of all the values
+        final long[] cumulativeDocuments = new long[valuesToDocumentKeysCount + 1];
+        for (int i = 0; i < cumulativeDocuments.length; i++) {
+            cumulativeDocuments[i] = byteBuffer.getLong();
         }
-
-        Assert.assertArrayEquals(new int[]{1}, valuesToDocumentIndexes[0]);
-        Assert.assertArrayEquals(new int[]{0, 2}, valuesToDocumentIndexes[1]);
+        Assert.assertArrayEquals(new long[]{0b000, 0b010, 0b111}, cumulativeDocuments);
 
         //Reading documents to value indexes
         final long documentsToValueIndexSizeInBytes = byteBuffer.getLong();
@@ -214,31 +203,20 @@ public class V1FullIndexBinaryTest {
 
         //Reading values to document indexes
         final long valuesToDocumentIndexesSize1 = byteBuffer.getLong();
-        Assert.assertEquals(44, valuesToDocumentIndexesSize1);
+        Assert.assertEquals(36, valuesToDocumentIndexesSize1);
         final int code = byteBuffer.getInt();
-        Assert.assertEquals(V1DatabaseFormat.MultiMapType.LIST_BASED.getCode(), code);
+        Assert.assertEquals(V1DatabaseFormat.MultiMapType.ASCENDING_BIT_SET_BASED.getCode(), code);
         final int valuesToDocumentKeysCount = byteBuffer.getInt();
         Assert.assertEquals(2, valuesToDocumentKeysCount);
-        final long[] documentToValueIndexOffsets = new long[valuesToDocumentKeysCount];
+        final int bitSetSizeInLongs = byteBuffer.getInt();
+        Assert.assertEquals(1, bitSetSizeInLongs);
 
-        for (int i = 0; i < valuesToDocumentKeysCount; i++) {
-            final long currentOffset = byteBuffer.getLong();
-            documentToValueIndexOffsets[i] = currentOffset;
-        }
-        Assert.assertArrayEquals(new long[]{0, 8}, documentToValueIndexOffsets);
-
-        final int[][] valuesToDocumentIndexes = new int[elementsCount][];
-        for (int i = 0; i < valuesToDocumentKeysCount; i++) {
-            final int currentSetSize = byteBuffer.getInt();
-            valuesToDocumentIndexes[i] = new int[currentSetSize];
-            for (int j = 0; j < currentSetSize; j++) {
-                final int index = byteBuffer.getInt();
-                valuesToDocumentIndexes[i][j] = index;
-            }
+        // Documents of the preceding values and of all the values
+        final long[] cumulativeDocuments = new long[valuesToDocumentKeysCount + 1];
+        for (int i = 0; i < cumulativeDocuments.length; i++) {
+            cumulativeDocuments[i] = byteBuffer.getLong();
         }
-
-        Assert.assertArrayEquals(new int[]{1}, valuesToDocumentIndexes[0]);
-        Assert.assertArrayEquals(new int[]{0, 2}, valuesToDocumentIndexes[1]);
+        Assert.assertArrayEquals(new long[]{0b000, 0b010, 0b111}, cumulativeDocuments);
 
         //Reading documents to value indexes
         final long documentsToValueIndexSizeInBytes = byteBuffer.getLong();
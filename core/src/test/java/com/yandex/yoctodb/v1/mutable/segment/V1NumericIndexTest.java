@@ -0,0 +1,152 @@
+/*
+ * (C) YANDEX LLC, 2014-2016
+ *
+ * The Source Code called "YoctoDB" available at
+ * https://github.com/yandex/yoctodb is subject to the terms of the
+ * Mozilla Public License, v. 2.0 (hereinafter referred to as the "License").
+ *
+ * A copy of the License is also available at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.yandex.yoctodb.v1.mutable.segment;
+
+import com.yandex.yoctodb.util.OutputStreamWritable;
+import com.yandex.yoctodb.util.UnsignedByteArray;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.yandex.yoctodb.util.UnsignedByteArrays.from;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link V1NumericFilterableIndex}, {@link V1NumericFullIndex} and
+ * {@link V1NumericSortableIndex} produce the same segments as their generic
+ * counterparts
+ *
+ * @author incubos
+ */
+public class V1NumericIndexTest {
+    private static final int DOCUMENTS = 3000;
+
+    private static byte[] write(
+            final IndexSegment index,
+            final List<List<UnsignedByteArray>> documents) throws IOException {
+        for (int i = 0; i < documents.size(); i++)
+            index.addDocument(i, documents.get(i));
+        index.setDatabaseDocumentsCount(documents.size());
+
+        final OutputStreamWritable writable = index.buildWritable();
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writable.writeTo(os);
+        assertEquals(writable.getSizeInBytes() + 12, os.size());
+        return os.toByteArray();
+    }
+
+    private static UnsignedByteArray value(
+            final Random random,
+            final int width,
+            final int bound) {
+        final long value = random.nextInt(bound) - bound / 2;
+        switch (width) {
+            case 1:
+                return from((byte) value);
+            case 2:
+                return from((short) value);
+            case 4:
+                return from((int) value);
+            default:
+                return from(value * 1000000007L);
+        }
+    }
+
+    private static List<List<UnsignedByteArray>> documents(
+            final Random random,
+            final int width,
+            final int bound,
+            final int maxValues) {
+        final List<List<UnsignedByteArray>> result = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            final int count = 1 + random.nextInt(maxValues);
+            final List<UnsignedByteArray> values = new ArrayList<>(count);
+            for (int j = 0; j < count; j++)
+                values.add(value(random, width, bound));
+            result.add(values);
+        }
+        return result;
+    }
+
+    @Test
+    public void filterable() throws IOException {
+        final Random random = new Random(0);
+        for (int width : new int[]{1, 2, 4, 8}) {
+            for (int bound : new int[]{1, 10, 100000}) {
+                // Several values per document including duplicates
+                final List<List<UnsignedByteArray>> documents =
+                        documents(random, width, bound, 3);
+                assertArrayEquals(
+                        write(new V1FilterableIndex("f", true), documents),
+                        write(new V1NumericFilterableIndex("f"), documents));
+            }
+        }
+    }
+
+    @Test
+    public void full() throws IOException {
+        final Random random = new Random(1);
+        for (int width : new int[]{1, 2, 4, 8}) {
+            for (int bound : new int[]{1, 10, 100000}) {
+                final List<List<UnsignedByteArray>> documents =
+                        documents(random, width, bound, 1);
+                assertArrayEquals(
+                        write(new V1FullIndex("f", true), documents),
+                        write(new V1NumericFullIndex("f"), documents));
+                assertArrayEquals(
+                        write(new V1SortableIndex("f", true), documents),
+                        write(new V1NumericSortableIndex("f"), documents));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentLengths() {
+        new V1NumericFilterableIndex("f").addDocument(
+                0,
+                Arrays.asList(from(1), from(1L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLong() {
+        new V1NumericFilterableIndex("f").addDocument(
+                0,
+                Collections.singletonList(from(new byte[9])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongDocument() {
+        new V1NumericFullIndex("f").addDocument(
+                1,
+                Collections.singletonList(from(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multipleValues() {
+        new V1NumericSortableIndex("f").addDocument(
+                0,
+                Arrays.asList(from(1), from(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noValues() {
+        new V1NumericFilterableIndex("f").addDocument(
+                0,
+                Collections.<UnsignedByteArray>emptyList());
+    }
+}